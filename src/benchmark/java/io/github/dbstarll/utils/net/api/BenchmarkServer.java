@@ -0,0 +1,71 @@
+package io.github.dbstarll.utils.net.api;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.function.Function;
+
+/**
+ * 基准测试使用的本地MockWebServer.
+ */
+final class BenchmarkServer {
+    private BenchmarkServer() {
+    }
+
+    /**
+     * 启动一个对所有请求都返回相同响应的MockWebServer.
+     *
+     * @param dispatcher 根据请求生成响应
+     * @return 已启动的MockWebServer
+     * @throws IOException 启动失败
+     */
+    static MockWebServer start(final Function<RecordedRequest, MockResponse> dispatcher) throws IOException {
+        final MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                return dispatcher.apply(request);
+            }
+        });
+        // MockWebServer分别写出响应头和响应体，需要关闭Nagle算法，否则持久连接上每个请求都会等待延迟确认
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.start();
+        return server;
+    }
+
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    final Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog, final InetAddress ifAddress) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.http.client.HttpClientFactory;
+import io.github.dbstarll.utils.http.client.request.RelativeUriResolver;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.apache.hc.client5.http.async.HttpAsyncClient;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对比ApiClient与ApiAsyncClient同步接口在大量并发阻塞调用下的吞吐量、线程数和堆内存占用.
+ * 运行在JDK 21及以上版本时，额外对比虚拟线程下的表现.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.dbstarll.utils.net.api.BlockingBenchmark -Dexec.args="10000 256"
+ * </pre>
+ */
+public final class BlockingBenchmark {
+    private static final int DEFAULT_CONCURRENCY = 10000;
+    private static final int DEFAULT_CONNECTIONS = 256;
+    private static final int PLATFORM_THREADS = 200;
+
+    private BlockingBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONCURRENCY;
+        final int connections = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CONNECTIONS;
+        try (MockWebServer server = BenchmarkServer.start(request -> new MockResponse().setBody("ok"))) {
+            final String uriBase = server.url("/").toString();
+            try (CloseableHttpClient httpClient = new HttpClientFactory().build(builder -> builder
+                    .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                            .setMaxConnTotal(connections).setMaxConnPerRoute(connections).build()),
+                    new KeepAlive(Integer.MAX_VALUE, TimeValue.ofSeconds(30)));
+                 CloseableHttpAsyncClient httpAsyncClient = new HttpClientFactory().buildAsync(builder -> builder
+                         .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                                 .setMaxConnTotal(connections).setMaxConnPerRoute(connections).build()))) {
+                httpAsyncClient.start();
+                final BlockingClient classic = new BlockingClient(httpClient, uriBase);
+                final BlockingAsyncClient async = new BlockingAsyncClient(httpAsyncClient, uriBase);
+
+                run("classic/platform", Executors.newFixedThreadPool(PLATFORM_THREADS), concurrency, classic::ping);
+                run("async/platform", Executors.newFixedThreadPool(PLATFORM_THREADS), concurrency, async::ping);
+                final ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+                if (virtual == null) {
+                    System.out.println("virtual threads are not available on this JVM, skipped");
+                } else {
+                    run("classic/virtual", virtual, concurrency, classic::ping);
+                    run("async/virtual", newVirtualThreadPerTaskExecutor(), concurrency, async::ping);
+                }
+            }
+        }
+    }
+
+    private static void run(final String name, final ExecutorService executor, final int concurrency,
+                            final Callable<String> call) throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        threads.resetPeakThreadCount();
+        final AtomicLong peakHeap = new AtomicLong();
+        final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+        try {
+            final List<Future<String>> futures = new ArrayList<>(concurrency);
+            final long start = System.nanoTime();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(executor.submit(call));
+            }
+            for (Future<String> future : futures) {
+                future.get();
+            }
+            final long total = System.nanoTime() - start;
+            System.out.printf("%-16s throughput: %8.1f req/s, peak threads: %5d, peak heap: %5d MB%n", name,
+                    concurrency * 1e9 / total, threads.getPeakThreadCount(), peakHeap.get() >> 20);
+        } finally {
+            sampler.shutdownNow();
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * 编译目标为Java 8，只能通过反射使用JDK 21的虚拟线程.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class BlockingClient extends ApiClient {
+        private BlockingClient(final HttpClient httpClient, final String uriBase) {
+            super(httpClient, false);
+            setUriResolver(new RelativeUriResolver(uriBase));
+            setKeepAlive(true);
+        }
+
+        private String ping() throws Exception {
+            return execute(get("/ping").build(), String.class);
+        }
+    }
+
+    private static final class BlockingAsyncClient extends ApiAsyncClient {
+        private BlockingAsyncClient(final HttpAsyncClient httpClient, final String uriBase) {
+            super(httpClient, false);
+            setUriResolver(new RelativeUriResolver(uriBase));
+        }
+
+        private String ping() throws Exception {
+            return execute(get("/ping").build(), String.class);
+        }
+    }
+}
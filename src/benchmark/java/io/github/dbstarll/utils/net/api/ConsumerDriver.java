@@ -0,0 +1,85 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.impl.BasicEntityDetails;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 不经过网络，直接将分块的响应体交给AsyncResponseConsumer处理，用于JMH基准测试.
+ */
+final class ConsumerDriver {
+    private ConsumerDriver() {
+    }
+
+    /**
+     * 将内容按chunkSize切分为只读的ByteBuffer.
+     *
+     * @param content   响应体
+     * @param chunkSize 每块的字节数
+     * @return 切分后的数据块
+     */
+    static ByteBuffer[] chunks(final byte[] content, final int chunkSize) {
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            chunks.add(ByteBuffer.wrap(content, offset, Math.min(chunkSize, content.length - offset)).slice()
+                    .asReadOnlyBuffer());
+        }
+        return chunks.toArray(new ByteBuffer[0]);
+    }
+
+    /**
+     * 依次把数据块交给consumer，返回consumer构建的结果.
+     *
+     * @param consumer    AsyncResponseConsumer
+     * @param contentType 响应的ContentType
+     * @param chunks      数据块，会被重置后重复使用
+     * @param <T>         结果类型
+     * @return 结果
+     * @throws Exception 处理失败
+     */
+    static <T> T drive(final AsyncResponseConsumer<T> consumer, final ContentType contentType,
+                       final ByteBuffer[] chunks) throws Exception {
+        final BasicHttpResponse response = new BasicHttpResponse(200);
+        response.setHeader(HttpHeaders.CONTENT_TYPE, contentType.toString());
+        long length = 0;
+        for (ByteBuffer chunk : chunks) {
+            length += chunk.capacity();
+        }
+        final AtomicReference<T> result = new AtomicReference<>();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        consumer.consumeResponse(response, new BasicEntityDetails(length, contentType), null,
+                new FutureCallback<T>() {
+                    @Override
+                    public void completed(final T value) {
+                        result.set(value);
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        failure.set(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                    }
+                });
+        for (ByteBuffer chunk : chunks) {
+            chunk.rewind();
+            consumer.consume(chunk);
+        }
+        consumer.streamEnd(null);
+        consumer.releaseResources();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return result.get();
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.index.EventStreamIndexResponseHandler;
+import io.github.dbstarll.utils.net.api.index.Index;
+import io.github.dbstarll.utils.net.api.index.IndexParser;
+import io.github.dbstarll.utils.net.api.index.IndexParserResponseHandler;
+import io.github.dbstarll.utils.net.api.index.StringIndexResponseHandler;
+import org.apache.hc.client5.http.impl.classic.BasicHttpClientResponseHandler;
+import org.apache.hc.core5.http.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringIndexResponseHandler和EventStreamIndexResponseHandler解析一段包含多个数据帧的内容.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexParserBenchmark {
+    @Param({"10", "1000"})
+    private int frames;
+
+    private String lines;
+    private String events;
+    private IndexParser<? extends Index<String>> stringParser;
+    private IndexParser<? extends Index<?>> eventStreamParser;
+
+    @Setup
+    public void setup() {
+        final StringBuilder linesBuilder = new StringBuilder();
+        final StringBuilder eventsBuilder = new StringBuilder();
+        for (int i = 0; i < frames; i++) {
+            linesBuilder.append("line ").append(i).append(" of the stream").append('\n');
+            eventsBuilder.append("id: ").append(i).append("\nevent: message\ndata: {\"index\":").append(i)
+                    .append("}\n\n");
+        }
+        this.lines = linesBuilder.toString();
+        this.events = eventsBuilder.toString();
+        final BasicHttpClientResponseHandler stringHandler = new BasicHttpClientResponseHandler();
+        this.stringParser = ((IndexParserResponseHandler<String, ?>) new StringIndexResponseHandler(stringHandler))
+                .getParser();
+        this.eventStreamParser = new EventStreamIndexResponseHandler(stringHandler).getParser();
+    }
+
+    @Benchmark
+    public void stringIndex(final Blackhole blackhole) {
+        parse(stringParser, ContentType.TEXT_PLAIN, lines, blackhole);
+    }
+
+    @Benchmark
+    public void eventStreamIndex(final Blackhole blackhole) {
+        parse(eventStreamParser, ContentType.TEXT_EVENT_STREAM, events, blackhole);
+    }
+
+    private static void parse(final IndexParser<? extends Index<?>> parser, final ContentType contentType,
+                              final String content, final Blackhole blackhole) {
+        int offset = 0;
+        while (offset >= 0) {
+            final Index<?> index = parser.parse(contentType, content, offset, true);
+            blackhole.consume(index.getData());
+            offset = index.getIndex();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行所有JMH基准测试，并附带GC profiler统计每次操作的内存分配. 参数与JMH命令行一致，可以指定要运行的基准测试.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.dbstarll.utils.net.api.JmhBenchmarks -Dexec.args="StreamConsumerBenchmark"
+ * </pre>
+ */
+public final class JmhBenchmarks {
+    private JmhBenchmarks() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine).addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(JmhBenchmarks.class.getPackage().getName() + "\\..*Benchmark\\.");
+        }
+        new Runner(options.build()).run();
+    }
+}
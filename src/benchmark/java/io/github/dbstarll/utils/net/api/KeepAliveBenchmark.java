@@ -0,0 +1,71 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.http.client.HttpClientFactory;
+import io.github.dbstarll.utils.http.client.request.RelativeUriResolver;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比每个请求关闭连接与持久连接两种模式下，对本地MockWebServer发起请求的延迟和吞吐量.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.dbstarll.utils.net.api.KeepAliveBenchmark
+ * </pre>
+ */
+public final class KeepAliveBenchmark {
+    private static final int WARMUP = 200;
+    private static final int REQUESTS = 2000;
+
+    private KeepAliveBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        try (MockWebServer server = BenchmarkServer.start(request -> new MockResponse().setBody("ok"))) {
+            final String uriBase = server.url("/").toString();
+
+            try (CloseableHttpClient httpClient = new HttpClientFactory().build()) {
+                run("close", new BenchmarkClient(httpClient, uriBase, false));
+            }
+            try (CloseableHttpClient httpClient = new HttpClientFactory()
+                    .build(new KeepAlive(1000, TimeValue.ofSeconds(30)))) {
+                run("keep-alive", new BenchmarkClient(httpClient, uriBase, true));
+            }
+        }
+    }
+
+    private static void run(final String name, final BenchmarkClient client) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            client.ping();
+        }
+        final long[] latencies = new long[REQUESTS];
+        final long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            final long begin = System.nanoTime();
+            client.ping();
+            latencies[i] = System.nanoTime() - begin;
+        }
+        final long total = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.printf("%-10s throughput: %8.1f req/s, p50: %6d us, p99: %6d us%n", name,
+                REQUESTS * 1e9 / total, TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS / 2]),
+                TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS * 99 / 100]));
+    }
+
+    private static final class BenchmarkClient extends ApiClient {
+        private BenchmarkClient(final HttpClient httpClient, final String uriBase, final boolean keepAlive) {
+            super(httpClient, false);
+            setUriResolver(new RelativeUriResolver(uriBase));
+            setKeepAlive(keepAlive);
+        }
+
+        private String ping() throws Exception {
+            return execute(get("/ping").build(), String.class);
+        }
+    }
+}
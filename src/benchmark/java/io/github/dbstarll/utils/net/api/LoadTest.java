@@ -0,0 +1,250 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.http.client.HttpClientFactory;
+import io.github.dbstarll.utils.http.client.request.RelativeUriResolver;
+import io.github.dbstarll.utils.net.api.index.EventStream;
+import io.github.dbstarll.utils.net.api.metrics.LatencyHistogram;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.hc.client5.http.async.HttpAsyncClient;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对本地MockWebServer发起压力测试，报告延迟分位数、吞吐量、内存分配速率和建立的连接数.
+ * 参数均为key=value的形式：
+ * <ul>
+ * <li>mode：classic（ApiClient）、async（ApiAsyncClient）或sse（ApiAsyncClient流式请求），默认async</li>
+ * <li>concurrency：并发数，默认64</li>
+ * <li>requests：请求总数，默认20000</li>
+ * <li>payload：响应体的字节数，默认1024</li>
+ * <li>delay：服务端在返回响应头之前的延迟毫秒数，默认0</li>
+ * <li>events、eventInterval：sse模式下每个响应的事件数和事件间隔毫秒数，默认100和0</li>
+ * </ul>
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.dbstarll.utils.net.api.LoadTest -Dexec.args="mode=classic concurrency=32 delay=5"
+ * </pre>
+ */
+public final class LoadTest {
+    private final String mode;
+    private final int concurrency;
+    private final int requests;
+    private final int payload;
+    private final int delay;
+    private final int events;
+    private final int eventInterval;
+    private final String body;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder receivedEvents = new LongAdder();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private LoadTest(final Map<String, String> options) {
+        this.mode = options.getOrDefault("mode", "async");
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        this.requests = Integer.parseInt(options.getOrDefault("requests", "20000"));
+        this.payload = Integer.parseInt(options.getOrDefault("payload", "1024"));
+        this.delay = Integer.parseInt(options.getOrDefault("delay", "0"));
+        this.events = Integer.parseInt(options.getOrDefault("events", "100"));
+        this.eventInterval = Integer.parseInt(options.getOrDefault("eventInterval", "0"));
+        this.body = body();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("expected key=value: " + arg);
+            }
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    private String body() {
+        final String data = String.join("", Collections.nCopies(payload, "a"));
+        if (!"sse".equals(mode)) {
+            return data;
+        }
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < events; i++) {
+            body.append("data: ").append(data).append("\n\n");
+        }
+        return body.toString();
+    }
+
+    private MockResponse respond(final RecordedRequest request) {
+        if (request.getSequenceNumber() == 0) {
+            connections.incrementAndGet();
+        }
+        final MockResponse response = new MockResponse().setHeadersDelay(delay, TimeUnit.MILLISECONDS).setBody(body);
+        if ("sse".equals(mode)) {
+            response.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM);
+            if (eventInterval > 0) {
+                response.throttleBody(body.length() / events, eventInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+        return response;
+    }
+
+    private void run() throws Exception {
+        try (MockWebServer server = BenchmarkServer.start(this::respond)) {
+            final String uriBase = server.url("/").toString();
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            final long allocatedBefore = allocatedBytes(threads);
+            final long start = System.nanoTime();
+            if ("classic".equals(mode)) {
+                runClassic(uriBase);
+            } else {
+                runAsync(uriBase);
+            }
+            final long elapsed = System.nanoTime() - start;
+            final long allocated = allocatedBytes(threads) - allocatedBefore;
+            report(elapsed, allocated);
+        }
+    }
+
+    private void runClassic(final String uriBase) throws Exception {
+        try (CloseableHttpClient httpClient = new HttpClientFactory().build(builder -> builder
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(concurrency).setMaxConnPerRoute(concurrency).build()),
+                new KeepAlive(Integer.MAX_VALUE, TimeValue.ofSeconds(30)))) {
+            final LoadClient client = new LoadClient(httpClient, uriBase);
+            final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+            final AtomicInteger remaining = new AtomicInteger(requests);
+            final CountDownLatch done = new CountDownLatch(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                executor.execute(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        final long begin = System.nanoTime();
+                        try {
+                            client.load();
+                            latency.record(System.nanoTime() - begin);
+                        } catch (Exception e) {
+                            failures.increment();
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+            executor.shutdown();
+        }
+    }
+
+    private void runAsync(final String uriBase) throws Exception {
+        try (CloseableHttpAsyncClient httpClient = new HttpClientFactory().buildAsync(builder -> builder
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(concurrency).setMaxConnPerRoute(concurrency).build()))) {
+            httpClient.start();
+            final LoadAsyncClient client = new LoadAsyncClient(httpClient, uriBase);
+            final Semaphore permits = new Semaphore(concurrency);
+            final CountDownLatch done = new CountDownLatch(requests);
+            for (int i = 0; i < requests; i++) {
+                permits.acquire();
+                final long begin = System.nanoTime();
+                final CompletableFuture<?> future;
+                try {
+                    future = "sse".equals(mode) ? client.loadStream(receivedEvents) : client.load();
+                } catch (Exception e) {
+                    failures.increment();
+                    permits.release();
+                    done.countDown();
+                    continue;
+                }
+                future.whenComplete((r, ex) -> {
+                    if (ex == null) {
+                        latency.record(System.nanoTime() - begin);
+                    } else {
+                        failures.increment();
+                    }
+                    permits.release();
+                    done.countDown();
+                });
+            }
+            done.await();
+        }
+    }
+
+    private static long allocatedBytes(final ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final long[] allocated = ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(threads.getAllThreadIds());
+            long total = 0;
+            for (long bytes : allocated) {
+                total += Math.max(0, bytes);
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private void report(final long elapsed, final long allocated) {
+        final double seconds = elapsed / 1e9;
+        System.out.printf("mode=%s concurrency=%d requests=%d payload=%d delay=%dms%n", mode, concurrency, requests,
+                payload, delay);
+        System.out.printf("throughput: %.1f req/s, failures: %d, connections: %d%n",
+                latency.getCount() / seconds, failures.sum(), connections.get());
+        System.out.printf("latency: p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+                latency.getPercentile(0.5, TimeUnit.MILLISECONDS), latency.getPercentile(0.99, TimeUnit.MILLISECONDS),
+                latency.getPercentile(0.999, TimeUnit.MILLISECONDS), latency.getMax(TimeUnit.MILLISECONDS));
+        if ("sse".equals(mode)) {
+            System.out.printf("events: %d, %.1f events/s%n", receivedEvents.sum(), receivedEvents.sum() / seconds);
+        }
+        if (allocated >= 0) {
+            System.out.printf("allocation: %.1f MB/s, %.1f KB/req (live threads only)%n", allocated / seconds / 1e6,
+                    latency.getCount() == 0 ? 0 : allocated / 1024.0 / latency.getCount());
+        }
+    }
+
+    private static final class LoadClient extends ApiClient {
+        private LoadClient(final HttpClient httpClient, final String uriBase) {
+            super(httpClient, false);
+            setUriResolver(new RelativeUriResolver(uriBase));
+            setKeepAlive(true);
+        }
+
+        private String load() throws Exception {
+            return execute(get("/load").build(), String.class);
+        }
+    }
+
+    private static final class LoadAsyncClient extends ApiAsyncClient {
+        private LoadAsyncClient(final HttpAsyncClient httpClient, final String uriBase) {
+            super(httpClient, false);
+            setUriResolver(new RelativeUriResolver(uriBase));
+        }
+
+        private CompletableFuture<String> load() throws Exception {
+            return executeAsync(get("/load").build(), String.class);
+        }
+
+        private CompletableFuture<Void> loadStream(final LongAdder counter) throws Exception {
+            return executeAsync(get("/events").build(), EventStream.class, (contentType, result) -> counter.increment());
+        }
+    }
+}
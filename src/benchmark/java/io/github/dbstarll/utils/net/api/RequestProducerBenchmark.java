@@ -0,0 +1,118 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同大小和类型的请求体，经由ApiAsyncClient构建请求时使用的HttpEntityAsyncEntityProducer写出到通道.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestProducerBenchmark {
+    private static final int CHANNEL_CAPACITY = 16384;
+
+    @Param({"128", "65536", "1048576"})
+    private int bodySize;
+
+    private byte[] body;
+    private String text;
+    private DrainingChannel channel;
+
+    @Setup
+    public void setup() {
+        this.body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        this.text = new String(body, StandardCharsets.US_ASCII);
+        this.channel = new DrainingChannel();
+    }
+
+    @Benchmark
+    public long byteArray() throws IOException {
+        return produce(new ByteArrayEntity(body, ContentType.APPLICATION_OCTET_STREAM));
+    }
+
+    @Benchmark
+    public long string() throws IOException {
+        return produce(new StringEntity(text, ContentType.TEXT_PLAIN));
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        return produce(new InputStreamEntity(new ByteArrayInputStream(body), bodySize,
+                ContentType.APPLICATION_OCTET_STREAM));
+    }
+
+    private long produce(final HttpEntity entity) throws IOException {
+        final AsyncEntityProducer producer = HttpEntityAsyncEntityProducer.create(entity);
+        channel.reset();
+        while (!channel.ended) {
+            producer.produce(channel);
+        }
+        producer.releaseResources();
+        return channel.written;
+    }
+
+    /**
+     * 每次写入最多接收CHANNEL_CAPACITY字节，模拟套接字发送缓冲区.
+     */
+    private static final class DrainingChannel implements DataStreamChannel {
+        private long written;
+        private boolean ended;
+
+        private void reset() {
+            this.written = 0;
+            this.ended = false;
+        }
+
+        @Override
+        public void requestOutput() {
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            final int n = Math.min(src.remaining(), CHANNEL_CAPACITY);
+            src.position(src.position() + n);
+            written += n;
+            return n;
+        }
+
+        @Override
+        public void endStream() {
+            ended = true;
+        }
+
+        @Override
+        public void endStream(final List<? extends Header> trailers) {
+            ended = true;
+        }
+    }
+}
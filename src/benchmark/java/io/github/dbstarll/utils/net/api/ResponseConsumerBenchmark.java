@@ -0,0 +1,64 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.http.client.response.ByteArrayResponseHandler;
+import org.apache.hc.client5.http.impl.classic.BasicHttpClientResponseHandler;
+import org.apache.hc.core5.http.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResponseHandlerResponseConsumer以String和byte[]接收响应，byte[]同时对比不经过字符解码的BinaryResponseConsumer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseConsumerBenchmark {
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"1024", "65536", "1048576"})
+    private int bodySize;
+
+    private ByteBuffer[] chunks;
+
+    @Setup
+    public void setup() {
+        final byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'a');
+        this.chunks = ConsumerDriver.chunks(body, CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public String string() throws Exception {
+        return ConsumerDriver.drive(ResponseHandlerResponseConsumer.create(new BasicHttpClientResponseHandler(),
+                StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, chunks);
+    }
+
+    @Benchmark
+    public byte[] bytes() throws Exception {
+        return ConsumerDriver.drive(ResponseHandlerResponseConsumer.create(new ByteArrayResponseHandler(false),
+                StandardCharsets.UTF_8), ContentType.APPLICATION_OCTET_STREAM, chunks);
+    }
+
+    @Benchmark
+    public byte[] binary() throws Exception {
+        return ConsumerDriver.drive(BinaryResponseConsumer.create(byte[].class, false),
+                ContentType.APPLICATION_OCTET_STREAM, chunks);
+    }
+}
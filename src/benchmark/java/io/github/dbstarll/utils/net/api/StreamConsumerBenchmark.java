@@ -0,0 +1,66 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.index.StringIndex;
+import io.github.dbstarll.utils.net.api.index.StringIndexResponseHandler;
+import org.apache.hc.client5.http.impl.classic.BasicHttpClientResponseHandler;
+import org.apache.hc.core5.http.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamResponseHandlerResponseConsumer在不同分块大小下解析1000行的流式响应，
+ * 分别通过IndexParser和兼容的HttpClientResponseHandler解析数据帧.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamConsumerBenchmark {
+    private static final int LINES = 1000;
+
+    @Param({"64", "1024", "16384"})
+    private int chunkSize;
+
+    private ByteBuffer[] chunks;
+    private StringIndexResponseHandler handler;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            builder.append("line ").append(i).append(" 流式响应的一行数据").append('\n');
+        }
+        this.chunks = ConsumerDriver.chunks(builder.toString().getBytes(StandardCharsets.UTF_8), chunkSize);
+        this.handler = new StringIndexResponseHandler(new BasicHttpClientResponseHandler());
+    }
+
+    @Benchmark
+    public void parser(final Blackhole blackhole) throws Exception {
+        ConsumerDriver.drive(StreamResponseHandlerResponseConsumer.<String, StringIndex>create(handler.getParser(),
+                false, StandardCharsets.UTF_8, (contentType, result) -> blackhole.consume(result)),
+                ContentType.TEXT_PLAIN, chunks);
+    }
+
+    @Benchmark
+    public void responseHandler(final Blackhole blackhole) throws Exception {
+        ConsumerDriver.drive(StreamResponseHandlerResponseConsumer.<String, StringIndex>create(handler,
+                StandardCharsets.UTF_8, (contentType, result) -> blackhole.consume(result)),
+                ContentType.TEXT_PLAIN, chunks);
+    }
+}
@@ -5,20 +5,46 @@ import io.github.dbstarll.utils.http.client.request.UriResolver;
 import io.github.dbstarll.utils.http.client.response.BasicResponseHandlerFactory;
 import io.github.dbstarll.utils.http.client.response.MultiResponseHandlerFactory;
 import io.github.dbstarll.utils.http.client.response.ResponseHandlerFactory;
+import io.github.dbstarll.utils.net.api.balance.LoadBalancingUriResolver;
+import io.github.dbstarll.utils.net.api.cache.ResponseCache;
+import io.github.dbstarll.utils.net.api.limit.CircuitBreaker;
+import io.github.dbstarll.utils.net.api.limit.Limiter;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+import io.github.dbstarll.utils.net.api.metrics.ApiMetrics;
+import io.github.dbstarll.utils.net.api.metrics.ExchangeMetrics;
+import io.github.dbstarll.utils.net.api.retry.RetryPolicy;
+import org.apache.commons.io.IOUtils;
 import org.apache.hc.client5.http.impl.classic.BasicHttpClientResponseHandler;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.Method;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notNull;
 
 public abstract class AbstractApiClient<C> {
@@ -28,6 +54,10 @@ public abstract class AbstractApiClient<C> {
     private static final String RESPONSE_HANDLER_FACTORY_IS_NULL_EX_MESSAGE = "responseHandlerFactory is null";
     private static final String REQUEST_IS_NULL_EX_MESSAGE = "request is null";
     private static final String ENTITY_FORMAT = "[Length: %s, Type: %s, Encoding: %s, chunked: %s]";
+    private static final String TRUNCATED = "...";
+    private static final int SAMPLE_MIXER = 0x9E3779B9;
+    private static final int SAMPLE_SHIFT = 8;
+    private static final int SAMPLE_SCALE = 1 << 24;
 
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -36,16 +66,40 @@ public abstract class AbstractApiClient<C> {
     private UriResolver uriResolver = new AbsoluteUriResolver();
     private Charset charset = StandardCharsets.UTF_8;
     private ResponseHandlerFactory responseHandlerFactory;
+    private int traceBodyLimit = -1;
+    private double traceSampleRate = 1;
+    private Executor traceExecutor;
+    private ApiMetrics metrics = ApiMetrics.NOOP;
+    private HttpCache httpCache;
+    private SingleFlight singleFlight;
+    private Throttle throttle;
+    private Isolation isolation;
+    private RetryPolicy retryPolicy;
 
     protected AbstractApiClient(final C httpClient, final boolean alwaysProcessEntity) {
         this.httpClient = notNull(httpClient, HTTP_CLIENT_IS_NULL_EX_MESSAGE);
         this.responseHandlerFactory = new BasicResponseHandlerFactory(alwaysProcessEntity);
     }
 
+    /**
+     * 设置解析请求路径的UriResolver. 设置为{@link LoadBalancingUriResolver}时，每个请求的结果都会反馈给它，
+     * 用于选择副本和摘除故障的副本.
+     *
+     * @param uriResolver UriResolver
+     */
     protected final void setUriResolver(final UriResolver uriResolver) {
         this.uriResolver = notNull(uriResolver, URI_RESOLVER_IS_NULL_EX_MESSAGE);
     }
 
+    /**
+     * 获得设置的UriResolver.
+     *
+     * @return UriResolver
+     */
+    final UriResolver uriResolver() {
+        return uriResolver;
+    }
+
     protected final void setCharset(final Charset charset) {
         this.charset = notNull(charset, CHARSET_IS_NULL_EX_MESSAGE);
     }
@@ -98,25 +152,374 @@ public abstract class AbstractApiClient<C> {
         return builder.setCharset(charset);
     }
 
+    /**
+     * 设置GET请求的响应缓存，默认不缓存. 只有根据请求结果类获得结果的请求才会使用缓存，
+     * 缓存命中时直接返回之前解析的结果，不再发出请求，也不采集指标.
+     *
+     * @param responseCache ResponseCache，为null时关闭缓存
+     */
+    protected final void setResponseCache(final ResponseCache responseCache) {
+        setResponseCache(responseCache, HttpCache.DEFAULT_MAX_ENTRY_SIZE);
+    }
+
+    /**
+     * 设置GET请求的响应缓存，并限制单条缓存的响应体大小，默认为1M. 响应体超出上限的响应不缓存，
+     * 按不使用缓存时的方式流式处理.
+     *
+     * @param responseCache ResponseCache，为null时关闭缓存
+     * @param maxEntrySize  单条缓存的响应体大小上限，字节
+     */
+    protected final void setResponseCache(final ResponseCache responseCache, final int maxEntrySize) {
+        isTrue(maxEntrySize >= 0, "maxEntrySize must not be negative: %d", maxEntrySize);
+        this.httpCache = responseCache != null ? HttpCache.create(responseCache, maxEntrySize) : null;
+    }
+
+    /**
+     * 获得请求可以使用的缓存.
+     *
+     * @param request the request
+     * @return HttpCache，未设置缓存或请求不能使用缓存时返回null
+     */
+    final HttpCache httpCache(final ClassicHttpRequest request) {
+        final HttpCache cache = httpCache;
+        return cache != null && HttpCache.isCacheable(request) ? cache : null;
+    }
+
+    /**
+     * 获得响应缓存的key，key相同的请求共享缓存的响应. 默认由URI和除连接管理、缓存控制之外的全部请求头组成，
+     * 携带不同Authorization、Cookie或Accept的请求不会取到彼此的缓存，其中携带凭证的请求头只保留摘要.
+     * 请求头中有每次都不同的值时，可以覆盖此方法，只保留会影响响应内容的请求头.
+     *
+     * @param request the request
+     * @return 响应缓存的key
+     */
+    protected String cacheKey(final ClassicHttpRequest request) {
+        return requestKey(new StringBuilder(), request);
+    }
+
+    private static String requestKey(final StringBuilder key, final ClassicHttpRequest request) {
+        key.append(request.getScheme()).append("://").append(request.getAuthority()).append(request.getPath());
+        for (Header header : request.getHeaders()) {
+            if (!HttpCache.isTransient(header.getName())) {
+                key.append('\n').append(header.getName().toLowerCase(Locale.ROOT)).append(": ")
+                        .append(HttpCache.isCredential(header.getName()) ? HttpCache.digest(header.getValue())
+                                : header.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 设置是否合并相同的进行中请求，默认不合并. 开启后根据请求结果类获得结果的请求，
+     * 如果与正在执行的请求有相同的{@link #coalescingKey(ClassicHttpRequest)}和请求结果类，
+     * 将不再发出请求，而是共享正在执行的请求的结果，调用方不应修改共享的结果.
+     * byte[]、ByteBuffer和InputStream类型的请求不会被合并.
+     *
+     * @param coalescing 是否合并相同的进行中请求
+     */
+    protected final void setCoalescing(final boolean coalescing) {
+        this.singleFlight = coalescing ? new SingleFlight() : null;
+    }
+
+    /**
+     * 获得合并请求的key，key相同的请求被视为相同的请求. 默认只合并不带请求体的GET请求，
+     * key由请求方法和与{@link #cacheKey(ClassicHttpRequest)}相同的URI、请求头组成.
+     *
+     * @param request the request
+     * @return 合并请求的key，返回null时不合并
+     */
+    protected Object coalescingKey(final ClassicHttpRequest request) {
+        if (!Method.GET.isSame(request.getMethod()) || request.getEntity() != null) {
+            return null;
+        }
+        return requestKey(new StringBuilder(request.getMethod()).append(' '), request);
+    }
+
+    private Object coalescingKey(final ClassicHttpRequest request, final Class<?> responseClass) {
+        if (singleFlight == null || BinaryResponseConsumer.isSupported(responseClass)) {
+            return null;
+        }
+        final Object key = coalescingKey(request);
+        return key != null ? Arrays.asList(responseClass, key) : null;
+    }
+
+    private void coalesced(final ClassicHttpRequest request) {
+        if (metrics != ApiMetrics.NOOP) {
+            metrics.coalesced(endpoint(request));
+        }
+    }
+
+    /**
+     * 以阻塞的方式执行请求，开启了请求合并时合并相同的进行中请求.
+     *
+     * @param request       the request
+     * @param responseClass 请求结果类
+     * @param call          真正执行请求
+     * @param <T>           请求结果类型
+     * @return 请求结果
+     * @throws IOException  IOException
+     * @throws ApiException api处理异常
+     */
+    final <T> T coalesce(final ClassicHttpRequest request, final Class<T> responseClass,
+                         final SingleFlight.Call<T> call) throws IOException, ApiException {
+        final Object key = coalescingKey(request, responseClass);
+        return key == null ? call.call() : singleFlight.execute(key, () -> coalesced(request), call);
+    }
+
+    /**
+     * 以异步的方式执行请求，开启了请求合并时合并相同的进行中请求.
+     *
+     * @param request       the request
+     * @param responseClass 请求结果类
+     * @param callback      FutureCallback
+     * @param call          真正执行请求
+     * @param <T>           请求结果类型
+     * @return 请求结果
+     * @throws IOException IOException
+     */
+    final <T> Future<T> coalesce(final ClassicHttpRequest request, final Class<T> responseClass,
+                                 final FutureCallback<T> callback, final SingleFlight.AsyncCall<T> call)
+            throws IOException {
+        final Object key = coalescingKey(request, responseClass);
+        return key == null ? call.execute(callback)
+                : singleFlight.execute(key, () -> coalesced(request), callback, call);
+    }
+
+    /**
+     * 设置请求的限流，默认不限流. 每个{@link #limiterKey(ClassicHttpRequest)}使用各自的Limiter，
+     * 请求在发出之前先获得许可，收到响应头或失败后释放许可，429、503和超时会被反馈给Limiter.
+     *
+     * @param limiterFactory 根据限流key创建Limiter，为null时关闭限流
+     * @param failFast       无法立即获得许可时是否直接以{@link ApiLimitException}失败，否则排队等待，
+     *                       异步请求排队时不占用线程
+     */
+    protected final void setLimiter(final Function<String, Limiter> limiterFactory, final boolean failFast) {
+        this.throttle = limiterFactory != null ? Throttle.create(limiterFactory, failFast) : null;
+    }
+
+    /**
+     * 获得请求的限流key. 默认按主机限流，需要按路径模板限流时应覆盖此方法，例如返回{@link #endpoint(ClassicHttpRequest)}.
+     *
+     * @param request the request
+     * @return 限流key
+     */
+    protected String limiterKey(final ClassicHttpRequest request) {
+        return request.getScheme() + "://" + request.getAuthority();
+    }
+
+    /**
+     * 设置按上游隔离的熔断器和舱壁，默认不隔离. 每个{@link #circuitBreakerKey(ClassicHttpRequest)}使用各自的熔断器，
+     * 并且同时进行中的请求不超过maxConcurrent个，包括正在排队等待限流许可和仍在读取响应体的请求.
+     * 熔断器打开时请求立即以{@link ApiCircuitOpenException}失败，达到并发上限时立即以{@link ApiLimitException}失败，
+     * 都不会发出请求.
+     *
+     * @param breakerFactory 根据熔断key创建CircuitBreaker，为null时关闭隔离
+     * @param maxConcurrent  每个熔断key的并发上限
+     */
+    protected final void setCircuitBreaker(final Function<String, CircuitBreaker> breakerFactory,
+                                           final int maxConcurrent) {
+        isTrue(maxConcurrent > 0, "maxConcurrent must be positive: %d", maxConcurrent);
+        this.isolation = breakerFactory != null ? Isolation.create(breakerFactory, maxConcurrent) : null;
+    }
+
+    /**
+     * 获得请求的熔断key. 默认按主机隔离，需要整个客户端共用一个熔断器时可以返回固定的值，例如getClass().getName().
+     *
+     * @param request the request
+     * @return 熔断key
+     */
+    protected String circuitBreakerKey(final ClassicHttpRequest request) {
+        return request.getScheme() + "://" + request.getAuthority();
+    }
+
+    /**
+     * 为请求申请许可，先通过熔断器和舱壁，再排队等待限流的许可.
+     * 使用{@link LoadBalancingUriResolver}时，许可同时跟踪请求所在副本的请求结果.
+     *
+     * @param request the request
+     * @return 获得许可时完成，未设置限流、隔离和负载均衡时返回null
+     */
+    final CompletableFuture<Permit> acquirePermit(final ClassicHttpRequest request) {
+        final Throttle current = throttle;
+        final Isolation currentIsolation = isolation;
+        Permit guard = uriResolver instanceof LoadBalancingUriResolver
+                ? ((LoadBalancingUriResolver) uriResolver).track(request) : null;
+        if (currentIsolation != null) {
+            try {
+                guard = Throttle.both(guard, currentIsolation.acquire(circuitBreakerKey(request)));
+            } catch (ApiException ex) {
+                if (guard != null) {
+                    guard.ignore();
+                }
+                final CompletableFuture<Permit> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(ex);
+                return rejected;
+            }
+        }
+        if (guard == null) {
+            return current != null ? current.acquire(limiterKey(request)) : null;
+        }
+        return current != null ? Throttle.combine(guard, current.acquire(limiterKey(request)))
+                : CompletableFuture.completedFuture(guard);
+    }
+
+    /**
+     * 设置请求的重试策略，默认不重试. 只有{@link RetryPolicy#isRetryable(ClassicHttpRequest)}的请求才会重试，
+     * 每次重试都是一次完整的请求，会重新申请限流许可并分别采集指标.
+     *
+     * @param retryPolicy RetryPolicy，为null时关闭重试
+     */
+    protected final void setRetryPolicy(final RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * 获得请求使用的重试策略.
+     *
+     * @param request the request
+     * @return RetryPolicy，未设置重试或请求不能重试时返回null
+     */
+    final RetryPolicy retryPolicy(final ClassicHttpRequest request) {
+        final RetryPolicy policy = retryPolicy;
+        return policy != null && policy.isRetryable(request) ? policy : null;
+    }
+
+    /**
+     * 设置请求指标的采集，默认不采集.
+     *
+     * @param metrics ApiMetrics
+     */
+    protected final void setMetrics(final ApiMetrics metrics) {
+        this.metrics = notNull(metrics, "metrics is null");
+    }
+
+    /**
+     * 获得请求的端点标识，用于按端点汇总指标. 默认为请求方法加上不含查询参数的URI，
+     * 路径中含有变量时应覆盖此方法，避免端点的数量无限增长.
+     *
+     * @param request the request
+     * @return 端点标识
+     */
+    protected String endpoint(final ClassicHttpRequest request) {
+        final String path = request.getPath();
+        final int query = path != null ? path.indexOf('?') : -1;
+        return request.getMethod() + ' ' + request.getScheme() + "://" + request.getAuthority()
+                + (query < 0 ? path : path.substring(0, query));
+    }
+
+    /**
+     * 开始采集一次请求的指标，未设置指标采集时直接返回{@link ExchangeMetrics#NOOP}.
+     *
+     * @param request the request
+     * @return 本次请求的指标
+     */
+    final ExchangeMetrics startMetrics(final ClassicHttpRequest request) {
+        if (metrics == ApiMetrics.NOOP) {
+            return ExchangeMetrics.NOOP;
+        }
+        final ExchangeMetrics exchange = metrics.start(endpoint(request));
+        final HttpEntity entity = request.getEntity();
+        if (entity != null && entity.getContentLength() >= 0) {
+            exchange.requestBytes(entity.getContentLength());
+        }
+        return exchange;
+    }
+
+    /**
+     * 设置请求的跟踪日志. 跟踪日志只在logger开启TRACE级别时输出，关闭时不会格式化实体信息，也不会读取请求体.
+     *
+     * @param bodyLimit  记录请求体的最大字节数，超出的部分被截断，小于0时不限制
+     * @param sampleRate 采样率，取值范围[0, 1]，同一个请求的所有跟踪日志采用相同的采样结果
+     * @param executor   读取请求体并输出请求日志的Executor，为null时在请求线程上执行
+     */
+    protected final void setTracing(final int bodyLimit, final double sampleRate, final Executor executor) {
+        isTrue(sampleRate >= 0 && sampleRate <= 1, "sampleRate must be in [0, 1]: %s", sampleRate);
+        this.traceBodyLimit = bodyLimit;
+        this.traceSampleRate = sampleRate;
+        this.traceExecutor = executor;
+    }
+
+    /**
+     * 判断是否需要输出请求的跟踪日志.
+     *
+     * @param request the request
+     * @return 是否需要输出跟踪日志
+     */
+    protected final boolean isTraceEnabled(final ClassicHttpRequest request) {
+        return logger.isTraceEnabled() && (traceSampleRate >= 1
+                || ((request.hashCode() * SAMPLE_MIXER) >>> SAMPLE_SHIFT) < traceSampleRate * SAMPLE_SCALE);
+    }
+
     protected final void traceRequest(final ClassicHttpRequest request) throws IOException {
         notNull(request, REQUEST_IS_NULL_EX_MESSAGE);
 
+        if (!isTraceEnabled(request)) {
+            return;
+        }
+        final Executor executor = traceExecutor;
+        if (executor == null) {
+            doTraceRequest(request);
+        } else {
+            executor.execute(() -> {
+                try {
+                    doTraceRequest(request);
+                } catch (IOException ex) {
+                    logger.trace("request: [{}]@{} failed to read entity", request, request.hashCode(), ex);
+                }
+            });
+        }
+    }
+
+    private void doTraceRequest(final ClassicHttpRequest request) throws IOException {
         final HttpEntity entity = request.getEntity();
         if (entity != null) {
-            final String traceEntity = format(request.getEntity());
+            final String traceEntity = format(entity);
             if (entity.isRepeatable()) {
-                final String content = new BasicHttpClientResponseHandler().handleEntity(request.getEntity());
                 logger.trace("request: [{}]@{} with {}:{}:[{}]", request, request.hashCode(),
-                        request.getEntity().getClass().getSimpleName(), traceEntity, content);
+                        entity.getClass().getSimpleName(), traceEntity, traceContent(entity));
             } else {
                 logger.trace("request: [{}]@{} with {}:{}", request, request.hashCode(),
-                        request.getEntity().getClass().getSimpleName(), traceEntity);
+                        entity.getClass().getSimpleName(), traceEntity);
             }
         } else {
             logger.trace("request: [{}]@{}", request, request.hashCode());
         }
     }
 
+    private String traceContent(final HttpEntity entity) throws IOException {
+        final int limit = traceBodyLimit;
+        if (limit < 0) {
+            return new BasicHttpClientResponseHandler().handleEntity(entity);
+        }
+        try (InputStream in = entity.getContent()) {
+            if (in == null) {
+                return null;
+            }
+            final long contentLength = entity.getContentLength();
+            final byte[] buffer = new byte[contentLength >= 0 && contentLength < limit ? (int) contentLength : limit];
+            final int length = IOUtils.read(in, buffer);
+            final ContentType contentType = ContentType.parseLenient(entity.getContentType());
+            final Charset contentCharset = contentType != null && contentType.getCharset() != null
+                    ? contentType.getCharset() : charset;
+            if (in.read() < 0) {
+                return new String(buffer, 0, length, contentCharset);
+            }
+            return decodeTruncated(buffer, length, contentCharset) + TRUNCATED;
+        }
+    }
+
+    /**
+     * 解码被截断的内容，截断处不完整的多字节字符被丢弃.
+     */
+    private static String decodeTruncated(final byte[] buffer, final int length, final Charset charset) {
+        final CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer out = CharBuffer.allocate((int) Math.ceil(length * (double) decoder.maxCharsPerByte()));
+        decoder.decode(ByteBuffer.wrap(buffer, 0, length), out, false);
+        ((Buffer) out).flip();
+        return out.toString();
+    }
+
     protected final String format(final EntityDetails entity) {
         return String.format(ENTITY_FORMAT, entity.getContentLength(), entity.getContentType(),
                 entity.getContentEncoding(), entity.isChunked());
@@ -58,7 +58,7 @@ public abstract class AbstractResponseHandlerResponseConsumer<H, T> extends Abst
 
     @Override
     protected int capacityIncrement() {
-        return 0;
+        return Integer.MAX_VALUE;
     }
 
     @Override
@@ -1,35 +1,75 @@
 package io.github.dbstarll.utils.net.api;
 
+import io.github.dbstarll.utils.http.client.request.UriResolver;
+import io.github.dbstarll.utils.http.client.response.ByteArrayResponseHandler;
+import io.github.dbstarll.utils.net.api.balance.LoadBalancingUriResolver;
+import io.github.dbstarll.utils.net.api.cache.CacheEntry;
+import io.github.dbstarll.utils.net.api.index.ByteFrameIndexParser;
+import io.github.dbstarll.utils.net.api.index.EventStream;
+import io.github.dbstarll.utils.net.api.index.EventStreamIndexParser;
 import io.github.dbstarll.utils.net.api.index.Index;
-import org.apache.commons.io.IOUtils;
+import io.github.dbstarll.utils.net.api.index.IndexParser;
+import io.github.dbstarll.utils.net.api.index.IndexParserResponseHandler;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+import io.github.dbstarll.utils.net.api.metrics.ExchangeMetrics;
+import io.github.dbstarll.utils.net.api.retry.HedgePolicy;
+import io.github.dbstarll.utils.net.api.retry.ReconnectPolicy;
+import io.github.dbstarll.utils.net.api.retry.RetryPolicy;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.HttpResponseException;
 import org.apache.hc.client5.http.async.HttpAsyncClient;
-import org.apache.hc.core5.concurrent.CallbackContribution;
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.*;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.nio.AsyncRequestProducer;
 import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
-import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
 import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.net.URIBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.reactivestreams.Publisher;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notNull;
 
 public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient> {
     private static final String RESPONSE_CONSUMER_IS_NULL_EX_MESSAGE = "responseConsumer is null";
+    private static final int DEFAULT_STREAM_WINDOW = 64 * 1024;
+    private static final int HEDGE_RESOLVE_ATTEMPTS = 4;
 
+    private final boolean alwaysProcessEntity;
     private Charset responseCharset = StandardCharsets.UTF_8;
+    private int streamWindow;
+    private Executor streamExecutor;
+    private Executor entityExecutor;
+    private Timeout requestDeadline;
+    private Timeout streamDeadline;
+    private HedgePolicy hedgePolicy;
 
     protected ApiAsyncClient(final HttpAsyncClient httpClient, final boolean alwaysProcessEntity) {
         super(httpClient, alwaysProcessEntity);
+        this.alwaysProcessEntity = alwaysProcessEntity;
         setResponseHandlerFactory(new BasicIndexResponseHandlerFactory(getResponseHandler(String.class)));
     }
 
@@ -37,12 +77,110 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
         this.responseCharset = notNull(responseCharset, "responseCharset is null");
     }
 
+    /**
+     * 设置流式请求的流量控制. 开启后数据帧在streamExecutor上依次回调，已接收的数据帧全部回调完成之后，
+     * 才会继续从连接上读取下一个窗口的数据，慢速的回调既不会阻塞I/O线程，也不会导致数据无限制地堆积.
+     *
+     * @param window         每次放行读取的字节数，0表示不进行流量控制
+     * @param streamExecutor 执行回调的Executor，为null时在I/O线程上回调
+     */
+    protected final void setStreamFlowControl(final int window, final Executor streamExecutor) {
+        isTrue(window >= 0, "window must not be negative: %d", window);
+        this.streamWindow = window;
+        this.streamExecutor = streamExecutor;
+    }
+
+    /**
+     * 设置读取请求体的Executor. 文件以外的流式请求体（例如InputStreamEntity）的读取可能阻塞，
+     * 在该Executor上分块读取后再由I/O线程发送.
+     *
+     * @param entityExecutor 读取请求体的Executor，为null时使用内置的守护线程池，
+     *                       线程数上限为CPU核数的2倍且至少为8，线程全部占用时后续的读取排队等待
+     */
+    protected final void setEntityExecutor(final Executor entityExecutor) {
+        this.entityExecutor = entityExecutor;
+    }
+
+    /**
+     * 设置executeAsync和阻塞方式请求的默认截止时间，到期仍未完成的请求会被中止并释放连接.
+     * 流式请求通常长时间保持连接，不受此截止时间限制，需要时通过{@link #setStreamDeadline(Timeout)}单独设置.
+     *
+     * @param requestDeadline 截止时间，为null时不限制
+     */
+    protected final void setRequestDeadline(final Timeout requestDeadline) {
+        this.requestDeadline = requestDeadline;
+    }
+
+    /**
+     * 设置流式executeAsync请求的默认截止时间，到期仍未结束的流会被中止并释放连接.
+     *
+     * @param streamDeadline 截止时间，为null时不限制
+     */
+    protected final void setStreamDeadline(final Timeout streamDeadline) {
+        this.streamDeadline = streamDeadline;
+    }
+
+    /**
+     * 设置请求的对冲策略，默认不对冲. 请求在对冲延迟内仍未完成时，向{@link #hedgeUri(ClassicHttpRequest)}
+     * 再发出一次相同的请求，采用先完成的结果，另一个请求被取消. 每个请求最多对冲一次.
+     * 只有根据请求结果类或ResponseHandler获得结果的请求才会对冲和重试.
+     *
+     * @param hedgePolicy HedgePolicy，为null时关闭对冲
+     */
+    protected final void setHedgePolicy(final HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * 获得对冲请求的地址. 默认通过UriResolver重新解析出协议、主机和端口，路径和查询参数保持不变，
+     * 并尽量避开原请求所在的主机：{@link LoadBalancingUriResolver}直接排除原请求的副本，
+     * 其它UriResolver最多重新解析{@value #HEDGE_RESOLVE_ATTEMPTS}次.
+     * UriResolver不能解析出绝对地址时，向原地址发出对冲请求.
+     *
+     * @param request the request
+     * @return 对冲请求的地址
+     * @throws URISyntaxException 地址不合法
+     */
+    protected URI hedgeUri(final ClassicHttpRequest request) throws URISyntaxException {
+        final URI uri = request.getUri();
+        final UriResolver resolver = uriResolver();
+        URI target = null;
+        if (resolver instanceof LoadBalancingUriResolver) {
+            target = ((LoadBalancingUriResolver) resolver).resolveExcluding("/", request);
+        } else {
+            for (int i = 0; i < HEDGE_RESOLVE_ATTEMPTS; i++) {
+                target = resolver.resolve("/");
+                if (target == null || !target.isAbsolute() || !sameAuthority(uri, target)) {
+                    break;
+                }
+            }
+        }
+        if (target == null || !target.isAbsolute()) {
+            return uri;
+        }
+        return new URIBuilder(uri).setScheme(target.getScheme()).setHost(target.getHost())
+                .setPort(target.getPort()).build();
+    }
+
+    private static boolean sameAuthority(final URI uri, final URI target) {
+        return StringUtils.equalsIgnoreCase(uri.getScheme(), target.getScheme())
+                && StringUtils.equalsIgnoreCase(uri.getHost(), target.getHost()) && uri.getPort() == target.getPort();
+    }
+
+    private <T> Future<T> retry(final ClassicHttpRequest request, final FutureCallback<T> callback,
+                                final RetryingExchange.Call<T> call) throws IOException {
+        final RetryPolicy retry = retryPolicy(request);
+        final HedgePolicy hedge = hedgePolicy != null && hedgePolicy.isHedgeable(request) ? hedgePolicy : null;
+        if (retry == null && hedge == null) {
+            return call.execute(request, callback);
+        }
+        return RetryingExchange.execute(retry, hedge, endpoint(request), this::hedgeUri, request, callback, call);
+    }
+
     private AsyncRequestProducer buildRequestProducer(final ClassicHttpRequest request) throws IOException {
         final HttpEntity entity = request.getEntity();
         if (entity != null) {
-            final byte[] data = IOUtils.readFully(entity.getContent(), (int) entity.getContentLength());
-            final ContentType contentType = ContentType.parse(entity.getContentType());
-            return new BasicRequestProducer(request, AsyncEntityProducers.create(data, contentType));
+            return new BasicRequestProducer(request, HttpEntityAsyncEntityProducer.create(entity, entityExecutor));
         } else {
             return new BasicRequestProducer(request, null);
         }
@@ -61,8 +199,10 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
     @SuppressWarnings("RedundantThrows")
     protected void consumeResponse(final ClassicHttpRequest request, final HttpResponse response,
                                    final EntityDetails entityDetails) throws HttpException, IOException {
-        final String traceEntity = format(entityDetails);
-        logger.trace("response: [{}]@{} with {}:{}", request, request.hashCode(), response.getCode(), traceEntity);
+        if (isTraceEnabled(request)) {
+            logger.trace("response: [{}]@{} with {}:{}", request, request.hashCode(), response.getCode(),
+                    entityDetails != null ? format(entityDetails) : null);
+        }
     }
 
     /**
@@ -76,8 +216,10 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
      */
     protected void consume(final ClassicHttpRequest request, final HttpResponse response,
                            final EntityDetails entityDetails, final ByteBuffer src) {
-        logger.trace("consume: [{}]@{} with {}:[{}]:{} bytes", request, request.hashCode(), response.getCode(),
-                entityDetails.getContentType(), src.remaining());
+        if (isTraceEnabled(request)) {
+            logger.trace("consume: [{}]@{} with {}:[{}]:{} bytes", request, request.hashCode(), response.getCode(),
+                    entityDetails.getContentType(), src.remaining());
+        }
     }
 
     /**
@@ -90,8 +232,10 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
      * @return result
      */
     protected <T> T stream(final ClassicHttpRequest request, final ContentType contentType, final T result) {
-        logger.trace("stream: [{}]@{} with [{}]:{}:[{}]", request, request.hashCode(), contentType,
-                result.getClass().getName(), result);
+        if (isTraceEnabled(request)) {
+            logger.trace("stream: [{}]@{} with [{}]:{}:[{}]", request, request.hashCode(), contentType,
+                    result.getClass().getName(), result);
+        }
         return result;
     }
 
@@ -104,7 +248,9 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
      * @return 请求结果
      */
     protected <T> T completed(final ClassicHttpRequest request, final T result) {
-        if (result != null) {
+        if (!isTraceEnabled(request)) {
+            return result;
+        } else if (result != null) {
             logger.trace("completed: [{}]@{} with {}:[{}]", request, request.hashCode(),
                     result.getClass().getName(), result);
         } else {
@@ -117,10 +263,48 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
                                           final AsyncResponseConsumer<T> responseConsumer,
                                           final FutureCallback<T> callback) throws IOException {
         notNull(responseConsumer, RESPONSE_CONSUMER_IS_NULL_EX_MESSAGE);
+        return execute(request, responseConsumer, callback, startMetrics(request));
+    }
+
+    private <T> Future<T> execute(final ClassicHttpRequest request, final AsyncResponseConsumer<T> responseConsumer,
+                                  final FutureCallback<T> callback, final ExchangeMetrics metrics)
+            throws IOException {
+        final CompletableFuture<Permit> acquired = acquirePermit(request);
+        if (acquired == null) {
+            return dispatch(request, responseConsumer, callback, metrics, Permit.NOOP);
+        } else if (acquired.isDone() && !acquired.isCompletedExceptionally()) {
+            return dispatch(request, responseConsumer, callback, metrics, acquired.join());
+        }
 
+        final QueuedExchange<T> queued = new QueuedExchange<>(callback, acquired);
+        // 许可可能在前一个请求完成时于I/O线程上获得，排队的请求转到定时器线程发出，不在I/O线程上重入
+        acquired.whenCompleteAsync((permit, ex) -> {
+            if (ex instanceof CancellationException) {
+                metrics.cancelled();
+            } else if (ex != null) {
+                metrics.failed(ex);
+                queued.failed(ex instanceof Exception ? (Exception) ex : new ApiException(ex));
+            } else if (queued.isDone()) {
+                permit.ignore();
+                metrics.cancelled();
+            } else {
+                try {
+                    queued.bind(dispatch(request, responseConsumer, queued.callback(), metrics, permit));
+                } catch (IOException | RuntimeException e) {
+                    queued.failed(e);
+                }
+            }
+        }, CompletableExchange.Scheduler.INSTANCE);
+        return queued;
+    }
+
+    private <T> Future<T> dispatch(final ClassicHttpRequest request, final AsyncResponseConsumer<T> responseConsumer,
+                                   final FutureCallback<T> callback, final ExchangeMetrics metrics,
+                                   final Permit permit) throws IOException {
         traceRequest(request);
+        final long start = System.nanoTime();
 
-        return httpClient.execute(buildRequestProducer(request), new AsyncResponseConsumerWrapper<T>(responseConsumer) {
+        final AsyncResponseConsumer<T> consumer = new AsyncResponseConsumerWrapper<T>(responseConsumer) {
             private final AtomicReference<HttpResponse> refHttpResponse = new AtomicReference<>();
             private final AtomicReference<EntityDetails> refEntityDetails = new AtomicReference<>();
 
@@ -130,12 +314,18 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
                     throws HttpException, IOException {
                 this.refHttpResponse.set(response);
                 this.refEntityDetails.set(entityDetails);
+                metrics.responseStarted(response.getCode());
+                Throttle.responded(permit, response.getCode(), start);
+                if (request instanceof ResponseAware) {
+                    ((ResponseAware) request).responded(response);
+                }
                 ApiAsyncClient.this.consumeResponse(request, response, entityDetails);
                 super.consumeResponse(response, entityDetails, context, resultCallback);
             }
 
             @Override
             public void consume(final ByteBuffer src) throws IOException {
+                metrics.responseBytes(src.remaining());
                 final int position = src.position();
                 try {
                     ApiAsyncClient.this.consume(request, refHttpResponse.get(), refEntityDetails.get(), src);
@@ -151,26 +341,111 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
                 this.refEntityDetails.set(null);
                 super.releaseResources();
             }
-        }, null, null, new CallbackContribution<T>(callback) {
+        };
+        final FutureCallback<T> resultCallback = new FutureCallback<T>() {
             @Override
             public void completed(final T result) {
+                metrics.completed();
+                Throttle.completed(permit);
                 final T finalResult = ApiAsyncClient.this.completed(request, result);
                 if (callback != null) {
                     callback.completed(finalResult);
                 }
             }
-        });
+
+            @Override
+            public void failed(final Exception ex) {
+                metrics.failed(ex);
+                Throttle.failed(permit, ex);
+                if (callback != null) {
+                    callback.failed(ex);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                metrics.cancelled();
+                permit.ignore();
+                if (callback != null) {
+                    callback.cancelled();
+                }
+            }
+        };
+
+        try {
+            return httpClient.execute(buildRequestProducer(request), consumer, null, null, resultCallback);
+        } catch (IOException | RuntimeException ex) {
+            metrics.failed(ex);
+            Throttle.failed(permit, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * 排队等待许可的请求，获得许可后才真正发出，取消时同时退出排队或中止已发出的请求.
+     *
+     * @param <T> 请求结果类型
+     */
+    private static final class QueuedExchange<T> extends BasicFuture<T> {
+        private final AtomicReference<Future<T>> refExchange = new AtomicReference<>();
+        private final CompletableFuture<Permit> acquired;
+
+        private QueuedExchange(final FutureCallback<T> callback, final CompletableFuture<Permit> acquired) {
+            super(callback);
+            this.acquired = acquired;
+        }
+
+        private void bind(final Future<T> exchange) {
+            refExchange.set(exchange);
+            if (isCancelled()) {
+                exchange.cancel(true);
+            }
+        }
+
+        private FutureCallback<T> callback() {
+            return new FutureCallback<T>() {
+                @Override
+                public void completed(final T result) {
+                    QueuedExchange.this.completed(result);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    QueuedExchange.this.failed(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    QueuedExchange.this.cancel();
+                }
+            };
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                acquired.cancel(false);
+                final Future<T> exchange = refExchange.get();
+                if (exchange != null) {
+                    exchange.cancel(mayInterruptIfRunning);
+                }
+            }
+            return cancelled;
+        }
     }
 
     protected final <T> Future<T> execute(final ClassicHttpRequest request,
                                           final HttpClientResponseHandler<T> responseHandler,
                                           final FutureCallback<T> callback) throws IOException {
         notNull(responseHandler, "responseHandler is null");
-        return execute(request, ResponseHandlerResponseConsumer.create(responseHandler, responseCharset), callback);
+        return retry(request, callback, (r, c) -> execute(r,
+                ResponseHandlerResponseConsumer.create(responseHandler, responseCharset), c));
     }
 
     /**
      * 根据请求结果类来获得相应的请求结果.
+     * byte[]、ByteBuffer和InputStream类型在没有自定义ResponseHandler时，直接以字节的方式接收，不经过字符集解码.
      *
      * @param request       the request to execute
      * @param responseClass 请求结果类
@@ -183,7 +458,281 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
                                     final Class<T> responseClass,
                                     final FutureCallback<T> callback) throws IOException {
         notNull(responseClass, "responseClass is null");
-        return execute(request, getResponseHandler(responseClass), callback);
+        return coalesce(request, responseClass, callback,
+                c -> retry(request, c, (r, rc) -> executeCached(r, responseClass, rc)));
+    }
+
+    private <T> Future<T> executeCached(final ClassicHttpRequest request, final Class<T> responseClass,
+                                        final FutureCallback<T> callback) throws IOException {
+        final HttpClientResponseHandler<T> responseHandler = getResponseHandler(responseClass);
+        final HttpCache cache = httpCache(request);
+        if (cache != null) {
+            return execute(request, responseClass, responseHandler, cache, callback);
+        }
+        return execute(request, consumer(responseClass, responseHandler), callback);
+    }
+
+    private <T> AsyncResponseConsumer<T> consumer(final Class<T> responseClass,
+                                                  final HttpClientResponseHandler<T> responseHandler) {
+        if (BinaryResponseConsumer.isSupported(responseClass)
+                && (responseHandler == null || responseHandler instanceof ByteArrayResponseHandler)) {
+            return BinaryResponseConsumer.create(responseClass, alwaysProcessEntity);
+        }
+        notNull(responseHandler, "responseHandler is null");
+        return ResponseHandlerResponseConsumer.create(responseHandler, responseCharset);
+    }
+
+    private <T> Future<T> execute(final ClassicHttpRequest request, final Class<T> responseClass,
+                                  final HttpClientResponseHandler<T> responseHandler, final HttpCache cache,
+                                  final FutureCallback<T> callback) throws IOException {
+        final long now = System.currentTimeMillis();
+        final String key = cacheKey(request);
+        final CacheEntry cached = cache.lookup(key, now);
+        if (cached != null && cached.isFresh(now)) {
+            final BasicFuture<T> future = new BasicFuture<>(callback);
+            try {
+                future.completed(completed(request,
+                        cache.decode(key, cached, responseClass, responseHandler, responseCharset)));
+            } catch (IOException | HttpException | RuntimeException ex) {
+                future.failed(ex);
+            }
+            return future;
+        }
+
+        return execute(HttpCache.conditional(request, cached), CachingResponseConsumer.create(cache, key, cached,
+                responseClass, responseHandler, responseCharset, alwaysProcessEntity,
+                consumer(responseClass, responseHandler)), callback);
+    }
+
+    /**
+     * 根据请求结果类执行批量请求. 同时进行中的请求不超过window个，每完成一个请求再发出下一个，
+     * 请求复用HttpClient连接池中的持久连接. 每个请求仍按{@link #execute(ClassicHttpRequest, Class, FutureCallback)}
+     * 执行，可以使用缓存、合并、限流和重试. 单个请求的失败不会中断其它请求，全部请求结束后返回按请求顺序汇总的结果.
+     * 取消返回的CompletableFuture时不再发出新的请求，并中止进行中的请求.
+     *
+     * @param requests      全部请求
+     * @param responseClass 请求结果类
+     * @param window        同时进行中的请求数上限
+     * @param callback      每个请求结束时按完成的顺序回调，可以为null
+     * @param <T>           请求结果类型
+     * @return 全部请求结束时完成
+     */
+    protected <T> CompletableFuture<BatchResult<T>> executeBatch(final Collection<? extends ClassicHttpRequest> requests,
+                                                                 final Class<T> responseClass, final int window,
+                                                                 final BatchCallback<T> callback) {
+        notNull(requests, "requests is null");
+        notNull(responseClass, "responseClass is null");
+        isTrue(window > 0, "window must be positive: %d", window);
+        return BatchExchange.execute(new ArrayList<>(requests), window, callback,
+                (request, c) -> execute(request, responseClass, c));
+    }
+
+    /**
+     * 以CompletableFuture的方式获得请求结果，便于组合多个并发的请求.
+     * 取消返回的CompletableFuture或以异常结束它，都会中止底层的请求并释放连接.
+     * 设置了{@link #setRequestDeadline(Timeout)}时，到期仍未完成的请求以TimeoutException结束，
+     * 流式请求则使用{@link #setStreamDeadline(Timeout)}.
+     *
+     * @param request          the request to execute
+     * @param responseConsumer AsyncResponseConsumer
+     * @param <T>              请求结果类型
+     * @return 请求结果
+     * @throws IOException IOException
+     */
+    protected final <T> CompletableFuture<T> executeAsync(final ClassicHttpRequest request,
+                                                          final AsyncResponseConsumer<T> responseConsumer)
+            throws IOException {
+        final CompletableExchange<T> exchange = new CompletableExchange<>();
+        return withDeadline(exchange.bind(execute(request, responseConsumer, exchange)), requestDeadline);
+    }
+
+    /**
+     * 通过ResponseHandler，以CompletableFuture的方式获得请求结果.
+     *
+     * @param request         the request to execute
+     * @param responseHandler ResponseHandler
+     * @param <T>             请求结果类型
+     * @return 请求结果
+     * @throws IOException IOException
+     * @see #executeAsync(ClassicHttpRequest, AsyncResponseConsumer)
+     */
+    protected final <T> CompletableFuture<T> executeAsync(final ClassicHttpRequest request,
+                                                          final HttpClientResponseHandler<T> responseHandler)
+            throws IOException {
+        final CompletableExchange<T> exchange = new CompletableExchange<>();
+        return withDeadline(exchange.bind(execute(request, responseHandler, exchange)), requestDeadline);
+    }
+
+    /**
+     * 根据请求结果类，以CompletableFuture的方式获得请求结果.
+     *
+     * @param request       the request to execute
+     * @param responseClass 请求结果类
+     * @param <T>           请求结果类型
+     * @return 请求结果
+     * @throws IOException IOException
+     * @see #executeAsync(ClassicHttpRequest, AsyncResponseConsumer)
+     */
+    protected <T> CompletableFuture<T> executeAsync(final ClassicHttpRequest request, final Class<T> responseClass)
+            throws IOException {
+        final CompletableExchange<T> exchange = new CompletableExchange<>();
+        return withDeadline(exchange.bind(execute(request, responseClass, exchange)), requestDeadline);
+    }
+
+    /**
+     * 通过ResponseHandler解析数据帧，以CompletableFuture的方式获得流式请求的结束状态.
+     *
+     * @param request         the request to execute
+     * @param responseHandler ResponseHandler
+     * @param callback        StreamCallback
+     * @param <T>             请求结果类型
+     * @return 流式请求结束时完成
+     * @throws IOException IOException
+     * @see #executeAsync(ClassicHttpRequest, AsyncResponseConsumer)
+     */
+    protected final <T> CompletableFuture<Void> executeAsync(
+            final ClassicHttpRequest request, final HttpClientResponseHandler<? extends Index<T>> responseHandler,
+            final StreamCallback<T> callback) throws IOException {
+        notNull(callback, "callback is null");
+        final CompletableExchange<Void> exchange = new CompletableExchange<>();
+        return withDeadline(exchange.bind(execute(request, responseHandler, streamTo(callback, exchange))),
+                streamDeadline);
+    }
+
+    /**
+     * 通过IndexParser直接解析数据帧，以CompletableFuture的方式获得流式请求的结束状态.
+     *
+     * @param request  the request to execute
+     * @param parser   IndexParser
+     * @param callback StreamCallback
+     * @param <T>      请求结果类型
+     * @return 流式请求结束时完成
+     * @throws IOException IOException
+     * @see #executeAsync(ClassicHttpRequest, AsyncResponseConsumer)
+     */
+    protected final <T> CompletableFuture<Void> executeAsync(final ClassicHttpRequest request,
+                                                             final IndexParser<? extends Index<T>> parser,
+                                                             final StreamCallback<T> callback) throws IOException {
+        notNull(callback, "callback is null");
+        final CompletableExchange<Void> exchange = new CompletableExchange<>();
+        return withDeadline(exchange.bind(execute(request, parser, streamTo(callback, exchange))), streamDeadline);
+    }
+
+    /**
+     * 根据请求结果类，以CompletableFuture的方式获得流式请求的结束状态.
+     *
+     * @param request       the request to execute
+     * @param responseClass 请求结果类
+     * @param callback      StreamCallback
+     * @param <T>           请求结果类型
+     * @return 流式请求结束时完成
+     * @throws IOException IOException
+     * @see #executeAsync(ClassicHttpRequest, AsyncResponseConsumer)
+     */
+    protected <T> CompletableFuture<Void> executeAsync(final ClassicHttpRequest request, final Class<T> responseClass,
+                                                       final StreamCallback<T> callback) throws IOException {
+        notNull(callback, "callback is null");
+        final CompletableExchange<Void> exchange = new CompletableExchange<>();
+        return withDeadline(exchange.bind(execute(request, responseClass, streamTo(callback, exchange))),
+                streamDeadline);
+    }
+
+    /**
+     * 为单个请求设置截止时间，到期仍未完成时以TimeoutException结束，
+     * 对于executeAsync返回的CompletableFuture，底层的请求会被中止并释放连接.
+     *
+     * @param future   CompletableFuture
+     * @param deadline 截止时间，为null时不设置
+     * @param <T>      请求结果类型
+     * @return 传入的CompletableFuture
+     */
+    protected final <T> CompletableFuture<T> withDeadline(final CompletableFuture<T> future, final Timeout deadline) {
+        return CompletableExchange.deadline(future, deadline);
+    }
+
+    private static <T> StreamFutureCallback<T> streamTo(final StreamCallback<T> callback,
+                                                        final CompletableExchange<Void> exchange) {
+        return new StreamFutureCallback<T>() {
+            @Override
+            public void stream(final ContentType contentType, final T result) throws IOException {
+                callback.stream(contentType, result);
+            }
+
+            @Override
+            public void completed(final Void result) {
+                exchange.completed(result);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                exchange.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                exchange.cancelled();
+            }
+        };
+    }
+
+    /**
+     * 以阻塞的方式获得请求结果，与{@link ApiClient}的用法一致.
+     * 请求仍由异步的HttpClient执行，当前线程通过LockSupport挂起等待结果，不经过HttpCore Future的对象锁，
+     * 在JDK21+的虚拟线程上调用时，等待期间不会占用平台线程.
+     *
+     * @param request         the request to execute
+     * @param responseHandler ResponseHandler
+     * @param <T>             请求结果类型
+     * @return 请求结果
+     * @throws IOException  IOException
+     * @throws ApiException api处理异常
+     */
+    protected final <T> T execute(final ClassicHttpRequest request, final HttpClientResponseHandler<T> responseHandler)
+            throws IOException, ApiException {
+        return await(executeAsync(request, responseHandler));
+    }
+
+    /**
+     * 根据请求结果类，以阻塞的方式获得请求结果.
+     *
+     * @param request       the request to execute
+     * @param responseClass 请求结果类
+     * @param <T>           请求结果类型
+     * @return 请求结果
+     * @throws IOException  IOException
+     * @throws ApiException api处理异常
+     * @see #execute(ClassicHttpRequest, HttpClientResponseHandler)
+     */
+    protected <T> T execute(final ClassicHttpRequest request, final Class<T> responseClass)
+            throws IOException, ApiException {
+        return await(executeAsync(request, responseClass));
+    }
+
+    private static <T> T await(final CompletableFuture<T> result) throws IOException, ApiException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException("interrupted").initCause(ex);
+        } catch (CancellationException ex) {
+            throw new ApiException("request cancelled", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof HttpResponseException) {
+                throw new ApiResponseException((HttpResponseException) cause);
+            } else if (cause instanceof ClientProtocolException) {
+                throw new ApiProtocolException((ClientProtocolException) cause);
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ApiException) {
+                throw (ApiException) cause;
+            } else if (cause instanceof TimeoutException) {
+                throw (InterruptedIOException) new InterruptedIOException(cause.getMessage()).initCause(cause);
+            } else {
+                throw new ApiException(cause);
+            }
+        }
     }
 
     protected final <T> Future<Void> execute(final ClassicHttpRequest request,
@@ -191,9 +740,137 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
                                              final StreamFutureCallback<T> callback) throws IOException {
         notNull(responseHandler, "responseHandler is null");
         notNull(callback, "callback is null");
-        return execute(request, StreamResponseHandlerResponseConsumer.create(responseHandler, responseCharset,
-                (contentType, result) -> callback.stream(contentType,
-                        ApiAsyncClient.this.stream(request, contentType, result))), callback);
+        return executeStream(request, callback, streamConsumerFactory(responseHandler));
+    }
+
+    /**
+     * 通过IndexParser直接解析数据帧来获得流式请求结果.
+     *
+     * @param request  the request to execute
+     * @param parser   IndexParser
+     * @param callback StreamFutureCallback
+     * @param <T>      请求结果类型
+     * @return 请求结果
+     * @throws IOException IOException
+     */
+    protected final <T> Future<Void> execute(final ClassicHttpRequest request,
+                                             final IndexParser<? extends Index<T>> parser,
+                                             final StreamFutureCallback<T> callback) throws IOException {
+        notNull(parser, "parser is null");
+        notNull(callback, "callback is null");
+        return executeStream(request, callback, streamConsumerFactory(parser));
+    }
+
+    /**
+     * 通过ResponseHandler解析数据帧，以Reactive Streams的方式发布流式请求结果.
+     *
+     * @param request         the request to execute
+     * @param responseHandler ResponseHandler
+     * @param <T>             请求结果类型
+     * @return Publisher
+     * @see #publisher(ClassicHttpRequest, IndexParser)
+     */
+    protected final <T> Publisher<T> publisher(final ClassicHttpRequest request,
+                                               final HttpClientResponseHandler<? extends Index<T>> responseHandler) {
+        notNull(responseHandler, "responseHandler is null");
+        return publish(request, streamConsumerFactory(responseHandler));
+    }
+
+    /**
+     * 通过IndexParser直接解析数据帧，以Reactive Streams的方式发布流式请求结果.
+     * 每次订阅都会发起一次新的请求，订阅者的request(n)会映射到HTTP的流量控制上，取消订阅会取消底层的请求.
+     * 每次放行读取的字节数由{@link #setStreamFlowControl(int, Executor)}设置，未设置时为64K.
+     *
+     * @param request the request to execute
+     * @param parser  IndexParser
+     * @param <T>     请求结果类型
+     * @return Publisher
+     */
+    protected final <T> Publisher<T> publisher(final ClassicHttpRequest request,
+                                               final IndexParser<? extends Index<T>> parser) {
+        notNull(parser, "parser is null");
+        return publish(request, streamConsumerFactory(parser));
+    }
+
+    /**
+     * 根据请求结果类，以Reactive Streams的方式发布流式请求结果.
+     *
+     * @param request       the request to execute
+     * @param responseClass 请求结果类
+     * @param <T>           请求结果类型
+     * @return Publisher
+     * @see #publisher(ClassicHttpRequest, IndexParser)
+     */
+    protected <T> Publisher<T> publisher(final ClassicHttpRequest request, final Class<T> responseClass) {
+        notNull(responseClass, "responseClass is null");
+        final Class<? extends Index<T>> streamResponseClass = getStreamResponseClass(responseClass);
+        notNull(streamResponseClass, "streamResponseClass is null");
+        return publisher(request, getResponseHandler(streamResponseClass));
+    }
+
+    private <T> Future<Void> executeStream(final ClassicHttpRequest request, final StreamFutureCallback<T> callback,
+                                           final Function<StreamCallback<T>, AsyncResponseConsumer<Void>> factory)
+            throws IOException {
+        final ExchangeMetrics metrics = startMetrics(request);
+        final StreamCallback<T> streamCallback = traceStream(request, callback, metrics);
+        if (streamWindow > 0) {
+            final FlowControlledStreamCallback<T> flowControlled = new FlowControlledStreamCallback<>(streamCallback,
+                    streamExecutor, streamWindow);
+            return execute(request, flowControlled.wrap(factory.apply(flowControlled)), callback, metrics);
+        }
+        return execute(request, factory.apply(streamCallback), callback, metrics);
+    }
+
+    private <T> Publisher<T> publish(final ClassicHttpRequest request,
+                                     final Function<StreamCallback<T>, AsyncResponseConsumer<Void>> factory) {
+        return StreamPublisher.create((streamCallback, wrapper, callback) -> {
+            final ExchangeMetrics metrics = startMetrics(request);
+            return execute(request, wrapper.wrap(factory.apply(traceStream(request, streamCallback, metrics))),
+                    callback, metrics);
+        }, streamWindow > 0 ? streamWindow : DEFAULT_STREAM_WINDOW);
+    }
+
+    private <T> StreamCallback<T> traceStream(final ClassicHttpRequest request, final StreamCallback<T> callback,
+                                              final ExchangeMetrics metrics) {
+        return (contentType, result) -> {
+            metrics.event();
+            callback.stream(contentType, ApiAsyncClient.this.stream(request, contentType, result));
+        };
+    }
+
+    private <T> Function<StreamCallback<T>, AsyncResponseConsumer<Void>> streamConsumerFactory(
+            final HttpClientResponseHandler<? extends Index<T>> responseHandler) {
+        final IndexParser<? extends Index<T>> parser = getIndexParser(responseHandler);
+        if (parser != null) {
+            return streamConsumerFactory(parser);
+        }
+        return streamCallback -> StreamResponseHandlerResponseConsumer.create(responseHandler, responseCharset,
+                streamCallback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Function<StreamCallback<T>, AsyncResponseConsumer<Void>> streamConsumerFactory(
+            final IndexParser<? extends Index<T>> parser) {
+        if (parser instanceof EventStreamIndexParser) {
+            // 内置的EventStream直接在字节层面解码
+            return streamCallback -> EventStreamResponseConsumer.create(alwaysProcessEntity, responseCharset,
+                    (StreamCallback<EventStream>) streamCallback);
+        } else if (parser instanceof ByteFrameIndexParser) {
+            return streamCallback -> ByteFrameResponseConsumer.create(alwaysProcessEntity,
+                    (ByteFrameIndexParser<T, ?>) parser, streamCallback);
+        }
+        return streamCallback -> StreamResponseHandlerResponseConsumer.create(parser, alwaysProcessEntity,
+                responseCharset, streamCallback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IndexParser<? extends Index<T>> getIndexParser(
+            final HttpClientResponseHandler<? extends Index<T>> responseHandler) {
+        if (responseHandler instanceof IndexParserResponseHandler) {
+            return (IndexParser<? extends Index<T>>) ((IndexParserResponseHandler<?, ?>) responseHandler).getParser();
+        } else {
+            return null;
+        }
     }
 
     /**
@@ -215,6 +892,25 @@ public abstract class ApiAsyncClient extends AbstractApiClient<HttpAsyncClient>
         return execute(request, getResponseHandler(streamResponseClass), callback);
     }
 
+    /**
+     * 订阅断开后自动重连的事件流. 连接正常结束或者失败时，按重连策略等待服务端通过retry字段指定的时间，
+     * 再带上最后收到的事件id作为Last-Event-ID重新发出请求，新连接上的事件继续交给同一个回调.
+     * 服务端返回204、失败的异常不需要重连或者重连次数用尽时，回调的completed或failed才会被调用.
+     *
+     * @param request         the request to execute
+     * @param reconnectPolicy 重连策略
+     * @param callback        StreamFutureCallback
+     * @return 订阅结束时完成，取消时中止当前的连接和等待中的重连
+     * @throws IOException IOException
+     */
+    protected final Future<Void> subscribe(final ClassicHttpRequest request, final ReconnectPolicy reconnectPolicy,
+                                           final StreamFutureCallback<EventStream> callback) throws IOException {
+        notNull(reconnectPolicy, "reconnectPolicy is null");
+        notNull(callback, "callback is null");
+        return ReconnectingEventStream.execute(reconnectPolicy, request, callback,
+                (connection, c) -> execute(connection, EventStream.class, c));
+    }
+
     @SuppressWarnings("unchecked")
     protected final <T> Class<? extends Index<T>> getStreamResponseClass(final Class<T> responseClass) {
         for (Class<?> c : responseClassIterator()) {
@@ -0,0 +1,26 @@
+package io.github.dbstarll.utils.net.api;
+
+public class ApiCircuitOpenException extends ApiException {
+    private static final long serialVersionUID = 4719285306612483947L;
+
+    private final String circuitKey;
+
+    /**
+     * 构建ApiCircuitOpenException.
+     *
+     * @param circuitKey 熔断器已打开的熔断key
+     */
+    public ApiCircuitOpenException(final String circuitKey) {
+        super("circuit open: " + circuitKey, null);
+        this.circuitKey = circuitKey;
+    }
+
+    /**
+     * 获得熔断器已打开的熔断key.
+     *
+     * @return 熔断key
+     */
+    public final String getCircuitKey() {
+        return circuitKey;
+    }
+}
@@ -1,26 +1,58 @@
 package io.github.dbstarll.utils.net.api;
 
+import io.github.dbstarll.utils.net.api.cache.CacheEntry;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+import io.github.dbstarll.utils.net.api.metrics.ExchangeMetrics;
+import io.github.dbstarll.utils.net.api.retry.RetryPolicy;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.HttpResponseException;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HeaderElements;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
 import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
 public abstract class ApiClient extends AbstractApiClient<HttpClient> {
     private static final String RESPONSE_HANDLER_IS_NULL_EX_MESSAGE = "responseHandler is null";
 
+    private final boolean alwaysProcessEntity;
+    private boolean keepAlive;
+
     protected ApiClient(final HttpClient httpClient, final boolean alwaysProcessEntity) {
         super(httpClient, alwaysProcessEntity);
+        this.alwaysProcessEntity = alwaysProcessEntity;
+    }
+
+    /**
+     * 设置是否使用持久连接. 默认每个请求都会带上"Connection: close"，开启后将复用HttpClient连接池中的连接，
+     * 连接的空闲回收和最大请求数可以通过{@link KeepAlive}来配置HttpClient.
+     *
+     * @param keepAlive 是否使用持久连接
+     */
+    protected final void setKeepAlive(final boolean keepAlive) {
+        this.keepAlive = keepAlive;
     }
 
     @Override
     protected ClassicRequestBuilder preProcessing(final ClassicRequestBuilder builder) throws ApiException {
-        return super.preProcessing(builder).addHeader("Connection", "close");
+        final ClassicRequestBuilder processed = super.preProcessing(builder);
+        return keepAlive ? processed : processed.addHeader(HttpHeaders.CONNECTION, HeaderElements.CLOSE);
     }
 
     /**
@@ -34,7 +66,9 @@ public abstract class ApiClient extends AbstractApiClient<HttpClient> {
      */
     @SuppressWarnings("RedundantThrows")
     protected <T> T postProcessing(final ClassicHttpRequest request, final T executeResult) throws ApiException {
-        if (executeResult != null) {
+        if (!isTraceEnabled(request)) {
+            return executeResult;
+        } else if (executeResult != null) {
             logger.trace("response: [{}]@{} with {}:[{}]", request, request.hashCode(),
                     executeResult.getClass().getCanonicalName(), formatExecuteResult(executeResult));
         } else {
@@ -62,21 +96,181 @@ public abstract class ApiClient extends AbstractApiClient<HttpClient> {
             throws IOException, ApiException {
         notNull(responseHandler, RESPONSE_HANDLER_IS_NULL_EX_MESSAGE);
 
+        final RetryPolicy retryPolicy = retryPolicy(request);
+        if (retryPolicy == null) {
+            return attempt(request, responseHandler);
+        }
+        for (int attempt = 1; ; attempt++) {
+            final long backoffMillis;
+            try {
+                return attempt(request, retryOn(responseHandler, retryPolicy, attempt));
+            } catch (RetryableResponseException ex) {
+                backoffMillis = ex.getBackoffMillis();
+            } catch (IOException ex) {
+                backoffMillis = retryPolicy.isRetryable(ex) ? retryPolicy.backoffMillis(attempt, -1) : -1;
+                if (backoffMillis < 0) {
+                    throw ex;
+                }
+            }
+            sleep(backoffMillis);
+        }
+    }
+
+    private static void sleep(final long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException("interrupted").initCause(ex);
+        }
+    }
+
+    /**
+     * 收到可以重试的响应状态，并且仍可以重试时，丢弃响应体并抛出RetryableResponseException.
+     *
+     * @param responseHandler ResponseHandler
+     * @param retryPolicy     RetryPolicy
+     * @param attempt         本次是第几次尝试
+     * @param <T>             请求结果类型
+     * @return 包装后的ResponseHandler
+     */
+    private static <T> HttpClientResponseHandler<T> retryOn(final HttpClientResponseHandler<T> responseHandler,
+                                                            final RetryPolicy retryPolicy, final int attempt) {
+        return response -> {
+            if (retryPolicy.isRetryable(response.getCode())) {
+                final long backoffMillis = retryPolicy.backoffMillis(attempt, RetryPolicy.retryAfterMillis(response));
+                if (backoffMillis >= 0) {
+                    EntityUtils.consume(response.getEntity());
+                    throw new RetryableResponseException(response.getCode(), backoffMillis);
+                }
+            }
+            return responseHandler.handleResponse(response);
+        };
+    }
+
+    private <T> T attempt(final ClassicHttpRequest request, final HttpClientResponseHandler<T> responseHandler)
+            throws IOException, ApiException {
         traceRequest(request);
 
+        final Permit permit = acquire(request);
+        final ExchangeMetrics metrics = startMetrics(request);
         try {
-            return postProcessing(request, httpClient.execute(request, responseHandler));
+            final T result = postProcessing(request, httpClient.execute(request, limit(metrics == ExchangeMetrics.NOOP
+                    ? responseHandler : measure(responseHandler, metrics), permit)));
+            metrics.completed();
+            Throttle.completed(permit);
+            return result;
         } catch (HttpResponseException ex) {
+            failed(metrics, permit, ex);
             throw new ApiResponseException(ex);
         } catch (ClientProtocolException ex) {
+            failed(metrics, permit, ex);
             throw new ApiProtocolException(ex);
         } catch (IOException | ApiException ex) {
+            failed(metrics, permit, ex);
             throw ex;
         } catch (Exception ex) {
+            failed(metrics, permit, ex);
             throw new ApiException(ex);
         }
     }
 
+    private static void failed(final ExchangeMetrics metrics, final Permit permit, final Exception ex) {
+        metrics.failed(ex);
+        Throttle.failed(permit, ex);
+    }
+
+    /**
+     * 获得请求的许可，排队时阻塞当前线程.
+     *
+     * @param request the request
+     * @return 许可，未设置限流时返回{@link Permit#NOOP}
+     * @throws IOException  等待时被中断
+     * @throws ApiException 无法获得许可
+     */
+    private Permit acquire(final ClassicHttpRequest request) throws IOException, ApiException {
+        final CompletableFuture<Permit> future = acquirePermit(request);
+        if (future == null) {
+            return Permit.NOOP;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+                // 中断的同时已经获得了许可，归还许可以免泄漏
+                future.join().ignore();
+            }
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException("interrupted").initCause(ex);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof ApiException ? (ApiException) ex.getCause() : new ApiException(ex.getCause());
+        }
+    }
+
+    private static <T> HttpClientResponseHandler<T> limit(final HttpClientResponseHandler<T> responseHandler,
+                                                          final Permit permit) {
+        if (permit == Permit.NOOP) {
+            return responseHandler;
+        }
+        final long start = System.nanoTime();
+        return response -> {
+            Throttle.responded(permit, response.getCode(), start);
+            return responseHandler.handleResponse(response);
+        };
+    }
+
+    private static <T> HttpClientResponseHandler<T> measure(final HttpClientResponseHandler<T> responseHandler,
+                                                            final ExchangeMetrics metrics) {
+        return response -> {
+            metrics.responseStarted(response.getCode());
+            final HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return responseHandler.handleResponse(response);
+            }
+            final CountingEntity countingEntity = new CountingEntity(entity);
+            response.setEntity(countingEntity);
+            try {
+                return responseHandler.handleResponse(response);
+            } finally {
+                metrics.responseBytes(countingEntity.count);
+            }
+        };
+    }
+
+    /**
+     * 统计响应体被读取的字节数.
+     */
+    private static final class CountingEntity extends HttpEntityWrapper {
+        private long count;
+
+        private CountingEntity(final HttpEntity wrappedEntity) {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            final InputStream in = super.getContent();
+            return in == null ? null : new ProxyInputStream(in) {
+                @Override
+                protected void afterRead(final int n) {
+                    if (n > 0) {
+                        count += n;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(final OutputStream outStream) throws IOException {
+            super.writeTo(new ProxyOutputStream(outStream) {
+                @Override
+                protected void beforeWrite(final int n) {
+                    count += n;
+                }
+            });
+        }
+    }
+
     /**
      * 根据请求结果类来获得相应的请求结果.
      *
@@ -90,6 +284,31 @@ public abstract class ApiClient extends AbstractApiClient<HttpClient> {
     protected <T> T execute(final ClassicHttpRequest request, final Class<T> responseClass)
             throws IOException, ApiException {
         notNull(responseClass, "responseClass is null");
-        return execute(request, getResponseHandler(responseClass));
+        return coalesce(request, responseClass, () -> executeCached(request, responseClass));
+    }
+
+    private <T> T executeCached(final ClassicHttpRequest request, final Class<T> responseClass)
+            throws IOException, ApiException {
+        final HttpClientResponseHandler<T> responseHandler = getResponseHandler(responseClass);
+        final HttpCache cache = httpCache(request);
+        if (cache == null) {
+            return execute(request, responseHandler);
+        }
+        HttpCache.validate(responseClass, responseHandler);
+        final long now = System.currentTimeMillis();
+        final String key = cacheKey(request);
+        final CacheEntry cached = cache.lookup(key, now);
+        if (cached != null && cached.isFresh(now)) {
+            try {
+                return postProcessing(request, cache.decode(key, cached, responseClass, responseHandler, null));
+            } catch (HttpException ex) {
+                throw new ApiException(ex);
+            }
+        }
+        return execute(HttpCache.conditional(request, cached), response -> {
+            final CacheEntry entry = cache.update(key, response, cached);
+            return entry != null ? cache.decode(key, entry, responseClass, responseHandler, null)
+                    : HttpCache.handle(response, responseClass, responseHandler, alwaysProcessEntity);
+        });
     }
 }
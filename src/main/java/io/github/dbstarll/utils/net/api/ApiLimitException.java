@@ -0,0 +1,26 @@
+package io.github.dbstarll.utils.net.api;
+
+public class ApiLimitException extends ApiException {
+    private static final long serialVersionUID = -3512047186940772531L;
+
+    private final String limiterKey;
+
+    /**
+     * 构建ApiLimitException.
+     *
+     * @param limiterKey 无法获得许可的限流key
+     */
+    public ApiLimitException(final String limiterKey) {
+        super("limit exceeded: " + limiterKey, null);
+        this.limiterKey = limiterKey;
+    }
+
+    /**
+     * 获得无法获得许可的限流key.
+     *
+     * @return 限流key
+     */
+    public final String getLimiterKey() {
+        return limiterKey;
+    }
+}
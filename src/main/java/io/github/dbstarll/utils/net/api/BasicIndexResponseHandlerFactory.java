@@ -3,18 +3,39 @@ package io.github.dbstarll.utils.net.api;
 import io.github.dbstarll.utils.http.client.response.AbstractResponseHandlerFactory;
 import io.github.dbstarll.utils.net.api.index.EventStreamIndex;
 import io.github.dbstarll.utils.net.api.index.EventStreamIndexResponseHandler;
+import io.github.dbstarll.utils.net.api.index.Index;
+import io.github.dbstarll.utils.net.api.index.IndexParser;
+import io.github.dbstarll.utils.net.api.index.IndexParserResponseHandler;
 import io.github.dbstarll.utils.net.api.index.StringIndex;
 import io.github.dbstarll.utils.net.api.index.StringIndexResponseHandler;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 
+import static org.apache.commons.lang3.Validate.notNull;
+
 public class BasicIndexResponseHandlerFactory extends AbstractResponseHandlerFactory {
+    private final HttpClientResponseHandler<String> stringResponseHandler;
+
     /**
      * 构造BasicIndexResponseHandlerFactory.
      *
      * @param stringResponseHandler ResponseHandler for String
      */
     public BasicIndexResponseHandlerFactory(final HttpClientResponseHandler<String> stringResponseHandler) {
+        this.stringResponseHandler = notNull(stringResponseHandler, "stringResponseHandler is null");
         addResponseHandler(StringIndex.class, new StringIndexResponseHandler(stringResponseHandler));
         addResponseHandler(EventStreamIndex.class, new EventStreamIndexResponseHandler(stringResponseHandler));
     }
+
+    /**
+     * 注册Index类型的解析器. 流式请求将直接使用解析器，同时注册一个兼容的ResponseHandler.
+     *
+     * @param indexClass Index类型
+     * @param parser     IndexParser
+     * @param <D>        数据类型
+     * @param <I>        Index类型
+     */
+    protected final <D, I extends Index<D>> void addIndexParser(final Class<I> indexClass,
+                                                                final IndexParser<I> parser) {
+        addResponseHandler(indexClass, new IndexParserResponseHandler<>(stringResponseHandler, parser));
+    }
 }
@@ -0,0 +1,21 @@
+package io.github.dbstarll.utils.net.api;
+
+public interface BatchCallback<T> {
+    /**
+     * 批量请求中的一个请求成功完成，按完成的顺序回调.
+     *
+     * @param index  请求在批量请求中的序号
+     * @param result 请求结果
+     */
+    default void completed(int index, T result) {
+    }
+
+    /**
+     * 批量请求中的一个请求失败或被取消，按完成的顺序回调.
+     *
+     * @param index 请求在批量请求中的序号
+     * @param ex    失败的原因，被取消时为CancellationException
+     */
+    default void failed(int index, Exception ex) {
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按窗口执行批量请求：同时进行中的请求不超过window个，每完成一个请求再发出下一个.
+ * 全部请求结束后以{@link BatchResult}完成，单个请求的失败不会中断其它请求；取消时不再发出新的请求，
+ * 并中止进行中的请求.
+ *
+ * @param <T> 请求结果类型
+ */
+final class BatchExchange<T> extends CompletableFuture<BatchResult<T>> {
+    private static final Future<?> FINISHED = new CompletableFuture<>();
+
+    private final List<? extends ClassicHttpRequest> requests;
+    private final Call<T> call;
+    private final BatchCallback<T> callback;
+    private final Object[] results;
+    private final Exception[] failures;
+    private final AtomicReferenceArray<Future<?>> inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final AtomicInteger credits = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private BatchExchange(final List<? extends ClassicHttpRequest> requests, final Call<T> call,
+                          final BatchCallback<T> callback) {
+        this.requests = requests;
+        this.call = call;
+        this.callback = callback;
+        this.results = new Object[requests.size()];
+        this.failures = new Exception[requests.size()];
+        this.inFlight = new AtomicReferenceArray<>(requests.size());
+        this.remaining = new AtomicInteger(requests.size());
+    }
+
+    /**
+     * 开始执行批量请求.
+     *
+     * @param requests 全部请求
+     * @param window   同时进行中的请求数上限
+     * @param callback 每个请求结束时的回调，可以为null
+     * @param call     执行单个请求
+     * @param <T>      请求结果类型
+     * @return 全部请求结束时完成
+     */
+    static <T> BatchExchange<T> execute(final List<? extends ClassicHttpRequest> requests, final int window,
+                                        final BatchCallback<T> callback, final Call<T> call) {
+        final BatchExchange<T> exchange = new BatchExchange<>(requests, call, callback);
+        if (requests.isEmpty()) {
+            exchange.complete(new BatchResult<>(exchange.results, exchange.failures));
+        } else {
+            exchange.release(Math.min(window, requests.size()));
+        }
+        return exchange;
+    }
+
+    /**
+     * 增加可以发出的请求数，并在当前线程上依次发出. 同步完成的请求会再次调用此方法，
+     * 这时只增加计数，由最外层的调用继续发出，避免递归过深.
+     */
+    private void release(final int n) {
+        credits.addAndGet(n);
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (credits.get() > 0 && !isDone()) {
+                credits.decrementAndGet();
+                final int index = next.getAndIncrement();
+                if (index < requests.size()) {
+                    send(index);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void send(final int index) {
+        final Future<?> future;
+        try {
+            future = call.execute(requests.get(index), new FutureCallback<T>() {
+                @Override
+                public void completed(final T result) {
+                    finished(index, result, null);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    finished(index, null, ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    finished(index, null, new CancellationException());
+                }
+            });
+        } catch (IOException | RuntimeException ex) {
+            finished(index, null, ex);
+            return;
+        }
+        if (!inFlight.compareAndSet(index, null, future)) {
+            return;
+        }
+        if (isDone()) {
+            future.cancel(true);
+        }
+    }
+
+    private void finished(final int index, final T result, final Exception ex) {
+        if (inFlight.getAndSet(index, FINISHED) == FINISHED) {
+            return;
+        }
+        results[index] = result;
+        failures[index] = ex;
+        if (callback != null) {
+            if (ex == null) {
+                callback.completed(index, result);
+            } else {
+                callback.failed(index, ex);
+            }
+        }
+        if (remaining.decrementAndGet() == 0) {
+            complete(new BatchResult<>(results, failures));
+        } else {
+            release(1);
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            for (int i = 0; i < inFlight.length(); i++) {
+                final Future<?> future = inFlight.get(i);
+                if (future != null && future != FINISHED) {
+                    future.cancel(true);
+                }
+            }
+        }
+        return cancelled;
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+        Future<T> execute(ClassicHttpRequest request, FutureCallback<T> callback) throws IOException;
+    }
+}
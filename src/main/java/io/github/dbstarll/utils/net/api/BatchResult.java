@@ -0,0 +1,81 @@
+package io.github.dbstarll.utils.net.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 批量请求的汇总结果，按请求的顺序保存每个请求的结果或失败原因.
+ *
+ * @param <T> 请求结果类型
+ */
+public final class BatchResult<T> {
+    private final List<T> results;
+    private final Map<Integer, Exception> failures;
+
+    BatchResult(final Object[] results, final Exception[] failures) {
+        final List<T> list = new ArrayList<>(results.length);
+        final Map<Integer, Exception> map = new TreeMap<>();
+        for (int i = 0; i < results.length; i++) {
+            list.add(cast(results[i]));
+            if (failures[i] != null) {
+                map.put(i, failures[i]);
+            }
+        }
+        this.results = Collections.unmodifiableList(list);
+        this.failures = Collections.unmodifiableMap(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(final Object result) {
+        return (T) result;
+    }
+
+    /**
+     * 获得请求数.
+     *
+     * @return 请求数
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * 按请求的顺序获得全部请求结果，失败的请求对应的结果为null.
+     *
+     * @return 请求结果
+     */
+    public List<T> getResults() {
+        return results;
+    }
+
+    /**
+     * 获得指定请求的结果.
+     *
+     * @param index 请求的序号
+     * @return 请求结果，请求失败时返回null
+     */
+    public T get(final int index) {
+        return results.get(index);
+    }
+
+    /**
+     * 获得全部失败的请求，按请求的序号排序.
+     *
+     * @return 请求的序号到失败原因的映射
+     */
+    public Map<Integer, Exception> getFailures() {
+        return failures;
+    }
+
+    /**
+     * 判断是否全部请求都成功.
+     *
+     * @return 是否全部成功
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+}
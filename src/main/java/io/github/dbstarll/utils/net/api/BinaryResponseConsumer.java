@@ -0,0 +1,152 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.async.methods.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 直接以字节的方式接收byte[]、ByteBuffer和InputStream类型的请求结果，不经过字符集的解码和编码.
+ * 已知Content-Length且不超过1M时直接写入大小匹配的数组，否则写入从池中获取的字节块，
+ * 不会因为上游声明的Content-Length过大而预先分配巨大的数组.
+ *
+ * @param <T> 请求结果类型
+ */
+final class BinaryResponseConsumer<T> extends AbstractBinResponseConsumer<T> {
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_EXACT_SIZE = 1 << 20;
+
+    private final AtomicReference<HttpResponseException> refStatusException = new AtomicReference<>();
+    private final AtomicReference<ByteBuffer> refExact = new AtomicReference<>();
+    private final AtomicReference<PooledByteBuffer> refPooled = new AtomicReference<>();
+
+    private final Class<T> responseClass;
+    private final boolean alwaysProcessEntity;
+
+    private BinaryResponseConsumer(final Class<T> responseClass, final boolean alwaysProcessEntity) {
+        this.responseClass = responseClass;
+        this.alwaysProcessEntity = alwaysProcessEntity;
+    }
+
+    @Override
+    protected void start(final HttpResponse response, final ContentType contentType) throws IOException {
+        if (response.getCode() >= HttpStatus.SC_REDIRECTION && (contentType == null || !alwaysProcessEntity)) {
+            final HttpResponseException ex = new HttpResponseException(response.getCode(),
+                    response.getReasonPhrase());
+            if (contentType == null) {
+                throw ex;
+            }
+            this.refStatusException.set(ex);
+        }
+        final long contentLength = contentLength(response);
+        if (contentLength >= 0 && contentLength <= MAX_EXACT_SIZE) {
+            this.refExact.set(ByteBuffer.allocate((int) contentLength));
+        } else {
+            this.refPooled.set(new PooledByteBuffer());
+        }
+    }
+
+    private static long contentLength(final HttpResponse response) {
+        final Header header = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        if (header != null && !response.containsHeader(HttpHeaders.TRANSFER_ENCODING)) {
+            try {
+                return Long.parseLong(header.getValue().trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(final ByteBuffer src, final boolean endOfStream) throws IOException {
+        final HttpResponseException statusException = refStatusException.get();
+        if (statusException != null) {
+            throw statusException;
+        }
+
+        final ByteBuffer exact = refExact.get();
+        if (exact != null && src.remaining() <= exact.remaining()) {
+            exact.put(src);
+            return;
+        } else if (exact != null) {
+            // 实际内容超出了Content-Length，转为池化的字节块
+            final PooledByteBuffer pooled = new PooledByteBuffer();
+            ((Buffer) exact).flip();
+            pooled.append(exact);
+            refExact.set(null);
+            refPooled.set(pooled);
+        }
+
+        final PooledByteBuffer pooled = refPooled.get();
+        pooled.append(src);
+        if (responseClass != InputStream.class && pooled.length() > MAX_ARRAY_SIZE) {
+            throw new IOException("response too large for " + responseClass.getSimpleName());
+        }
+    }
+
+    @Override
+    protected T buildResult() {
+        final ByteBuffer exact = refExact.getAndSet(null);
+        final PooledByteBuffer pooled = refPooled.getAndSet(null);
+        if (responseClass == InputStream.class) {
+            return responseClass.cast(pooled != null ? pooled.toInputStream() : new ByteArrayInputStream(array(exact)));
+        }
+        final byte[] data = pooled != null ? pooled.toByteArray() : array(exact);
+        if (responseClass == ByteBuffer.class) {
+            return responseClass.cast(ByteBuffer.wrap(data));
+        } else {
+            return responseClass.cast(data);
+        }
+    }
+
+    private static byte[] array(final ByteBuffer exact) {
+        if (exact == null) {
+            return new byte[0];
+        } else if (exact.hasRemaining()) {
+            // 实际内容少于Content-Length
+            final byte[] data = new byte[exact.position()];
+            System.arraycopy(exact.array(), 0, data, 0, data.length);
+            return data;
+        } else {
+            return exact.array();
+        }
+    }
+
+    @Override
+    public void releaseResources() {
+        final PooledByteBuffer pooled = refPooled.getAndSet(null);
+        if (pooled != null) {
+            pooled.release();
+        }
+        this.refExact.set(null);
+        this.refStatusException.set(null);
+    }
+
+    /**
+     * 判断请求结果类型是否可以直接以字节的方式接收.
+     */
+    static boolean isSupported(final Class<?> responseClass) {
+        return responseClass == byte[].class || responseClass == ByteBuffer.class
+                || responseClass == InputStream.class;
+    }
+
+    static <T> BinaryResponseConsumer<T> create(final Class<T> responseClass, final boolean alwaysProcessEntity) {
+        return new BinaryResponseConsumer<>(responseClass, alwaysProcessEntity);
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.index.ByteFrameDecoder;
+import io.github.dbstarll.utils.net.api.index.ByteFrameIndexParser;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.async.methods.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 通过{@link ByteFrameIndexParser}构建的解码器直接在原始字节上解码流式响应，不再经过字符解码和分帧.
+ * 解码器结束时流式请求随即完成，不再等待服务端关闭连接，连接被中止而不会归还到连接池.
+ *
+ * @param <T> 数据类型
+ */
+final class ByteFrameResponseConsumer<T> extends AbstractBinResponseConsumer<Void> {
+    private final AtomicReference<ContentType> refContentType = new AtomicReference<>();
+    private final AtomicReference<ByteFrameDecoder<T>> refDecoder = new AtomicReference<>();
+    private final AtomicReference<HttpResponseException> refStatusException = new AtomicReference<>();
+
+    private final boolean alwaysProcessEntity;
+    private final ByteFrameIndexParser<T, ?> parser;
+    private final StreamCallback<T> callback;
+
+    private ByteFrameResponseConsumer(final boolean alwaysProcessEntity, final ByteFrameIndexParser<T, ?> parser,
+                                      final StreamCallback<T> callback) {
+        this.alwaysProcessEntity = alwaysProcessEntity;
+        this.parser = parser;
+        this.callback = callback;
+    }
+
+    @Override
+    protected void start(final HttpResponse response, final ContentType contentType) throws IOException {
+        this.refContentType.set(contentType);
+        this.refDecoder.set(parser.newDecoder(contentType));
+        if (!alwaysProcessEntity && response.getCode() >= HttpStatus.SC_REDIRECTION) {
+            this.refStatusException.set(new HttpResponseException(response.getCode(),
+                    response.getReasonPhrase()));
+        }
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(final ByteBuffer src, final boolean endOfStream) throws IOException {
+        final HttpResponseException statusException = refStatusException.get();
+        if (statusException != null) {
+            throw statusException;
+        }
+
+        final ByteFrameDecoder<T> decoder = refDecoder.get();
+        decoder.append(src);
+        T data;
+        while ((data = decoder.next(endOfStream)) != null) {
+            callback.stream(refContentType.get(), data);
+        }
+        if (!endOfStream && decoder.isFinished()) {
+            completed();
+            // 请求已经完成，以异常中止交换，释放连接而不再读取剩余的内容
+            throw new IOException("stream finished before end of response");
+        }
+    }
+
+    @Override
+    protected Void buildResult() {
+        return null;
+    }
+
+    @Override
+    public void releaseResources() {
+        this.refContentType.set(null);
+        this.refDecoder.set(null);
+        this.refStatusException.set(null);
+    }
+
+    static <T> ByteFrameResponseConsumer<T> create(final boolean alwaysProcessEntity,
+                                                   final ByteFrameIndexParser<T, ?> parser,
+                                                   final StreamCallback<T> callback) {
+        return new ByteFrameResponseConsumer<>(alwaysProcessEntity, parser, callback);
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.cache.CacheEntry;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * 为使用缓存的请求接收响应. 收到响应头时判断响应是否可以缓存，只有可以缓存的响应才读入内存，
+ * 并且不超过单条缓存的大小上限；其它响应以及超出上限的响应转交给常规的AsyncResponseConsumer流式处理.
+ *
+ * @param <T> 请求结果类型
+ */
+final class CachingResponseConsumer<T> implements AsyncResponseConsumer<T> {
+    private final HttpCache cache;
+    private final String key;
+    private final CacheEntry stale;
+    private final Class<T> responseClass;
+    private final HttpClientResponseHandler<T> responseHandler;
+    private final Charset charset;
+    private final boolean alwaysProcessEntity;
+    private final AsyncResponseConsumer<T> consumer;
+
+    private volatile boolean delegated;
+    private HttpResponse response;
+    private EntityDetails entityDetails;
+    private HttpContext context;
+    private FutureCallback<T> resultCallback;
+    private CapacityChannel capacityChannel;
+    private PooledByteBuffer body;
+
+    private CachingResponseConsumer(final HttpCache cache, final String key, final CacheEntry stale,
+                                    final Class<T> responseClass, final HttpClientResponseHandler<T> responseHandler,
+                                    final Charset charset, final boolean alwaysProcessEntity,
+                                    final AsyncResponseConsumer<T> consumer) {
+        this.cache = cache;
+        this.key = key;
+        this.stale = stale;
+        this.responseClass = responseClass;
+        this.responseHandler = responseHandler;
+        this.charset = charset;
+        this.alwaysProcessEntity = alwaysProcessEntity;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void consumeResponse(final HttpResponse response, final EntityDetails entityDetails,
+                                final HttpContext context, final FutureCallback<T> resultCallback)
+            throws HttpException, IOException {
+        if (!cache.isStorable(response, stale)
+                || entityDetails != null && entityDetails.getContentLength() > cache.getMaxEntrySize()) {
+            delegated = true;
+            consumer.consumeResponse(response, entityDetails, context, resultCallback);
+            return;
+        }
+        this.response = response;
+        this.entityDetails = entityDetails;
+        this.context = context;
+        this.resultCallback = resultCallback;
+        this.body = new PooledByteBuffer();
+        if (entityDetails == null) {
+            complete();
+        }
+    }
+
+    @Override
+    public void informationResponse(final HttpResponse response, final HttpContext context)
+            throws HttpException, IOException {
+        consumer.informationResponse(response, context);
+    }
+
+    @Override
+    public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+        if (delegated) {
+            consumer.updateCapacity(capacityChannel);
+        } else {
+            this.capacityChannel = capacityChannel;
+            capacityChannel.update(Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void consume(final ByteBuffer src) throws IOException {
+        if (delegated) {
+            consumer.consume(src);
+        } else if (body.length() + src.remaining() <= cache.getMaxEntrySize()) {
+            body.append(src);
+        } else {
+            // 超出了单条缓存的大小上限，已读入的部分连同后续的响应体一起转交出去
+            delegated = true;
+            try {
+                consumer.consumeResponse(response, entityDetails, context, resultCallback);
+            } catch (HttpException ex) {
+                throw new IOException(ex);
+            }
+            consumer.consume(ByteBuffer.wrap(body.toByteArray()));
+            consumer.consume(src);
+            if (capacityChannel != null) {
+                consumer.updateCapacity(capacityChannel);
+            }
+        }
+    }
+
+    @Override
+    public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+        if (delegated) {
+            consumer.streamEnd(trailers);
+        } else {
+            complete();
+        }
+    }
+
+    private void complete() throws HttpException, IOException {
+        final ClassicHttpResponse classic = HttpCache.toClassic(response,
+                entityDetails != null ? body.toByteArray() : null, charset);
+        final CacheEntry entry = cache.update(key, classic, stale);
+        resultCallback.completed(entry != null ? cache.decode(key, entry, responseClass, responseHandler, charset)
+                : HttpCache.handle(classic, responseClass, responseHandler, alwaysProcessEntity));
+    }
+
+    @Override
+    public void failed(final Exception cause) {
+        consumer.failed(cause);
+    }
+
+    @Override
+    public void releaseResources() {
+        final PooledByteBuffer buffer = body;
+        if (buffer != null) {
+            buffer.release();
+            body = null;
+        }
+        consumer.releaseResources();
+    }
+
+    static <T> CachingResponseConsumer<T> create(final HttpCache cache, final String key, final CacheEntry stale,
+                                                 final Class<T> responseClass,
+                                                 final HttpClientResponseHandler<T> responseHandler,
+                                                 final Charset charset, final boolean alwaysProcessEntity,
+                                                 final AsyncResponseConsumer<T> consumer) {
+        return new CachingResponseConsumer<>(cache, key, stale, responseClass, responseHandler, charset,
+                alwaysProcessEntity, consumer);
+    }
+}
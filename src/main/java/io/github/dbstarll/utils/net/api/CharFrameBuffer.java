@@ -0,0 +1,101 @@
+package io.github.dbstarll.utils.net.api;
+
+import java.nio.CharBuffer;
+
+/**
+ * 用于流式分帧的字符缓冲区.
+ * 已解析的数据帧通过{@link #consume(int)}移动读指针丢弃，只在空间不足时才将剩余数据整体前移，避免每解析一帧就复制一次剩余数据.
+ * 作为{@link CharSequence}时，只暴露尚未被消费的数据.
+ */
+final class CharFrameBuffer implements CharSequence {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private char[] buffer;
+    private int readPosition;
+    private int writePosition;
+
+    CharFrameBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    CharFrameBuffer(final int capacity) {
+        this.buffer = new char[Math.max(capacity, 16)];
+    }
+
+    /**
+     * 追加数据到缓冲区的末尾.
+     *
+     * @param src 数据来源
+     */
+    void append(final CharBuffer src) {
+        final int remaining = src.remaining();
+        ensureWritable(remaining);
+        src.get(buffer, writePosition, remaining);
+        writePosition += remaining;
+    }
+
+    /**
+     * 丢弃缓冲区头部已解析的数据.
+     *
+     * @param length 丢弃的长度
+     */
+    void consume(final int length) {
+        if (length < 0 || length > length()) {
+            throw new IndexOutOfBoundsException("consume: " + length + ", length: " + length());
+        }
+        readPosition += length;
+        if (readPosition == writePosition) {
+            readPosition = 0;
+            writePosition = 0;
+        }
+    }
+
+    private void ensureWritable(final int required) {
+        if (buffer.length - writePosition >= required) {
+            return;
+        }
+        final int length = length();
+        if (buffer.length - length >= required && readPosition >= length) {
+            System.arraycopy(buffer, readPosition, buffer, 0, length);
+        } else {
+            final char[] newBuffer = new char[Math.max(buffer.length << 1, length + required)];
+            System.arraycopy(buffer, readPosition, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+        readPosition = 0;
+        writePosition = length;
+    }
+
+    @Override
+    public int length() {
+        return writePosition - readPosition;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+        }
+        return buffer[readPosition + index];
+    }
+
+    /**
+     * 截取子序列，直接返回一个新的String，只复制子序列本身的数据.
+     *
+     * @param start the start index, inclusive
+     * @param end   the end index, exclusive
+     * @return 子序列
+     */
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length());
+        }
+        return new String(buffer, readPosition + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, readPosition, length());
+    }
+}
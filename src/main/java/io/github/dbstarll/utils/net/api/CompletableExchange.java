@@ -0,0 +1,116 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 与一次异步请求绑定的CompletableFuture，被取消或以异常结束时会中止底层的请求，连接随即被释放.
+ *
+ * @param <T> 请求结果类型
+ */
+final class CompletableExchange<T> extends CompletableFuture<T> implements FutureCallback<T> {
+    private final AtomicReference<Future<?>> refExchange = new AtomicReference<>();
+
+    /**
+     * 绑定底层的请求，如果在绑定之前已经被取消或超时，则立即中止请求.
+     *
+     * @param exchange 底层请求的Future
+     * @return 自身
+     */
+    CompletableExchange<T> bind(final Future<?> exchange) {
+        refExchange.set(notNull(exchange, "exchange is null"));
+        if (isCompletedExceptionally()) {
+            exchange.cancel(true);
+        }
+        return this;
+    }
+
+    @Override
+    public void completed(final T result) {
+        complete(result);
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+        completeExceptionally(ex);
+    }
+
+    @Override
+    public void cancelled() {
+        cancel(false);
+    }
+
+    @Override
+    public boolean completeExceptionally(final Throwable ex) {
+        final boolean completed = super.completeExceptionally(ex);
+        if (completed) {
+            abort();
+        }
+        return completed;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            abort();
+        }
+        return cancelled;
+    }
+
+    private void abort() {
+        final Future<?> exchange = refExchange.get();
+        if (exchange != null) {
+            exchange.cancel(true);
+        }
+    }
+
+    /**
+     * 为CompletableFuture设置截止时间，到期仍未完成时以TimeoutException结束.
+     * 对于CompletableExchange，这会同时中止底层的请求.
+     *
+     * @param future   CompletableFuture
+     * @param deadline 截止时间，为null或不大于0时不设置
+     * @param <T>      结果类型
+     * @return 传入的CompletableFuture
+     */
+    static <T> CompletableFuture<T> deadline(final CompletableFuture<T> future, final TimeValue deadline) {
+        notNull(future, "future is null");
+        if (deadline != null && TimeValue.isPositive(deadline) && !future.isDone()) {
+            final ScheduledFuture<?> timer = Scheduler.INSTANCE.schedule(() -> future.completeExceptionally(
+                    new TimeoutException("deadline exceeded: " + deadline)), deadline.getDuration(),
+                    deadline.getTimeUnit());
+            future.whenComplete((result, ex) -> timer.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * 截止时间、限流排队以及排队请求的发出共用的定时器.
+     */
+    static final class Scheduler {
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private Scheduler() {
+        }
+
+        private static ScheduledThreadPoolExecutor create() {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                final Thread thread = new Thread(r, "api-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.index.EventStream;
+import io.github.dbstarll.utils.net.api.index.EventStreamDecoder;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.async.methods.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 直接在原始字节上解码text/event-stream的流式响应，不再经过字符解码和分帧.
+ */
+final class EventStreamResponseConsumer extends AbstractBinResponseConsumer<Void> {
+    private final AtomicReference<ContentType> refContentType = new AtomicReference<>();
+    private final AtomicReference<EventStreamDecoder> refDecoder = new AtomicReference<>();
+    private final AtomicReference<HttpResponseException> refStatusException = new AtomicReference<>();
+
+    private final boolean alwaysProcessEntity;
+    private final Charset charset;
+    private final StreamCallback<EventStream> callback;
+
+    private EventStreamResponseConsumer(final boolean alwaysProcessEntity, final Charset charset,
+                                        final StreamCallback<EventStream> callback) {
+        this.alwaysProcessEntity = alwaysProcessEntity;
+        this.charset = charset;
+        this.callback = callback;
+    }
+
+    @Override
+    protected void start(final HttpResponse response, final ContentType contentType) {
+        final Charset decodeCharset = contentType != null && contentType.getCharset() != null
+                ? contentType.getCharset() : charset;
+        final String mimeType = contentType != null ? contentType.getMimeType() : ContentType.TEXT_PLAIN.getMimeType();
+        this.refContentType.set(ContentType.create(mimeType, decodeCharset));
+        this.refDecoder.set(new EventStreamDecoder(decodeCharset,
+                ContentType.TEXT_EVENT_STREAM.isSameMimeType(contentType)));
+        if (!alwaysProcessEntity && response.getCode() >= HttpStatus.SC_REDIRECTION) {
+            this.refStatusException.set(new HttpResponseException(response.getCode(),
+                    response.getReasonPhrase()));
+        }
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected void data(final ByteBuffer src, final boolean endOfStream) throws IOException {
+        final HttpResponseException statusException = refStatusException.get();
+        if (statusException != null) {
+            throw statusException;
+        }
+
+        final EventStreamDecoder decoder = refDecoder.get();
+        decoder.append(src);
+        EventStream eventStream;
+        while ((eventStream = decoder.next(endOfStream)) != null) {
+            callback.stream(refContentType.get(), eventStream);
+        }
+    }
+
+    @Override
+    protected Void buildResult() {
+        return null;
+    }
+
+    @Override
+    public void releaseResources() {
+        this.refContentType.set(null);
+        this.refDecoder.set(null);
+        this.refStatusException.set(null);
+    }
+
+    static EventStreamResponseConsumer create(final boolean alwaysProcessEntity, final Charset charset,
+                                              final StreamCallback<EventStream> callback) {
+        return new EventStreamResponseConsumer(alwaysProcessEntity, charset, callback);
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 带流量控制的StreamCallback. 数据帧进入队列后在Executor上依次回调，只有在已接收的数据帧全部回调完成之后，
+ * 才会通过{@link CapacityChannel#update(int)}放行下一个窗口的数据.
+ *
+ * @param <T> 数据帧类型
+ */
+final class FlowControlledStreamCallback<T> implements StreamCallback<T> {
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicReference<CapacityChannel> refCapacityChannel = new AtomicReference<>();
+    private final AtomicReference<Exception> refException = new AtomicReference<>();
+
+    private final StreamCallback<T> callback;
+    private final Executor executor;
+    private final int window;
+
+    FlowControlledStreamCallback(final StreamCallback<T> callback, final Executor executor, final int window) {
+        this.callback = callback;
+        this.executor = executor;
+        this.window = window;
+    }
+
+    @Override
+    public void stream(final ContentType contentType, final T result) {
+        submit(() -> {
+            if (refException.get() == null) {
+                try {
+                    callback.stream(contentType, result);
+                } catch (Exception e) {
+                    refException.compareAndSet(null, e);
+                }
+            }
+        });
+    }
+
+    private void submit(final Runnable task) {
+        tasks.offer(task);
+        if (pending.getAndIncrement() == 0) {
+            if (executor != null) {
+                executor.execute(this::drain);
+            } else {
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            missed = pending.addAndGet(-missed);
+        } while (missed != 0);
+        releaseCapacity();
+    }
+
+    private boolean isIdle() {
+        return pending.get() == 0;
+    }
+
+    private void releaseCapacity() {
+        if (isIdle()) {
+            final CapacityChannel capacityChannel = refCapacityChannel.getAndSet(null);
+            if (capacityChannel != null) {
+                try {
+                    capacityChannel.update(window);
+                } catch (IOException e) {
+                    refException.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+
+    private void checkException() throws IOException {
+        final Exception ex = refException.get();
+        if (ex instanceof IOException) {
+            throw (IOException) ex;
+        } else if (ex != null) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * 包装AsyncResponseConsumer，接管其流量控制，并保证结果回调在所有数据帧回调之后执行.
+     *
+     * @param consumer 使用当前StreamCallback的AsyncResponseConsumer
+     * @return 带流量控制的AsyncResponseConsumer
+     */
+    AsyncResponseConsumer<Void> wrap(final AsyncResponseConsumer<Void> consumer) {
+        return new AsyncResponseConsumerWrapper<Void>(consumer) {
+            @Override
+            public void consumeResponse(final HttpResponse response, final EntityDetails entityDetails,
+                                        final HttpContext context, final FutureCallback<Void> resultCallback)
+                    throws HttpException, IOException {
+                super.consumeResponse(response, entityDetails, context, new FutureCallback<Void>() {
+                    @Override
+                    public void completed(final Void result) {
+                        submit(() -> {
+                            final Exception ex = refException.get();
+                            if (ex != null) {
+                                resultCallback.failed(ex);
+                            } else {
+                                resultCallback.completed(result);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        submit(() -> resultCallback.failed(ex));
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        submit(resultCallback::cancelled);
+                    }
+                });
+            }
+
+            @Override
+            public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+                checkException();
+                refCapacityChannel.set(capacityChannel);
+                // 回调可能在设置之前已经全部完成
+                releaseCapacity();
+            }
+
+            @Override
+            public void consume(final ByteBuffer src) throws IOException {
+                checkException();
+                super.consume(src);
+            }
+
+            @Override
+            public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+                checkException();
+                super.streamEnd(trailers);
+            }
+
+            @Override
+            public void releaseResources() {
+                refCapacityChannel.set(null);
+                super.releaseResources();
+            }
+        };
+    }
+}
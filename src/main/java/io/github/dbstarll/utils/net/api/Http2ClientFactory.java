@@ -0,0 +1,135 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.http.client.HttpClientFactory;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import javax.net.ssl.SSLContext;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * 构建只使用HTTP/2的HttpAsyncClient，供ApiAsyncClient使用. 同一个上游的全部请求复用同一个连接上的多个流，
+ * 大量并发的流式请求不再各自占用一个连接. http地址使用h2c直接发送连接前言，https地址通过TLS ALPN协商h2.
+ * <pre>
+ * new Http2ClientFactory().setInitialWindowSize(1 &lt;&lt; 20).buildAsync();
+ * </pre>
+ */
+public final class Http2ClientFactory {
+    private static final int MIN_FRAME_SIZE = 1 << 14;
+    private static final int MAX_FRAME_SIZE = (1 << 24) - 1;
+
+    private SSLContext sslContext;
+    private Timeout socketTimeout = HttpClientFactory.DEFAULT_TIMEOUT;
+    private Timeout connectTimeout = HttpClientFactory.DEFAULT_TIMEOUT;
+    private boolean automaticRetries = true;
+    private int initialWindowSize = H2Config.DEFAULT.getInitialWindowSize();
+    private int maxFrameSize = H2Config.DEFAULT.getMaxFrameSize();
+
+    /**
+     * 设置https地址使用的SSLContext，未设置时使用系统默认的SSLContext.
+     *
+     * @param sslContext SSLContext
+     * @return Http2ClientFactory
+     */
+    public Http2ClientFactory setSslContext(final SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+
+    /**
+     * 设置读超时.
+     *
+     * @param socketTimeout 读超时的毫秒数
+     * @return Http2ClientFactory
+     */
+    public Http2ClientFactory setSocketTimeout(final int socketTimeout) {
+        this.socketTimeout = Timeout.ofMilliseconds(socketTimeout);
+        return this;
+    }
+
+    /**
+     * 设置连接超时.
+     *
+     * @param connectTimeout 连接超时的毫秒数
+     * @return Http2ClientFactory
+     */
+    public Http2ClientFactory setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = Timeout.ofMilliseconds(connectTimeout);
+        return this;
+    }
+
+    /**
+     * 设置是否自动重试.
+     *
+     * @param automaticRetries 是否自动重试
+     * @return Http2ClientFactory
+     */
+    public Http2ClientFactory setAutomaticRetries(final boolean automaticRetries) {
+        this.automaticRetries = automaticRetries;
+        return this;
+    }
+
+    /**
+     * 设置每个流的初始接收窗口. 窗口越大，单个流在等待WINDOW_UPDATE之前可以接收的数据越多；
+     * 消费方暂停读取时，最多缓存这么多数据.
+     *
+     * @param initialWindowSize 初始接收窗口的字节数
+     * @return Http2ClientFactory
+     */
+    public Http2ClientFactory setInitialWindowSize(final int initialWindowSize) {
+        isTrue(initialWindowSize > 0, "initialWindowSize must be positive: %d", initialWindowSize);
+        this.initialWindowSize = initialWindowSize;
+        return this;
+    }
+
+    /**
+     * 设置可以接收的最大帧，取值范围为HTTP/2规定的16384到16777215.
+     *
+     * @param maxFrameSize 最大帧的字节数
+     * @return Http2ClientFactory
+     */
+    public Http2ClientFactory setMaxFrameSize(final int maxFrameSize) {
+        isTrue(maxFrameSize >= MIN_FRAME_SIZE && maxFrameSize <= MAX_FRAME_SIZE,
+                "maxFrameSize must be between %d and %d: %d", MIN_FRAME_SIZE, MAX_FRAME_SIZE, maxFrameSize);
+        this.maxFrameSize = maxFrameSize;
+        return this;
+    }
+
+    /**
+     * 构建HttpAsyncClient，返回的实例需要先调用start.
+     *
+     * @param customizers 对H2AsyncClientBuilder的额外配置
+     * @return CloseableHttpAsyncClient
+     */
+    @SafeVarargs
+    public final CloseableHttpAsyncClient buildAsync(final Consumer<H2AsyncClientBuilder>... customizers) {
+        final H2AsyncClientBuilder builder = HttpAsyncClients.customHttp2()
+                .setH2Config(H2Config.custom()
+                        .setPushEnabled(false)
+                        .setInitialWindowSize(initialWindowSize)
+                        .setMaxFrameSize(maxFrameSize)
+                        .build())
+                .setIOReactorConfig(IOReactorConfig.custom().setSoTimeout(socketTimeout).build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(socketTimeout)
+                        .build());
+        if (sslContext != null) {
+            builder.setTlsStrategy(ClientTlsStrategyBuilder.create().setSslContext(sslContext).build());
+        }
+        if (!automaticRetries) {
+            builder.disableAutomaticRetries();
+        }
+        Arrays.stream(customizers).forEach(c -> c.accept(builder));
+        return builder.build();
+    }
+}
@@ -0,0 +1,450 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.cache.CacheEntry;
+import io.github.dbstarll.utils.net.api.cache.ResponseCache;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.MessageHeaders;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.http.message.BasicHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Locale;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * 按HTTP缓存语义使用ResponseCache：只缓存GET请求的200响应，依据Cache-Control、Expires计算新鲜期，
+ * 过期后带上If-None-Match或If-Modified-Since向服务端验证，收到304时继续使用缓存的响应体.
+ * 带有Vary的响应以及超出单条缓存大小上限的响应不缓存.
+ */
+final class HttpCache {
+    private static final byte[] EMPTY = new byte[0];
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+    private static final String MAX_AGE = "max-age=";
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 默认的单条缓存的响应体大小上限.
+     */
+    static final int DEFAULT_MAX_ENTRY_SIZE = 1 << 20;
+
+    private final ResponseCache cache;
+    private final int maxEntrySize;
+
+    private HttpCache(final ResponseCache cache, final int maxEntrySize) {
+        this.cache = cache;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * 获得单条缓存的响应体大小上限.
+     *
+     * @return 响应体大小上限，字节
+     */
+    int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * 判断请求是否可以使用缓存. 调用方自行设置了条件请求头时不使用缓存，以免改变其语义.
+     *
+     * @param request the request
+     * @return 是否可以使用缓存
+     */
+    static boolean isCacheable(final ClassicHttpRequest request) {
+        return Method.GET.isSame(request.getMethod())
+                && !hasDirective(request, NO_STORE) && !hasDirective(request, NO_CACHE)
+                && !request.containsHeader(HttpHeaders.IF_NONE_MATCH)
+                && !request.containsHeader(HttpHeaders.IF_MODIFIED_SINCE);
+    }
+
+    /**
+     * 判断请求头是否只与本次连接或缓存控制相关，这样的请求头不参与缓存的key.
+     *
+     * @param name 请求头的名称
+     * @return 是否不参与缓存的key
+     */
+    static boolean isTransient(final String name) {
+        return HttpHeaders.CONNECTION.equalsIgnoreCase(name) || HttpHeaders.KEEP_ALIVE.equalsIgnoreCase(name)
+                || HttpHeaders.CACHE_CONTROL.equalsIgnoreCase(name) || HttpHeaders.PRAGMA.equalsIgnoreCase(name);
+    }
+
+    /**
+     * 判断请求头是否携带凭证，这样的请求头在缓存的key中只保留摘要.
+     *
+     * @param name 请求头的名称
+     * @return 是否携带凭证
+     */
+    static boolean isCredential(final String name) {
+        return HttpHeaders.AUTHORIZATION.equalsIgnoreCase(name)
+                || HttpHeaders.PROXY_AUTHORIZATION.equalsIgnoreCase(name) || "Cookie".equalsIgnoreCase(name);
+    }
+
+    /**
+     * 计算请求头的值的SHA-256摘要.
+     *
+     * @param value 请求头的值
+     * @return 十六进制的摘要
+     */
+    static String digest(final String value) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 查找请求对应的缓存. 缓存已过期时，只有带有验证信息才返回，此时需要通过{@link #conditional}发出条件请求.
+     *
+     * @param key 缓存的key
+     * @param now 当前时间，毫秒
+     * @return 缓存的响应，未命中时返回null
+     */
+    CacheEntry lookup(final String key, final long now) {
+        final CacheEntry entry = cache.get(key);
+        if (entry == null || entry.isFresh(now)) {
+            return entry;
+        }
+        final boolean validatable = entry.getFirstHeader(HttpHeaders.ETAG) != null
+                || entry.getFirstHeader(HttpHeaders.LAST_MODIFIED) != null;
+        return validatable ? entry : null;
+    }
+
+    /**
+     * 为过期的缓存构建条件请求. 条件请求头只加在请求的副本上，调用方的请求保持不变.
+     *
+     * @param request the request
+     * @param stale   过期的缓存，为null时直接返回原请求
+     * @return 发出的请求
+     * @throws IOException 请求的URI不合法
+     */
+    static ClassicHttpRequest conditional(final ClassicHttpRequest request, final CacheEntry stale)
+            throws IOException {
+        if (stale == null) {
+            return request;
+        }
+        final Conditional conditional;
+        try {
+            conditional = new Conditional(request);
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+        final String etag = stale.getFirstHeader(HttpHeaders.ETAG);
+        if (etag != null) {
+            conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        final String lastModified = stale.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        if (lastModified != null) {
+            conditional.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        return conditional;
+    }
+
+    /**
+     * 根据响应头判断响应是否会更新缓存，不考虑响应体的大小.
+     *
+     * @param response 服务端的响应
+     * @param stale    发出条件请求时使用的缓存，没有时为null
+     * @return 是否会更新缓存
+     */
+    boolean isStorable(final HttpResponse response, final CacheEntry stale) {
+        if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+            return stale != null;
+        }
+        return response.getCode() == HttpStatus.SC_OK && isStorable(response, System.currentTimeMillis());
+    }
+
+    /**
+     * 根据服务端的响应更新缓存. 只在响应可以缓存时才会读取响应体，响应体超出单条缓存的大小上限时，
+     * 已读取的部分连同剩余的部分重新设置为响应的实体.
+     *
+     * @param key      缓存的key
+     * @param response 服务端的响应
+     * @param stale    发出条件请求时使用的缓存，没有时为null
+     * @return 用于解析请求结果的缓存，响应不能缓存时返回null，此时响应的实体仍可以完整读取
+     * @throws IOException 读取响应体失败
+     */
+    CacheEntry update(final String key, final ClassicHttpResponse response, final CacheEntry stale)
+            throws IOException {
+        final long now = System.currentTimeMillis();
+        if (response.getCode() == HttpStatus.SC_NOT_MODIFIED && stale != null) {
+            final CacheEntry entry = stale.revalidated(response.getHeaders(), now, expiresAt(response, now));
+            cache.put(key, entry);
+            return entry;
+        } else if (response.getCode() != HttpStatus.SC_OK || !isStorable(response, now)) {
+            return null;
+        }
+        final HttpEntity entity = response.getEntity();
+        final byte[] body = entity == null ? EMPTY : read(response, entity);
+        if (body == null) {
+            return null;
+        }
+        final CacheEntry entry = new CacheEntry(headers(response, entity), body, now, expiresAt(response, now));
+        cache.put(key, entry);
+        return entry;
+    }
+
+    private byte[] read(final ClassicHttpResponse response, final HttpEntity entity) throws IOException {
+        if (entity.getContentLength() > maxEntrySize) {
+            return null;
+        }
+        final InputStream in = entity.getContent();
+        if (in == null) {
+            return EMPTY;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                entity.getContentLength() >= 0 ? (int) entity.getContentLength() : BUFFER_SIZE);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+            if (out.size() > maxEntrySize) {
+                response.setEntity(new InputStreamEntity(
+                        new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), in), -1,
+                        ContentType.parseLenient(entity.getContentType()), entity.getContentEncoding()));
+                return null;
+            }
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static Header[] headers(final ClassicHttpResponse response, final HttpEntity entity) {
+        if (entity == null || entity.getContentType() == null || response.containsHeader(HttpHeaders.CONTENT_TYPE)) {
+            return response.getHeaders();
+        }
+        final Header[] headers = response.getHeaders();
+        final Header[] result = new Header[headers.length + 1];
+        System.arraycopy(headers, 0, result, 0, headers.length);
+        result[headers.length] = new BasicHeader(HttpHeaders.CONTENT_TYPE, entity.getContentType());
+        return result;
+    }
+
+    private static boolean isStorable(final HttpResponse response, final long now) {
+        if (hasDirective(response, NO_STORE) || response.containsHeader(HttpHeaders.VARY)) {
+            return false;
+        }
+        return expiresAt(response, now) > now
+                || response.containsHeader(HttpHeaders.ETAG) || response.containsHeader(HttpHeaders.LAST_MODIFIED);
+    }
+
+    private static long expiresAt(final HttpResponse response, final long now) {
+        if (hasDirective(response, NO_CACHE)) {
+            return now;
+        }
+        final long maxAge = maxAge(response);
+        if (maxAge >= 0) {
+            return now + maxAge * MILLIS_PER_SECOND;
+        }
+        final Instant expires = DateUtils.parseStandardDate(response, HttpHeaders.EXPIRES);
+        if (expires != null) {
+            final Instant date = DateUtils.parseStandardDate(response, HttpHeaders.DATE);
+            return now + expires.toEpochMilli() - (date != null ? date.toEpochMilli() : now);
+        }
+        return now;
+    }
+
+    private static long maxAge(final MessageHeaders headers) {
+        final Iterator<Header> iterator = headers.headerIterator(HttpHeaders.CACHE_CONTROL);
+        while (iterator.hasNext()) {
+            for (String directive : iterator.next().getValue().split(",")) {
+                final String trimmed = directive.trim().toLowerCase(Locale.ROOT);
+                if (trimmed.startsWith(MAX_AGE)) {
+                    try {
+                        return Long.parseLong(trimmed.substring(MAX_AGE.length()).replace("\"", ""));
+                    } catch (NumberFormatException ex) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasDirective(final MessageHeaders headers, final String name) {
+        final Iterator<Header> iterator = headers.headerIterator(HttpHeaders.CACHE_CONTROL);
+        while (iterator.hasNext()) {
+            for (String directive : iterator.next().getValue().split(",")) {
+                if (directive.trim().equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从缓存中解析请求结果. 解析后的结果按请求结果类保存在缓存中，再次命中时直接返回，
+     * byte[]、ByteBuffer和InputStream类型每次都返回新的实例. 新增了解析结果时，缓存按新的大小重新计算占用的空间.
+     *
+     * @param key             缓存的key
+     * @param entry           缓存的响应
+     * @param responseClass   请求结果类
+     * @param responseHandler 请求结果类对应的ResponseHandler
+     * @param charset         响应未指定字符集时使用的字符集，为null时由ResponseHandler决定
+     * @param <T>             请求结果类型
+     * @return 请求结果
+     * @throws IOException   解析失败
+     * @throws HttpException 解析失败
+     */
+    <T> T decode(final String key, final CacheEntry entry, final Class<T> responseClass,
+                 final HttpClientResponseHandler<T> responseHandler, final Charset charset)
+            throws IOException, HttpException {
+        if (BinaryResponseConsumer.isSupported(responseClass)) {
+            return binary(responseClass, entry.getBody().clone());
+        }
+        validate(responseClass, responseHandler);
+        final T cached = entry.getResult(responseClass);
+        if (cached != null) {
+            return cached;
+        }
+        final BasicClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_OK);
+        response.setHeaders(entry.getHeaders());
+        response.setEntity(new ByteArrayEntity(entry.getBody(), contentType(response, charset)));
+        final T result = responseHandler.handleResponse(response);
+        if (entry.putResult(responseClass, result)) {
+            cache.resized(key, entry);
+        }
+        return result;
+    }
+
+    /**
+     * 不经过缓存，直接从服务端的响应中解析请求结果.
+     *
+     * @param response            服务端的响应
+     * @param responseClass       请求结果类
+     * @param responseHandler     请求结果类对应的ResponseHandler
+     * @param alwaysProcessEntity 是否在响应状态异常时仍然处理响应体
+     * @param <T>                 请求结果类型
+     * @return 请求结果
+     * @throws IOException   解析失败
+     * @throws HttpException 解析失败
+     */
+    static <T> T handle(final ClassicHttpResponse response, final Class<T> responseClass,
+                        final HttpClientResponseHandler<T> responseHandler, final boolean alwaysProcessEntity)
+            throws IOException, HttpException {
+        validate(responseClass, responseHandler);
+        if (responseHandler != null) {
+            return responseHandler.handleResponse(response);
+        } else if (response.getCode() >= HttpStatus.SC_REDIRECTION && !alwaysProcessEntity) {
+            EntityUtils.consume(response.getEntity());
+            throw new HttpResponseException(response.getCode(), response.getReasonPhrase());
+        }
+        final HttpEntity entity = response.getEntity();
+        return binary(responseClass, entity == null ? EMPTY : EntityUtils.toByteArray(entity));
+    }
+
+    /**
+     * 检查请求结果类是否可以解析：没有ResponseHandler时只能以字节的方式接收byte[]、ByteBuffer和InputStream类型.
+     *
+     * @param responseClass   请求结果类
+     * @param responseHandler 请求结果类对应的ResponseHandler
+     * @param <T>             请求结果类型
+     */
+    static <T> void validate(final Class<T> responseClass, final HttpClientResponseHandler<T> responseHandler) {
+        isTrue(responseHandler != null || BinaryResponseConsumer.isSupported(responseClass),
+                "no ResponseHandler for class: %s", responseClass.getName());
+    }
+
+    private static <T> T binary(final Class<T> responseClass, final byte[] body) {
+        if (ByteBuffer.class == responseClass) {
+            return responseClass.cast(ByteBuffer.wrap(body));
+        } else if (InputStream.class == responseClass) {
+            return responseClass.cast(new ByteArrayInputStream(body));
+        }
+        return responseClass.cast(body);
+    }
+
+    private static ContentType contentType(final HttpResponse response, final Charset charset) {
+        final Header header = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        final ContentType contentType = header != null ? ContentType.parseLenient(header.getValue()) : null;
+        if (contentType == null || charset == null || contentType.getCharset() != null) {
+            return contentType;
+        }
+        return contentType.withCharset(charset);
+    }
+
+    /**
+     * 把异步请求收到的响应头和完整的响应体转换为ClassicHttpResponse.
+     *
+     * @param response 响应头
+     * @param body     响应体，没有响应体时为null
+     * @param charset  响应未指定字符集时使用的字符集
+     * @return ClassicHttpResponse
+     */
+    static ClassicHttpResponse toClassic(final HttpResponse response, final byte[] body, final Charset charset) {
+        final BasicClassicHttpResponse classic = new BasicClassicHttpResponse(response.getCode(),
+                response.getReasonPhrase());
+        classic.setVersion(response.getVersion());
+        classic.setHeaders(response.getHeaders());
+        if (body != null) {
+            classic.setEntity(new ByteArrayEntity(body, contentType(response, charset)));
+        }
+        return classic;
+    }
+
+    static HttpCache create(final ResponseCache cache, final int maxEntrySize) {
+        return new HttpCache(cache, maxEntrySize);
+    }
+
+    /**
+     * 带上条件请求头的请求副本，收到响应头的通知转发给原请求，例如重试时发出的请求.
+     */
+    private static final class Conditional extends BasicClassicHttpRequest implements ResponseAware {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ClassicHttpRequest original;
+
+        private Conditional(final ClassicHttpRequest original) throws URISyntaxException {
+            super(original.getMethod(), original.getUri());
+            setVersion(original.getVersion());
+            setHeaders(original.getHeaders());
+            setEntity(original.getEntity());
+            this.original = original;
+        }
+
+        @Override
+        public void responded(final HttpResponse response) {
+            if (original instanceof ResponseAware) {
+                ((ResponseAware) original).responded(response);
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.function.Supplier;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.FileEntity;
+import org.apache.hc.core5.http.io.entity.PathEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 将HttpEntity以流的方式发送，在通道可写时才从HttpEntity中分块读取数据，不会把整个请求体读入内存.
+ * 字节数组和字符串实体直接包装其内部数组，文件实体在I/O线程上通过FileChannel读取，
+ * 其余实体的读取可能阻塞，在Executor上分块读取，读到数据后再通知I/O线程发送，不会阻塞I/O线程.
+ */
+final class HttpEntityAsyncEntityProducer implements AsyncEntityProducer {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final HttpEntity entity;
+    private final ByteBuffer content;
+    private final Executor executor;
+    private final AtomicReference<ByteBuffer> refContent = new AtomicReference<>();
+    private final AtomicReference<ReadableByteChannel> refChannel = new AtomicReference<>();
+    private final AtomicReference<ByteBuffer> refChunk = new AtomicReference<>();
+    private final AtomicReference<StreamReader> refReader = new AtomicReference<>();
+    private volatile boolean endOfContent;
+
+    private HttpEntityAsyncEntityProducer(final HttpEntity entity, final ByteBuffer content,
+                                          final Executor executor) {
+        this.entity = entity;
+        this.content = content;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return entity.isRepeatable();
+    }
+
+    @Override
+    public String getContentType() {
+        return entity.getContentType();
+    }
+
+    @Override
+    public long getContentLength() {
+        return content != null ? content.remaining() : entity.getContentLength();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return entity.getContentEncoding();
+    }
+
+    @Override
+    public boolean isChunked() {
+        return entity.isChunked();
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return entity.getTrailerNames();
+    }
+
+    @Override
+    public int available() {
+        if (content != null) {
+            final ByteBuffer buffer = refContent.get();
+            return buffer != null ? buffer.remaining() : content.remaining();
+        } else if (executor != null) {
+            final StreamReader reader = refReader.get();
+            return reader != null ? reader.available() : Integer.MAX_VALUE;
+        } else {
+            final ByteBuffer chunk = refChunk.get();
+            return endOfContent && (chunk == null || !chunk.hasRemaining()) ? 0 : Integer.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public void produce(final DataStreamChannel channel) throws IOException {
+        if (content != null) {
+            produceContent(channel);
+        } else if (executor != null) {
+            StreamReader reader = refReader.get();
+            if (reader == null) {
+                reader = new StreamReader();
+                refReader.set(reader);
+            }
+            reader.produce(channel);
+        } else {
+            produceFile(channel);
+        }
+    }
+
+    private void produceContent(final DataStreamChannel channel) throws IOException {
+        ByteBuffer buffer = refContent.get();
+        if (buffer == null) {
+            buffer = content.duplicate();
+            refContent.set(buffer);
+        }
+        if (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (!buffer.hasRemaining()) {
+            endStream(channel);
+        }
+    }
+
+    private void produceFile(final DataStreamChannel channel) throws IOException {
+        ReadableByteChannel source = refChannel.get();
+        if (source == null && !endOfContent) {
+            source = openChannel(entity.getContent());
+            refChannel.set(source);
+            final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            ((Buffer) buffer).flip();
+            refChunk.set(buffer);
+        }
+        final ByteBuffer chunk = refChunk.get();
+        while (true) {
+            if (!chunk.hasRemaining()) {
+                if (endOfContent) {
+                    endStream(channel);
+                    return;
+                }
+                ((Buffer) chunk).clear();
+                final int read = source.read(chunk);
+                ((Buffer) chunk).flip();
+                if (read < 0) {
+                    endOfContent = true;
+                    closeChannel();
+                    continue;
+                }
+            }
+            channel.write(chunk);
+            if (chunk.hasRemaining()) {
+                // 通道已满，等待下一次可写时再继续
+                return;
+            }
+        }
+    }
+
+    private void endStream(final DataStreamChannel channel) throws IOException {
+        final Supplier<List<? extends Header>> trailers = entity.getTrailers();
+        channel.endStream(trailers != null ? trailers.get() : null);
+    }
+
+    private static ReadableByteChannel openChannel(final InputStream in) {
+        if (in instanceof FileInputStream) {
+            return ((FileInputStream) in).getChannel();
+        } else {
+            return Channels.newChannel(in);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        final ReadableByteChannel channel = refChannel.getAndSet(null);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public void failed(final Exception cause) {
+        releaseResources();
+    }
+
+    @Override
+    public void releaseResources() {
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            // ignore
+        }
+        final StreamReader reader = refReader.getAndSet(null);
+        if (reader != null) {
+            reader.close();
+        }
+        this.refContent.set(null);
+        this.refChunk.set(null);
+        this.endOfContent = false;
+    }
+
+    static HttpEntityAsyncEntityProducer create(final HttpEntity entity) throws IOException {
+        return create(entity, null);
+    }
+
+    /**
+     * 创建HttpEntity的AsyncEntityProducer.
+     *
+     * @param entity   the entity
+     * @param executor 读取非文件流实体的Executor，为null时使用内置的守护线程池
+     * @return AsyncEntityProducer
+     * @throws IOException 读取字节数组或字符串实体失败
+     */
+    static HttpEntityAsyncEntityProducer create(final HttpEntity entity, final Executor executor)
+            throws IOException {
+        notNull(entity, "entity is null");
+        if (entity instanceof ByteArrayEntity || entity instanceof StringEntity) {
+            final ContentCapture capture = new ContentCapture();
+            entity.writeTo(capture);
+            return new HttpEntityAsyncEntityProducer(entity, capture.content != null ? capture.content
+                    : ByteBuffer.allocate(0), null);
+        } else if (entity instanceof FileEntity || entity instanceof PathEntity) {
+            return new HttpEntityAsyncEntityProducer(entity, null, null);
+        } else {
+            return new HttpEntityAsyncEntityProducer(entity, null, executor != null ? executor : Reader.INSTANCE);
+        }
+    }
+
+    /**
+     * 在Executor上从实体中读取一个数据块，读到数据后通过{@link DataStreamChannel#requestOutput()}通知I/O线程发送.
+     * 读取期间{@link #available()}返回0，I/O线程不会空转等待.
+     */
+    private final class StreamReader implements Runnable {
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private DataStreamChannel channel;
+        private ReadableByteChannel source;
+        private IOException failure;
+        private boolean filling;
+        private boolean ended;
+        private boolean done;
+        private boolean closed;
+
+        private StreamReader() {
+            ((Buffer) chunk).flip();
+        }
+
+        private synchronized int available() {
+            return filling || done ? 0 : Integer.MAX_VALUE;
+        }
+
+        private void produce(final DataStreamChannel dataChannel) throws IOException {
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                } else if (filling || done) {
+                    return;
+                }
+            }
+            if (chunk.hasRemaining()) {
+                dataChannel.write(chunk);
+                if (chunk.hasRemaining()) {
+                    // 通道已满，等待下一次可写时再继续
+                    return;
+                }
+            }
+            synchronized (this) {
+                if (ended) {
+                    done = true;
+                } else {
+                    filling = true;
+                    channel = dataChannel;
+                }
+            }
+            if (done) {
+                endStream(dataChannel);
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                synchronized (this) {
+                    filling = false;
+                }
+                throw new IOException("entity reader rejected", ex);
+            }
+        }
+
+        @Override
+        public void run() {
+            IOException cause = null;
+            boolean endOfStream = false;
+            try {
+                ReadableByteChannel in = current();
+                if (in == null) {
+                    in = Channels.newChannel(entity.getContent());
+                    synchronized (this) {
+                        source = in;
+                    }
+                }
+                ((Buffer) chunk).clear();
+                endOfStream = in.read(chunk) < 0;
+            } catch (IOException ex) {
+                cause = ex;
+            } catch (RuntimeException ex) {
+                cause = new IOException(ex);
+            } finally {
+                ((Buffer) chunk).flip();
+            }
+            final DataStreamChannel dataChannel;
+            synchronized (this) {
+                filling = false;
+                failure = cause;
+                ended = endOfStream;
+                dataChannel = closed ? null : channel;
+                if (closed || endOfStream || cause != null) {
+                    closeSource();
+                }
+            }
+            if (dataChannel != null) {
+                dataChannel.requestOutput();
+            }
+        }
+
+        private synchronized ReadableByteChannel current() {
+            return source;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if (!filling) {
+                closeSource();
+            }
+        }
+
+        private void closeSource() {
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                source = null;
+            }
+        }
+    }
+
+    /**
+     * 读取非文件流实体的守护线程池. 线程数有上限，线程都在读取时后续的数据块排队等待，空闲的线程超时后回收.
+     */
+    private static final class Reader {
+        private static final int MAX_THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+        private static final long KEEP_ALIVE_SECONDS = 60;
+        private static final ExecutorService INSTANCE = create();
+
+        private Reader() {
+        }
+
+        private static ExecutorService create() {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                final Thread thread = new Thread(r, "api-entity-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * 字节数组和字符串实体的writeTo会一次性写出内部数组，这里直接包装该数组而不复制.
+     */
+    private static final class ContentCapture extends OutputStream {
+        private ByteBuffer content;
+
+        @Override
+        public void write(final int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            if (content == null) {
+                content = ByteBuffer.wrap(b, off, len);
+            } else {
+                final ByteBuffer merged = ByteBuffer.allocate(content.remaining() + len);
+                merged.put(content).put(b, off, len);
+                ((Buffer) merged).flip();
+                content = merged;
+            }
+        }
+    }
+}
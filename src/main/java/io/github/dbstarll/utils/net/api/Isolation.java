@@ -0,0 +1,122 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.limit.CircuitBreaker;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 按熔断key隔离上游：每个熔断key拥有各自的熔断器和并发上限（舱壁），无法放行的请求立即失败，不会排队，
+ * 一个故障的上游不会占满连接池和I/O线程而拖累其它上游. 舱壁的名额在交换结束时才归还，响应体仍在传输的请求同样占用名额，
+ * 响应体传输中的失败也计入熔断器.
+ */
+final class Isolation {
+    private final ConcurrentMap<String, Compartment> compartments = new ConcurrentHashMap<>();
+    private final Function<String, CircuitBreaker> breakerFactory;
+    private final int maxConcurrent;
+
+    private Isolation(final Function<String, CircuitBreaker> breakerFactory, final int maxConcurrent) {
+        this.breakerFactory = breakerFactory;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * 申请许可.
+     *
+     * @param key 熔断key
+     * @return 许可
+     * @throws ApiException 熔断器打开时抛出{@link ApiCircuitOpenException}，达到并发上限时抛出{@link ApiLimitException}
+     */
+    Permit acquire(final String key) throws ApiException {
+        Compartment compartment = compartments.get(key);
+        if (compartment == null) {
+            compartment = compartments.computeIfAbsent(key, Compartment::new);
+        }
+        return compartment.acquire();
+    }
+
+    /**
+     * 单个熔断key的熔断器和舱壁.
+     */
+    private final class Compartment {
+        private final String key;
+        private final CircuitBreaker breaker;
+        private int inFlight;
+
+        private Compartment(final String key) {
+            this.key = key;
+            this.breaker = breakerFactory.apply(key);
+        }
+
+        private Permit acquire() throws ApiException {
+            final Permit permit = breaker.tryAcquire();
+            if (permit == null) {
+                throw new ApiCircuitOpenException(key);
+            }
+            synchronized (this) {
+                if (inFlight < maxConcurrent) {
+                    inFlight++;
+                    return Throttle.held(new CompartmentPermit(permit));
+                }
+            }
+            permit.ignore();
+            throw new ApiLimitException(key);
+        }
+
+        private synchronized void released() {
+            inFlight--;
+        }
+
+        /**
+         * 释放时归还舱壁的名额，保证只释放一次.
+         */
+        private final class CompartmentPermit extends AtomicBoolean implements Permit {
+            private static final long serialVersionUID = 1L;
+
+            private final Permit permit;
+
+            private CompartmentPermit(final Permit permit) {
+                this.permit = permit;
+            }
+
+            @Override
+            public void success(final long latencyNanos) {
+                if (compareAndSet(false, true)) {
+                    permit.success(latencyNanos);
+                    released();
+                }
+            }
+
+            @Override
+            public void dropped() {
+                if (compareAndSet(false, true)) {
+                    permit.dropped();
+                    released();
+                }
+            }
+
+            @Override
+            public void failed() {
+                if (compareAndSet(false, true)) {
+                    permit.failed();
+                    released();
+                }
+            }
+
+            @Override
+            public void ignore() {
+                if (compareAndSet(false, true)) {
+                    permit.ignore();
+                    released();
+                }
+            }
+        }
+    }
+
+    static Isolation create(final Function<String, CircuitBreaker> breakerFactory, final int maxConcurrent) {
+        return new Isolation(breakerFactory, maxConcurrent);
+    }
+}
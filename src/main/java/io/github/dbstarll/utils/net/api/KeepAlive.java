@@ -0,0 +1,37 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.function.Consumer;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 为ApiClient使用的HttpClient配置持久连接，配合{@link ApiClient#setKeepAlive(boolean)}使用.
+ * <pre>
+ * new HttpClientFactory().build(new KeepAlive(100, TimeValue.ofSeconds(30)));
+ * </pre>
+ */
+public final class KeepAlive implements Consumer<HttpClientBuilder> {
+    private final long maxRequestsPerConnection;
+    private final TimeValue maxIdleTime;
+
+    /**
+     * 构建KeepAlive.
+     *
+     * @param maxRequestsPerConnection 每个连接上可以发送的最大请求数
+     * @param maxIdleTime              连接的最大空闲时间，超过后由后台线程回收
+     */
+    public KeepAlive(final long maxRequestsPerConnection, final TimeValue maxIdleTime) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.maxIdleTime = notNull(maxIdleTime, "maxIdleTime is null");
+    }
+
+    @Override
+    public void accept(final HttpClientBuilder builder) {
+        builder.setConnectionReuseStrategy(new MaxRequestsConnectionReuseStrategy(maxRequestsPerConnection))
+                .evictExpiredConnections()
+                .evictIdleConnections(maxIdleTime);
+    }
+}
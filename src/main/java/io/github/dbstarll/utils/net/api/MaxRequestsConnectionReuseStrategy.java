@@ -0,0 +1,52 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.http.ConnectionReuseStrategy;
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 在ConnectionReuseStrategy的基础上，限制每个连接上可以发送的最大请求数，达到上限后关闭连接.
+ */
+public final class MaxRequestsConnectionReuseStrategy implements ConnectionReuseStrategy {
+    private final ConnectionReuseStrategy strategy;
+    private final long maxRequestsPerConnection;
+
+    /**
+     * 构建MaxRequestsConnectionReuseStrategy.
+     *
+     * @param maxRequestsPerConnection 每个连接上可以发送的最大请求数
+     */
+    public MaxRequestsConnectionReuseStrategy(final long maxRequestsPerConnection) {
+        this(DefaultConnectionReuseStrategy.INSTANCE, maxRequestsPerConnection);
+    }
+
+    /**
+     * 构建MaxRequestsConnectionReuseStrategy.
+     *
+     * @param strategy                 被代理的ConnectionReuseStrategy
+     * @param maxRequestsPerConnection 每个连接上可以发送的最大请求数
+     */
+    public MaxRequestsConnectionReuseStrategy(final ConnectionReuseStrategy strategy,
+                                              final long maxRequestsPerConnection) {
+        isTrue(maxRequestsPerConnection > 0, "maxRequestsPerConnection must be positive: %d",
+                maxRequestsPerConnection);
+        this.strategy = notNull(strategy, "strategy is null");
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    @Override
+    public boolean keepAlive(final HttpRequest request, final HttpResponse response, final HttpContext context) {
+        if (!strategy.keepAlive(request, response, context)) {
+            return false;
+        }
+        final EndpointDetails endpointDetails = HttpCoreContext.adapt(context).getEndpointDetails();
+        return endpointDetails == null || endpointDetails.getRequestCount() < maxRequestsPerConnection;
+    }
+}
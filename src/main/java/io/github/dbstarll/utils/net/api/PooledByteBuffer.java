@@ -0,0 +1,160 @@
+package io.github.dbstarll.utils.net.api;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 由固定大小的字节块组成的缓冲区，字节块从共享池中获取，释放后归还到池中复用.
+ */
+final class PooledByteBuffer {
+    static final int CHUNK_SIZE = 8192;
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long length;
+
+    /**
+     * 追加数据.
+     *
+     * @param src 数据来源
+     */
+    void append(final ByteBuffer src) {
+        while (src.hasRemaining()) {
+            final int offset = (int) (length % CHUNK_SIZE);
+            if (offset == 0) {
+                chunks.add(acquire());
+            }
+            final int size = Math.min(CHUNK_SIZE - offset, src.remaining());
+            src.get(chunks.get(chunks.size() - 1), offset, size);
+            length += size;
+        }
+    }
+
+    /**
+     * 获得已写入的字节数.
+     *
+     * @return 已写入的字节数
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * 复制为一个完整的字节数组，并释放所有字节块.
+     *
+     * @return 字节数组
+     */
+    byte[] toByteArray() {
+        final byte[] data = new byte[(int) length];
+        int position = 0;
+        for (byte[] chunk : chunks) {
+            final int size = Math.min(CHUNK_SIZE, data.length - position);
+            System.arraycopy(chunk, 0, data, position, size);
+            position += size;
+        }
+        release();
+        return data;
+    }
+
+    /**
+     * 转换为直接读取字节块的InputStream，字节块在读完或关闭时归还.
+     *
+     * @return InputStream
+     */
+    InputStream toInputStream() {
+        final ChunkInputStream in = new ChunkInputStream(new ArrayList<>(chunks), length);
+        chunks.clear();
+        length = 0;
+        return in;
+    }
+
+    /**
+     * 释放所有字节块.
+     */
+    void release() {
+        for (byte[] chunk : chunks) {
+            recycle(chunk);
+        }
+        chunks.clear();
+        length = 0;
+    }
+
+    private static byte[] acquire() {
+        final byte[] chunk = POOL.poll();
+        if (chunk != null) {
+            POOLED.decrementAndGet();
+            return chunk;
+        }
+        return new byte[CHUNK_SIZE];
+    }
+
+    private static void recycle(final byte[] chunk) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+            POOL.offer(chunk);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    private static final class ChunkInputStream extends InputStream {
+        private final List<byte[]> chunks;
+        private long remaining;
+        private int index;
+        private int offset;
+
+        private ChunkInputStream(final List<byte[]> chunks, final long length) {
+            this.chunks = chunks;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            } else if (remaining <= 0) {
+                close();
+                return -1;
+            }
+            final int size = (int) Math.min(Math.min(len, CHUNK_SIZE - offset), remaining);
+            System.arraycopy(chunks.get(index), offset, b, off, size);
+            offset += size;
+            remaining -= size;
+            if (offset == CHUNK_SIZE) {
+                recycle(chunks.set(index++, null));
+                offset = 0;
+            }
+            return size;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+            for (int i = index; i < chunks.size(); i++) {
+                final byte[] chunk = chunks.set(i, null);
+                if (chunk != null) {
+                    recycle(chunk);
+                }
+            }
+            index = chunks.size();
+            remaining = 0;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.index.EventStream;
+import io.github.dbstarll.utils.net.api.retry.ReconnectPolicy;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 断开后自动重连的事件流. 记录最后收到的事件id和服务端指定的retry，连接结束或失败时按重连策略等待之后，
+ * 带上Last-Event-ID重新发出请求，新连接上的事件继续交给同一个回调. 服务端返回204、异常不需要重连
+ * 或者重连次数用尽时结束，取消时中止当前的连接和等待中的重连.
+ */
+final class ReconnectingEventStream extends BasicFuture<Void> {
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final ClassicHttpRequest request;
+    private final ReconnectPolicy reconnectPolicy;
+    private final StreamCallback<EventStream> callback;
+    private final Call call;
+    private volatile String lastEventId;
+    private volatile long retryMillis = -1;
+    private int attempts;
+    private Connection current;
+    private ScheduledFuture<?> timer;
+
+    private ReconnectingEventStream(final ClassicHttpRequest request, final ReconnectPolicy reconnectPolicy,
+                                    final StreamFutureCallback<EventStream> callback, final Call call) {
+        super(callback);
+        this.request = request;
+        this.reconnectPolicy = reconnectPolicy;
+        this.callback = callback;
+        this.call = call;
+        this.lastEventId = request.containsHeader(LAST_EVENT_ID) ? request.getFirstHeader(LAST_EVENT_ID).getValue()
+                : null;
+    }
+
+    /**
+     * 发出第一次连接，同步抛出的异常直接传递给调用方.
+     *
+     * @param reconnectPolicy 重连策略
+     * @param request         the request
+     * @param callback        StreamFutureCallback
+     * @param call            真正发出一次连接
+     * @return 事件流结束时完成
+     * @throws IOException IOException
+     */
+    static Future<Void> execute(final ReconnectPolicy reconnectPolicy, final ClassicHttpRequest request,
+                                final StreamFutureCallback<EventStream> callback, final Call call)
+            throws IOException {
+        final ReconnectingEventStream stream = new ReconnectingEventStream(request, reconnectPolicy, callback, call);
+        stream.connect(true);
+        return stream;
+    }
+
+    private void connect(final boolean initial) throws IOException {
+        final Connection connection;
+        try {
+            connection = new Connection(request, lastEventId);
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            current = connection;
+        }
+        try {
+            connection.bind(call.execute(connection, new StreamFutureCallback<EventStream>() {
+                @Override
+                public void stream(final ContentType contentType, final EventStream result) throws IOException {
+                    received(contentType, result);
+                }
+
+                @Override
+                public void completed(final Void result) {
+                    closed(connection, null);
+                }
+
+                @Override
+                public void failed(final Exception ex) {
+                    closed(connection, ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    closed(connection, new CancellationException());
+                }
+            }));
+        } catch (IOException | RuntimeException ex) {
+            if (initial) {
+                synchronized (this) {
+                    current = null;
+                }
+                throw ex;
+            }
+            closed(connection, ex);
+        }
+    }
+
+    private void reconnect() {
+        try {
+            connect(false);
+        } catch (IOException | RuntimeException ex) {
+            failed(ex);
+        }
+    }
+
+    private void received(final ContentType contentType, final EventStream event) throws IOException {
+        if (event.getId() != null) {
+            lastEventId = event.getId();
+        }
+        if (event.getRetry() != null) {
+            retryMillis = event.getRetry();
+        }
+        synchronized (this) {
+            attempts = 0;
+        }
+        callback.stream(contentType, event);
+    }
+
+    private void closed(final Connection connection, final Exception ex) {
+        final boolean cancelled = ex instanceof CancellationException;
+        final HttpResponse response = connection.response;
+        final boolean noContent = response != null && response.getCode() == HttpStatus.SC_NO_CONTENT;
+        long delayMillis = -1;
+        synchronized (this) {
+            if (current != connection || isDone()) {
+                return;
+            }
+            current = null;
+            if (!cancelled && !noContent && (ex == null || reconnectPolicy.isReconnectable(ex))) {
+                delayMillis = reconnectPolicy.delayMillis(++attempts, retryMillis);
+            }
+        }
+        if (delayMillis >= 0) {
+            schedule(delayMillis);
+        } else if (cancelled) {
+            cancel();
+        } else if (ex != null) {
+            failed(ex);
+        } else {
+            completed(null);
+        }
+    }
+
+    private void schedule(final long delayMillis) {
+        final ScheduledFuture<?> scheduled = CompletableExchange.Scheduler.INSTANCE.schedule(this::reconnect,
+                delayMillis, TimeUnit.MILLISECONDS);
+        synchronized (this) {
+            if (isDone()) {
+                scheduled.cancel(false);
+            } else {
+                timer = scheduled;
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (super.cancel(mayInterruptIfRunning)) {
+            final Connection connection;
+            synchronized (this) {
+                connection = current;
+                current = null;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+            if (connection != null) {
+                connection.abort();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    interface Call {
+        Future<Void> execute(ClassicHttpRequest request, StreamFutureCallback<EventStream> callback)
+                throws IOException;
+    }
+
+    /**
+     * 一次连接发出的请求，是原请求的副本，带上最后收到的事件id. 收到响应头时记录下来，用于识别204.
+     */
+    private static final class Connection extends BasicClassicHttpRequest implements ResponseAware {
+        private static final long serialVersionUID = 1L;
+
+        private transient volatile HttpResponse response;
+        private transient volatile Future<?> future;
+        private transient volatile boolean aborted;
+
+        private Connection(final ClassicHttpRequest original, final String lastEventId) throws URISyntaxException {
+            super(original.getMethod(), original.getUri());
+            setVersion(original.getVersion());
+            setHeaders(original.getHeaders());
+            setEntity(original.getEntity());
+            removeHeaders(LAST_EVENT_ID);
+            if (lastEventId != null && !lastEventId.isEmpty()) {
+                setHeader(LAST_EVENT_ID, lastEventId);
+            }
+        }
+
+        @Override
+        public void responded(final HttpResponse httpResponse) {
+            this.response = httpResponse;
+        }
+
+        private void bind(final Future<?> exchange) {
+            this.future = exchange;
+            if (aborted) {
+                exchange.cancel(true);
+            }
+        }
+
+        private void abort() {
+            aborted = true;
+            final Future<?> exchange = future;
+            if (exchange != null) {
+                exchange.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.http.HttpResponse;
+
+/**
+ * 需要在收到响应头时得到通知的请求，例如重试和重连时发出的请求副本.
+ */
+interface ResponseAware {
+    /**
+     * 收到响应头时调用.
+     *
+     * @param response the response message head
+     */
+    void responded(HttpResponse response);
+}
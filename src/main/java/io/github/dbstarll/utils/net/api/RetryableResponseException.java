@@ -0,0 +1,26 @@
+package io.github.dbstarll.utils.net.api;
+
+import java.io.IOException;
+
+/**
+ * 收到可以重试的响应状态，并且仍可以重试时，在ResponseHandler中抛出，由重试循环捕获，不会传递给调用方.
+ */
+final class RetryableResponseException extends IOException {
+    private static final long serialVersionUID = -6214530782917395021L;
+
+    private final long backoffMillis;
+
+    RetryableResponseException(final int statusCode, final long backoffMillis) {
+        super("retryable status: " + statusCode);
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * 获得下一次重试之前等待的毫秒数.
+     *
+     * @return 等待的毫秒数
+     */
+    long getBackoffMillis() {
+        return backoffMillis;
+    }
+}
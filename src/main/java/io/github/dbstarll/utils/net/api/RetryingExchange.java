@@ -0,0 +1,284 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.retry.HedgePolicy;
+import io.github.dbstarll.utils.net.api.retry.RetryPolicy;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按重试和对冲策略执行异步请求. 每次尝试都发出原请求的一个副本：失败或收到可以重试的响应状态时，
+ * 按退避间隔在定时器上重新发出；第一次尝试在对冲延迟内仍未完成时，向另一个地址再发出一次对冲请求.
+ * 任何一次尝试成功即以它的结果完成，其余仍在进行的尝试被取消；全部进行中的尝试都失败且不能再重试时，
+ * 以最后一次失败的原因结束.
+ *
+ * @param <T> 请求结果类型
+ */
+final class RetryingExchange<T> extends BasicFuture<T> {
+    private final ClassicHttpRequest request;
+    private final RetryPolicy retryPolicy;
+    private final HedgePolicy hedgePolicy;
+    private final String endpoint;
+    private final HedgeTarget hedgeTarget;
+    private final Call<T> call;
+    private final Set<Attempt> inFlight = new HashSet<>();
+    private int attempts;
+    private boolean hedged;
+    private ScheduledFuture<?> retryTimer;
+    private ScheduledFuture<?> hedgeTimer;
+
+    private RetryingExchange(final ClassicHttpRequest request, final RetryPolicy retryPolicy,
+                             final HedgePolicy hedgePolicy, final String endpoint, final HedgeTarget hedgeTarget,
+                             final FutureCallback<T> callback, final Call<T> call) {
+        super(callback);
+        this.request = request;
+        this.retryPolicy = retryPolicy;
+        this.hedgePolicy = hedgePolicy;
+        this.endpoint = endpoint;
+        this.hedgeTarget = hedgeTarget;
+        this.call = call;
+    }
+
+    /**
+     * 发出第一次尝试，同步抛出的异常直接传递给调用方.
+     *
+     * @param retryPolicy 重试策略，为null时不重试
+     * @param hedgePolicy 对冲策略，为null时不对冲
+     * @param endpoint    请求的端点标识，用于统计对冲延迟
+     * @param hedgeTarget 获得对冲请求的地址
+     * @param request     the request
+     * @param callback    FutureCallback
+     * @param call        真正执行一次尝试
+     * @param <T>         请求结果类型
+     * @return 请求结果
+     * @throws IOException IOException
+     */
+    static <T> Future<T> execute(final RetryPolicy retryPolicy, final HedgePolicy hedgePolicy, final String endpoint,
+                                 final HedgeTarget hedgeTarget, final ClassicHttpRequest request,
+                                 final FutureCallback<T> callback, final Call<T> call) throws IOException {
+        final RetryingExchange<T> exchange = new RetryingExchange<>(request, retryPolicy, hedgePolicy, endpoint,
+                hedgeTarget, callback, call);
+        try {
+            exchange.send(exchange.attempt(false));
+        } catch (IOException | RuntimeException ex) {
+            exchange.abort();
+            throw ex;
+        }
+        if (hedgePolicy != null) {
+            exchange.schedule(true, hedgePolicy.delayNanos(endpoint), TimeUnit.NANOSECONDS);
+        }
+        return exchange;
+    }
+
+    private Attempt attempt(final boolean hedge) throws IOException {
+        final Attempt attempt;
+        try {
+            attempt = new Attempt(request, hedge ? hedgeTarget.resolve(request) : request.getUri());
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+        synchronized (this) {
+            if (!hedge) {
+                attempts++;
+            }
+            inFlight.add(attempt);
+        }
+        return attempt;
+    }
+
+    private void send(final Attempt attempt) throws IOException {
+        attempt.startNanos = System.nanoTime();
+        attempt.bind(call.execute(attempt, new FutureCallback<T>() {
+            @Override
+            public void completed(final T result) {
+                finished(attempt, result, null);
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                finished(attempt, null, ex);
+            }
+
+            @Override
+            public void cancelled() {
+                finished(attempt, null, new CancellationException());
+            }
+        }));
+    }
+
+    private void schedule(final boolean hedge, final long delay, final TimeUnit unit) {
+        final ScheduledFuture<?> timer = CompletableExchange.Scheduler.INSTANCE.schedule(hedge ? this::hedge
+                : this::retry, delay, unit);
+        synchronized (this) {
+            if (isDone()) {
+                timer.cancel(false);
+            } else if (hedge) {
+                hedgeTimer = timer;
+            } else {
+                retryTimer = timer;
+            }
+        }
+    }
+
+    private void retry() {
+        resend(false);
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            if (hedged || inFlight.isEmpty()) {
+                return;
+            }
+            hedged = true;
+        }
+        resend(true);
+    }
+
+    private void resend(final boolean hedge) {
+        if (isDone()) {
+            return;
+        }
+        Attempt attempt = null;
+        try {
+            attempt = attempt(hedge);
+            send(attempt);
+        } catch (IOException | RuntimeException ex) {
+            if (attempt != null) {
+                finished(attempt, null, ex);
+            } else if (!hedge) {
+                failed(ex);
+            }
+        }
+    }
+
+    private void finished(final Attempt attempt, final T result, final Exception ex) {
+        final boolean cancelled = ex instanceof CancellationException;
+        final HttpResponse response = attempt.response;
+        final boolean retryable = retryPolicy != null && !cancelled && (ex != null && retryPolicy.isRetryable(ex)
+                || response != null && retryPolicy.isRetryable(response.getCode()));
+        final List<Attempt> losers;
+        long backoffMillis = -1;
+        synchronized (this) {
+            if (!inFlight.remove(attempt) || isDone()) {
+                return;
+            } else if (!cancelled && ex == null && !retryable) {
+                losers = cancelAll();
+            } else if (!inFlight.isEmpty()) {
+                return;
+            } else {
+                losers = null;
+                if (retryable) {
+                    backoffMillis = retryPolicy.backoffMillis(attempts,
+                            response != null ? RetryPolicy.retryAfterMillis(response) : -1);
+                }
+            }
+        }
+        if (losers != null) {
+            if (hedgePolicy != null) {
+                hedgePolicy.record(endpoint, System.nanoTime() - attempt.startNanos);
+            }
+            completed(result);
+            losers.forEach(Attempt::abort);
+        } else if (backoffMillis >= 0) {
+            schedule(false, backoffMillis, TimeUnit.MILLISECONDS);
+        } else if (cancelled) {
+            cancel();
+        } else if (ex != null) {
+            failed(ex);
+        } else {
+            completed(result);
+        }
+    }
+
+    private List<Attempt> cancelAll() {
+        final List<Attempt> all = new ArrayList<>(inFlight);
+        inFlight.clear();
+        if (retryTimer != null) {
+            retryTimer.cancel(false);
+        }
+        if (hedgeTimer != null) {
+            hedgeTimer.cancel(false);
+        }
+        return all;
+    }
+
+    private void abort() {
+        final List<Attempt> all;
+        synchronized (this) {
+            all = cancelAll();
+        }
+        all.forEach(Attempt::abort);
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (super.cancel(mayInterruptIfRunning)) {
+            abort();
+            return true;
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+        Future<T> execute(ClassicHttpRequest request, FutureCallback<T> callback) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface HedgeTarget {
+        URI resolve(ClassicHttpRequest request) throws URISyntaxException;
+    }
+
+    /**
+     * 一次尝试发出的请求，是原请求的副本. 收到响应头时记录下来，用于判断是否需要重试以及解析Retry-After.
+     */
+    private static final class Attempt extends BasicClassicHttpRequest implements ResponseAware {
+        private static final long serialVersionUID = 1L;
+
+        private transient volatile HttpResponse response;
+        private transient volatile Future<?> future;
+        private transient volatile boolean aborted;
+        private transient volatile long startNanos;
+
+        private Attempt(final ClassicHttpRequest original, final URI uri) {
+            super(original.getMethod(), uri);
+            setVersion(original.getVersion());
+            setHeaders(original.getHeaders());
+            setEntity(original.getEntity());
+        }
+
+        @Override
+        public void responded(final HttpResponse httpResponse) {
+            this.response = httpResponse;
+        }
+
+        private void bind(final Future<?> exchange) {
+            this.future = exchange;
+            if (aborted) {
+                exchange.cancel(true);
+            }
+        }
+
+        private void abort() {
+            aborted = true;
+            final Future<?> exchange = future;
+            if (exchange != null) {
+                exchange.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 合并相同的进行中请求：同一个key同时只有一个请求真正发出，其余调用方等待并共享它的结果.
+ * 异步请求的每个调用方拥有各自的Future，只有全部调用方都取消后才会中止真正发出的请求.
+ */
+final class SingleFlight {
+    private final ConcurrentMap<Object, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 以阻塞的方式执行请求，相同key的请求正在执行时直接等待它的结果.
+     *
+     * @param key         合并请求的key
+     * @param onCoalesced 请求被合并时的回调
+     * @param call        真正执行请求
+     * @param <T>         请求结果类型
+     * @return 请求结果
+     * @throws IOException  IOException
+     * @throws ApiException api处理异常
+     */
+    <T> T execute(final Object key, final Runnable onCoalesced, final Call<T> call) throws IOException, ApiException {
+        while (true) {
+            final Flight<T> flight = new Flight<>(key);
+            final Flight<T> existing = putIfAbsent(key, flight);
+            if (existing == null) {
+                try {
+                    final T result = call.call();
+                    flight.completed(result);
+                    return result;
+                } catch (Throwable ex) {
+                    flight.fail(ex);
+                    throw ex;
+                }
+            } else if (existing.enter()) {
+                onCoalesced.run();
+                return existing.await();
+            }
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * 以异步的方式执行请求，相同key的请求正在执行时直接等待它的结果.
+     *
+     * @param key         合并请求的key
+     * @param onCoalesced 请求被合并时的回调
+     * @param callback    调用方的FutureCallback
+     * @param call        真正执行请求
+     * @param <T>         请求结果类型
+     * @return 调用方各自的Future
+     * @throws IOException IOException
+     */
+    <T> Future<T> execute(final Object key, final Runnable onCoalesced, final FutureCallback<T> callback,
+                          final AsyncCall<T> call) throws IOException {
+        while (true) {
+            final Flight<T> flight = new Flight<>(key);
+            final Flight<T> existing = putIfAbsent(key, flight);
+            if (existing == null) {
+                try {
+                    flight.start(call.execute(flight));
+                } catch (IOException | RuntimeException ex) {
+                    flights.remove(key, flight);
+                    flight.completeExceptionally(ex);
+                    throw ex;
+                }
+                return flight.attach(callback);
+            } else if (existing.enter()) {
+                onCoalesced.run();
+                return existing.attach(callback);
+            }
+            flights.remove(key, existing);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Flight<T> putIfAbsent(final Object key, final Flight<T> flight) {
+        return (Flight<T>) flights.putIfAbsent(key, flight);
+    }
+
+    /**
+     * 获得正在执行的请求数.
+     *
+     * @return 正在执行的请求数
+     */
+    int size() {
+        return flights.size();
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+        T call() throws IOException, ApiException;
+    }
+
+    @FunctionalInterface
+    interface AsyncCall<T> {
+        Future<T> execute(FutureCallback<T> callback) throws IOException;
+    }
+
+    /**
+     * 一个真正发出的请求，以及等待它的调用方.
+     */
+    private final class Flight<T> extends CompletableFuture<T> implements FutureCallback<T> {
+        private final Object key;
+        private int waiters = 1;
+        private boolean abandoned;
+        private Future<T> upstream;
+
+        private Flight(final Object key) {
+            this.key = key;
+        }
+
+        private synchronized boolean enter() {
+            if (abandoned || isDone()) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        private synchronized void start(final Future<T> future) {
+            this.upstream = future;
+        }
+
+        private void leave() {
+            final Future<T> future;
+            synchronized (this) {
+                if (--waiters > 0 || isDone()) {
+                    return;
+                }
+                abandoned = true;
+                future = upstream;
+            }
+            flights.remove(key, this);
+            future.cancel(true);
+        }
+
+        private Future<T> attach(final FutureCallback<T> callback) {
+            final Waiter<T> waiter = new Waiter<>(this, callback);
+            whenComplete((result, ex) -> {
+                if (ex == null) {
+                    waiter.completed(result);
+                } else if (ex instanceof CancellationException) {
+                    waiter.cancel();
+                } else {
+                    waiter.failed(ex instanceof Exception ? (Exception) ex : new ApiException(ex));
+                }
+            });
+            return waiter;
+        }
+
+        private T await() throws IOException, ApiException {
+            try {
+                return get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw (InterruptedIOException) new InterruptedIOException("interrupted").initCause(ex);
+            } catch (ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof ApiException) {
+                    throw (ApiException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ApiException(cause);
+            }
+        }
+
+        private void fail(final Throwable ex) {
+            flights.remove(key, this);
+            completeExceptionally(ex);
+        }
+
+        @Override
+        public void completed(final T result) {
+            flights.remove(key, this);
+            complete(result);
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            fail(ex);
+        }
+
+        @Override
+        public void cancelled() {
+            flights.remove(key, this);
+            cancel(false);
+        }
+    }
+
+    /**
+     * 调用方各自的Future，取消时只是不再等待，最后一个调用方取消时才中止真正发出的请求.
+     */
+    private static final class Waiter<T> extends BasicFuture<T> {
+        private final Flight<T> flight;
+
+        private Waiter(final Flight<T> flight, final FutureCallback<T> callback) {
+            super(callback);
+            this.flight = flight;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (super.cancel(mayInterruptIfRunning)) {
+                flight.leave();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 以Reactive Streams的方式发布流式请求的数据帧. 每次订阅都会发起一次新的请求，订阅者通过request(n)表达的需求
+ * 会映射到HTTP的流量控制上：只有在已接收的数据帧全部交付、并且订阅者还有需求时，才会继续从连接上读取下一个窗口的数据.
+ * 取消订阅会取消底层的请求.
+ *
+ * @param <T> 数据帧类型
+ */
+final class StreamPublisher<T> implements Publisher<T> {
+    private final Exchange<T> exchange;
+    private final int window;
+
+    private StreamPublisher(final Exchange<T> exchange, final int window) {
+        this.exchange = exchange;
+        this.window = window;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        notNull(subscriber, "subscriber is null");
+        final StreamSubscription subscription = new StreamSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    /**
+     * 发起流式请求.
+     *
+     * @param <T> 数据帧类型
+     */
+    @FunctionalInterface
+    interface Exchange<T> {
+        /**
+         * 发起流式请求.
+         *
+         * @param streamCallback 接收数据帧的回调
+         * @param wrapper        对响应消费者进行包装，以接管流量控制
+         * @param callback       请求结束时的回调
+         * @return Future
+         * @throws IOException IOException
+         */
+        Future<Void> execute(StreamCallback<T> streamCallback, ConsumerWrapper wrapper,
+                             FutureCallback<Void> callback) throws IOException;
+    }
+
+    /**
+     * 对响应消费者进行包装.
+     */
+    @FunctionalInterface
+    interface ConsumerWrapper {
+        /**
+         * 包装响应消费者.
+         *
+         * @param consumer 原始的响应消费者
+         * @return 包装后的响应消费者
+         */
+        AsyncResponseConsumer<Void> wrap(AsyncResponseConsumer<Void> consumer);
+    }
+
+    private final class StreamSubscription implements Subscription, StreamCallback<T>, FutureCallback<Void> {
+        private final Subscriber<? super T> subscriber;
+        private final Queue<T> frames = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicReference<CapacityChannel> refCapacityChannel = new AtomicReference<>();
+        private final AtomicReference<Future<Void>> refFuture = new AtomicReference<>();
+        private volatile boolean done;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean terminated;
+
+        private StreamSubscription(final Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void start() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                final Future<Void> future = exchange.execute(this, this::wrap, this);
+                refFuture.set(future);
+                if (cancelled) {
+                    future.cancel(true);
+                }
+            } catch (Exception e) {
+                failed(e);
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                failed(new IllegalArgumentException("non-positive request signals are illegal: " + n));
+                cancel();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                final Future<Void> future = refFuture.get();
+                if (future != null) {
+                    future.cancel(true);
+                }
+                drain();
+            }
+        }
+
+        @Override
+        public void stream(final ContentType contentType, final T result) {
+            frames.offer(result);
+            drain();
+        }
+
+        @Override
+        public void completed(final Void result) {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            if (error == null) {
+                error = ex;
+            }
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void cancelled() {
+            failed(new CancellationException("exchange cancelled"));
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    frames.clear();
+                } else if (!terminated) {
+                    emit();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            T frame;
+            while (!cancelled && demand.get() > 0 && (frame = frames.poll()) != null) {
+                demand.decrementAndGet();
+                try {
+                    subscriber.onNext(frame);
+                } catch (Throwable e) {
+                    cancel();
+                    return;
+                }
+            }
+            if (cancelled) {
+                return;
+            } else if (error != null) {
+                // 出现异常时丢弃尚未交付的数据帧
+                terminated = true;
+                frames.clear();
+                subscriber.onError(error);
+            } else if (done && frames.isEmpty()) {
+                terminated = true;
+                subscriber.onComplete();
+            } else {
+                releaseCapacity();
+            }
+        }
+
+        private void releaseCapacity() {
+            if (frames.isEmpty() && demand.get() > 0) {
+                final CapacityChannel capacityChannel = refCapacityChannel.getAndSet(null);
+                if (capacityChannel != null) {
+                    try {
+                        capacityChannel.update(window);
+                    } catch (IOException e) {
+                        failed(e);
+                    }
+                }
+            }
+        }
+
+        private AsyncResponseConsumer<Void> wrap(final AsyncResponseConsumer<Void> consumer) {
+            return new AsyncResponseConsumerWrapper<Void>(consumer) {
+                @Override
+                public void updateCapacity(final CapacityChannel capacityChannel) {
+                    refCapacityChannel.set(capacityChannel);
+                    // 订阅者可能已经消费完所有数据帧
+                    drain();
+                }
+
+                @Override
+                public void releaseResources() {
+                    refCapacityChannel.set(null);
+                    super.releaseResources();
+                }
+            };
+        }
+    }
+
+    static <T> StreamPublisher<T> create(final Exchange<T> exchange, final int window) {
+        return new StreamPublisher<>(notNull(exchange, "exchange is null"), window);
+    }
+}
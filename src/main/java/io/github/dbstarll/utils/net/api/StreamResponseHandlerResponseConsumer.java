@@ -1,8 +1,11 @@
 package io.github.dbstarll.utils.net.api;
 
 import io.github.dbstarll.utils.net.api.index.Index;
+import io.github.dbstarll.utils.net.api.index.IndexParser;
+import org.apache.hc.client5.http.HttpResponseException;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 
 import java.io.IOException;
@@ -10,21 +13,39 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.apache.commons.lang3.Validate.notNull;
+
 final class StreamResponseHandlerResponseConsumer<T, I extends Index<T>> extends
         AbstractResponseHandlerResponseConsumer<I, Void> {
+    private static final int MIN_WINDOW = 256;
+
     private final StreamCallback<T> callback;
-    private final AtomicReference<StringBuilder> refStringBuilder = new AtomicReference<>();
+    private final IndexParser<I> parser;
+    private final boolean alwaysProcessEntity;
+    private final AtomicReference<CharFrameBuffer> refBuffer = new AtomicReference<>();
+    private final AtomicReference<HttpResponseException> refStatusException = new AtomicReference<>();
+    private int scanPosition;
+    private int frameSize;
 
     private StreamResponseHandlerResponseConsumer(final HttpClientResponseHandler<I> responseHandler,
+                                                  final IndexParser<I> parser, final boolean alwaysProcessEntity,
                                                   final Charset charset, final StreamCallback<T> callback) {
         super(responseHandler, charset);
         this.callback = callback;
+        this.parser = parser;
+        this.alwaysProcessEntity = alwaysProcessEntity;
     }
 
     @Override
     protected void start(final HttpResponse response, final ContentType contentType) {
         super.start(response, contentType);
-        this.refStringBuilder.set(new StringBuilder());
+        this.refBuffer.set(new CharFrameBuffer());
+        if (parser != null && !alwaysProcessEntity && response.getCode() >= HttpStatus.SC_REDIRECTION) {
+            this.refStatusException.set(new HttpResponseException(response.getCode(),
+                    response.getReasonPhrase()));
+        }
+        this.scanPosition = 0;
+        this.frameSize = 0;
     }
 
     @Override
@@ -32,32 +53,75 @@ final class StreamResponseHandlerResponseConsumer<T, I extends Index<T>> extends
         return null;
     }
 
+    /**
+     * IndexParser从扫描位置继续查找数据帧的边界. responseHandler只能从头解析交给它的内容，因此不再每一帧都交出全部剩余数据，
+     * 而是交出一个窗口：窗口内没有完整的数据帧时，记下已确认的位置并把窗口加倍，直到找到数据帧或者窗口覆盖全部数据.
+     * 窗口的边界与数据块的边界一样，不影响解析的结果，每一帧复制的数据只与帧的长度相当.
+     */
     @Override
     protected void data(final CharBuffer src, final boolean endOfStream) throws IOException {
-        final StringBuilder builder = refStringBuilder.get().append(src);
-        while (builder.length() > 0) {
-            final I result = handleResponse(builder.toString(), endOfStream);
+        final HttpResponseException statusException = refStatusException.get();
+        if (statusException != null) {
+            throw statusException;
+        }
+
+        final CharFrameBuffer buffer = refBuffer.get();
+        buffer.append(src);
+        while (buffer.length() > 0) {
+            final int length = buffer.length();
+            final int window = parser != null ? length
+                    : Math.min(length, Math.max(MIN_WINDOW, Math.max(scanPosition, frameSize) << 1));
+            final I result = nextFrame(buffer, window, endOfStream && window == length);
             if (result == null) {
-                break;
+                scanPosition = window;
+                if (window == length) {
+                    break;
+                }
             } else {
                 final int index = result.getIndex();
-                builder.delete(0, index > 0 ? index : builder.length());
+                frameSize = index > 0 ? index : window;
+                buffer.consume(frameSize);
+                scanPosition = 0;
                 final T data = result.getData();
                 if (data != null) {
-                    callback.stream(refContentType.get(), result.getData());
+                    callback.stream(refContentType.get(), data);
                 }
             }
         }
     }
 
+    private I nextFrame(final CharFrameBuffer buffer, final int window, final boolean endOfStream)
+            throws IOException {
+        if (parser != null) {
+            return parser.parse(refContentType.get(), buffer, 0, scanPosition, endOfStream);
+        } else {
+            return handleResponse(buffer.subSequence(0, window).toString(), endOfStream);
+        }
+    }
+
     @Override
     public void releaseResources() {
         super.releaseResources();
-        this.refStringBuilder.set(null);
+        this.refBuffer.set(null);
+        this.refStatusException.set(null);
     }
 
+    /**
+     * 通过HttpClientResponseHandler来解析数据帧，每一帧都会构造一个ClassicHttpResponse，仅用于兼容.
+     */
     static <T, I extends Index<T>> StreamResponseHandlerResponseConsumer<T, I> create(
             final HttpClientResponseHandler<I> handler, final Charset charset, final StreamCallback<T> callback) {
-        return new StreamResponseHandlerResponseConsumer<>(handler, charset, callback);
+        return new StreamResponseHandlerResponseConsumer<>(notNull(handler, "handler is null"), null, false,
+                charset, callback);
+    }
+
+    /**
+     * 直接通过IndexParser来解析数据帧.
+     */
+    static <T, I extends Index<T>> StreamResponseHandlerResponseConsumer<T, I> create(
+            final IndexParser<I> parser, final boolean alwaysProcessEntity, final Charset charset,
+            final StreamCallback<T> callback) {
+        return new StreamResponseHandlerResponseConsumer<>(null, notNull(parser, "parser is null"),
+                alwaysProcessEntity, charset, callback);
     }
 }
@@ -0,0 +1,401 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.net.api.limit.Limiter;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 按限流key为请求分配许可. 无法立即获得许可的请求按顺序排队，在许可被释放或令牌生成时依次放行，
+ * 排队期间不占用调用方的线程；fail-fast模式下则直接以{@link ApiLimitException}结束.
+ */
+final class Throttle {
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Function<String, Limiter> limiterFactory;
+    private final boolean failFast;
+
+    private Throttle(final Function<String, Limiter> limiterFactory, final boolean failFast) {
+        this.limiterFactory = limiterFactory;
+        this.failFast = failFast;
+    }
+
+    /**
+     * 申请许可.
+     *
+     * @param key 限流key
+     * @return 获得许可时完成，取消后不再排队
+     */
+    CompletableFuture<Permit> acquire(final String key) {
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lane = lanes.computeIfAbsent(key, Lane::new);
+        }
+        return lane.acquire();
+    }
+
+    /**
+     * 收到响应头时释放许可，429和503视为被上游限流，其余5xx视为上游故障.
+     * {@link #held(Permit)}的许可只记录结果，到{@link #completed(Permit)}时才释放.
+     *
+     * @param permit     许可
+     * @param status     响应状态码
+     * @param startNanos 发出请求的时间
+     */
+    static void responded(final Permit permit, final int status, final long startNanos) {
+        if (permit instanceof Both) {
+            responded(((Both) permit).first, status, startNanos);
+            responded(((Both) permit).second, status, startNanos);
+        } else if (permit instanceof Held) {
+            ((Held) permit).responded(status, System.nanoTime() - startNanos);
+        } else {
+            release(permit, status, System.nanoTime() - startNanos);
+        }
+    }
+
+    private static void release(final Permit permit, final int status, final long latencyNanos) {
+        if (status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            permit.dropped();
+        } else if (status >= HttpStatus.SC_SERVER_ERROR) {
+            permit.failed();
+        } else {
+            permit.success(latencyNanos);
+        }
+    }
+
+    /**
+     * 交换正常结束时释放许可，{@link #held(Permit)}的许可按收到响应头时记录的结果释放，其余许可已经释放过.
+     *
+     * @param permit 许可
+     */
+    static void completed(final Permit permit) {
+        if (permit instanceof Both) {
+            completed(((Both) permit).first);
+            completed(((Both) permit).second);
+        } else if (permit instanceof Held) {
+            ((Held) permit).completed();
+        } else {
+            permit.ignore();
+        }
+    }
+
+    /**
+     * 请求失败时释放许可，超时视为上游过载，连接失败等网络异常视为上游故障.
+     *
+     * @param permit 许可
+     * @param ex     失败的原因
+     */
+    static void failed(final Permit permit, final Throwable ex) {
+        if (ex instanceof HttpResponseException) {
+            final int status = ((HttpResponseException) ex).getStatusCode();
+            if (status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                permit.dropped();
+                return;
+            } else if (status >= HttpStatus.SC_SERVER_ERROR) {
+                permit.failed();
+                return;
+            }
+        } else if (ex instanceof TimeoutException
+                || ex instanceof InterruptedIOException && ex.getClass() != InterruptedIOException.class) {
+            permit.dropped();
+            return;
+        } else if (ex instanceof IOException && !(ex instanceof ClientProtocolException)
+                && ex.getClass() != InterruptedIOException.class) {
+            permit.failed();
+            return;
+        }
+        permit.ignore();
+    }
+
+    /**
+     * 在已经获得的许可之外，再排队等待限流的许可. 取消返回的Future时同时退出限流的排队.
+     *
+     * @param guard   已经获得的许可
+     * @param limited 限流的许可
+     * @return 两个许可都获得时完成
+     */
+    static CompletableFuture<Permit> combine(final Permit guard, final CompletableFuture<Permit> limited) {
+        final CompletableFuture<Permit> combined = new CompletableFuture<Permit>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                limited.cancel(false);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        limited.whenComplete((permit, ex) -> {
+            if (ex != null) {
+                guard.ignore();
+                combined.completeExceptionally(ex);
+            } else if (!combined.complete(both(guard, permit))) {
+                guard.ignore();
+                permit.ignore();
+            }
+        });
+        return combined;
+    }
+
+    /**
+     * 把两个许可合并为一个许可，结束时同时结束两个许可.
+     *
+     * @param first  许可，可以为null
+     * @param second 许可，可以为null
+     * @return 合并后的许可，两个许可都为null时返回null
+     */
+    static Permit both(final Permit first, final Permit second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return new Both(first, second);
+    }
+
+    /**
+     * 包装直到交换结束才释放的许可，例如舱壁的名额：响应体仍在传输的请求依然占用上游的资源.
+     *
+     * @param permit 许可
+     * @return 收到响应头时不释放的许可
+     */
+    static Permit held(final Permit permit) {
+        return new Held(permit);
+    }
+
+    /**
+     * 同时结束的两个许可.
+     */
+    private static final class Both implements Permit {
+        private final Permit first;
+        private final Permit second;
+
+        private Both(final Permit first, final Permit second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void success(final long latencyNanos) {
+            first.success(latencyNanos);
+            second.success(latencyNanos);
+        }
+
+        @Override
+        public void dropped() {
+            first.dropped();
+            second.dropped();
+        }
+
+        @Override
+        public void failed() {
+            first.failed();
+            second.failed();
+        }
+
+        @Override
+        public void ignore() {
+            first.ignore();
+            second.ignore();
+        }
+    }
+
+    /**
+     * 收到响应头时只记录结果，交换结束时才释放的许可. 响应体传输中失败时按失败的原因释放.
+     */
+    private static final class Held implements Permit {
+        private final Permit permit;
+        private volatile long latencyNanos;
+        private volatile int status;
+
+        private Held(final Permit permit) {
+            this.permit = permit;
+        }
+
+        private void responded(final int responseStatus, final long latency) {
+            this.latencyNanos = latency;
+            this.status = responseStatus;
+        }
+
+        private void completed() {
+            final int responseStatus = status;
+            if (responseStatus == 0) {
+                permit.ignore();
+            } else {
+                release(permit, responseStatus, latencyNanos);
+            }
+        }
+
+        @Override
+        public void success(final long latency) {
+            permit.success(latency);
+        }
+
+        @Override
+        public void dropped() {
+            permit.dropped();
+        }
+
+        @Override
+        public void failed() {
+            permit.failed();
+        }
+
+        @Override
+        public void ignore() {
+            permit.ignore();
+        }
+    }
+
+    /**
+     * 单个限流key的排队.
+     */
+    private final class Lane {
+        private final String key;
+        private final Limiter limiter;
+        private final Queue<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private int inFlight;
+        private boolean timerScheduled;
+
+        private Lane(final String key) {
+            this.key = key;
+            this.limiter = limiterFactory.apply(key);
+        }
+
+        private CompletableFuture<Permit> acquire() {
+            final CompletableFuture<Permit> future = new CompletableFuture<>();
+            synchronized (this) {
+                if (waiters.isEmpty()) {
+                    final Permit permit = limiter.tryAcquire();
+                    if (permit != null) {
+                        inFlight++;
+                        future.complete(new LanePermit(permit));
+                        return future;
+                    }
+                }
+                if (!failFast) {
+                    waiters.add(future);
+                    scheduleIfNeeded();
+                    return future;
+                }
+            }
+            future.completeExceptionally(new ApiLimitException(key));
+            return future;
+        }
+
+        private void drain() {
+            final List<CompletableFuture<Permit>> granted = new ArrayList<>();
+            final List<LanePermit> permits = new ArrayList<>();
+            synchronized (this) {
+                CompletableFuture<Permit> waiter;
+                while ((waiter = waiters.peek()) != null) {
+                    if (waiter.isDone()) {
+                        waiters.poll();
+                        continue;
+                    }
+                    final Permit permit = limiter.tryAcquire();
+                    if (permit == null) {
+                        scheduleIfNeeded();
+                        break;
+                    }
+                    waiters.poll();
+                    inFlight++;
+                    granted.add(waiter);
+                    permits.add(new LanePermit(permit));
+                }
+            }
+            for (int i = 0; i < granted.size(); i++) {
+                if (!granted.get(i).complete(permits.get(i))) {
+                    permits.get(i).ignore();
+                }
+            }
+        }
+
+        private void scheduleIfNeeded() {
+            if (timerScheduled) {
+                return;
+            }
+            long waitNanos = limiter.waitNanos();
+            if (waitNanos <= 0) {
+                if (inFlight > 0) {
+                    return;
+                }
+                waitNanos = 1;
+            }
+            timerScheduled = true;
+            CompletableExchange.Scheduler.INSTANCE.schedule(() -> {
+                synchronized (this) {
+                    timerScheduled = false;
+                }
+                drain();
+            }, waitNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void released() {
+            inFlight--;
+        }
+
+        /**
+         * 释放时唤醒排队的请求，保证只释放一次.
+         */
+        private final class LanePermit extends AtomicBoolean implements Permit {
+            private static final long serialVersionUID = 1L;
+
+            private final Permit permit;
+
+            private LanePermit(final Permit permit) {
+                this.permit = permit;
+            }
+
+            @Override
+            public void success(final long latencyNanos) {
+                if (compareAndSet(false, true)) {
+                    permit.success(latencyNanos);
+                    release();
+                }
+            }
+
+            @Override
+            public void dropped() {
+                if (compareAndSet(false, true)) {
+                    permit.dropped();
+                    release();
+                }
+            }
+
+            @Override
+            public void failed() {
+                if (compareAndSet(false, true)) {
+                    permit.failed();
+                    release();
+                }
+            }
+
+            @Override
+            public void ignore() {
+                if (compareAndSet(false, true)) {
+                    permit.ignore();
+                    release();
+                }
+            }
+
+            private void release() {
+                released();
+                drain();
+            }
+        }
+    }
+
+    static Throttle create(final Function<String, Limiter> limiterFactory, final boolean failFast) {
+        return new Throttle(limiterFactory, failFast);
+    }
+}
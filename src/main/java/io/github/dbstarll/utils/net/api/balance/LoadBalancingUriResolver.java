@@ -0,0 +1,275 @@
+package io.github.dbstarll.utils.net.api.balance;
+
+import io.github.dbstarll.utils.http.client.request.RelativeUriResolver;
+import io.github.dbstarll.utils.http.client.request.UriResolver;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 在多个上游副本之间分配请求的UriResolver. 每次解析都按选择策略挑选一个副本，
+ * 再以该副本的地址作为基础地址解析路径，解析规则与{@link RelativeUriResolver}相同.
+ * 通过{@link #track(HttpRequest)}被动地跟踪每个副本的请求结果，连续失败达到failuresToEject次的副本
+ * 在ejectDuration内不再被选中；全部副本都被摘除时，仍在全部副本之间选择.
+ */
+public final class LoadBalancingUriResolver implements UriResolver {
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final List<Endpoint> endpoints;
+    private final Strategy strategy;
+    private final int failuresToEject;
+    private final long ejectNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * 构建LoadBalancingUriResolver.
+     *
+     * @param strategy        选择策略
+     * @param failuresToEject 连续失败多少次之后摘除副本
+     * @param ejectDuration   摘除的时长
+     * @param baseUris        全部副本的基础地址
+     */
+    public LoadBalancingUriResolver(final Strategy strategy, final int failuresToEject,
+                                    final TimeValue ejectDuration, final String... baseUris) {
+        this.strategy = notNull(strategy, "strategy is null");
+        isTrue(failuresToEject > 0, "failuresToEject must be positive: %d", failuresToEject);
+        this.failuresToEject = failuresToEject;
+        this.ejectNanos = notNull(ejectDuration, "ejectDuration is null").toNanoseconds();
+        noNullElements(notEmpty(baseUris, "baseUris is empty"), "baseUris contains null");
+        final List<Endpoint> list = new ArrayList<>(baseUris.length);
+        for (String baseUri : baseUris) {
+            list.add(new Endpoint(baseUri));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public URI resolve(final String path) {
+        return select(null).resolver.resolve(path);
+    }
+
+    /**
+     * 避开请求所在的副本解析路径，例如为对冲请求选择另一个副本. 没有其它可选的副本时仍可能选中请求所在的副本.
+     *
+     * @param path    路径
+     * @param request 需要避开其副本的请求
+     * @return 解析后的地址
+     */
+    public URI resolveExcluding(final String path, final HttpRequest request) {
+        return select(key(request.getScheme(), String.valueOf(request.getAuthority()))).resolver.resolve(path);
+    }
+
+    /**
+     * 开始跟踪一次请求，请求结束时通过返回的许可报告结果.
+     *
+     * @param request the request
+     * @return 跟踪请求结果的许可，请求的地址不属于任何副本时返回null
+     */
+    public Permit track(final HttpRequest request) {
+        final String key = key(request.getScheme(), String.valueOf(request.getAuthority()));
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.key.equals(key)) {
+                return endpoint.start();
+            }
+        }
+        return null;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    private Endpoint select(final String excludedKey) {
+        final long now = System.nanoTime();
+        final List<Endpoint> healthy = new ArrayList<>(endpoints.size());
+        final List<Endpoint> others = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.isEjected(now)) {
+                healthy.add(endpoint);
+                if (!endpoint.key.equals(excludedKey)) {
+                    others.add(endpoint);
+                }
+            }
+        }
+        final List<Endpoint> candidates = !others.isEmpty() ? others : healthy.isEmpty() ? endpoints : healthy;
+        final int size = candidates.size();
+        final int start = Math.floorMod(next.getAndIncrement(), size);
+        switch (strategy) {
+            case LEAST_OUTSTANDING:
+                Endpoint least = candidates.get(start);
+                for (int i = 1; i < size; i++) {
+                    final Endpoint endpoint = candidates.get((start + i) % size);
+                    if (endpoint.outstanding.get() < least.outstanding.get()) {
+                        least = endpoint;
+                    }
+                }
+                return least;
+            case POWER_OF_TWO_CHOICES:
+                if (size == 1) {
+                    return candidates.get(0);
+                }
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                final int first = random.nextInt(size);
+                final int second = (first + 1 + random.nextInt(size - 1)) % size;
+                final Endpoint a = candidates.get(first);
+                final Endpoint b = candidates.get(second);
+                return a.score() <= b.score() ? a : b;
+            default:
+                return candidates.get(start);
+        }
+    }
+
+    private static String key(final String scheme, final String authority) {
+        return (scheme + "://" + authority).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 副本的选择策略.
+     */
+    public enum Strategy {
+        /**
+         * 依次轮流选择.
+         */
+        ROUND_ROBIN,
+        /**
+         * 选择进行中请求最少的副本.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * 随机挑选两个副本，选择平均响应时间与进行中请求数的乘积较小的一个.
+         */
+        POWER_OF_TWO_CHOICES
+    }
+
+    /**
+     * 一个上游副本，以及它的请求统计和健康状态.
+     */
+    public final class Endpoint {
+        private final URI baseUri;
+        private final String key;
+        private final UriResolver resolver;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double latencyNanos;
+        private int consecutiveFailures;
+        private long ejectedUntil;
+        private boolean ejected;
+
+        private Endpoint(final String baseUri) {
+            this.resolver = new RelativeUriResolver(baseUri);
+            this.baseUri = resolver.resolve(null);
+            this.key = key(this.baseUri.getScheme(), this.baseUri.getRawAuthority());
+        }
+
+        public URI getBaseUri() {
+            return baseUri;
+        }
+
+        /**
+         * 获得进行中的请求数.
+         *
+         * @return 进行中的请求数
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * 获得响应时间的指数加权移动平均.
+         *
+         * @param unit 时间单位
+         * @return 平均响应时间，没有记录时返回0
+         */
+        public synchronized double getLatency(final TimeUnit unit) {
+            return latencyNanos / unit.toNanos(1);
+        }
+
+        /**
+         * 判断当前是否被摘除.
+         *
+         * @return 是否被摘除
+         */
+        public boolean isEjected() {
+            return isEjected(System.nanoTime());
+        }
+
+        private synchronized boolean isEjected(final long now) {
+            return ejected && now - ejectedUntil < 0;
+        }
+
+        private synchronized double score() {
+            return latencyNanos * (outstanding.get() + 1);
+        }
+
+        private Permit start() {
+            outstanding.incrementAndGet();
+            return new EndpointPermit(this);
+        }
+
+        private synchronized void succeeded(final long nanos) {
+            latencyNanos = latencyNanos == 0 ? nanos : latencyNanos + EWMA_WEIGHT * (nanos - latencyNanos);
+            consecutiveFailures = 0;
+            ejected = false;
+        }
+
+        private synchronized void failed() {
+            if (++consecutiveFailures >= failuresToEject) {
+                consecutiveFailures = 0;
+                ejected = true;
+                ejectedUntil = System.nanoTime() + ejectNanos;
+            }
+        }
+    }
+
+    private static final class EndpointPermit extends AtomicBoolean implements Permit {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Endpoint endpoint;
+
+        private EndpointPermit(final Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void success(final long latencyNanos) {
+            if (compareAndSet(false, true)) {
+                endpoint.outstanding.decrementAndGet();
+                endpoint.succeeded(latencyNanos);
+            }
+        }
+
+        @Override
+        public void dropped() {
+            failed();
+        }
+
+        @Override
+        public void failed() {
+            if (compareAndSet(false, true)) {
+                endpoint.outstanding.decrementAndGet();
+                endpoint.failed();
+            }
+        }
+
+        @Override
+        public void ignore() {
+            if (compareAndSet(false, true)) {
+                endpoint.outstanding.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.dbstarll.utils.net.api.cache;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 缓存的响应，包括响应头、响应体、新鲜期，以及按请求结果类缓存的解析结果.
+ * 缓存命中时会直接返回已解析的结果，调用方不应修改这些结果.
+ */
+public final class CacheEntry {
+    private final String[] headers;
+    private final byte[] body;
+    private final long storedAt;
+    private final long expiresAt;
+    private volatile ConcurrentMap<Class<?>, Object> results;
+
+    /**
+     * 构建CacheEntry.
+     *
+     * @param headers   响应头
+     * @param body      响应体
+     * @param storedAt  缓存的时间，毫秒
+     * @param expiresAt 新鲜期的截止时间，毫秒
+     */
+    public CacheEntry(final Header[] headers, final byte[] body, final long storedAt, final long expiresAt) {
+        this(flatten(notNull(headers, "headers is null")), notNull(body, "body is null"), storedAt, expiresAt, null);
+    }
+
+    private CacheEntry(final String[] headers, final byte[] body, final long storedAt, final long expiresAt,
+                       final ConcurrentMap<Class<?>, Object> results) {
+        this.headers = headers;
+        this.body = body;
+        this.storedAt = storedAt;
+        this.expiresAt = expiresAt;
+        this.results = results;
+    }
+
+    private static String[] flatten(final Header[] headers) {
+        final String[] flatten = new String[headers.length * 2];
+        for (int i = 0; i < headers.length; i++) {
+            flatten[i * 2] = headers[i].getName();
+            flatten[i * 2 + 1] = headers[i].getValue();
+        }
+        return flatten;
+    }
+
+    public Header[] getHeaders() {
+        final Header[] result = new Header[headers.length / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new BasicHeader(headers[i * 2], headers[i * 2 + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * 获得第一个指定名称的响应头的值.
+     *
+     * @param name 响应头的名称，不区分大小写
+     * @return 响应头的值，不存在时返回null
+     */
+    public String getFirstHeader(final String name) {
+        for (int i = 0; i < headers.length; i += 2) {
+            if (headers[i].equalsIgnoreCase(name)) {
+                return headers[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获得响应体，返回的是内部数组，调用方不应修改.
+     *
+     * @return 响应体
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * 判断在指定时间是否仍在新鲜期内，新鲜期内无需向服务端验证.
+     *
+     * @param now 当前时间，毫秒
+     * @return 是否仍在新鲜期内
+     */
+    public boolean isFresh(final long now) {
+        return now < expiresAt;
+    }
+
+    /**
+     * 估算占用的内存字节数. 已解析的结果无法准确计算大小，每个结果按响应体的大小估算.
+     *
+     * @return 字节数
+     */
+    public long size() {
+        final ConcurrentMap<Class<?>, Object> map = results;
+        long size = body.length * (map == null ? 1L : 1L + map.size());
+        for (String header : headers) {
+            size += header.length() * 2L;
+        }
+        return size;
+    }
+
+    /**
+     * 服务端返回304之后，用新的响应头和新鲜期构建新的CacheEntry，响应体和已解析的结果保持不变.
+     *
+     * @param updatedHeaders 304响应中的响应头，会替换同名的响应头
+     * @param now            当前时间，毫秒
+     * @param newExpiresAt   新的新鲜期截止时间，毫秒
+     * @return 新的CacheEntry
+     */
+    public CacheEntry revalidated(final Header[] updatedHeaders, final long now, final long newExpiresAt) {
+        final List<String> merged = new ArrayList<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            if (!contains(updatedHeaders, headers[i])) {
+                merged.add(headers[i]);
+                merged.add(headers[i + 1]);
+            }
+        }
+        for (Header header : updatedHeaders) {
+            merged.add(header.getName());
+            merged.add(header.getValue());
+        }
+        return new CacheEntry(merged.toArray(new String[0]), body, now, newExpiresAt, results);
+    }
+
+    private static boolean contains(final Header[] headers, final String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获得指定请求结果类已解析的结果.
+     *
+     * @param responseClass 请求结果类
+     * @param <T>           请求结果类型
+     * @return 已解析的结果，尚未解析时返回null
+     */
+    public <T> T getResult(final Class<T> responseClass) {
+        final ConcurrentMap<Class<?>, Object> map = results;
+        return map == null ? null : responseClass.cast(map.get(responseClass));
+    }
+
+    /**
+     * 保存指定请求结果类解析的结果.
+     *
+     * @param responseClass 请求结果类
+     * @param result        解析的结果，为null时不保存
+     * @param <T>           请求结果类型
+     * @return 是否新增了一个结果，新增时占用的字节数会随之增加
+     */
+    public <T> boolean putResult(final Class<T> responseClass, final T result) {
+        if (result == null) {
+            return false;
+        }
+        ConcurrentMap<Class<?>, Object> map = results;
+        if (map == null) {
+            synchronized (this) {
+                map = results;
+                if (map == null) {
+                    map = new ConcurrentHashMap<>();
+                    results = map;
+                }
+            }
+        }
+        return map.put(responseClass, result) == null;
+    }
+}
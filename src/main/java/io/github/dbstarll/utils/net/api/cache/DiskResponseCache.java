@@ -0,0 +1,243 @@
+package io.github.dbstarll.utils.net.api.cache;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.util.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 磁盘上的响应缓存，每个响应一个文件，目录的总大小超过maxBytes时先淘汰最早写入的文件.
+ * 读写失败时只记录日志并当作未命中处理，不影响请求.
+ */
+public final class DiskResponseCache implements ResponseCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskResponseCache.class);
+    private static final String SUFFIX = ".entry";
+    private static final int MAGIC = 0x48434532;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * 构建DiskResponseCache，目录中已有的缓存文件会继续使用.
+     *
+     * @param directory 缓存目录，不存在时自动创建
+     * @param maxBytes  缓存文件的最大总字节数
+     * @param ttl       缓存的最长时间
+     * @throws IOException 创建或扫描目录失败
+     */
+    public DiskResponseCache(final Path directory, final long maxBytes, final TimeValue ttl) throws IOException {
+        isTrue(maxBytes > 0, "maxBytes must be positive: %d", maxBytes);
+        this.directory = Files.createDirectories(notNull(directory, "directory is null"));
+        this.maxBytes = maxBytes;
+        this.ttlMillis = notNull(ttl, "ttl is null").toMilliseconds();
+        for (Path file : files()) {
+            bytes.addAndGet(Files.size(file));
+        }
+    }
+
+    private static byte[] digest(final String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path file(final String key) {
+        final byte[] digest = digest(key);
+        final StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return directory.resolve(name.append(SUFFIX).toString());
+    }
+
+    private List<Path> files() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        return files;
+    }
+
+    @Override
+    public CacheEntry get(final String key) {
+        final Path file = file(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final CacheEntry entry = read(in, Files.size(file), key);
+            if (entry == null) {
+                return null;
+            } else if (System.currentTimeMillis() - entry.getStoredAt() >= ttlMillis) {
+                remove(key);
+                return null;
+            }
+            return entry;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("read cache failed: {}", file, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(final String key, final CacheEntry entry) {
+        final Path file = file(key);
+        try {
+            final Path temp = Files.createTempFile(directory, null, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(out, key, entry);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            final long size = Files.size(temp);
+            final long total;
+            synchronized (this) {
+                delete(file);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                total = bytes.addAndGet(size);
+            }
+            if (total > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("write cache failed: {}", file, e);
+        }
+    }
+
+    /**
+     * 缓存文件的格式：魔数、key的SHA-256摘要、缓存时间、新鲜期截止时间、响应头的个数和每个响应头的名称与值、响应体.
+     * 字符串和响应体都以长度开头，字符串按UTF-8编码. 不使用Java序列化，读取时不会实例化文件中指定的类.
+     * key中可能带有请求头的值，文件中只保存它的摘要.
+     */
+    private static void write(final DataOutputStream out, final String key, final CacheEntry entry)
+            throws IOException {
+        out.writeInt(MAGIC);
+        writeBytes(out, digest(key));
+        out.writeLong(entry.getStoredAt());
+        out.writeLong(entry.getExpiresAt());
+        final Header[] headers = entry.getHeaders();
+        out.writeInt(headers.length);
+        for (Header header : headers) {
+            writeBytes(out, header.getName().getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, header.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        writeBytes(out, entry.getBody());
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 读取缓存文件，文件中的长度不能超过文件本身的大小，损坏的文件不会导致分配过大的内存.
+     *
+     * @return 缓存的响应，文件属于另一个key时返回null
+     */
+    private static CacheEntry read(final DataInputStream in, final long fileSize, final String key)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a cache entry");
+        } else if (!MessageDigest.isEqual(digest(key), readBytes(in, fileSize))) {
+            return null;
+        }
+        final long storedAt = in.readLong();
+        final long expiresAt = in.readLong();
+        final int count = in.readInt();
+        if (count < 0 || count > fileSize) {
+            throw new IOException("illegal header count: " + count);
+        }
+        final Header[] headers = new Header[count];
+        for (int i = 0; i < count; i++) {
+            headers[i] = new BasicHeader(new String(readBytes(in, fileSize), StandardCharsets.UTF_8),
+                    new String(readBytes(in, fileSize), StandardCharsets.UTF_8));
+        }
+        return new CacheEntry(headers, readBytes(in, fileSize), storedAt, expiresAt);
+    }
+
+    private static byte[] readBytes(final DataInputStream in, final long fileSize) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > fileSize) {
+            throw new IOException("illegal length: " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void remove(final String key) {
+        delete(file(key));
+    }
+
+    /**
+     * 删除缓存文件并扣减总字节数. 与写入时的替换互斥，同一个key的并发写入不会使总字节数偏移.
+     */
+    private synchronized void delete(final Path file) {
+        try {
+            final long size = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                bytes.addAndGet(-size);
+            }
+        } catch (NoSuchFileException e) {
+            // 已被删除
+        } catch (IOException e) {
+            LOGGER.warn("delete cache failed: {}", file, e);
+        }
+    }
+
+    private synchronized void evict() throws IOException {
+        final List<Path> files = files();
+        files.sort(Comparator.comparingLong(DiskResponseCache::lastModified));
+        for (Path file : files) {
+            if (bytes.get() <= maxBytes) {
+                break;
+            }
+            delete(file);
+        }
+    }
+
+    private static long lastModified(final Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 获得缓存文件的总字节数.
+     *
+     * @return 字节数
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.dbstarll.utils.net.api.cache;
+
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 内存中的响应缓存，按最近最少使用的顺序淘汰，缓存的总大小不超过maxBytes，其中包括按请求结果类保存的解析结果.
+ * 缓存时间超过ttl的响应也会被淘汰.
+ */
+public final class MemoryResponseCache implements ResponseCache {
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Slot> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * 构建MemoryResponseCache.
+     *
+     * @param maxBytes 缓存的最大字节数
+     * @param ttl      缓存的最长时间，超过后即使响应带有验证信息也会被淘汰
+     */
+    public MemoryResponseCache(final long maxBytes, final TimeValue ttl) {
+        isTrue(maxBytes > 0, "maxBytes must be positive: %d", maxBytes);
+        this.maxBytes = maxBytes;
+        this.ttlMillis = notNull(ttl, "ttl is null").toMilliseconds();
+    }
+
+    @Override
+    public synchronized CacheEntry get(final String key) {
+        final Slot slot = entries.get(key);
+        if (slot != null && System.currentTimeMillis() - slot.entry.getStoredAt() >= ttlMillis) {
+            remove(key);
+            return null;
+        }
+        return slot == null ? null : slot.entry;
+    }
+
+    @Override
+    public synchronized void put(final String key, final CacheEntry entry) {
+        remove(key);
+        final long size = entry.size();
+        if (size > maxBytes) {
+            return;
+        }
+        entries.put(key, new Slot(entry, size));
+        bytes += size;
+        final Iterator<Map.Entry<String, Slot>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(final String key) {
+        final Slot removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+        }
+    }
+
+    @Override
+    public synchronized void resized(final String key, final CacheEntry entry) {
+        final Slot slot = entries.get(key);
+        if (slot != null && slot.entry == entry) {
+            put(key, entry);
+        }
+    }
+
+    /**
+     * 获得缓存的响应数.
+     *
+     * @return 响应数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 获得缓存的总字节数.
+     *
+     * @return 字节数
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * 缓存的响应以及放入时计算的大小，移除时按同样的大小扣减.
+     */
+    private static final class Slot {
+        private final CacheEntry entry;
+        private final long size;
+
+        private Slot(final CacheEntry entry, final long size) {
+            this.entry = entry;
+            this.size = size;
+        }
+    }
+}
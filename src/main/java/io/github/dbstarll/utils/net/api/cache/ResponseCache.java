@@ -0,0 +1,39 @@
+package io.github.dbstarll.utils.net.api.cache;
+
+/**
+ * 缓存GET请求的响应，key由请求的URI和请求头组成.
+ */
+public interface ResponseCache {
+    /**
+     * 获得缓存的响应.
+     *
+     * @param key 缓存的key
+     * @return 缓存的响应，不存在或已被淘汰时返回null
+     */
+    CacheEntry get(String key);
+
+    /**
+     * 缓存响应，替换已有的缓存.
+     *
+     * @param key   缓存的key
+     * @param entry 缓存的响应
+     */
+    void put(String key, CacheEntry entry);
+
+    /**
+     * 移除缓存的响应.
+     *
+     * @param key 缓存的key
+     */
+    void remove(String key);
+
+    /**
+     * 缓存的响应新增了解析结果之后调用，按新的大小重新计算占用的空间.
+     *
+     * @param key   缓存的key
+     * @param entry 新增了解析结果的响应
+     */
+    default void resized(final String key, final CacheEntry entry) {
+        // 默认不按大小限制缓存
+    }
+}
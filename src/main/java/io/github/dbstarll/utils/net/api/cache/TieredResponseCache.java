@@ -0,0 +1,47 @@
+package io.github.dbstarll.utils.net.api.cache;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 两级响应缓存，通常第一级为内存、第二级为磁盘. 第二级命中时会把响应提升到第一级.
+ */
+public final class TieredResponseCache implements ResponseCache {
+    private final ResponseCache first;
+    private final ResponseCache second;
+
+    public TieredResponseCache(final ResponseCache first, final ResponseCache second) {
+        this.first = notNull(first, "first is null");
+        this.second = notNull(second, "second is null");
+    }
+
+    @Override
+    public CacheEntry get(final String key) {
+        final CacheEntry entry = first.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        final CacheEntry promoted = second.get(key);
+        if (promoted != null) {
+            first.put(key, promoted);
+        }
+        return promoted;
+    }
+
+    @Override
+    public void put(final String key, final CacheEntry entry) {
+        first.put(key, entry);
+        second.put(key, entry);
+    }
+
+    @Override
+    public void remove(final String key) {
+        first.remove(key);
+        second.remove(key);
+    }
+
+    @Override
+    public void resized(final String key, final CacheEntry entry) {
+        first.resized(key, entry);
+        second.resized(key, entry);
+    }
+}
@@ -0,0 +1,311 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 直接在字节层面解码text/event-stream.
+ * 在原始字节中查找行边界(LF、CRLF、CR)和字段名，只对字段值进行字符集解码，多行data在字节层面拼接，
+ * 由子类在分发事件时把data的原始字节转换为事件.
+ * 非text/event-stream内容以空行分帧，整帧作为data.
+ *
+ * @param <E> 事件类型
+ */
+abstract class AbstractEventStreamDecoder<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractEventStreamDecoder.class);
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte COLON = ':';
+    private static final byte SPACE = ' ';
+
+    private static final byte[] FIELD_EVENT = {'e', 'v', 'e', 'n', 't'};
+    private static final byte[] FIELD_DATA = {'d', 'a', 't', 'a'};
+    private static final byte[] FIELD_ID = {'i', 'd'};
+    private static final byte[] FIELD_RETRY = {'r', 'e', 't', 'r', 'y'};
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Charset charset;
+    private final boolean eventStream;
+
+    private byte[] buffer = new byte[DEFAULT_CAPACITY];
+    private int readPosition;
+    private int writePosition;
+    private int scanPosition;
+    private boolean started;
+
+    private byte[] data = new byte[64];
+    private int dataLength;
+    private boolean hasData;
+    private String event;
+    private String id;
+    private Integer retry;
+    private boolean setAny;
+
+    AbstractEventStreamDecoder(final Charset charset, final boolean eventStream) {
+        this.charset = notNull(charset, "charset is null");
+        this.eventStream = eventStream;
+    }
+
+    /**
+     * 追加待解码的数据.
+     *
+     * @param src 数据来源
+     */
+    public void append(final ByteBuffer src) {
+        final int remaining = src.remaining();
+        ensureWritable(remaining);
+        src.get(buffer, writePosition, remaining);
+        writePosition += remaining;
+    }
+
+    /**
+     * 解码下一个事件.
+     *
+     * @param endOfStream 是否已到达流的末尾
+     * @return 下一个完整的事件，没有完整事件时返回null
+     */
+    final E nextEvent(final boolean endOfStream) {
+        if (!started && !skipBom(endOfStream)) {
+            return null;
+        }
+        while (true) {
+            final int lineEnd = findLineEnd(endOfStream);
+            if (lineEnd < 0) {
+                if (!endOfStream) {
+                    return null;
+                }
+                if (readPosition < writePosition) {
+                    line(readPosition, writePosition);
+                    consume(writePosition);
+                }
+                return dispatch();
+            }
+
+            final boolean emptyLine = lineEnd == readPosition;
+            if (!emptyLine) {
+                line(readPosition, lineEnd);
+            }
+            consume(lineEnd + (buffer[lineEnd] == CR && lineEnd + 1 < writePosition && buffer[lineEnd + 1] == LF
+                    ? 2 : 1));
+            if (emptyLine) {
+                final E dispatched = dispatch();
+                if (dispatched != null) {
+                    return dispatched;
+                }
+            }
+        }
+    }
+
+    private boolean skipBom(final boolean endOfStream) {
+        final int length = writePosition - readPosition;
+        for (int i = 0; i < Math.min(length, BOM.length); i++) {
+            if (buffer[readPosition + i] != BOM[i]) {
+                started = true;
+                return true;
+            }
+        }
+        if (length >= BOM.length) {
+            consume(readPosition + BOM.length);
+            started = true;
+        } else if (endOfStream) {
+            started = true;
+        }
+        return started;
+    }
+
+    /**
+     * 从scanPosition开始查找行结束位置，CR位于缓冲区末尾时需要等待下一个字节来判断是否为CRLF.
+     */
+    private int findLineEnd(final boolean endOfStream) {
+        for (int i = Math.max(readPosition, scanPosition); i < writePosition; i++) {
+            final byte b = buffer[i];
+            if (b == LF) {
+                return i;
+            } else if (b == CR) {
+                if (i + 1 < writePosition || endOfStream) {
+                    return i;
+                }
+                scanPosition = i;
+                return -1;
+            }
+        }
+        scanPosition = writePosition;
+        return -1;
+    }
+
+    private void consume(final int position) {
+        readPosition = position;
+        scanPosition = position;
+        if (readPosition == writePosition) {
+            readPosition = 0;
+            writePosition = 0;
+            scanPosition = 0;
+        }
+    }
+
+    private void ensureWritable(final int required) {
+        if (buffer.length - writePosition >= required) {
+            return;
+        }
+        final int length = writePosition - readPosition;
+        final int scanOffset = scanPosition - readPosition;
+        if (buffer.length - length >= required && readPosition >= length) {
+            System.arraycopy(buffer, readPosition, buffer, 0, length);
+        } else {
+            final byte[] newBuffer = new byte[Math.max(buffer.length << 1, length + required)];
+            System.arraycopy(buffer, readPosition, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+        readPosition = 0;
+        writePosition = length;
+        scanPosition = Math.max(scanOffset, 0);
+    }
+
+    private void line(final int start, final int end) {
+        if (!eventStream) {
+            appendData(start, end);
+            return;
+        } else if (buffer[start] == COLON) {
+            return;
+        }
+
+        int colon = -1;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == COLON) {
+                colon = i;
+                break;
+            }
+        }
+        final int fieldEnd = colon < 0 ? end : colon;
+        int valueStart = colon < 0 ? end : colon + 1;
+        if (valueStart < end && buffer[valueStart] == SPACE) {
+            valueStart++;
+        }
+        field(start, fieldEnd, valueStart, end, colon >= 0);
+    }
+
+    private void field(final int start, final int end, final int valueStart, final int valueEnd,
+                       final boolean withValue) {
+        if (isField(FIELD_DATA, start, end)) {
+            appendData(valueStart, valueEnd);
+        } else if (isField(FIELD_EVENT, start, end)) {
+            event = decode(valueStart, valueEnd);
+            setAny = true;
+        } else if (isField(FIELD_ID, start, end)) {
+            id = decode(valueStart, valueEnd);
+            setAny = true;
+        } else if (isField(FIELD_RETRY, start, end)) {
+            final Integer value = parseRetry(valueStart, valueEnd);
+            if (value != null) {
+                retry = value;
+                setAny = true;
+            } else {
+                LOGGER.warn("retry not an integer: {}", decode(valueStart, valueEnd));
+            }
+        } else if (!withValue) {
+            if (!isBlank(start, end)) {
+                appendData(start, end);
+            }
+        } else {
+            LOGGER.warn("unknown field: {}=[{}]", decode(start, end), decode(valueStart, valueEnd));
+        }
+    }
+
+    private boolean isField(final byte[] field, final int start, final int end) {
+        if (end - start != field.length) {
+            return false;
+        }
+        for (int i = 0; i < field.length; i++) {
+            if (buffer[start + i] != field[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Integer parseRetry(final int start, final int end) {
+        if (start == end || end - start > 9) {
+            return null;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer[i];
+            if (b < '0' || b > '9') {
+                return null;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private void appendData(final int start, final int end) {
+        final int length = end - start;
+        final int required = dataLength + length + (hasData ? 1 : 0);
+        if (required > data.length) {
+            final byte[] newData = new byte[Math.max(data.length << 1, required)];
+            System.arraycopy(data, 0, newData, 0, dataLength);
+            data = newData;
+        }
+        if (hasData) {
+            data[dataLength++] = LF;
+        }
+        System.arraycopy(buffer, start, data, dataLength, length);
+        dataLength += length;
+        hasData = true;
+        setAny = true;
+    }
+
+    private String decode(final int start, final int end) {
+        return new String(buffer, start, end - start, charset);
+    }
+
+    private E dispatch() {
+        try {
+            return setAny ? dispatch(event, hasData ? data : null, dataLength, id, retry) : null;
+        } finally {
+            dataLength = 0;
+            hasData = false;
+            event = null;
+            id = null;
+            retry = null;
+            setAny = false;
+        }
+    }
+
+    /**
+     * 把一帧的字段转换为事件.
+     *
+     * @param event      event字段
+     * @param data       data字段拼接后的原始字节，没有data字段时为null
+     * @param dataLength data的字节数
+     * @param id         id字段
+     * @param retry      retry字段
+     * @return 事件，返回null时忽略这一帧
+     */
+    abstract E dispatch(String event, byte[] data, int dataLength, String id, Integer retry);
+
+    final Charset charset() {
+        return charset;
+    }
+
+    final boolean isEventStream() {
+        return eventStream;
+    }
+
+    private boolean isBlank(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] != SPACE && buffer[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接在原始字节上解码数据帧，流式请求不再经过字符解码和分帧.
+ * 每次追加数据之后，需要反复调用{@link #next(boolean)}直到返回null，才能再次追加.
+ *
+ * @param <D> 数据类型
+ */
+public interface ByteFrameDecoder<D> {
+    /**
+     * 追加待解码的数据.
+     *
+     * @param src 数据来源
+     * @throws IOException 数据无法解码
+     */
+    void append(ByteBuffer src) throws IOException;
+
+    /**
+     * 解码下一个数据帧.
+     *
+     * @param endOfStream 是否已到达流的末尾
+     * @return 下一个完整的数据帧，没有完整的数据帧时返回null
+     * @throws IOException 数据无法解码
+     */
+    D next(boolean endOfStream) throws IOException;
+
+    /**
+     * 解码是否已经结束，例如收到了结束标记. 结束之后的内容不再需要，可以不再读取响应的剩余部分.
+     *
+     * @return 解码是否已经结束
+     */
+    default boolean isFinished() {
+        return false;
+    }
+}
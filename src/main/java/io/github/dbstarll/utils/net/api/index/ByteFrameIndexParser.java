@@ -0,0 +1,23 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.IOException;
+
+/**
+ * 可以直接在原始字节上解码数据帧的IndexParser. 流式请求将使用{@link ByteFrameDecoder}，
+ * 基于字符的{@link #parse(ContentType, CharSequence, int, boolean)}仅用于兼容.
+ *
+ * @param <D> 数据类型
+ * @param <I> Index类型
+ */
+public interface ByteFrameIndexParser<D, I extends Index<D>> extends IndexParser<I> {
+    /**
+     * 为一次流式响应构建新的解码器.
+     *
+     * @param contentType 响应的ContentType，可能为null
+     * @return ByteFrameDecoder
+     * @throws IOException 无法构建解码器
+     */
+    ByteFrameDecoder<D> newDecoder(ContentType contentType) throws IOException;
+}
@@ -0,0 +1,47 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.Charset;
+
+/**
+ * 直接在字节层面解码text/event-stream.
+ * 在原始字节中查找行边界(LF、CRLF、CR)和字段名，只对字段值进行字符集解码，多行data在字节层面拼接后只解码一次.
+ * 非text/event-stream内容以空行分帧，整帧作为data.
+ */
+public final class EventStreamDecoder extends AbstractEventStreamDecoder<EventStream> {
+    /**
+     * 构建EventStreamDecoder.
+     *
+     * @param charset     字段值的字符集
+     * @param eventStream 是否按text/event-stream格式解析字段
+     */
+    public EventStreamDecoder(final Charset charset, final boolean eventStream) {
+        super(charset, eventStream);
+    }
+
+    /**
+     * 解码下一个事件.
+     *
+     * @param endOfStream 是否已到达流的末尾
+     * @return 下一个完整的事件，没有完整事件时返回null
+     */
+    public EventStream next(final boolean endOfStream) {
+        return nextEvent(endOfStream);
+    }
+
+    @Override
+    EventStream dispatch(final String event, final byte[] data, final int dataLength, final String id,
+                         final Integer retry) {
+        final String dataValue = data != null ? new String(data, 0, dataLength, charset()) : null;
+        if (!isEventStream() && StringUtils.isBlank(dataValue)) {
+            return null;
+        }
+        final EventStream eventStream = new EventStream();
+        eventStream.setEvent(event);
+        eventStream.setData(dataValue);
+        eventStream.setId(id);
+        eventStream.setRetry(retry);
+        return eventStream;
+    }
+}
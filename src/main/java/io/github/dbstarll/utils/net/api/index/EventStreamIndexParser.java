@@ -0,0 +1,122 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class EventStreamIndexParser implements IndexParser<EventStreamIndex> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamIndexParser.class);
+
+    private static final String FIELD_EVENT = "event";
+    private static final String FIELD_DATA = "data";
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_RETRY = "retry";
+
+    @Override
+    public EventStreamIndex parse(final ContentType contentType, final CharSequence content, final int offset,
+                                  final boolean endOfStream) {
+        return parse(contentType, content, offset, offset, endOfStream);
+    }
+
+    @Override
+    public EventStreamIndex parse(final ContentType contentType, final CharSequence content, final int offset,
+                                  final int scanFrom, final boolean endOfStream) {
+        final int length = content.length();
+        for (int i = Math.max(offset, scanFrom - 1); i < length; i++) {
+            final char c = content.charAt(i);
+            if (isLineStart(content, offset, i) && isTerminatorStart(content, offset, i)) {
+                if (c == '\r' && i + 1 == length && !endOfStream) {
+                    // 无法确定是否为CRLF，等待更多数据
+                    return null;
+                }
+                final int next = c == '\r' && i + 1 < length && content.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+                return new EventStreamIndex(parseEventStream(contentType, content.subSequence(offset, i).toString()),
+                        next);
+            }
+        }
+        if (endOfStream) {
+            return new EventStreamIndex(parseEventStream(contentType, content.subSequence(offset, length).toString()),
+                    -1);
+        } else {
+            return null;
+        }
+    }
+
+    private static boolean isTerminatorStart(final CharSequence content, final int offset, final int index) {
+        final char c = content.charAt(index);
+        return c == '\r' || c == '\n' && (index == offset || content.charAt(index - 1) != '\r');
+    }
+
+    private static boolean isLineStart(final CharSequence content, final int offset, final int index) {
+        if (index == offset) {
+            return true;
+        }
+        final char prev = content.charAt(index - 1);
+        return prev == '\n' || prev == '\r';
+    }
+
+    private EventStream parseEventStream(final ContentType contentType, final String content) {
+        if (StringUtils.isBlank(content)) {
+            return null;
+        }
+
+        final EventStream eventStream = new EventStream();
+        boolean setAny = false;
+        if (ContentType.TEXT_EVENT_STREAM.isSameMimeType(contentType)) {
+            for (String line : StringUtils.split(content, "\r\n")) {
+                setAny |= parseLine(eventStream, line);
+            }
+        } else {
+            eventStream.setData(StringUtils.stripEnd(content, "\r\n"));
+            setAny = true;
+        }
+        return setAny ? eventStream : null;
+    }
+
+    private boolean parseLine(final EventStream eventStream, final String line) {
+        if (line.charAt(0) == ':') {
+            return false;
+        }
+        final int idxField = line.indexOf(':');
+        if (idxField < 0) {
+            return setField(eventStream, line, null);
+        }
+        final int idxValue = idxField + 1 < line.length() && line.charAt(idxField + 1) == ' ' ? idxField + 2
+                : idxField + 1;
+        return setField(eventStream, line.substring(0, idxField), line.substring(idxValue));
+    }
+
+    private boolean setField(final EventStream eventStream, final String field, final String value) {
+        switch (field) {
+            case FIELD_EVENT:
+                eventStream.setEvent(StringUtils.defaultString(value));
+                return true;
+            case FIELD_DATA:
+                eventStream.setData(StringUtils.defaultString(value));
+                return true;
+            case FIELD_ID:
+                eventStream.setId(StringUtils.defaultString(value));
+                return true;
+            case FIELD_RETRY:
+                try {
+                    eventStream.setRetry(Integer.valueOf(value));
+                    return true;
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("retry not an integer: " + value, e);
+                    return false;
+                }
+            default:
+                if (value == null) {
+                    if (StringUtils.isBlank(field)) {
+                        return false;
+                    }
+                    eventStream.setData(field);
+                    return true;
+                } else {
+                    LOGGER.warn("unknown field: {}=[{}]", field, value);
+                    return false;
+                }
+        }
+    }
+}
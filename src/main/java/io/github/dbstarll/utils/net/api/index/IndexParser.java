@@ -0,0 +1,33 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.apache.hc.core5.http.ContentType;
+
+public interface IndexParser<I extends Index<?>> {
+    /**
+     * 从content的offset位置开始解析下一个数据帧.
+     *
+     * @param contentType ContentType
+     * @param content     待解析的内容
+     * @param offset      数据帧在content中的起始位置
+     * @param endOfStream 是否已到达流的末尾
+     * @return 解析结果，数据帧不完整时返回null. 结果的{@link Index#getIndex()}为下一个数据帧在content中的起始位置，
+     * 小于0时表示content已全部解析完毕
+     */
+    I parse(ContentType contentType, CharSequence content, int offset, boolean endOfStream);
+
+    /**
+     * 从content的offset位置开始解析下一个数据帧，并且从scanFrom位置开始查找数据帧的边界.
+     * 上一次解析因数据帧不完整而返回null时，[offset, scanFrom)区间内已确认不含完整的边界，无需重复查找.
+     *
+     * @param contentType ContentType
+     * @param content     待解析的内容
+     * @param offset      数据帧在content中的起始位置
+     * @param scanFrom    开始查找数据帧边界的位置
+     * @param endOfStream 是否已到达流的末尾
+     * @return 解析结果，数据帧不完整时返回null
+     */
+    default I parse(final ContentType contentType, final CharSequence content, final int offset, final int scanFrom,
+                    final boolean endOfStream) {
+        return parse(contentType, content, offset, endOfStream);
+    }
+}
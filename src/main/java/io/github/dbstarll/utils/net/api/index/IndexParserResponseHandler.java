@@ -0,0 +1,44 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 将{@link IndexParser}适配为{@link HttpClientResponseHandler}，用于兼容基于ClassicHttpResponse的处理方式.
+ * 流式请求会直接使用{@link IndexParser}来解析数据帧.
+ *
+ * @param <D> 数据类型
+ * @param <I> Index类型
+ */
+public class IndexParserResponseHandler<D, I extends Index<D>> extends IndexBaseHttpClientResponseHandler<String, D, I> {
+    private final IndexParser<I> parser;
+
+    /**
+     * 构建IndexParserResponseHandler.
+     *
+     * @param stringResponseHandler ResponseHandler for String
+     * @param parser                IndexParser
+     */
+    public IndexParserResponseHandler(final HttpClientResponseHandler<String> stringResponseHandler,
+                                      final IndexParser<I> parser) {
+        super(stringResponseHandler);
+        this.parser = notNull(parser, "parser is null");
+    }
+
+    @Override
+    protected final I handleContent(final ContentType contentType, final String content, final boolean endOfStream) {
+        return parser.parse(contentType, StringUtils.defaultString(content), 0, endOfStream);
+    }
+
+    /**
+     * 获得被适配的IndexParser.
+     *
+     * @return IndexParser
+     */
+    public final IndexParser<I> getParser() {
+        return parser;
+    }
+}
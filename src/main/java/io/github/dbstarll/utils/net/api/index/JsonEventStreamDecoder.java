@@ -0,0 +1,83 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 把text/event-stream每个事件的data直接从原始字节绑定为数据对象，不经过String. 没有data的事件被忽略，
+ * data与结束标记相同时结束解码，之后的内容全部丢弃，并且不再读取响应的剩余部分.
+ *
+ * @param <D> 数据类型
+ */
+final class JsonEventStreamDecoder<D> extends AbstractEventStreamDecoder<D> implements ByteFrameDecoder<D> {
+    private final ObjectReader reader;
+    private final List<byte[]> endMarkers;
+    private boolean finished;
+
+    JsonEventStreamDecoder(final ObjectReader reader, final List<byte[]> endMarkers, final boolean eventStream) {
+        super(StandardCharsets.UTF_8, eventStream);
+        this.reader = reader;
+        this.endMarkers = endMarkers;
+    }
+
+    @Override
+    public void append(final ByteBuffer src) {
+        if (finished) {
+            src.position(src.limit());
+        } else {
+            super.append(src);
+        }
+    }
+
+    @Override
+    public D next(final boolean endOfStream) throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            return nextEvent(endOfStream);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    D dispatch(final String event, final byte[] data, final int dataLength, final String id, final Integer retry) {
+        if (data == null || finished) {
+            return null;
+        }
+        for (byte[] marker : endMarkers) {
+            if (matches(marker, data, dataLength)) {
+                finished = true;
+                return null;
+            }
+        }
+        try {
+            return reader.readValue(data, 0, dataLength);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static boolean matches(final byte[] marker, final byte[] data, final int dataLength) {
+        if (marker.length != dataLength) {
+            return false;
+        }
+        for (int i = 0; i < dataLength; i++) {
+            if (marker[i] != data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 把text/event-stream中每个事件的data作为JSON解析为数据对象，用于每个data都是一段JSON的流式接口.
+ * 流式请求直接从data的原始字节绑定数据对象，不再构造EventStream和拼接String；没有data的事件被忽略，
+ * data与任何一个结束标记(例如"[DONE]")相同时结束，不再交付之后的事件.
+ * 通过{@link io.github.dbstarll.utils.net.api.BasicIndexResponseHandlerFactory}注册：
+ * <pre>
+ * addIndexParser(ChunkIndex.class, new JsonEventStreamIndexParser&lt;&gt;(mapper, Chunk.class, ChunkIndex::new, "[DONE]"));
+ * </pre>
+ *
+ * @param <D> 数据类型
+ * @param <I> Index类型
+ */
+public final class JsonEventStreamIndexParser<D, I extends Index<D>> implements ByteFrameIndexParser<D, I> {
+    private final EventStreamIndexParser eventStreamParser = new EventStreamIndexParser();
+    private final ObjectReader reader;
+    private final BiFunction<D, Integer, I> indexFactory;
+    private final List<String> endMarkers;
+    private final List<byte[]> endMarkerBytes;
+
+    /**
+     * 构建JsonEventStreamIndexParser.
+     *
+     * @param mapper       ObjectMapper
+     * @param dataClass    数据类型
+     * @param indexFactory 根据数据和下一个数据帧的位置构建Index
+     * @param endMarkers   表示流结束的data
+     */
+    public JsonEventStreamIndexParser(final ObjectMapper mapper, final Class<D> dataClass,
+                                      final BiFunction<D, Integer, I> indexFactory, final String... endMarkers) {
+        this.reader = notNull(mapper, "mapper is null").readerFor(notNull(dataClass, "dataClass is null"));
+        this.indexFactory = notNull(indexFactory, "indexFactory is null");
+        this.endMarkers = Arrays.asList(noNullElements(endMarkers, "endMarkers contains null"));
+        this.endMarkerBytes = new ArrayList<>(endMarkers.length);
+        for (String endMarker : endMarkers) {
+            endMarkerBytes.add(endMarker.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public ByteFrameDecoder<D> newDecoder(final ContentType contentType) {
+        return new JsonEventStreamDecoder<>(reader, endMarkerBytes,
+                ContentType.TEXT_EVENT_STREAM.isSameMimeType(contentType));
+    }
+
+    @Override
+    public I parse(final ContentType contentType, final CharSequence content, final int offset,
+                   final boolean endOfStream) {
+        return parse(contentType, content, offset, offset, endOfStream);
+    }
+
+    @Override
+    public I parse(final ContentType contentType, final CharSequence content, final int offset, final int scanFrom,
+                   final boolean endOfStream) {
+        final EventStreamIndex index = eventStreamParser.parse(contentType, content, offset, scanFrom, endOfStream);
+        if (index == null) {
+            return null;
+        }
+        final String data = index.getData() != null ? index.getData().getData() : null;
+        if (data == null) {
+            return indexFactory.apply(null, index.getIndex());
+        } else if (endMarkers.contains(data)) {
+            return indexFactory.apply(null, -1);
+        }
+        try {
+            return indexFactory.apply(reader.readValue(data), index.getIndex());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
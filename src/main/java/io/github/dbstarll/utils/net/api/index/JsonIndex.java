@@ -0,0 +1,20 @@
+package io.github.dbstarll.utils.net.api.index;
+
+/**
+ * 以JSON解析的数据帧. 通过具体的子类确定数据类型，使之可以按请求结果类注册和查找：
+ * <pre>
+ * public final class UserIndex extends JsonIndex&lt;User&gt; {
+ *     public UserIndex(final User data, final int index) {
+ *         super(data, index);
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <T> 数据类型
+ * @see JsonIndexParser
+ */
+public abstract class JsonIndex<T> extends AbstractIndex<T> {
+    protected JsonIndex(final T data, final int index) {
+        super(data, index);
+    }
+}
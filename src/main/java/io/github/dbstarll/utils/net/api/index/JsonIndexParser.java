@@ -0,0 +1,160 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.commons.io.input.CharSequenceReader;
+import org.apache.hc.core5.http.ContentType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.BiFunction;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 把流式的JSON内容逐条解析为数据对象，每次只在内存中保留一条记录. 支持两种格式：
+ * {@link Format#LINES}为NDJSON(JSON Lines)，每行一条记录，空行被忽略，一行中有多条记录或者记录跨越多行时解析失败；
+ * {@link Format#ARRAY}为一个顶层的JSON数组，数组的每个元素为一条记录.
+ * 流式请求直接在原始字节上使用Jackson的非阻塞解析器，不构造中间的String；值为null的记录被忽略.
+ * 通过{@link io.github.dbstarll.utils.net.api.BasicIndexResponseHandlerFactory}注册：
+ * <pre>
+ * addIndexParser(UserIndex.class, new JsonIndexParser&lt;&gt;(mapper, User.class, Format.LINES, UserIndex::new));
+ * </pre>
+ *
+ * @param <D> 数据类型
+ * @param <I> Index类型
+ */
+public final class JsonIndexParser<D, I extends Index<D>> implements ByteFrameIndexParser<D, I> {
+    private final ObjectReader reader;
+    private final Format format;
+    private final BiFunction<D, Integer, I> indexFactory;
+
+    /**
+     * 构建JsonIndexParser.
+     *
+     * @param mapper       ObjectMapper
+     * @param dataClass    数据类型
+     * @param format       JSON内容的格式
+     * @param indexFactory 根据数据和下一个数据帧的位置构建Index
+     */
+    public JsonIndexParser(final ObjectMapper mapper, final Class<D> dataClass, final Format format,
+                           final BiFunction<D, Integer, I> indexFactory) {
+        this.format = notNull(format, "format is null");
+        final ObjectReader dataReader = notNull(mapper, "mapper is null")
+                .readerFor(notNull(dataClass, "dataClass is null"));
+        this.reader = format == Format.LINES ? dataReader.with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+                : dataReader;
+        this.indexFactory = notNull(indexFactory, "indexFactory is null");
+    }
+
+    @Override
+    public ByteFrameDecoder<D> newDecoder(final ContentType contentType) throws IOException {
+        return new JsonStreamDecoder<>(reader, format == Format.ARRAY);
+    }
+
+    @Override
+    public I parse(final ContentType contentType, final CharSequence content, final int offset,
+                   final boolean endOfStream) {
+        return parse(contentType, content, offset, offset, endOfStream);
+    }
+
+    @Override
+    public I parse(final ContentType contentType, final CharSequence content, final int offset, final int scanFrom,
+                   final boolean endOfStream) {
+        try {
+            return format == Format.ARRAY ? parseElement(content, offset, endOfStream)
+                    : parseLine(content, offset, scanFrom, endOfStream);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private I parseLine(final CharSequence content, final int offset, final int scanFrom, final boolean endOfStream)
+            throws IOException {
+        final int length = content.length();
+        for (int i = Math.max(offset, scanFrom); i < length; i++) {
+            if (content.charAt(i) == '\n') {
+                return indexFactory.apply(read(content, offset, i), i + 1);
+            }
+        }
+        return endOfStream ? indexFactory.apply(read(content, offset, length), -1) : null;
+    }
+
+    /**
+     * 数组格式下，下一个数据帧的位置总是指向分隔的','或结尾的']'，第一个数据帧指向开头的'['，
+     * 因此无需在多次解析之间保存状态. 数组元素不含完整的边界时，每次都从元素的起始位置重新查找.
+     */
+    private I parseElement(final CharSequence content, final int offset, final boolean endOfStream)
+            throws IOException {
+        final int length = content.length();
+        final int start = skipWhitespace(content, offset, length);
+        if (start == length) {
+            return endOfStream ? indexFactory.apply(null, -1) : null;
+        }
+        final char separator = content.charAt(start);
+        if (separator == ']') {
+            return indexFactory.apply(null, -1);
+        } else if (separator != '[' && separator != ',') {
+            throw new JsonParseException(null, "Unexpected character '" + separator + "' at " + start
+                    + ": expected '[', ',' or ']'");
+        }
+        boolean inString = false;
+        boolean escaped = false;
+        int depth = 0;
+        for (int i = start + 1; i < length; i++) {
+            final char c = content.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && depth > 0) {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == ']')) {
+                return indexFactory.apply(read(content, start + 1, i), i);
+            }
+        }
+        if (endOfStream) {
+            throw new JsonParseException(null, "Unexpected end-of-input: expected close marker for array");
+        }
+        return null;
+    }
+
+    private D read(final CharSequence content, final int start, final int end) throws IOException {
+        if (skipWhitespace(content, start, end) == end) {
+            return null;
+        }
+        return reader.readValue(new CharSequenceReader(content, start, end));
+    }
+
+    private static int skipWhitespace(final CharSequence content, final int start, final int end) {
+        int i = start;
+        while (i < end && Character.isWhitespace(content.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * JSON内容的格式.
+     */
+    public enum Format {
+        /**
+         * NDJSON(JSON Lines)，每行一条记录.
+         */
+        LINES,
+        /**
+         * 一个顶层的JSON数组，每个元素为一条记录.
+         */
+        ARRAY
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 使用Jackson的非阻塞解析器在原始字节上逐条解码JSON记录. 解析出的token先暂存在TokenBuffer中，
+ * 一条记录完整之后再绑定为数据对象，因此内存占用只与单条记录的大小有关. 内容按UTF-8解码.
+ * 按行分隔时每条记录必须独占一行，一行中有多条记录或者一条记录跨越多行都视为格式错误.
+ *
+ * @param <D> 数据类型
+ */
+final class JsonStreamDecoder<D> implements ByteFrameDecoder<D> {
+    private final ObjectReader reader;
+    private final boolean array;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private byte[] input = new byte[0];
+    private TokenBuffer tokens;
+    private int depth;
+    private int line;
+    private boolean started;
+    private boolean finished;
+    private boolean endOfInput;
+
+    JsonStreamDecoder(final ObjectReader reader, final boolean array) throws IOException {
+        this.reader = reader;
+        this.array = array;
+        this.parser = reader.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    @Override
+    public void append(final ByteBuffer src) throws IOException {
+        final int remaining = src.remaining();
+        if (remaining == 0 || finished) {
+            src.position(src.limit());
+            return;
+        } else if (!feeder.needMoreInput()) {
+            throw new IllegalStateException("previous input not consumed");
+        } else if (input.length < remaining) {
+            input = new byte[remaining];
+        }
+        src.get(input, 0, remaining);
+        feeder.feedInput(input, 0, remaining);
+    }
+
+    @Override
+    public D next(final boolean endOfStream) throws IOException {
+        while (!finished) {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.NOT_AVAILABLE) {
+                if (!endOfStream || endOfInput) {
+                    return null;
+                }
+                feeder.endOfInput();
+                endOfInput = true;
+            } else if (token == null) {
+                finished = true;
+                if (array && started) {
+                    throw new JsonParseException(parser, "Unexpected end-of-input: expected close marker for array");
+                }
+            } else if (array && !started) {
+                if (token != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "Unexpected token " + token + ": expected START_ARRAY");
+                }
+                started = true;
+            } else if (array && depth == 0 && token == JsonToken.END_ARRAY) {
+                finished = true;
+                started = false;
+            } else {
+                if (!array) {
+                    checkLine();
+                }
+                final D data = copy(token);
+                if (data != null) {
+                    return data;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 检查当前token所在的行：新记录不能与上一条记录在同一行，记录中的token必须与记录的开始在同一行.
+     */
+    private void checkLine() throws JsonParseException {
+        final int tokenLine = parser.getTokenLocation().getLineNr();
+        if (depth == 0) {
+            if (tokenLine == line) {
+                throw new JsonParseException(parser, "Unexpected record at line " + tokenLine
+                        + ": expected one record per line");
+            }
+            line = tokenLine;
+        } else if (tokenLine != line) {
+            throw new JsonParseException(parser, "Unexpected line break in record at line " + line);
+        }
+    }
+
+    /**
+     * 把当前token复制到TokenBuffer中，一条记录完整时绑定为数据对象.
+     */
+    private D copy(final JsonToken token) throws IOException {
+        if (tokens == null) {
+            tokens = new TokenBuffer(parser);
+        }
+        tokens.copyCurrentEvent(parser);
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+        if (depth > 0) {
+            return null;
+        }
+        final TokenBuffer value = tokens;
+        tokens = null;
+        try (JsonParser valueParser = value.asParser()) {
+            return reader.readValue(valueParser);
+        }
+    }
+}
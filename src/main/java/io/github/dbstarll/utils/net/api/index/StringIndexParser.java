@@ -0,0 +1,29 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.core5.http.ContentType;
+
+public final class StringIndexParser implements IndexParser<StringIndex> {
+    @Override
+    public StringIndex parse(final ContentType contentType, final CharSequence content, final int offset,
+                             final boolean endOfStream) {
+        return parse(contentType, content, offset, offset, endOfStream);
+    }
+
+    @Override
+    public StringIndex parse(final ContentType contentType, final CharSequence content, final int offset,
+                             final int scanFrom, final boolean endOfStream) {
+        final int length = content.length();
+        for (int i = Math.max(offset, scanFrom); i < length; i++) {
+            if (content.charAt(i) == '\n') {
+                return new StringIndex(content.subSequence(offset, i).toString(), i + 1);
+            }
+        }
+        if (endOfStream) {
+            final String data = content.subSequence(offset, length).toString();
+            return new StringIndex(StringUtils.isBlank(data) ? null : data, -1);
+        } else {
+            return null;
+        }
+    }
+}
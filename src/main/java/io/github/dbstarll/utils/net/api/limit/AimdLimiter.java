@@ -0,0 +1,114 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 自适应的并发限制器（AIMD）. 响应时间低于阈值并且并发已被充分使用时，每个成功的请求把并发上限增加1/limit，
+ * 即大约每轮请求增加1；请求被限流、超时或响应时间超过阈值时，把并发上限乘以backoffRatio.
+ */
+public final class AimdLimiter implements Limiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private double limit;
+    private int inFlight;
+
+    /**
+     * 构建AimdLimiter.
+     *
+     * @param initialLimit     初始的并发上限
+     * @param minLimit         并发上限的最小值
+     * @param maxLimit         并发上限的最大值
+     * @param latencyThreshold 响应时间的阈值，超过时视为上游已经过载
+     * @param backoffRatio     过载时并发上限的缩减比例，取值范围[0.5, 1)
+     */
+    public AimdLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                       final TimeValue latencyThreshold, final double backoffRatio) {
+        isTrue(minLimit > 0, "minLimit must be positive: %d", minLimit);
+        inclusiveBetween(minLimit, maxLimit, initialLimit, "initialLimit must be in [minLimit, maxLimit]");
+        isTrue(backoffRatio >= 0.5 && backoffRatio < 1, "backoffRatio must be in [0.5, 1): %s", backoffRatio);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = notNull(latencyThreshold, "latencyThreshold is null").toNanoseconds();
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public synchronized Permit tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return null;
+        }
+        return new AimdPermit(++inFlight);
+    }
+
+    @Override
+    public long waitNanos() {
+        return 0;
+    }
+
+    /**
+     * 获得当前的并发上限.
+     *
+     * @return 并发上限
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 获得正在执行的请求数.
+     *
+     * @return 正在执行的请求数
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private synchronized void release(final int inFlightAtStart, final long latencyNanos, final boolean dropped) {
+        inFlight--;
+        if (dropped || latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (latencyNanos >= 0 && inFlightAtStart * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private final class AimdPermit extends AtomicBoolean implements Permit {
+        private static final long serialVersionUID = 1L;
+
+        private final int inFlightAtStart;
+
+        private AimdPermit(final int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        @Override
+        public void success(final long latencyNanos) {
+            if (compareAndSet(false, true)) {
+                release(inFlightAtStart, latencyNanos, false);
+            }
+        }
+
+        @Override
+        public void dropped() {
+            if (compareAndSet(false, true)) {
+                release(inFlightAtStart, -1, true);
+            }
+        }
+
+        @Override
+        public void ignore() {
+            if (compareAndSet(false, true)) {
+                release(inFlightAtStart, -1, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 熔断器. 关闭状态下按最近windowSize次请求的结果统计失败率和慢请求率，任何一个达到阈值时打开，
+ * 打开期间拒绝全部请求；经过openDuration之后进入半开状态，只放行halfOpenCalls个试探请求，
+ * 试探请求全部成功时关闭，出现失败或慢请求时重新打开.
+ * 失败是指{@link Permit#failed()}和{@link Permit#dropped()}，慢请求是指响应时间不小于slowCallThreshold的请求.
+ */
+public final class CircuitBreaker implements Limiter {
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final byte[] window;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final double slowCallRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private State state = State.CLOSED;
+    private int generation;
+    private long openedAt;
+    private int size;
+    private int index;
+    private int failures;
+    private int slowCalls;
+    private int trialsIssued;
+    private int trialsSucceeded;
+
+    /**
+     * 构建CircuitBreaker.
+     *
+     * @param windowSize            统计的最近请求数，也是开始判断阈值所需的最少请求数
+     * @param failureRateThreshold  失败率阈值，取值范围(0, 1]
+     * @param slowCallThreshold     慢请求的响应时间阈值
+     * @param slowCallRateThreshold 慢请求率阈值，取值范围(0, 1]
+     * @param openDuration          打开状态持续的时间
+     * @param halfOpenCalls         半开状态下放行的试探请求数
+     */
+    public CircuitBreaker(final int windowSize, final double failureRateThreshold, final TimeValue slowCallThreshold,
+                          final double slowCallRateThreshold, final TimeValue openDuration, final int halfOpenCalls) {
+        isTrue(windowSize > 0, "windowSize must be positive: %d", windowSize);
+        isTrue(failureRateThreshold > 0 && failureRateThreshold <= 1,
+                "failureRateThreshold must be in (0, 1]: %s", failureRateThreshold);
+        isTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1,
+                "slowCallRateThreshold must be in (0, 1]: %s", slowCallRateThreshold);
+        isTrue(halfOpenCalls > 0, "halfOpenCalls must be positive: %d", halfOpenCalls);
+        this.window = new byte[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdNanos = notNull(slowCallThreshold, "slowCallThreshold is null").toNanoseconds();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationNanos = notNull(openDuration, "openDuration is null").toNanoseconds();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    @Override
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return null;
+            }
+            transit(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsIssued >= halfOpenCalls) {
+                return null;
+            }
+            trialsIssued++;
+        }
+        return new BreakerPermit(generation);
+    }
+
+    @Override
+    public synchronized long waitNanos() {
+        return state == State.OPEN ? Math.max(0, openDurationNanos - (System.nanoTime() - openedAt)) : 0;
+    }
+
+    /**
+     * 获得当前的状态. 打开状态到期后，要等到下一次申请许可时才会进入半开状态.
+     *
+     * @return 当前的状态
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transit(final State newState) {
+        state = newState;
+        generation++;
+        openedAt = System.nanoTime();
+        size = 0;
+        index = 0;
+        failures = 0;
+        slowCalls = 0;
+        trialsIssued = 0;
+        trialsSucceeded = 0;
+    }
+
+    private synchronized void record(final int permitGeneration, final byte outcome) {
+        if (permitGeneration != generation) {
+            return;
+        } else if (state == State.HALF_OPEN) {
+            if (outcome != 0) {
+                transit(State.OPEN);
+            } else if (++trialsSucceeded >= halfOpenCalls) {
+                transit(State.CLOSED);
+            }
+            return;
+        }
+        if (size == window.length) {
+            final byte evicted = window[index];
+            failures -= evicted & FAILURE;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            size++;
+        }
+        window[index] = outcome;
+        index = (index + 1) % window.length;
+        failures += outcome & FAILURE;
+        slowCalls += (outcome & SLOW) >> 1;
+        if (size == window.length && (failures >= failureRateThreshold * size
+                || slowCalls >= slowCallRateThreshold * size)) {
+            transit(State.OPEN);
+        }
+    }
+
+    private synchronized void ignored(final int permitGeneration) {
+        if (permitGeneration == generation && state == State.HALF_OPEN) {
+            trialsIssued--;
+        }
+    }
+
+    /**
+     * 熔断器的状态.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final class BreakerPermit extends AtomicBoolean implements Permit {
+        private static final long serialVersionUID = 1L;
+
+        private final int permitGeneration;
+
+        private BreakerPermit(final int permitGeneration) {
+            this.permitGeneration = permitGeneration;
+        }
+
+        @Override
+        public void success(final long latencyNanos) {
+            if (compareAndSet(false, true)) {
+                record(permitGeneration, latencyNanos >= slowCallThresholdNanos ? SLOW : 0);
+            }
+        }
+
+        @Override
+        public void dropped() {
+            if (compareAndSet(false, true)) {
+                record(permitGeneration, FAILURE);
+            }
+        }
+
+        @Override
+        public void failed() {
+            if (compareAndSet(false, true)) {
+                record(permitGeneration, FAILURE);
+            }
+        }
+
+        @Override
+        public void ignore() {
+            if (compareAndSet(false, true)) {
+                ignored(permitGeneration);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+
+/**
+ * 组合多个限流器，只有全部限流器都给出许可时才能发出请求，例如同时使用令牌桶和并发限制.
+ * 按顺序申请许可，后面的限流器无法给出许可时，已获得的许可以{@link Permit#ignore()}归还，
+ * 因此应当把{@link TokenBucketLimiter}这类无法归还的限流器放在最后.
+ */
+public final class CompositeLimiter implements Limiter {
+    private final Limiter[] limiters;
+
+    public CompositeLimiter(final Limiter... limiters) {
+        this.limiters = noNullElements(notEmpty(limiters, "limiters is empty"), "limiters contains null").clone();
+    }
+
+    @Override
+    public Permit tryAcquire() {
+        final Permit[] permits = new Permit[limiters.length];
+        for (int i = 0; i < limiters.length; i++) {
+            permits[i] = limiters[i].tryAcquire();
+            if (permits[i] == null) {
+                for (int j = 0; j < i; j++) {
+                    permits[j].ignore();
+                }
+                return null;
+            }
+        }
+        return new Permit() {
+            @Override
+            public void success(final long latencyNanos) {
+                for (Permit permit : permits) {
+                    permit.success(latencyNanos);
+                }
+            }
+
+            @Override
+            public void dropped() {
+                for (Permit permit : permits) {
+                    permit.dropped();
+                }
+            }
+
+            @Override
+            public void failed() {
+                for (Permit permit : permits) {
+                    permit.failed();
+                }
+            }
+
+            @Override
+            public void ignore() {
+                for (Permit permit : permits) {
+                    permit.ignore();
+                }
+            }
+        };
+    }
+
+    @Override
+    public long waitNanos() {
+        long wait = 0;
+        for (Limiter limiter : limiters) {
+            wait = Math.max(wait, limiter.waitNanos());
+        }
+        return wait;
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+/**
+ * 请求的限流器，只负责判断能否立即发出请求，排队等待由调用方完成.
+ */
+public interface Limiter {
+    /**
+     * 尝试立即获得一个许可.
+     *
+     * @return 许可，无法获得时返回null
+     */
+    Permit tryAcquire();
+
+    /**
+     * 预计还需要等待多少纳秒才会有新的许可.
+     *
+     * @return 需要等待的纳秒数，许可不受时间限制时返回0，此时需要等待已发出的请求释放许可
+     */
+    long waitNanos();
+}
@@ -0,0 +1,40 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+/**
+ * 一次请求获得的许可，请求结束时调用且只调用一次{@link #success(long)}、{@link #dropped()}、{@link #failed()}
+ * 或{@link #ignore()}.
+ */
+public interface Permit {
+    /**
+     * 不受限制的许可.
+     */
+    Permit NOOP = new Permit() {
+    };
+
+    /**
+     * 请求得到了上游的响应.
+     *
+     * @param latencyNanos 从发出请求到收到响应头的纳秒数
+     */
+    default void success(final long latencyNanos) {
+    }
+
+    /**
+     * 请求被上游限流（429、503）或超时，说明请求已经超出了上游的容量.
+     */
+    default void dropped() {
+    }
+
+    /**
+     * 请求因为上游的故障而失败，例如5xx响应或连接失败. 默认与{@link #ignore()}相同.
+     */
+    default void failed() {
+        ignore();
+    }
+
+    /**
+     * 请求没有发出，或者因为与上游无关的原因失败或被取消.
+     */
+    default void ignore() {
+    }
+}
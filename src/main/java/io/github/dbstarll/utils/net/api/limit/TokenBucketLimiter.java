@@ -0,0 +1,43 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * 令牌桶限流器，按固定速率生成令牌，最多积累burst个令牌用于应对突发请求.
+ */
+public final class TokenBucketLimiter implements Limiter {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private long theoreticalArrival = System.nanoTime();
+
+    /**
+     * 构建TokenBucketLimiter.
+     *
+     * @param permitsPerSecond 每秒生成的令牌数
+     * @param burst            最多积累的令牌数
+     */
+    public TokenBucketLimiter(final double permitsPerSecond, final int burst) {
+        isTrue(permitsPerSecond > 0, "permitsPerSecond must be positive: %s", permitsPerSecond);
+        isTrue(burst > 0, "burst must be positive: %d", burst);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    @Override
+    public synchronized Permit tryAcquire() {
+        final long now = System.nanoTime();
+        final long arrival = Math.max(theoreticalArrival, now);
+        if (arrival - now > toleranceNanos) {
+            return null;
+        }
+        theoreticalArrival = arrival + intervalNanos;
+        return Permit.NOOP;
+    }
+
+    @Override
+    public synchronized long waitNanos() {
+        return Math.max(0, theoreticalArrival - toleranceNanos - System.nanoTime());
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+/**
+ * 请求指标的采集入口，每个请求开始时调用一次{@link #start(String)}.
+ */
+public interface ApiMetrics {
+    /**
+     * 不采集任何指标，也不分配任何对象.
+     */
+    ApiMetrics NOOP = endpoint -> ExchangeMetrics.NOOP;
+
+    /**
+     * 开始一次请求，调用方保证随后会调用且只调用一次{@link ExchangeMetrics#completed()}、
+     * {@link ExchangeMetrics#failed(Throwable)}或{@link ExchangeMetrics#cancelled()}.
+     *
+     * @param endpoint 请求的端点标识
+     * @return 本次请求的指标
+     */
+    ExchangeMetrics start(String endpoint);
+
+    /**
+     * 记录一次被合并的请求：请求没有发出，而是共享了相同的进行中请求的结果.
+     * 合并比例为合并数占合并数与{@link #start(String)}次数之和的比例.
+     *
+     * @param endpoint 请求的端点标识
+     */
+    default void coalesced(String endpoint) {
+        // 默认不采集
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个端点的内存指标.
+ */
+public final class EndpointMetrics {
+    private final String endpoint;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram duration = new LatencyHistogram();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    EndpointMetrics(final String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    ExchangeMetrics start() {
+        inFlight.incrementAndGet();
+        return new Exchange(System.nanoTime());
+    }
+
+    void coalesced() {
+        coalesced.increment();
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public LatencyHistogram getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    public LatencyHistogram getDuration() {
+        return duration;
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    /**
+     * 获得被合并到进行中请求的请求数.
+     *
+     * @return 合并的请求数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 获得各响应状态码的请求数.
+     *
+     * @return 以状态码为key的快照
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        final Map<Integer, Long> counts = new HashMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private final class Exchange implements ExchangeMetrics {
+        private final long start;
+
+        private Exchange(final long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void requestBytes(final long bytes) {
+            bytesOut.add(bytes);
+        }
+
+        @Override
+        public void responseStarted(final int status) {
+            timeToFirstByte.record(System.nanoTime() - start);
+            LongAdder count = statusCounts.get(status);
+            if (count == null) {
+                count = statusCounts.computeIfAbsent(status, s -> new LongAdder());
+            }
+            count.increment();
+        }
+
+        @Override
+        public void responseBytes(final long bytes) {
+            bytesIn.add(bytes);
+        }
+
+        @Override
+        public void event() {
+            events.increment();
+        }
+
+        @Override
+        public void completed() {
+            end();
+        }
+
+        @Override
+        public void failed(final Throwable ex) {
+            failures.increment();
+            end();
+        }
+
+        @Override
+        public void cancelled() {
+            cancellations.increment();
+            end();
+        }
+
+        private void end() {
+            duration.record(System.nanoTime() - start);
+            inFlight.decrementAndGet();
+        }
+    }
+}
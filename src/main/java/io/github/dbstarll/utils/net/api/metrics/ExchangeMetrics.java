@@ -0,0 +1,62 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+/**
+ * 单次请求的指标，各方法在请求的生命周期中依次被调用.
+ */
+public interface ExchangeMetrics {
+    /**
+     * 不采集任何指标.
+     */
+    ExchangeMetrics NOOP = new ExchangeMetrics() {
+    };
+
+    /**
+     * 发出的请求体字节数，长度未知时不调用.
+     *
+     * @param bytes 字节数
+     */
+    default void requestBytes(final long bytes) {
+    }
+
+    /**
+     * 收到响应头，用于计算首字节时间.
+     *
+     * @param status 响应状态码
+     */
+    default void responseStarted(final int status) {
+    }
+
+    /**
+     * 收到一段响应体.
+     *
+     * @param bytes 字节数
+     */
+    default void responseBytes(final long bytes) {
+    }
+
+    /**
+     * 流式请求收到一个数据帧.
+     */
+    default void event() {
+    }
+
+    /**
+     * 请求成功结束.
+     */
+    default void completed() {
+    }
+
+    /**
+     * 请求失败.
+     *
+     * @param ex 失败的原因
+     */
+    default void failed(final Throwable ex) {
+    }
+
+    /**
+     * 请求被取消.
+     */
+    default void cancelled() {
+    }
+}
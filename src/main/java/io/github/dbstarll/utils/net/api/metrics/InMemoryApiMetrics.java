@@ -0,0 +1,47 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 不依赖第三方库的内存指标，按端点汇总.
+ */
+public final class InMemoryApiMetrics implements ApiMetrics {
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public ExchangeMetrics start(final String endpoint) {
+        return endpoint(endpoint).start();
+    }
+
+    @Override
+    public void coalesced(final String endpoint) {
+        endpoint(endpoint).coalesced();
+    }
+
+    private EndpointMetrics endpoint(final String endpoint) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+        return metrics != null ? metrics : endpoints.computeIfAbsent(endpoint, EndpointMetrics::new);
+    }
+
+    /**
+     * 获得指定端点的指标.
+     *
+     * @param endpoint 端点标识
+     * @return 端点的指标，端点还没有请求时返回null
+     */
+    public EndpointMetrics getEndpoint(final String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * 获得所有端点的指标.
+     *
+     * @return 以端点标识为key的只读视图
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableMap(endpoints);
+    }
+}
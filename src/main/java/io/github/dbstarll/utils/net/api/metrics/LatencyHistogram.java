@@ -0,0 +1,99 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数分桶的延迟直方图，每个2的幂区间再等分为8个桶，分位数的相对误差不超过12.5%，记录时不分配对象.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次延迟.
+     *
+     * @param nanos 延迟的纳秒数，小于0时按0记录
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 获得平均延迟.
+     *
+     * @param unit 时间单位
+     * @return 平均延迟，没有记录时返回0
+     */
+    public double getMean(final TimeUnit unit) {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n / unit.toNanos(1);
+    }
+
+    /**
+     * 获得最大延迟.
+     *
+     * @param unit 时间单位
+     * @return 最大延迟
+     */
+    public double getMax(final TimeUnit unit) {
+        return (double) max.get() / unit.toNanos(1);
+    }
+
+    /**
+     * 获得分位数延迟，返回所在桶的上界.
+     *
+     * @param quantile 分位数，取值范围[0, 1]
+     * @param unit     时间单位
+     * @return 分位数延迟，没有记录时返回0
+     */
+    public double getPercentile(final double quantile, final TimeUnit unit) {
+        final long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return (double) Math.min(upperBound(i), max.get()) / unit.toNanos(1);
+            }
+        }
+        return getMax(unit);
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 将请求指标注册到Micrometer的MeterRegistry，micrometer-core为可选依赖，只有使用本类时才需要引入.
+ * <ul>
+ * <li>{prefix}.ttfb：首字节时间，按endpoint和status区分</li>
+ * <li>{prefix}.duration：总耗时，按endpoint和outcome区分，outcome为响应状态码、FAILED或CANCELLED</li>
+ * <li>{prefix}.bytes.out、{prefix}.bytes.in：每个请求的请求体和响应体字节数</li>
+ * <li>{prefix}.events：流式请求的数据帧数</li>
+ * <li>{prefix}.in.flight：正在执行的请求数</li>
+ * <li>{prefix}.coalesced：合并到进行中请求而没有发出的请求数</li>
+ * </ul>
+ */
+public final class MicrometerApiMetrics implements ApiMetrics {
+    public static final String DEFAULT_PREFIX = "api.client";
+
+    private static final String TAG_ENDPOINT = "endpoint";
+    private static final String OUTCOME_FAILED = "FAILED";
+    private static final String OUTCOME_CANCELLED = "CANCELLED";
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final ConcurrentMap<String, Meters> endpoints = new ConcurrentHashMap<>();
+
+    public MicrometerApiMetrics(final MeterRegistry registry) {
+        this(registry, DEFAULT_PREFIX);
+    }
+
+    public MicrometerApiMetrics(final MeterRegistry registry, final String prefix) {
+        this.registry = notNull(registry, "registry is null");
+        this.prefix = notBlank(prefix, "prefix is blank");
+    }
+
+    @Override
+    public ExchangeMetrics start(final String endpoint) {
+        final Meters meters = meters(endpoint);
+        meters.inFlight.incrementAndGet();
+        return meters.new Exchange(registry.config().clock().monotonicTime());
+    }
+
+    @Override
+    public void coalesced(final String endpoint) {
+        meters(endpoint).coalesced.increment();
+    }
+
+    private Meters meters(final String endpoint) {
+        final Meters meters = endpoints.get(endpoint);
+        return meters != null ? meters : endpoints.computeIfAbsent(endpoint, Meters::new);
+    }
+
+    private final class Meters {
+        private final Tags tags;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final DistributionSummary bytesOut;
+        private final DistributionSummary bytesIn;
+        private final Counter events;
+        private final Counter coalesced;
+        private final ConcurrentMap<Integer, Timer> timeToFirstByte = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Timer> durations = new ConcurrentHashMap<>();
+
+        private Meters(final String endpoint) {
+            this.tags = Tags.of(TAG_ENDPOINT, endpoint);
+            this.bytesOut = DistributionSummary.builder(prefix + ".bytes.out").baseUnit("bytes").tags(tags)
+                    .register(registry);
+            this.bytesIn = DistributionSummary.builder(prefix + ".bytes.in").baseUnit("bytes").tags(tags)
+                    .register(registry);
+            this.events = Counter.builder(prefix + ".events").tags(tags).register(registry);
+            this.coalesced = Counter.builder(prefix + ".coalesced").tags(tags).register(registry);
+            Gauge.builder(prefix + ".in.flight", inFlight, AtomicInteger::get).tags(tags).register(registry);
+        }
+
+        private Timer timeToFirstByte(final int status) {
+            Timer timer = timeToFirstByte.get(status);
+            if (timer == null) {
+                timer = timeToFirstByte.computeIfAbsent(status, s -> Timer.builder(prefix + ".ttfb").tags(tags)
+                        .tag("status", Integer.toString(s)).publishPercentileHistogram().register(registry));
+            }
+            return timer;
+        }
+
+        private Timer duration(final String outcome) {
+            Timer timer = durations.get(outcome);
+            if (timer == null) {
+                timer = durations.computeIfAbsent(outcome, o -> Timer.builder(prefix + ".duration").tags(tags)
+                        .tag("outcome", o).publishPercentileHistogram().register(registry));
+            }
+            return timer;
+        }
+
+        private final class Exchange implements ExchangeMetrics {
+            private final long start;
+            private volatile int status;
+            private final AtomicLong received = new AtomicLong();
+
+            private Exchange(final long start) {
+                this.start = start;
+            }
+
+            private long elapsed() {
+                return registry.config().clock().monotonicTime() - start;
+            }
+
+            @Override
+            public void requestBytes(final long bytes) {
+                bytesOut.record(bytes);
+            }
+
+            @Override
+            public void responseStarted(final int status) {
+                this.status = status;
+                timeToFirstByte(status).record(elapsed(), TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void responseBytes(final long bytes) {
+                received.addAndGet(bytes);
+            }
+
+            @Override
+            public void event() {
+                events.increment();
+            }
+
+            @Override
+            public void completed() {
+                end(status > 0 ? Integer.toString(status) : OUTCOME_FAILED);
+            }
+
+            @Override
+            public void failed(final Throwable ex) {
+                end(OUTCOME_FAILED);
+            }
+
+            @Override
+            public void cancelled() {
+                end(OUTCOME_CANCELLED);
+            }
+
+            private void end(final String outcome) {
+                if (status > 0) {
+                    bytesIn.record(received.get());
+                }
+                duration(outcome).record(elapsed(), TimeUnit.NANOSECONDS);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.dbstarll.utils.net.api.retry;
+
+import io.github.dbstarll.utils.net.api.metrics.LatencyHistogram;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 对冲请求的策略：请求在指定分位的响应时间内仍未完成时，再向另一个地址发出一次相同的请求，采用先完成的结果.
+ * 每个端点的响应时间分别统计，样本不足时使用minDelay. 默认只对冲幂等的请求方法和可重复读取的请求体，
+ * 可以通过覆盖isHedgeable方法来调整.
+ */
+public class HedgePolicy {
+    private static final int MIN_SAMPLES = 20;
+
+    private final double quantile;
+    private final long minDelayNanos;
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * 构建HedgePolicy.
+     *
+     * @param quantile 触发对冲的响应时间分位，取值范围(0, 1)，例如0.95
+     * @param minDelay 触发对冲的最短等待时间，避免在响应时间都很短时产生过多的对冲请求
+     */
+    public HedgePolicy(final double quantile, final TimeValue minDelay) {
+        isTrue(quantile > 0 && quantile < 1, "quantile must be in (0, 1): %s", quantile);
+        this.quantile = quantile;
+        this.minDelayNanos = notNull(minDelay, "minDelay is null").toNanoseconds();
+    }
+
+    /**
+     * 判断请求是否可以对冲.
+     *
+     * @param request the request
+     * @return 请求方法是幂等的，并且请求体可以重复读取时返回true
+     */
+    public boolean isHedgeable(final ClassicHttpRequest request) {
+        final HttpEntity entity = request.getEntity();
+        return Method.isIdempotent(request.getMethod()) && (entity == null || entity.isRepeatable());
+    }
+
+    /**
+     * 获得发出对冲请求之前等待的纳秒数.
+     *
+     * @param endpoint 请求的端点标识
+     * @return 等待的纳秒数
+     */
+    public final long delayNanos(final String endpoint) {
+        final LatencyHistogram histogram = latencies.get(endpoint);
+        if (histogram == null || histogram.getCount() < MIN_SAMPLES) {
+            return minDelayNanos;
+        }
+        return Math.max(minDelayNanos, (long) histogram.getPercentile(quantile, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * 记录一次成功请求的响应时间.
+     *
+     * @param endpoint 请求的端点标识
+     * @param nanos    响应时间，纳秒
+     */
+    public final void record(final String endpoint, final long nanos) {
+        LatencyHistogram histogram = latencies.get(endpoint);
+        if (histogram == null) {
+            histogram = latencies.computeIfAbsent(endpoint, e -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+}
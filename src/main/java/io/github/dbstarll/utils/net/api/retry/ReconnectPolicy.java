@@ -0,0 +1,79 @@
+package io.github.dbstarll.utils.net.api.retry;
+
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.util.TimeValue;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 事件流断开之后的重连策略. 重连间隔以服务端通过retry字段指定的时间为基础，未指定时使用initialDelay，
+ * 连续重连失败时每次翻倍，不超过maxDelay；服务端指定的时间超过maxDelay时以服务端为准.
+ * 间隔不少于100毫秒，即使服务端指定retry为0，并且在间隔上再随机增加至多一半，避免上游重启后全部订阅同时重连.
+ * 收到任何事件之后重新计数.
+ * 默认在连接失败、连接被关闭、超时以及状态码为429或5xx时重连，可以通过覆盖isReconnectable方法来调整.
+ */
+public class ReconnectPolicy {
+    private static final long MIN_DELAY_MILLIS = 100;
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * 构建ReconnectPolicy.
+     *
+     * @param maxAttempts  没有收到事件时连续重连的最大次数
+     * @param initialDelay 服务端未指定retry时的重连间隔
+     * @param maxDelay     连续重连失败时重连间隔的上限
+     */
+    public ReconnectPolicy(final int maxAttempts, final TimeValue initialDelay, final TimeValue maxDelay) {
+        isTrue(maxAttempts > 0, "maxAttempts must be positive: %d", maxAttempts);
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = notNull(initialDelay, "initialDelay is null").toMilliseconds();
+        this.maxDelayMillis = notNull(maxDelay, "maxDelay is null").toMilliseconds();
+    }
+
+    public final int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 判断事件流失败的异常是否需要重连.
+     *
+     * @param ex 事件流失败的异常
+     * @return 是否需要重连
+     */
+    public boolean isReconnectable(final Throwable ex) {
+        if (ex instanceof HttpResponseException) {
+            final int status = ((HttpResponseException) ex).getStatusCode();
+            return status == HttpStatus.SC_TOO_MANY_REQUESTS || status >= HttpStatus.SC_SERVER_ERROR;
+        }
+        return ex instanceof IOException && ex.getClass() != InterruptedIOException.class
+                && !(ex instanceof SSLException) && !(ex instanceof ClientProtocolException);
+    }
+
+    /**
+     * 计算下一次重连之前等待的毫秒数.
+     *
+     * @param attempt     自上次收到事件以来第几次重连，从1开始
+     * @param retryMillis 服务端通过retry字段指定的毫秒数，没有时为-1
+     * @return 等待的毫秒数，不再重连时返回-1
+     */
+    public long delayMillis(final int attempt, final long retryMillis) {
+        if (attempt > maxAttempts) {
+            return -1;
+        }
+        final long base = Math.max(MIN_DELAY_MILLIS, retryMillis >= 0 ? retryMillis : initialDelayMillis);
+        final int shift = Math.min(attempt - 1, Long.numberOfLeadingZeros(base) - 1);
+        final long delay = Math.min(Math.max(maxDelayMillis, base), base << shift);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.dbstarll.utils.net.api.retry;
+
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.util.TimeValue;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * 请求的重试策略：按指数退避加全抖动（full jitter）计算重试间隔，响应带有Retry-After时至少等待其指定的时间，
+ * Retry-After超过重试间隔的上限时不再重试.
+ * 默认只重试幂等的请求方法和可重复读取的请求体，重试的状态码为429、502、503、504，
+ * 重试的异常为连接失败、连接被关闭和超时等网络异常. 可以通过覆盖isRetryable方法来调整.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * 构建RetryPolicy.
+     *
+     * @param maxAttempts    最多尝试的次数，包括第一次请求
+     * @param initialBackoff 第一次重试的最大间隔，之后每次翻倍
+     * @param maxBackoff     重试间隔的上限
+     */
+    public RetryPolicy(final int maxAttempts, final TimeValue initialBackoff, final TimeValue maxBackoff) {
+        isTrue(maxAttempts > 0, "maxAttempts must be positive: %d", maxAttempts);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = notNull(initialBackoff, "initialBackoff is null").toMilliseconds();
+        this.maxBackoffMillis = notNull(maxBackoff, "maxBackoff is null").toMilliseconds();
+    }
+
+    public final int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 判断请求是否可以重试.
+     *
+     * @param request the request
+     * @return 请求方法是幂等的，并且请求体可以重复读取时返回true
+     */
+    public boolean isRetryable(final ClassicHttpRequest request) {
+        final HttpEntity entity = request.getEntity();
+        return Method.isIdempotent(request.getMethod()) && (entity == null || entity.isRepeatable());
+    }
+
+    /**
+     * 判断响应状态码是否需要重试.
+     *
+     * @param status 响应状态码
+     * @return 是否需要重试
+     */
+    public boolean isRetryable(final int status) {
+        return status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_BAD_GATEWAY
+                || status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * 判断请求失败的异常是否需要重试.
+     *
+     * @param ex 请求失败的异常
+     * @return 是否需要重试
+     */
+    public boolean isRetryable(final Throwable ex) {
+        return ex instanceof IOException && ex.getClass() != InterruptedIOException.class
+                && !(ex instanceof UnknownHostException) && !(ex instanceof SSLException)
+                && !(ex instanceof ClientProtocolException);
+    }
+
+    /**
+     * 计算下一次重试之前等待的毫秒数.
+     *
+     * @param attempt          已经尝试的次数，从1开始
+     * @param retryAfterMillis 响应中Retry-After指定的毫秒数，没有时为-1
+     * @return 等待的毫秒数，不再重试时返回-1
+     */
+    public long backoffMillis(final int attempt, final long retryAfterMillis) {
+        if (attempt >= maxAttempts || retryAfterMillis > maxBackoffMillis) {
+            return -1;
+        }
+        final int shift = Math.min(attempt - 1, Long.numberOfLeadingZeros(Math.max(1, initialBackoffMillis)) - 1);
+        final long cap = Math.min(maxBackoffMillis, initialBackoffMillis << shift);
+        final long jitter = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        return Math.max(jitter, retryAfterMillis);
+    }
+
+    /**
+     * 解析响应中的Retry-After，支持秒数和HTTP日期两种格式.
+     *
+     * @param response 响应
+     * @return Retry-After指定的毫秒数，没有或无法解析时返回-1
+     */
+    public static long retryAfterMillis(final HttpResponse response) {
+        final Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null) {
+            return -1;
+        }
+        final String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ex) {
+            final Instant date = DateUtils.parseStandardDate(value);
+            return date != null ? Math.max(0, date.toEpochMilli() - System.currentTimeMillis()) : -1;
+        }
+    }
+}
@@ -1,12 +1,36 @@
 package io.github.dbstarll.utils.net.api;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.dbstarll.utils.http.client.HttpClientFactory;
 import io.github.dbstarll.utils.http.client.request.RelativeUriResolver;
+import io.github.dbstarll.utils.http.client.request.UriResolver;
 import io.github.dbstarll.utils.http.client.response.AbstractResponseHandlerFactory;
+import io.github.dbstarll.utils.net.api.balance.LoadBalancingUriResolver;
+import io.github.dbstarll.utils.net.api.cache.MemoryResponseCache;
+import io.github.dbstarll.utils.net.api.cache.ResponseCache;
 import io.github.dbstarll.utils.net.api.index.EventStream;
+import io.github.dbstarll.utils.net.api.index.JsonEventStreamIndexParser;
+import io.github.dbstarll.utils.net.api.index.JsonIndex;
+import io.github.dbstarll.utils.net.api.index.JsonIndexParser;
+import io.github.dbstarll.utils.net.api.limit.AimdLimiter;
+import io.github.dbstarll.utils.net.api.limit.CircuitBreaker;
+import io.github.dbstarll.utils.net.api.limit.Limiter;
+import io.github.dbstarll.utils.net.api.metrics.ApiMetrics;
+import io.github.dbstarll.utils.net.api.metrics.EndpointMetrics;
+import io.github.dbstarll.utils.net.api.metrics.InMemoryApiMetrics;
+import io.github.dbstarll.utils.net.api.retry.HedgePolicy;
+import io.github.dbstarll.utils.net.api.retry.ReconnectPolicy;
+import io.github.dbstarll.utils.net.api.retry.RetryPolicy;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.HttpResponseException;
 import org.apache.hc.client5.http.async.HttpAsyncClient;
@@ -15,19 +39,51 @@ import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.*;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.junit.jupiter.api.function.ThrowingConsumer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -117,6 +173,615 @@ class ApiAsyncClientTest {
         });
     }
 
+    @Test
+    void getBinary() throws Throwable {
+        final byte[] data = new byte[256];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        useClient((server, client) -> {
+            assertArrayEquals("好".getBytes(StandardCharsets.UTF_8),
+                    client.execute(client.get("/ping.html").build(), byte[].class, (FutureCallback<byte[]>) null).get());
+            final MyFutureCallback<byte[]> callback = new MyFutureCallback<>();
+            final byte[] bytes = client.execute(client.get("/ping.html").build(), byte[].class, callback).get();
+            assertArrayEquals(data, bytes);
+            callback.assertResult(bytes);
+            final ByteBuffer buffer = client.execute(client.get("/ping.html").build(), ByteBuffer.class,
+                    (FutureCallback<ByteBuffer>) null).get();
+            assertEquals(ByteBuffer.wrap(data), buffer);
+        }, s -> s.enqueue(new MockResponse().setBody(new Buffer().write(data))
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "text/plain; charset=UTF-8")),
+                s -> s.enqueue(new MockResponse().setBody(new Buffer().write(data))));
+    }
+
+    @Test
+    void getBinaryLarge() throws Throwable {
+        final byte[] data = new byte[(1 << 20) + 100];
+        new Random(1).nextBytes(data);
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            assertArrayEquals(data, client.executeAsync(client.get("/ping.html").build(), byte[].class).get());
+            final ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), byte[].class).get());
+            assertInstanceOf(IOException.class, e.getCause());
+        }, s -> s.enqueue(new MockResponse().setBody(new Buffer().write(data))),
+                s -> s.enqueue(new MockResponse().setBody("truncated")
+                        .setHeader(HttpHeaders.CONTENT_LENGTH, Integer.MAX_VALUE - 100)
+                        .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY)));
+    }
+
+    @Test
+    void getInputStream() throws Throwable {
+        final byte[] data = new byte[100000];
+        new Random(0).nextBytes(data);
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            try (InputStream in = client.execute(client.get("/ping.html").build(), InputStream.class,
+                    (FutureCallback<InputStream>) null).get()) {
+                assertArrayEquals(data, IOUtils.toByteArray(in));
+            }
+        }, s -> s.enqueue(new MockResponse().setChunkedBody(new Buffer().write(data), 3000)));
+    }
+
+    @Test
+    void getBinaryStatus() throws Throwable {
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            final ExecutionException e = assertThrowsExactly(ExecutionException.class, () -> client.execute(
+                    client.get("/ping.html").build(), byte[].class, (FutureCallback<byte[]>) null).get());
+            assertSame(HttpResponseException.class, e.getCause().getClass());
+            assertEquals(404, ((HttpResponseException) e.getCause()).getStatusCode());
+            assertEquals("Missing", ((HttpResponseException) e.getCause()).getReasonPhrase());
+        }, s -> s.enqueue(new MockResponse().setStatus("HTTP/1.1 404 Missing").setBody("not found")));
+    }
+
+    @Test
+    void blocking() throws Throwable {
+        useClient((server, client) -> {
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), client.execute(client.get("/ping.html").build(),
+                    byte[].class));
+            final ApiResponseException e = assertThrowsExactly(ApiResponseException.class,
+                    () -> client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals(404, e.getStatusCode());
+            final ApiProtocolException e2 = assertThrowsExactly(ApiProtocolException.class,
+                    () -> client.execute(client.get("/ping.html").build(), Long.class));
+            assertEquals("not a Long value: def", e2.getCause().getMessage());
+        }, s -> s.enqueue(new MockResponse().setBody("abc")),
+                s -> s.enqueue(new MockResponse().setResponseCode(404).setBody("not found")),
+                s -> s.enqueue(new MockResponse().setBody("def")));
+    }
+
+    @Test
+    void blockingInterrupted() throws Throwable {
+        useClient((server, client) -> {
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            final Thread caller = Thread.currentThread();
+            final Thread interrupter = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                caller.interrupt();
+            });
+            interrupter.start();
+            assertThrowsExactly(InterruptedIOException.class,
+                    () -> client.execute(client.get("/ping.html").build(), String.class));
+            assertTrue(Thread.interrupted());
+            interrupter.join();
+        }, s -> s.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS)));
+    }
+
+    @Test
+    void executeAsync() throws Throwable {
+        useClient((server, client) -> {
+            final CompletableFuture<String> first = client.executeAsync(client.get("/ping.html").build(), String.class);
+            final CompletableFuture<String> second = client.executeAsync(client.get("/ping.html").build(),
+                    String.class);
+            assertEquals(new HashSet<>(Arrays.asList("好", "abc")),
+                    first.thenCombine(second, (a, b) -> new HashSet<>(Arrays.asList(a, b))).get());
+            final ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals(404, ((HttpResponseException) e.getCause()).getStatusCode());
+            assertEquals(3, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setBody("abc")),
+                s -> s.enqueue(new MockResponse().setResponseCode(404).setBody("not found")));
+    }
+
+    @Test
+    void executeAsyncStream() throws Throwable {
+        useClient((server, client) -> {
+            client.executeAsync(client.get("/ping.html").build(), String.class).get();
+            final List<EventStream> results = new ArrayList<>();
+            assertNull(client.executeAsync(client.get("/ping.html").build(), EventStream.class,
+                    (contentType, result) -> results.add(result)).get(10, TimeUnit.SECONDS));
+            assertEquals(100, results.size());
+
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> client.executeAsync(
+                    client.get("/ping.html").build(), EventStream.class, (contentType, result) -> fail()).get());
+            assertEquals("Missing", ((HttpResponseException) e.getCause()).getReasonPhrase());
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                .setBody(events(100))), s -> s.enqueue(new MockResponse().setStatus("HTTP/1.1 404 Missing")
+                .setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM).setBody("data:a\n\n")));
+    }
+
+    @Test
+    void metrics() throws Throwable {
+        useClient((server, client) -> {
+            final InMemoryApiMetrics metrics = new InMemoryApiMetrics();
+            client.metrics(metrics);
+            assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertNull(client.executeAsync(client.post("/ping.html").setEntity("abc", ContentType.TEXT_PLAIN).build(),
+                    EventStream.class, (contentType, result) -> {
+                    }).get(10, TimeUnit.SECONDS));
+            final EndpointMetrics get = metrics.getEndpoint("GET " + server.url("/ping.html"));
+            assertEquals(1, get.getStatusCounts().get(200).longValue());
+            assertEquals(3, get.getBytesIn());
+            assertEquals(0, get.getInFlight());
+            final EndpointMetrics post = metrics.getEndpoint("POST " + server.url("/ping.html"));
+            assertEquals(3, post.getBytesOut());
+            assertEquals(100, post.getEvents());
+            assertEquals(1, post.getDuration().getCount());
+            assertEquals(0, post.getInFlight());
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                .setBody(events(100))));
+    }
+
+    @Test
+    void cache() throws Throwable {
+        useClient((server, client) -> {
+            client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)));
+            final MyFutureCallback<String> callback = new MyFutureCallback<>();
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class, callback).get());
+            callback.assertResult("好");
+
+            final String fresh = client.executeAsync(client.get("/fresh").build(), String.class).get();
+            assertEquals("fresh", fresh);
+            assertSame(fresh, client.executeAsync(client.get("/fresh").build(), String.class).get());
+            final byte[] bytes = client.executeAsync(client.get("/fresh").build(), byte[].class).get();
+            assertArrayEquals("fresh".getBytes(StandardCharsets.UTF_8), bytes);
+            assertNotSame(bytes, client.executeAsync(client.get("/fresh").build(), byte[].class).get());
+            assertEquals(2, server.getRequestCount());
+
+            final String etag = client.executeAsync(client.get("/etag").build(), String.class).get();
+            assertEquals("etag", etag);
+            assertSame(etag, client.executeAsync(client.get("/etag").build(), String.class).get());
+            assertEquals(4, server.getRequestCount());
+            server.takeRequest();
+            server.takeRequest();
+            assertNull(server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+            assertEquals("\"v1\"", server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+
+            final ExecutionException ex = assertThrowsExactly(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/missing").build(), String.class).get());
+            assertEquals(404, ((HttpResponseException) ex.getCause()).getStatusCode());
+        }, s -> s.enqueue(new MockResponse().setBody("fresh").setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody("etag").setHeader(HttpHeaders.ETAG, "\"v1\"")
+                        .setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")),
+                s -> s.enqueue(new MockResponse().setResponseCode(304).setHeader(HttpHeaders.ETAG, "\"v1\"")),
+                s -> s.enqueue(new MockResponse().setResponseCode(404).setBody("not found")));
+    }
+
+    @Test
+    void cacheEntrySize() throws Throwable {
+        final String large = StringUtils.repeat('x', 64);
+        useClient((server, client) -> {
+            client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)), 16);
+            assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals(large, client.executeAsync(client.get("/chunked").build(), String.class).get());
+            assertEquals(large, client.executeAsync(client.get("/chunked").build(), String.class).get());
+            assertArrayEquals(large.getBytes(StandardCharsets.UTF_8), client.executeAsync(client.get("/chunked").build(), byte[].class).get());
+            assertEquals(4, server.getRequestCount());
+            assertEquals(large, client.executeAsync(client.get("/sized").build(), String.class).get());
+            assertEquals(large, client.executeAsync(client.get("/sized").build(), String.class).get());
+            assertEquals(6, server.getRequestCount());
+            assertEquals("small", client.executeAsync(client.get("/small").build(), String.class).get());
+            assertEquals("small", client.executeAsync(client.get("/small").build(), String.class).get());
+            assertEquals(7, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setChunkedBody(large, 8).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setChunkedBody(large, 8).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setChunkedBody(large, 8).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody(large).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody(large).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody("small").setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+    }
+
+    @Test
+    void executeAsyncCancel() throws Throwable {
+        useClient((server, client) -> {
+            final CompletableFuture<String> future = client.executeAsync(client.get("/slow").build(), String.class);
+            assertEquals("/slow", server.takeRequest().getPath());
+            assertTrue(future.cancel(true));
+            assertThrows(CancellationException.class, future::get);
+            assertEquals("abc", client.executeAsync(client.get("/fast").build(), String.class)
+                    .get(5, TimeUnit.SECONDS));
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                if ("/slow".equals(request.getPath())) {
+                    return new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS);
+                }
+                return new MockResponse().setBody("abc");
+            }
+        }));
+    }
+
+    @Test
+    void coalescing() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        useClient((server, client) -> {
+            final InMemoryApiMetrics metrics = new InMemoryApiMetrics();
+            client.metrics(metrics);
+            client.coalescing(true);
+            final List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(client.executeAsync(client.get("/slow").build(), String.class));
+            }
+            final CompletableFuture<byte[]> bytes = client.executeAsync(client.get("/slow").build(), byte[].class);
+            assertTrue(futures.get(0).cancel(true));
+            release.countDown();
+            final String result = futures.get(1).get(5, TimeUnit.SECONDS);
+            assertEquals("slow", result);
+            for (CompletableFuture<String> future : futures.subList(2, futures.size())) {
+                assertSame(result, future.get(5, TimeUnit.SECONDS));
+            }
+            assertThrows(CancellationException.class, futures.get(0)::get);
+            assertArrayEquals("slow".getBytes(StandardCharsets.UTF_8), bytes.get(5, TimeUnit.SECONDS));
+            assertEquals(2, server.getRequestCount());
+            assertEquals(9, metrics.getEndpoint("GET " + server.url("/slow")).getCoalesced());
+
+            final CompletableFuture<String> first = client.executeAsync(client.get("/hang").build(), String.class);
+            final CompletableFuture<String> second = client.executeAsync(client.get("/hang").build(), String.class);
+            assertTrue(first.cancel(true));
+            assertTrue(second.cancel(true));
+            final EndpointMetrics hang = metrics.getEndpoint("GET " + server.url("/hang"));
+            assertEquals(1, hang.getCoalesced());
+            assertEquals(1, hang.getCancellations());
+            assertEquals("abc", client.executeAsync(client.get("/hang").build(), String.class)
+                    .get(5, TimeUnit.SECONDS));
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                if ("/slow".equals(request.getPath())) {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                    return new MockResponse().setBody("slow");
+                }
+                return new MockResponse().setBody("abc");
+            }
+        }));
+    }
+
+    @Test
+    void limiter() throws Throwable {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        useClient((server, client) -> {
+            final Map<String, AimdLimiter> limiters = new ConcurrentHashMap<>();
+            client.limiter(key -> limiters.computeIfAbsent(key,
+                    k -> new AimdLimiter(1, 1, 1, TimeValue.ofSeconds(10), 0.5)), false);
+            final List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(client.executeAsync(client.get("/slow").build(), String.class));
+            }
+            final CompletableFuture<String> cancelled = client.executeAsync(client.get("/slow").build(),
+                    String.class);
+            assertTrue(cancelled.cancel(true));
+            for (CompletableFuture<String> future : futures) {
+                assertEquals("slow", future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, maxActive.get());
+            assertEquals(3, server.getRequestCount());
+            final AimdLimiter limiter = limiters.get(server.url("/").toString().replaceAll("/$", ""));
+            assertEquals(0, limiter.getInFlight());
+
+            client.limiter(key -> new AimdLimiter(1, 1, 1, TimeValue.ofSeconds(10), 0.5), true);
+            final CompletableFuture<String> first = client.executeAsync(client.get("/slow").build(), String.class);
+            final ExecutionException ex = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/slow").build(), String.class).get());
+            assertInstanceOf(ApiLimitException.class, ex.getCause());
+            assertEquals("slow", first.get(5, TimeUnit.SECONDS));
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(100);
+                active.decrementAndGet();
+                return new MockResponse().setBody("slow");
+            }
+        }));
+    }
+
+    @Test
+    void limiterBackoff() throws Throwable {
+        useClient((server, client) -> {
+            final AimdLimiter limiter = new AimdLimiter(4, 1, 10, TimeValue.ofSeconds(10), 0.5);
+            client.limiter(key -> limiter, false);
+            assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            final ExecutionException ex = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals(429, ((HttpResponseException) ex.getCause()).getStatusCode());
+            assertEquals(2, limiter.getLimit());
+            assertEquals(0, limiter.getInFlight());
+        }, s -> s.enqueue(new MockResponse().setResponseCode(429)));
+    }
+
+    @Test
+    void circuitBreaker() throws Throwable {
+        useClient((server, client) -> {
+            final CircuitBreaker breaker = new CircuitBreaker(2, 0.5, TimeValue.ofSeconds(10), 1,
+                    TimeValue.ofSeconds(10), 1);
+            client.circuitBreaker(key -> breaker, 1);
+            final CompletableFuture<String> slow = client.executeAsync(client.get("/ping.html").build(), String.class);
+            final ExecutionException full = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals(server.url("/").toString().replaceAll("/$", ""),
+                    ((ApiLimitException) full.getCause()).getLimiterKey());
+            assertEquals("好", slow.get(5, TimeUnit.SECONDS));
+
+            final ExecutionException failed = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals(500, ((HttpResponseException) failed.getCause()).getStatusCode());
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+            final ApiCircuitOpenException open = assertThrowsExactly(ApiCircuitOpenException.class,
+                    () -> client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals(server.url("/").toString().replaceAll("/$", ""), open.getCircuitKey());
+            assertEquals(2, server.getRequestCount());
+        }, s -> s.setDispatcher(new Dispatcher() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                if (count.incrementAndGet() == 1) {
+                    return new MockResponse().setBody("好").setHeadersDelay(200, TimeUnit.MILLISECONDS)
+                            .setHeader(HttpHeaders.CONTENT_TYPE, ContentType.create("text/plain", StandardCharsets.UTF_8));
+                }
+                return new MockResponse().setResponseCode(500);
+            }
+        }));
+    }
+
+    @Test
+    void circuitBreakerSlowBody() throws Throwable {
+        useClient((server, client) -> {
+            final CircuitBreaker breaker = new CircuitBreaker(3, 0.3, TimeValue.ofSeconds(10), 1,
+                    TimeValue.ofSeconds(10), 1);
+            client.circuitBreaker(key -> breaker, 2);
+            assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertNotNull(server.takeRequest());
+            final List<CompletableFuture<String>> streams = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                streams.add(client.executeAsync(client.get("/ping.html").build(), String.class));
+                assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+            }
+            Thread.sleep(200);
+            final ExecutionException full = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertInstanceOf(ApiLimitException.class, full.getCause());
+            for (CompletableFuture<String> stream : streams) {
+                assertEquals("slow", stream.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(3, server.getRequestCount());
+
+            assertThrows(ExecutionException.class, () -> client.executeAsync(client.get("/ping.html").build(),
+                    String.class).get(5, TimeUnit.SECONDS));
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        }, s -> {
+            s.enqueue(new MockResponse().setBody("slow").throttleBody(1, 300, TimeUnit.MILLISECONDS));
+            s.enqueue(new MockResponse().setBody("slow").throttleBody(1, 300, TimeUnit.MILLISECONDS));
+            s.enqueue(new MockResponse().setBody("broken")
+                    .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        });
+    }
+
+    @Test
+    void retry() throws Throwable {
+        useClient((server, client) -> {
+            client.retry(new RetryPolicy(3, TimeValue.ofMilliseconds(10), TimeValue.ofSeconds(1)));
+            assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals("ok", client.executeAsync(client.get("/ping.html").build(), String.class)
+                    .get(5, TimeUnit.SECONDS));
+            assertEquals(4, server.getRequestCount());
+
+            final ExecutionException post = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.post("/ping.html").build(), String.class).get());
+            assertEquals(503, ((HttpResponseException) post.getCause()).getStatusCode());
+            assertEquals(5, server.getRequestCount());
+
+            final ExecutionException exhausted = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.get("/ping.html").build(), String.class).get());
+            assertEquals(429, ((HttpResponseException) exhausted.getCause()).getStatusCode());
+            assertEquals(8, server.getRequestCount());
+
+            assertEquals("ok", client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals(10, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setResponseCode(503).setHeader(HttpHeaders.RETRY_AFTER, "0")),
+                s -> s.enqueue(new MockResponse().setResponseCode(502)),
+                s -> s.enqueue(new MockResponse().setBody("ok")),
+                s -> s.enqueue(new MockResponse().setResponseCode(503)),
+                s -> s.enqueue(new MockResponse().setResponseCode(429)),
+                s -> s.enqueue(new MockResponse().setResponseCode(429)),
+                s -> s.enqueue(new MockResponse().setResponseCode(429)),
+                s -> s.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST)),
+                s -> s.enqueue(new MockResponse().setBody("ok")));
+    }
+
+    @Test
+    void hedge() throws Throwable {
+        final AtomicInteger count = new AtomicInteger();
+        useClient((server, client) -> {
+            client.hedge(new HedgePolicy(0.95, TimeValue.ofMilliseconds(50)));
+            final long start = System.nanoTime();
+            assertEquals("fast", client.executeAsync(client.get("/hedge").build(), String.class)
+                    .get(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(2, server.getRequestCount());
+            assertEquals("/hedge", server.takeRequest().getPath());
+            assertEquals("/hedge", server.takeRequest().getPath());
+
+            final ExecutionException post = assertThrows(ExecutionException.class,
+                    () -> client.executeAsync(client.post("/hedge").build(), String.class).get());
+            assertEquals(503, ((HttpResponseException) post.getCause()).getStatusCode());
+            assertEquals(3, server.getRequestCount());
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                switch (count.incrementAndGet()) {
+                    case 1:
+                        return new MockResponse().setBody("slow").setHeadersDelay(3, TimeUnit.SECONDS);
+                    case 2:
+                        return new MockResponse().setBody("fast");
+                    default:
+                        return new MockResponse().setResponseCode(503).setHeadersDelay(200, TimeUnit.MILLISECONDS);
+                }
+            }
+        }));
+    }
+
+    @Test
+    void hedgeOtherEndpoint() throws Throwable {
+        final Map<String, String> primaries = new ConcurrentHashMap<>();
+        try (MockWebServer other = new MockWebServer()) {
+            other.setDispatcher(hedgeDispatcher("other", primaries));
+            other.start();
+            useClient((server, client) -> {
+                client.uriResolver(new LoadBalancingUriResolver(LoadBalancingUriResolver.Strategy.POWER_OF_TWO_CHOICES,
+                        10, TimeValue.ofSeconds(10), server.url("/").toString(), other.url("/").toString()));
+                client.hedge(new HedgePolicy(0.95, TimeValue.ofMilliseconds(50)));
+                for (int i = 0; i < 6; i++) {
+                    final String path = "/hedge/" + i;
+                    final String hedged = client.executeAsync(client.get(path).build(), String.class)
+                            .get(5, TimeUnit.SECONDS);
+                    assertNotNull(primaries.get(path));
+                    assertNotEquals(primaries.get(path), hedged);
+                }
+            }, s -> s.setDispatcher(hedgeDispatcher("server", primaries)));
+        }
+    }
+
+    private static Dispatcher hedgeDispatcher(final String name, final Map<String, String> primaries) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                if (primaries.putIfAbsent(request.getPath(), name) == null) {
+                    return new MockResponse().setBody("slow").setHeadersDelay(2, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setBody(name);
+            }
+        };
+    }
+
+    @Test
+    void batch() throws Throwable {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        useClient((server, client) -> {
+            final List<ClassicHttpRequest> requests = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                requests.add(client.get("/batch/" + i).build());
+            }
+            final Map<Integer, Object> callbacks = new ConcurrentHashMap<>();
+            final BatchResult<String> result = client.batch(requests, 3, new BatchCallback<String>() {
+                @Override
+                public void completed(final int index, final String value) {
+                    callbacks.put(index, value);
+                }
+
+                @Override
+                public void failed(final int index, final Exception ex) {
+                    callbacks.put(index, ex);
+                }
+            }).get(10, TimeUnit.SECONDS);
+            assertEquals(10, result.size());
+            assertFalse(result.isSuccess());
+            assertEquals(Collections.singleton(7), result.getFailures().keySet());
+            assertEquals(404, ((HttpResponseException) result.getFailures().get(7)).getStatusCode());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i == 7 ? null : "ok" + i, result.get(i));
+            }
+            assertEquals(10, callbacks.size());
+            assertSame(result.getFailures().get(7), callbacks.get(7));
+            assertEquals(10, server.getRequestCount());
+            assertTrue(maxActive.get() <= 3, "maxActive: " + maxActive.get());
+
+            assertTrue(client.batch(Collections.emptyList(), 3, null).get().isSuccess());
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } finally {
+                    active.decrementAndGet();
+                }
+                final String index = StringUtils.substringAfterLast(request.getPath(), "/");
+                return "7".equals(index) ? new MockResponse().setResponseCode(404)
+                        : new MockResponse().setBody("ok" + index);
+            }
+        }));
+    }
+
+    @Test
+    void batchCancel() throws Throwable {
+        useClient((server, client) -> {
+            final List<ClassicHttpRequest> requests = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                requests.add(client.get("/batch/" + i).build());
+            }
+            final CompletableFuture<BatchResult<String>> future = client.batch(requests, 2, null);
+            assertTrue(future.cancel(true));
+            assertThrows(CancellationException.class, future::get);
+            Thread.sleep(500);
+            assertTrue(server.getRequestCount() <= 2, "requests: " + server.getRequestCount());
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                return new MockResponse().setBody("ok").setHeadersDelay(200, TimeUnit.MILLISECONDS);
+            }
+        }));
+    }
+
+    @Test
+    void deadline() throws Throwable {
+        useClient((server, client) -> {
+            client.executeAsync(client.get("/ping.html").build(), String.class).get();
+            final CompletableFuture<String> future = client.withDeadline(
+                    client.executeAsync(client.get("/ping.html").build(), String.class), Timeout.ofMilliseconds(100));
+            final ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertInstanceOf(TimeoutException.class, e.getCause());
+
+            client.deadline(Timeout.ofMilliseconds(100));
+            assertThrowsExactly(InterruptedIOException.class,
+                    () -> client.execute(client.get("/ping.html").build(), String.class));
+            client.deadline(null);
+            assertEquals("abc", client.execute(client.get("/ping.html").build(), String.class));
+        }, s -> s.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS)),
+                s -> s.enqueue(new MockResponse().setBody("slow").setHeadersDelay(500, TimeUnit.MILLISECONDS)),
+                s -> s.enqueue(new MockResponse().setBody("abc")));
+    }
+
+    @Test
+    void streamDeadline() throws Throwable {
+        useClient((server, client) -> {
+            client.executeAsync(client.get("/ping.html").build(), String.class).get();
+            client.deadline(Timeout.ofMilliseconds(100));
+            final List<EventStream> results = new ArrayList<>();
+            assertNull(client.executeAsync(client.get("/ping.html").build(), EventStream.class,
+                    (contentType, result) -> results.add(result)).get(5, TimeUnit.SECONDS));
+            assertEquals(1, results.size());
+
+            client.streamDeadline(Timeout.ofMilliseconds(100));
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> client.executeAsync(
+                    client.get("/ping.html").build(), EventStream.class, (contentType, result) -> {
+                    }).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody("data:a\n\n").throttleBody(2, 100, TimeUnit.MILLISECONDS)),
+                s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody("data:a\n\n").throttleBody(2, 100, TimeUnit.MILLISECONDS)));
+    }
+
     @Test
     void post() throws Throwable {
         useClient((server, client) -> {
@@ -148,6 +813,71 @@ class ApiAsyncClientTest {
         });
     }
 
+    @Test
+    void postStream() throws Throwable {
+        useClient((server, client) -> {
+            final byte[] data = new byte[100000];
+            Arrays.fill(data, (byte) 'a');
+            final HttpEntity entity = new InputStreamEntity(new ByteArrayInputStream(data),
+                    ContentType.APPLICATION_OCTET_STREAM);
+            final ClassicHttpRequest request = client.post("/ping.html").setEntity(entity).build();
+            assertEquals("好", client.execute(request, String.class, (FutureCallback<String>) null).get());
+            final RecordedRequest recorded = server.takeRequest();
+            assertEquals("chunked", recorded.getHeader(HttpHeaders.TRANSFER_ENCODING));
+            assertArrayEquals(data, recorded.getBody().readByteArray());
+        });
+    }
+
+    @Test
+    void postSlowStream() throws Throwable {
+        useServer(server -> {
+            try (CloseableHttpAsyncClient single = new HttpClientFactory().setAutomaticRetries(false)
+                    .buildAsync(b -> b.setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(1).build()))) {
+                single.start();
+                final MyClient client = new MyClient(single, server.url("/").toString());
+                final CountDownLatch release = new CountDownLatch(1);
+                final InputStream slow = new InputStream() {
+                    private boolean first = true;
+
+                    @Override
+                    public int read() throws IOException {
+                        final byte[] b = new byte[1];
+                        return read(b, 0, 1) < 0 ? -1 : b[0];
+                    }
+
+                    @Override
+                    public int read(final byte[] b, final int off, final int len) throws IOException {
+                        if (first) {
+                            first = false;
+                            b[off] = 'a';
+                            return 1;
+                        }
+                        try {
+                            assertTrue(release.await(5, TimeUnit.SECONDS));
+                        } catch (InterruptedException ex) {
+                            throw new InterruptedIOException();
+                        }
+                        return -1;
+                    }
+                };
+                final CompletableFuture<String> upload = client.executeAsync(client.post("/upload")
+                        .setEntity(new InputStreamEntity(slow, ContentType.APPLICATION_OCTET_STREAM)).build(),
+                        String.class);
+                assertEquals("fast", client.executeAsync(client.get("/fast").build(), String.class)
+                        .get(2, TimeUnit.SECONDS));
+                assertFalse(upload.isDone());
+                release.countDown();
+                assertEquals("a", upload.get(5, TimeUnit.SECONDS));
+            }
+        }, s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                return new MockResponse().setBody("/fast".equals(request.getPath()) ? "fast"
+                        : request.getBody().readUtf8());
+            }
+        }));
+    }
+
     @Test
     void delete() throws Throwable {
         useClient((server, client) -> {
@@ -306,10 +1036,10 @@ class ApiAsyncClientTest {
             final ExecutionException e = assertThrowsExactly(ExecutionException.class, () -> client.execute(request, String.class, callback).get());
             assertNotNull(e.getCause());
             assertEquals(HttpResponseException.class, e.getCause().getClass());
-            assertEquals("status code: 404, reason phrase: Not Found", e.getCause().getMessage());
+            assertEquals("status code: 404, reason phrase: Missing", e.getCause().getMessage());
             callback.assertException(e.getCause());
             assertEquals(0, callback.results.size());
-        }, s -> s.enqueue(new MockResponse().setResponseCode(404).setBody("not found")));
+        }, s -> s.enqueue(new MockResponse().setStatus("HTTP/1.1 404 Missing").setBody("not found")));
     }
 
     @Test
@@ -345,6 +1075,181 @@ class ApiAsyncClientTest {
                 .setBody("id:id\nevent:test\ndata:abc\ndata:def\nretry:5000\n\nretry:abc\n\ndata:a\nb\n\n  :  \n\n  ")));
     }
 
+    @Test
+    void http2() throws Throwable {
+        useServer(server -> {
+            assertThrows(IllegalArgumentException.class, () -> new Http2ClientFactory().setMaxFrameSize(16383));
+            assertThrows(IllegalArgumentException.class, () -> new Http2ClientFactory().setMaxFrameSize(1 << 24));
+            try (CloseableHttpAsyncClient http2 = new Http2ClientFactory().setAutomaticRetries(false)
+                    .setInitialWindowSize(1 << 20).setMaxFrameSize((1 << 24) - 1).buildAsync()) {
+                http2.start();
+                final MyClient client = new MyClient(http2, server.url("/").toString());
+                assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class).get());
+
+                final List<MyStreamFutureCallback<EventStream>> callbacks = new ArrayList<>();
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    final MyStreamFutureCallback<EventStream> callback = new MyStreamFutureCallback<>();
+                    callbacks.add(callback);
+                    futures.add(client.execute(client.get("/stream/" + i).build(), EventStream.class, callback));
+                }
+                for (int i = 0; i < 8; i++) {
+                    assertNull(futures.get(i).get(5, TimeUnit.SECONDS));
+                    assertEquals(2, callbacks.get(i).results.size());
+                    assertEquals(Integer.toString(i), callbacks.get(i).results.get(1).getData());
+                }
+
+                final Set<Integer> sequences = new HashSet<>();
+                for (int i = 0; i < 9; i++) {
+                    sequences.add(server.takeRequest().getSequenceNumber());
+                }
+                assertEquals(9, sequences.size());
+            }
+        }, s -> s.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)),
+                s -> s.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                if ("/ping.html".equals(request.getPath())) {
+                    return new MockResponse().setBody("好")
+                            .setHeader(HttpHeaders.CONTENT_TYPE, ContentType.create("text/plain", StandardCharsets.UTF_8));
+                }
+                return new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody("data:start\n\ndata:" + StringUtils.substringAfterLast(request.getPath(), "/") + "\n\n")
+                        .throttleBody(12, 100, TimeUnit.MILLISECONDS);
+            }
+        }));
+    }
+
+    @Test
+    void subscribe() throws Throwable {
+        useClient((server, client) -> {
+            final ReconnectPolicy policy = new ReconnectPolicy(3, TimeValue.ofMilliseconds(10), TimeValue.ofSeconds(1));
+            final MyStreamFutureCallback<EventStream> callback = new MyStreamFutureCallback<>();
+            final Future<Void> future = client.subscribe(client.get("/events").build(), policy, callback);
+            assertNull(future.get(5, TimeUnit.SECONDS));
+            callback.assertResult(null);
+            assertEquals(Arrays.asList("好", "a", "b", "c"), callback.results.stream().map(EventStream::getData)
+                    .collect(Collectors.toList()));
+
+            assertNull(server.takeRequest().getHeader("Last-Event-ID"));
+            assertNull(server.takeRequest().getHeader("Last-Event-ID"));
+            assertEquals("2", server.takeRequest().getHeader("Last-Event-ID"));
+            assertEquals("2", server.takeRequest().getHeader("Last-Event-ID"));
+            assertEquals("3", server.takeRequest().getHeader("Last-Event-ID"));
+            assertEquals(5, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody("retry:20\nid:1\ndata:a\n\nid:2\ndata:b\n\n")),
+                s -> s.enqueue(new MockResponse().setResponseCode(503)),
+                s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody("id:3\ndata:c\n\n")),
+                s -> s.enqueue(new MockResponse().setResponseCode(204)));
+    }
+
+    @Test
+    void subscribeFailed() throws Throwable {
+        useClient((server, client) -> {
+            final ReconnectPolicy policy = new ReconnectPolicy(2, TimeValue.ofMilliseconds(10), TimeValue.ofSeconds(1));
+            final MyStreamFutureCallback<EventStream> callback = new MyStreamFutureCallback<>();
+            final Future<Void> future = client.subscribe(client.get("/events").build(), policy, callback);
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertEquals(404, ((HttpResponseException) e.getCause()).getStatusCode());
+            assertEquals(3, server.getRequestCount());
+
+            final Future<Void> exhausted = client.subscribe(client.get("/events").build(), policy, callback);
+            final ExecutionException e2 = assertThrows(ExecutionException.class,
+                    () -> exhausted.get(5, TimeUnit.SECONDS));
+            assertEquals(503, ((HttpResponseException) e2.getCause()).getStatusCode());
+            assertEquals(6, server.getRequestCount());
+
+            final Future<Void> cancelled = client.subscribe(client.get("/events").build(), policy, callback);
+            Thread.sleep(100);
+            assertTrue(cancelled.cancel(true));
+            assertThrows(CancellationException.class, cancelled::get);
+            final int count = server.getRequestCount();
+            Thread.sleep(100);
+            assertEquals(count, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setResponseCode(503)),
+                s -> s.enqueue(new MockResponse().setResponseCode(404)),
+                s -> s.enqueue(new MockResponse().setResponseCode(503)),
+                s -> s.enqueue(new MockResponse().setResponseCode(503)),
+                s -> s.enqueue(new MockResponse().setResponseCode(503)),
+                s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody("data:a\n\n").throttleBody(1, 1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void jsonStream() throws Throwable {
+        useClient((server, client) -> {
+            final ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> client.execute(client.get("/ping.html").build(), Item.class, new MyStreamFutureCallback<>())
+                            .get());
+            assertEquals(JsonParseException.class, e.getCause().getClass());
+
+            final MyStreamFutureCallback<Item> callback = new MyStreamFutureCallback<>();
+            assertNull(client.execute(client.get("/items.ndjson").build(), Item.class, callback).get());
+            callback.assertResult(null);
+            assertEquals(2000, callback.results.size());
+            for (int i = 0; i < 2000; i++) {
+                assertEquals(i, callback.results.get(i).id);
+                assertEquals("名称" + i, callback.results.get(i).name);
+            }
+
+            final MyStreamFutureCallback<Item> callback2 = new MyStreamFutureCallback<>();
+            final JsonIndexParser<Item, ItemIndex> parser = new JsonIndexParser<>(new ObjectMapper(), Item.class,
+                    JsonIndexParser.Format.ARRAY, ItemIndex::new);
+            assertNull(client.execute(client.get("/items.json").build(), parser, callback2).get());
+            assertEquals(2000, callback2.results.size());
+            assertEquals(1999, callback2.results.get(1999).id);
+
+            final ExecutionException missing = assertThrows(ExecutionException.class,
+                    () -> client.execute(client.get("/items.json").build(), parser, new MyStreamFutureCallback<>())
+                            .get());
+            assertEquals(404, ((HttpResponseException) missing.getCause()).getStatusCode());
+            assertEquals("Missing", ((HttpResponseException) missing.getCause()).getReasonPhrase());
+        }, s -> s.enqueue(new MockResponse().setBody(new Buffer().writeUtf8(items(2000, "\n", "", "")))
+                        .setHeader(HttpHeaders.CONTENT_TYPE, "application/x-ndjson")),
+                s -> s.enqueue(new MockResponse().setBody(new Buffer().writeUtf8(items(2000, ",\n", "[", "]")))
+                        .setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON)),
+                s -> s.enqueue(new MockResponse().setStatus("HTTP/1.1 404 Missing").setBody("[]")
+                        .setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON)));
+    }
+
+    @Test
+    void jsonEventStream() throws Throwable {
+        useClient((server, client) -> {
+            client.executeAsync(client.get("/ping.html").build(), String.class).get();
+            final MyStreamFutureCallback<Chunk> callback = new MyStreamFutureCallback<>();
+            assertNull(client.execute(client.get("/chat").build(), Chunk.class, callback).get());
+            callback.assertResult(null);
+            assertEquals(Arrays.asList("你", "好"), callback.results.stream().map(c -> c.text)
+                    .collect(Collectors.toList()));
+
+            // 服务端在结束标记之后仍保持连接，流式请求不等待连接关闭
+            final MyStreamFutureCallback<Chunk> open = new MyStreamFutureCallback<>();
+            assertNull(client.execute(client.get("/chat").build(), Chunk.class, open).get(5, TimeUnit.SECONDS));
+            open.assertResult(null);
+            assertEquals(Collections.singletonList("你"), open.results.stream().map(c -> c.text)
+                    .collect(Collectors.toList()));
+            assertEquals("好", client.executeAsync(client.get("/ping.html").build(), String.class)
+                    .get(5, TimeUnit.SECONDS));
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                .setBody(new Buffer().writeUtf8("data: {\"text\":\"你\"}\n\n: keep-alive\n\n"
+                        + "data: {\"text\":\"好\"}\n\ndata: [DONE]\n\n"))),
+                s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                        .setBody(new Buffer().writeUtf8("data: {\"text\":\"你\"}\n\ndata: [DONE]\n\n"
+                                + StringUtils.repeat(": keep-alive\n\n", 500)))
+                        .throttleBody(64, 1, TimeUnit.SECONDS)),
+                s -> s.enqueue(new MockResponse().setBody("好")));
+    }
+
+    private static String items(final int count, final String separator, final String prefix, final String suffix) {
+        final StringJoiner joiner = new StringJoiner(separator, prefix, suffix);
+        for (int i = 0; i < count; i++) {
+            joiner.add("{\"id\":" + i + ",\"name\":\"名称" + i + "\"}");
+        }
+        return joiner.toString();
+    }
+
     @Test
     void eventStreamCharset() throws Throwable {
         useClient((server, client) -> {
@@ -367,6 +1272,161 @@ class ApiAsyncClientTest {
                 .setBody("id:中文\nevent:中文\ndata:中文")));
     }
 
+    @Test
+    void eventStreamSpec() throws Throwable {
+        useClient((server, client) -> {
+            final ClassicHttpRequest request = client.get("/ping.html").build();
+            assertEquals("好", client.execute(request, String.class, (FutureCallback<String>) null).get());
+
+            final MyStreamFutureCallback<EventStream> callback = new MyStreamFutureCallback<>();
+            final Future<Void> future = client.execute(request, EventStream.class, callback);
+            assertNull(future.get());
+            callback.assertResult(future.get());
+            assertEquals(3, callback.results.size());
+            assertEquals("EventStream[event='test', data='abc\n def', id='1', retry='null']", callback.results.get(0).toString());
+            assertEquals("EventStream[event='null', data='a', id='null', retry='3000']", callback.results.get(1).toString());
+            assertEquals("EventStream[event='null', data='中文', id='null', retry='null']", callback.results.get(2).toString());
+        }, s -> s.enqueue(new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                .setBody(": comment\r\nid: 1\r\nevent: test\r\ndata: abc\r\ndata:  def\r\n\r\n"
+                        + "data:a\rretry:3000\r\r:only comment\n\ndata: 中文\n\n")));
+    }
+
+    @Test
+    void getLarge() throws Throwable {
+        final char[] data = new char[300000];
+        Arrays.fill(data, 'a');
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            final String result = client.execute(client.get("/ping.html").build(), String.class,
+                    (FutureCallback<String>) null).get(10, TimeUnit.SECONDS);
+            assertEquals(data.length, result.length());
+        }, s -> s.enqueue(new MockResponse().setBody(new String(data))));
+    }
+
+    @Test
+    void streamFlowControl() throws Throwable {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "stream-callback"));
+        try {
+            useClient((server, client) -> {
+                client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+                client.flowControl(4096, executor);
+                final Set<String> threads = new HashSet<>();
+                final MyStreamFutureCallback<EventStream> callback = new MyStreamFutureCallback<EventStream>() {
+                    @Override
+                    public void stream(ContentType contentType, EventStream result) throws IOException {
+                        threads.add(Thread.currentThread().getName());
+                        super.stream(contentType, result);
+                    }
+                };
+                final Future<Void> future = client.execute(client.get("/ping.html").build(), EventStream.class,
+                        callback);
+                assertNull(future.get(10, TimeUnit.SECONDS));
+                callback.assertResult(null);
+                assertEquals(5000, callback.results.size());
+                for (int i = 0; i < 5000; i++) {
+                    assertTrue(callback.results.get(i).getData().startsWith(i + " "));
+                }
+                assertEquals(Collections.singleton("stream-callback"), threads);
+            }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                    .setBody(events(5000))));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void streamFlowControlException() throws Throwable {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            useClient((server, client) -> {
+                client.flowControl(1024, executor);
+                final IOException ex = new IOException("stop");
+                final MyStreamFutureCallback<String> callback = new MyStreamFutureCallback<String>() {
+                    @Override
+                    public void stream(ContentType contentType, String result) throws IOException {
+                        throw ex;
+                    }
+                };
+                final ExecutionException e = assertThrowsExactly(ExecutionException.class,
+                        () -> client.execute(client.get("/ping.html").build(), String.class, callback).get());
+                assertSame(ex, e.getCause());
+                callback.assertException(ex);
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String events(final int count) {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("data: ").append(i).append(' ').append(StringUtils.repeat('x', 100)).append("\n\n");
+        }
+        return body.toString();
+    }
+
+    @Test
+    void publisher() throws Throwable {
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            final MySubscriber<EventStream> subscriber = new MySubscriber<>();
+            client.publisher(client.get("/ping.html").build(), EventStream.class).subscribe(subscriber);
+            subscriber.subscription.request(1);
+            Thread.sleep(500);
+            // 只交付了一个数据帧，请求也没有结束
+            assertEquals(1, subscriber.results.size());
+            assertEquals(1, subscriber.done.getCount());
+
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+            assertNull(subscriber.error);
+            assertEquals(5000, subscriber.results.size());
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(subscriber.results.get(i).getData().startsWith(i + " "));
+            }
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                .setBody(events(5000))));
+    }
+
+    @Test
+    void publisherCancel() throws Throwable {
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            final MySubscriber<EventStream> subscriber = new MySubscriber<EventStream>() {
+                @Override
+                public void onNext(final EventStream eventStream) {
+                    super.onNext(eventStream);
+                    subscription.cancel();
+                }
+            };
+            client.publisher(client.get("/ping.html").build(), EventStream.class).subscribe(subscriber);
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertFalse(subscriber.done.await(500, TimeUnit.MILLISECONDS));
+            assertEquals(1, subscriber.results.size());
+        }, s -> s.enqueue(new MockResponse().setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_EVENT_STREAM)
+                .setBody(events(5000))));
+    }
+
+    @Test
+    void publisherError() throws Throwable {
+        useClient((server, client) -> {
+            client.execute(client.get("/ping.html").build(), String.class, (FutureCallback<String>) null).get();
+            final MySubscriber<String> subscriber = new MySubscriber<>();
+            client.publisher(client.get("/ping.html").build(), String.class).subscribe(subscriber);
+            subscriber.subscription.request(1);
+            assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+            assertSame(HttpResponseException.class, subscriber.error.getClass());
+            assertEquals(0, subscriber.results.size());
+
+            final MySubscriber<String> subscriber2 = new MySubscriber<>();
+            client.publisher(client.get("/ping.html").build(), String.class).subscribe(subscriber2);
+            subscriber2.subscription.request(0);
+            assertTrue(subscriber2.done.await(10, TimeUnit.SECONDS));
+            assertSame(IllegalArgumentException.class, subscriber2.error.getClass());
+        }, s -> s.enqueue(new MockResponse().setResponseCode(404).setBody("not found")));
+    }
+
     private static class MyClient extends ApiAsyncClient {
         public MyClient(final HttpAsyncClient httpClient, final String uriBase) {
             super(httpClient, false);
@@ -374,6 +1434,64 @@ class ApiAsyncClientTest {
             setCharset(StandardCharsets.UTF_8);
             setResponseCharset(StandardCharsets.UTF_8);
             setResponseHandlerFactory(new MyResponseHandlerFactory());
+            setResponseHandlerFactory(new MyIndexResponseHandlerFactory(getResponseHandler(String.class)));
+        }
+
+        public void flowControl(final int window, final Executor executor) {
+            setStreamFlowControl(window, executor);
+        }
+
+        public void metrics(final ApiMetrics metrics) {
+            setMetrics(metrics);
+        }
+
+        public void deadline(final Timeout deadline) {
+            setRequestDeadline(deadline);
+        }
+
+        public void streamDeadline(final Timeout deadline) {
+            setStreamDeadline(deadline);
+        }
+
+        public void cache(final ResponseCache responseCache) {
+            setResponseCache(responseCache);
+        }
+
+        public void cache(final ResponseCache responseCache, final int maxEntrySize) {
+            setResponseCache(responseCache, maxEntrySize);
+        }
+
+        public void coalescing(final boolean coalescing) {
+            setCoalescing(coalescing);
+        }
+
+        public void limiter(final Function<String, Limiter> limiterFactory, final boolean failFast) {
+            setLimiter(limiterFactory, failFast);
+        }
+
+        public void circuitBreaker(final Function<String, CircuitBreaker> breakerFactory, final int maxConcurrent) {
+            setCircuitBreaker(breakerFactory, maxConcurrent);
+        }
+
+        public void retry(final RetryPolicy retryPolicy) {
+            setRetryPolicy(retryPolicy);
+        }
+
+        public void hedge(final HedgePolicy hedgePolicy) {
+            setHedgePolicy(hedgePolicy);
+        }
+
+        public void uriResolver(final UriResolver uriResolver) {
+            setUriResolver(uriResolver);
+        }
+
+        public CompletableFuture<BatchResult<String>> batch(final List<ClassicHttpRequest> requests, final int window,
+                                                            final BatchCallback<String> callback) {
+            return executeBatch(requests, String.class, window, callback);
+        }
+
+        public <T> Publisher<T> publisher(final ClassicHttpRequest request, final Class<T> responseClass) {
+            return super.publisher(request, responseClass);
         }
 
         public Future<String> charset(final Charset charset, FutureCallback<String> callback) throws ApiException, IOException {
@@ -410,6 +1528,37 @@ class ApiAsyncClientTest {
         }
     }
 
+    private static class Item {
+        public int id;
+        public String name;
+    }
+
+    private static class Chunk {
+        public String text;
+    }
+
+    private static final class ChunkIndex extends JsonIndex<Chunk> {
+        private ChunkIndex(final Chunk data, final int index) {
+            super(data, index);
+        }
+    }
+
+    private static final class ItemIndex extends JsonIndex<Item> {
+        private ItemIndex(final Item data, final int index) {
+            super(data, index);
+        }
+    }
+
+    private static class MyIndexResponseHandlerFactory extends BasicIndexResponseHandlerFactory {
+        public MyIndexResponseHandlerFactory(final HttpClientResponseHandler<String> stringResponseHandler) {
+            super(stringResponseHandler);
+            addIndexParser(ItemIndex.class, new JsonIndexParser<>(new ObjectMapper(), Item.class,
+                    JsonIndexParser.Format.LINES, ItemIndex::new));
+            addIndexParser(ChunkIndex.class, new JsonEventStreamIndexParser<>(new ObjectMapper(), Chunk.class,
+                    ChunkIndex::new, "[DONE]"));
+        }
+    }
+
     private static class MyFutureCallback<T> implements FutureCallback<T> {
         private final Object lock = new Object();
 
@@ -474,12 +1623,40 @@ class ApiAsyncClientTest {
         }
     }
 
+    private static class MySubscriber<T> implements Subscriber<T> {
+        private final List<T> results = new CopyOnWriteArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        volatile Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(final T t) {
+            results.add(t);
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            this.error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+
     private static class MyStreamFutureCallback<T> extends MyFutureCallback<Void>
             implements StreamFutureCallback<T> {
         private final List<T> results = new ArrayList<>();
 
         @Override
-        public void stream(ContentType contentType, T result) {
+        public void stream(ContentType contentType, T result) throws IOException {
             results.add(result);
         }
 
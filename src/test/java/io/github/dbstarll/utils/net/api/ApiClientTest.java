@@ -1,11 +1,26 @@
 package io.github.dbstarll.utils.net.api;
 
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import io.github.dbstarll.utils.http.client.HttpClientFactory;
 import io.github.dbstarll.utils.http.client.request.RelativeUriResolver;
+import io.github.dbstarll.utils.http.client.request.UriResolver;
 import io.github.dbstarll.utils.http.client.response.AbstractResponseHandlerFactory;
+import io.github.dbstarll.utils.net.api.balance.LoadBalancingUriResolver;
+import io.github.dbstarll.utils.net.api.cache.MemoryResponseCache;
+import io.github.dbstarll.utils.net.api.cache.ResponseCache;
+import io.github.dbstarll.utils.net.api.limit.Limiter;
+import io.github.dbstarll.utils.net.api.limit.TokenBucketLimiter;
+import io.github.dbstarll.utils.net.api.metrics.ApiMetrics;
+import io.github.dbstarll.utils.net.api.metrics.EndpointMetrics;
+import io.github.dbstarll.utils.net.api.metrics.InMemoryApiMetrics;
+import io.github.dbstarll.utils.net.api.retry.RetryPolicy;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.HttpResponseException;
 import org.apache.hc.client5.http.classic.HttpClient;
@@ -18,20 +33,37 @@ import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.TimeValue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.ThrowingConsumer;
+import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * test ApiClient
@@ -214,13 +246,454 @@ class ApiClientTest {
         });
     }
 
+    private ListAppender<ILoggingEvent> traceAppender() {
+        final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        ((Logger) LoggerFactory.getLogger(MyClient.class)).addAppender(appender);
+        return appender;
+    }
+
+    @Test
+    void traceTruncated() throws Throwable {
+        final ListAppender<ILoggingEvent> appender = traceAppender();
+        try {
+            useClient((server, client) -> {
+                client.tracing(4, 1, null);
+                final HttpEntity entity = EntityBuilder.create().setText("0123456789")
+                        .setContentType(ContentType.TEXT_PLAIN).build();
+                assertEquals("好", client.execute(client.post("/ping.html").setEntity(entity).build(), String.class));
+                assertEquals(2, appender.list.size());
+                assertTrue(appender.list.get(0).getFormattedMessage().endsWith(":[0123...]"));
+
+                final HttpEntity chinese = EntityBuilder.create().setText("好好好")
+                        .setContentType(ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8)).build();
+                assertEquals("ok", client.execute(client.post("/ping.html").setEntity(chinese).build(),
+                        String.class));
+                assertTrue(appender.list.get(2).getFormattedMessage().endsWith(":[好...]"));
+
+                final HttpEntity small = EntityBuilder.create().setText("ab")
+                        .setContentType(ContentType.TEXT_PLAIN).build();
+                assertEquals("ok", client.execute(client.post("/ping.html").setEntity(small).build(),
+                        String.class));
+                assertTrue(appender.list.get(4).getFormattedMessage().endsWith(":[ab]"));
+            }, s -> s.enqueue(new MockResponse().setBody("ok")), s -> s.enqueue(new MockResponse().setBody("ok")));
+        } finally {
+            ((Logger) LoggerFactory.getLogger(MyClient.class)).detachAppender(appender);
+        }
+    }
+
+    @Test
+    void traceSampling() throws Throwable {
+        final ListAppender<ILoggingEvent> appender = traceAppender();
+        try {
+            useClient((server, client) -> {
+                client.tracing(-1, 0, null);
+                assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+                assertTrue(appender.list.isEmpty());
+
+                final List<Runnable> tasks = new ArrayList<>();
+                client.tracing(-1, 1, tasks::add);
+                final HttpEntity entity = EntityBuilder.create().setText("{}")
+                        .setContentType(ContentType.APPLICATION_JSON).build();
+                assertEquals("ok", client.execute(client.post("/ping.html").setEntity(entity).build(), String.class));
+                assertEquals(1, appender.list.size());
+                assertTrue(appender.list.get(0).getFormattedMessage().startsWith("response: "));
+                assertEquals(1, tasks.size());
+                tasks.get(0).run();
+                assertEquals(2, appender.list.size());
+                assertTrue(appender.list.get(1).getFormattedMessage().endsWith(":[{}]"));
+            }, s -> s.enqueue(new MockResponse().setBody("ok")));
+        } finally {
+            ((Logger) LoggerFactory.getLogger(MyClient.class)).detachAppender(appender);
+        }
+    }
+
+    @Test
+    void metrics() throws Throwable {
+        useClient((server, client) -> {
+            final InMemoryApiMetrics metrics = new InMemoryApiMetrics();
+            client.metrics(metrics);
+            assertEquals("好", client.execute(client.get("/ping.html?q=1").build(), String.class));
+            assertThrowsExactly(ApiResponseException.class,
+                    () -> client.execute(client.get("/ping.html").build(), String.class));
+            final EndpointMetrics endpoint = metrics.getEndpoint("GET " + server.url("/ping.html"));
+            assertEquals(0, endpoint.getInFlight());
+            assertEquals(2, endpoint.getDuration().getCount());
+            assertEquals(2, endpoint.getTimeToFirstByte().getCount());
+            assertEquals(1, endpoint.getFailures());
+            assertEquals(2, endpoint.getStatusCounts().size());
+            assertEquals(1, endpoint.getStatusCounts().get(404).longValue());
+            assertEquals(3, endpoint.getBytesIn());
+        }, s -> s.enqueue(new MockResponse().setResponseCode(404)));
+    }
+
+    @Test
+    void cache() throws Throwable {
+        useClient((server, client) -> {
+            client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)));
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+
+            final String fresh = client.execute(client.get("/fresh").build(), String.class);
+            assertEquals("fresh", fresh);
+            assertSame(fresh, client.execute(client.get("/fresh").build(), String.class));
+            assertEquals(2, server.getRequestCount());
+
+            final String etag = client.execute(client.get("/etag").build(), String.class);
+            assertEquals("etag", etag);
+            assertSame(etag, client.execute(client.get("/etag").build(), String.class));
+            assertEquals(4, server.getRequestCount());
+            server.takeRequest();
+            server.takeRequest();
+            assertNull(server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+            assertEquals("\"v1\"", server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+
+            assertEquals("post", client.execute(client.post("/fresh").build(), String.class));
+            assertEquals(5, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setBody("fresh").setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody("etag").setHeader(HttpHeaders.ETAG, "\"v1\"")
+                        .setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")),
+                s -> s.enqueue(new MockResponse().setResponseCode(304).setHeader(HttpHeaders.ETAG, "\"v1\"")),
+                s -> s.enqueue(new MockResponse().setBody("post")));
+    }
+
+    @Test
+    void cacheEntrySize() throws Throwable {
+        final String large = StringUtils.repeat('x', 64);
+        useClient((server, client) -> {
+            client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)), 16);
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals(large, client.execute(client.get("/chunked").build(), String.class));
+            assertEquals(large, client.execute(client.get("/chunked").build(), String.class));
+            assertArrayEquals(large.getBytes(StandardCharsets.UTF_8), client.execute(client.get("/chunked").build(), byte[].class));
+            assertEquals(4, server.getRequestCount());
+            assertEquals(large, client.execute(client.get("/sized").build(), String.class));
+            assertEquals(large, client.execute(client.get("/sized").build(), String.class));
+            assertEquals(6, server.getRequestCount());
+            assertEquals("small", client.execute(client.get("/small").build(), String.class));
+            assertEquals("small", client.execute(client.get("/small").build(), String.class));
+            assertEquals(7, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setChunkedBody(large, 8).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setChunkedBody(large, 8).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setChunkedBody(large, 8).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody(large).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody(large).setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody("small").setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+    }
+
+    @Test
+    void cacheWithoutHandler() throws Throwable {
+        useServer(server -> {
+            try (CloseableHttpClient httpClient = new HttpClientFactory().build()) {
+                final MyClient client = new MyClient(httpClient, server.url("/").toString());
+                client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)));
+                final IllegalArgumentException ex = assertThrowsExactly(IllegalArgumentException.class,
+                        () -> client.execute(client.get("/ping.html").build(), Integer.class));
+                assertEquals("no ResponseHandler for class: java.lang.Integer", ex.getMessage());
+                assertEquals(0, server.getRequestCount());
+
+                assertEquals(ByteBuffer.wrap("好".getBytes(StandardCharsets.UTF_8)),
+                        client.execute(client.get("/ping.html").build(), ByteBuffer.class));
+                final ApiResponseException missing = assertThrowsExactly(ApiResponseException.class,
+                        () -> client.execute(client.get("/missing").build(), ByteBuffer.class));
+                assertEquals(404, missing.getStatusCode());
+                assertEquals("Missing", missing.getReasonPhrase());
+
+                final MyClient always = new MyClient(httpClient, server.url("/").toString(), true);
+                always.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)));
+                assertEquals(ByteBuffer.wrap("gone".getBytes(StandardCharsets.UTF_8)),
+                        always.execute(always.get("/missing").build(), ByteBuffer.class));
+            }
+        }, s -> s.enqueue(new MockResponse().setStatus("HTTP/1.1 404 Missing").setBody("missing")),
+                s -> s.enqueue(new MockResponse().setStatus("HTTP/1.1 404 Missing").setBody("gone")));
+    }
+
+    @Test
+    void cacheRevalidateOnCopy() throws Throwable {
+        useClient((server, client) -> {
+            client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)));
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            final ClassicHttpRequest request = client.get("/etag").build();
+            for (int i = 0; i < 3; i++) {
+                assertEquals("etag", client.execute(request, String.class));
+                assertFalse(request.containsHeader(HttpHeaders.IF_NONE_MATCH));
+            }
+            server.takeRequest();
+            assertNull(server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+            for (int i = 0; i < 2; i++) {
+                final RecordedRequest recorded = server.takeRequest();
+                assertEquals(1, recorded.getHeaders().values(HttpHeaders.IF_NONE_MATCH).size());
+                assertEquals("\"v1\"", recorded.getHeader(HttpHeaders.IF_NONE_MATCH));
+            }
+        }, s -> s.enqueue(new MockResponse().setBody("etag").setHeader(HttpHeaders.ETAG, "\"v1\"")
+                        .setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")),
+                s -> s.enqueue(new MockResponse().setResponseCode(304).setHeader(HttpHeaders.ETAG, "\"v1\"")
+                        .setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")),
+                s -> s.enqueue(new MockResponse().setResponseCode(304).setHeader(HttpHeaders.ETAG, "\"v1\"")
+                        .setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")));
+    }
+
+    @Test
+    void cachePerPrincipal() throws Throwable {
+        useClient((server, client) -> {
+            client.cache(new MemoryResponseCache(1024, TimeValue.ofMinutes(1)));
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals("alice", client.execute(client.get("/me")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer alice").build(), String.class));
+            assertEquals("bob", client.execute(client.get("/me")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer bob").build(), String.class));
+            assertEquals("alice", client.execute(client.get("/me")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer alice").build(), String.class));
+            assertEquals("bob", client.execute(client.get("/me")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer bob").build(), String.class));
+            assertEquals(3, server.getRequestCount());
+
+            final String key = client.cacheKey(client.get("/me").addHeader(HttpHeaders.AUTHORIZATION, "Bearer alice")
+                    .addHeader("Cookie", "session=alice").build());
+            assertFalse(key.contains("alice"));
+            assertNotEquals(key, client.cacheKey(client.get("/me")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer bob").addHeader("Cookie", "session=alice").build()));
+        }, s -> s.enqueue(new MockResponse().setBody("alice").setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")),
+                s -> s.enqueue(new MockResponse().setBody("bob").setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+    }
+
+    @Test
+    void coalescingKey() throws Throwable {
+        useClient((server, client) -> {
+            final Object key = client.coalescingKey(client.get("/me").addHeader("X-Tenant", "a")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer alice").build());
+            assertEquals(key, client.coalescingKey(client.get("/me").addHeader("x-tenant", "a")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer alice")
+                    .addHeader(HttpHeaders.CACHE_CONTROL, "no-cache").build()));
+            assertFalse(key.toString().contains("alice"));
+            assertEquals("GET " + client.cacheKey(client.get("/me").addHeader("X-Tenant", "a")
+                    .addHeader(HttpHeaders.AUTHORIZATION, "Bearer alice").build()), key);
+            assertNull(client.coalescingKey(client.post("/me").build()));
+        });
+    }
+
+    @Test
+    void coalescing() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        useClient((server, client) -> {
+            final InMemoryApiMetrics metrics = new InMemoryApiMetrics();
+            client.metrics(metrics);
+            client.coalescing(true);
+            final ExecutorService executor = Executors.newFixedThreadPool(5);
+            try {
+                final List<Future<String>> futures = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    futures.add(executor.submit(() -> client.execute(client.get("/slow").build(), String.class)));
+                }
+                final long deadline = System.currentTimeMillis() + 5000;
+                while (metrics.getEndpoint("GET " + server.url("/slow")) == null
+                        || metrics.getEndpoint("GET " + server.url("/slow")).getCoalesced() < 4) {
+                    assertTrue(System.currentTimeMillis() < deadline);
+                    Thread.sleep(10);
+                }
+                release.countDown();
+                final String result = futures.get(0).get(5, TimeUnit.SECONDS);
+                assertEquals("slow", result);
+                for (Future<String> future : futures) {
+                    assertSame(result, future.get(5, TimeUnit.SECONDS));
+                }
+                assertEquals(1, server.getRequestCount());
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals("abc", client.execute(client.get("/slow").build(), String.class));
+            assertEquals("abc", client.execute(client.post("/slow").build(), String.class));
+        }, s -> s.setDispatcher(new Dispatcher() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                if (count.getAndIncrement() == 0) {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                    return new MockResponse().setBody("slow");
+                }
+                return new MockResponse().setBody("abc");
+            }
+        }));
+    }
+
+    @Test
+    void limiter() throws Throwable {
+        useClient((server, client) -> {
+            client.limiter(key -> new TokenBucketLimiter(1, 1), true);
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            final ApiLimitException ex = assertThrowsExactly(ApiLimitException.class,
+                    () -> client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals(server.url("/").toString().replaceAll("/$", ""), ex.getLimiterKey());
+
+            client.limiter(key -> new TokenBucketLimiter(20, 1), false);
+            final long start = System.nanoTime();
+            for (int i = 0; i < 3; i++) {
+                assertEquals("ok", client.execute(client.get("/ping.html").build(), String.class));
+            }
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+            assertEquals(4, server.getRequestCount());
+        }, s -> s.enqueue(new MockResponse().setBody("ok")), s -> s.enqueue(new MockResponse().setBody("ok")),
+                s -> s.enqueue(new MockResponse().setBody("ok")));
+    }
+
+    @Test
+    void loadBalancing() throws Throwable {
+        try (MockWebServer bad = new MockWebServer()) {
+            bad.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(final RecordedRequest request) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            });
+            bad.start();
+            useClient((server, client) -> {
+                final LoadBalancingUriResolver resolver = new LoadBalancingUriResolver(
+                        LoadBalancingUriResolver.Strategy.ROUND_ROBIN, 2, TimeValue.ofSeconds(10),
+                        server.url("/").toString(), bad.url("/").toString());
+                client.uriResolver(resolver);
+                int failed = 0;
+                for (int i = 0; i < 8; i++) {
+                    try {
+                        assertEquals("ok", client.execute(client.get("/ping.html").build(), String.class));
+                    } catch (ApiResponseException ex) {
+                        assertEquals(500, ex.getStatusCode());
+                        failed++;
+                    }
+                }
+                assertEquals(2, failed);
+                assertEquals(6, server.getRequestCount());
+                assertEquals(2, bad.getRequestCount());
+                assertTrue(resolver.getEndpoints().get(1).isEjected());
+                assertEquals(0, resolver.getEndpoints().get(0).getOutstanding());
+            }, s -> s.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(final RecordedRequest request) {
+                    return new MockResponse().setBody("ok");
+                }
+            }));
+        }
+    }
+
+    @Test
+    void retry() throws Throwable {
+        useServer(server -> {
+            try (CloseableHttpClient httpClient = new HttpClientFactory().setAutomaticRetries(false).build()) {
+                final MyClient client = new MyClient(httpClient, server.url("/").toString());
+                client.retry(new RetryPolicy(3, TimeValue.ofMilliseconds(10), TimeValue.ofSeconds(2)));
+                final long start = System.nanoTime();
+                assertEquals("ok", client.execute(client.get("/ping.html").build(), String.class));
+                assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+                assertEquals(3, server.getRequestCount());
+
+                final ApiResponseException post = assertThrowsExactly(ApiResponseException.class,
+                        () -> client.execute(client.post("/ping.html").build(), String.class));
+                assertEquals(503, post.getStatusCode());
+                assertEquals(4, server.getRequestCount());
+
+                final ApiResponseException exhausted = assertThrowsExactly(ApiResponseException.class,
+                        () -> client.execute(client.get("/ping.html").build(), String.class));
+                assertEquals(502, exhausted.getStatusCode());
+                assertEquals(7, server.getRequestCount());
+            }
+        }, s -> {
+            final List<MockResponse> responses = new ArrayList<>();
+            responses.add(new MockResponse().setResponseCode(503).setHeader(HttpHeaders.RETRY_AFTER, "1"));
+            responses.add(new MockResponse().setResponseCode(504));
+            responses.add(new MockResponse().setBody("ok"));
+            responses.add(new MockResponse().setResponseCode(503));
+            for (int i = 0; i < 3; i++) {
+                responses.add(new MockResponse().setResponseCode(502));
+            }
+            s.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(final RecordedRequest request) {
+                    synchronized (responses) {
+                        return responses.remove(0);
+                    }
+                }
+            });
+        });
+    }
+
+    @Test
+    void keepAlive() throws Throwable {
+        useServer(server -> {
+            try (CloseableHttpClient httpClient = new HttpClientFactory().build(new KeepAlive(2, TimeValue.ofSeconds(30)))) {
+                final MyClient client = new MyClient(httpClient, server.url("/").toString());
+                client.keepAlive(true);
+                assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+                for (int i = 0; i < 2; i++) {
+                    assertEquals("ok", client.execute(client.get("/ping.html").build(), String.class));
+                }
+                final RecordedRequest first = server.takeRequest();
+                assertEquals("keep-alive", first.getHeader(HttpHeaders.CONNECTION));
+                assertEquals(0, first.getSequenceNumber());
+                assertEquals(1, server.takeRequest().getSequenceNumber());
+                assertEquals(0, server.takeRequest().getSequenceNumber());
+            }
+        }, s -> s.enqueue(new MockResponse().setBody("ok")), s -> s.enqueue(new MockResponse().setBody("ok")));
+    }
+
+    @Test
+    void connectionClose() throws Throwable {
+        useClient((server, client) -> {
+            assertEquals("好", client.execute(client.get("/ping.html").build(), String.class));
+            assertEquals("ok", client.execute(client.get("/ping.html").build(), String.class));
+            for (int i = 0; i < 2; i++) {
+                final RecordedRequest recorded = server.takeRequest();
+                assertEquals("close", recorded.getHeader(HttpHeaders.CONNECTION));
+                assertEquals(0, recorded.getSequenceNumber());
+            }
+        }, s -> s.enqueue(new MockResponse().setBody("ok")));
+    }
+
     private static class MyClient extends ApiClient {
         public MyClient(final HttpClient httpClient, final String uriBase) {
-            super(httpClient, false);
+            this(httpClient, uriBase, false);
+        }
+
+        public MyClient(final HttpClient httpClient, final String uriBase, final boolean alwaysProcessEntity) {
+            super(httpClient, alwaysProcessEntity);
             setUriResolver(new RelativeUriResolver(uriBase));
             setCharset(StandardCharsets.UTF_8);
             setResponseHandlerFactory(new MyResponseHandlerFactory());
         }
+
+        void keepAlive(final boolean keepAlive) {
+            setKeepAlive(keepAlive);
+        }
+
+        void metrics(final ApiMetrics metrics) {
+            setMetrics(metrics);
+        }
+
+        void cache(final ResponseCache responseCache) {
+            setResponseCache(responseCache);
+        }
+
+        void cache(final ResponseCache responseCache, final int maxEntrySize) {
+            setResponseCache(responseCache, maxEntrySize);
+        }
+
+        void coalescing(final boolean coalescing) {
+            setCoalescing(coalescing);
+        }
+
+        void limiter(final Function<String, Limiter> limiterFactory, final boolean failFast) {
+            setLimiter(limiterFactory, failFast);
+        }
+
+        void uriResolver(final UriResolver uriResolver) {
+            setUriResolver(uriResolver);
+        }
+
+        void retry(final RetryPolicy retryPolicy) {
+            setRetryPolicy(retryPolicy);
+        }
+
+        void tracing(final int bodyLimit, final double sampleRate, final Executor executor) {
+            setTracing(bodyLimit, sampleRate, executor);
+        }
     }
 
     private static class MyResponseHandlerFactory extends AbstractResponseHandlerFactory {
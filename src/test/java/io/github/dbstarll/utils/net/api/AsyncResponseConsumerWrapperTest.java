@@ -55,7 +55,7 @@ class AsyncResponseConsumerWrapperTest {
             @Override
             protected int capacityIncrement() {
                 called.set(true);
-                return 10 + super.capacityIncrement();
+                return super.capacityIncrement();
             }
 
             @Override
@@ -69,6 +69,6 @@ class AsyncResponseConsumerWrapperTest {
         }) {
         }.updateCapacity(refIncrement::set);
         assertTrue(called.get());
-        assertEquals(10, refIncrement.get());
+        assertEquals(Integer.MAX_VALUE, refIncrement.get());
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompletableExchangeTest {
+    @Test
+    void completed() throws Exception {
+        final CompletableExchange<String> exchange = new CompletableExchange<>();
+        final BasicFuture<String> future = new BasicFuture<>(exchange);
+        assertSame(exchange, exchange.bind(future));
+        future.completed("ok");
+        assertEquals("ok", exchange.get());
+        assertFalse(future.isCancelled());
+    }
+
+    @Test
+    void cancel() {
+        final CompletableExchange<String> exchange = new CompletableExchange<>();
+        final BasicFuture<String> future = new BasicFuture<>(exchange);
+        exchange.bind(future);
+        assertTrue(exchange.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(exchange.isCancelled());
+    }
+
+    @Test
+    void cancelBeforeBind() {
+        final CompletableExchange<String> exchange = new CompletableExchange<>();
+        assertTrue(exchange.cancel(false));
+        final BasicFuture<String> future = new BasicFuture<>(null);
+        exchange.bind(future);
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void failed() {
+        final CompletableExchange<String> exchange = new CompletableExchange<>();
+        final BasicFuture<String> future = new BasicFuture<>(exchange);
+        exchange.bind(future);
+        final Exception ex = new Exception("failed");
+        future.failed(ex);
+        assertSame(ex, assertThrows(ExecutionException.class, exchange::get).getCause());
+    }
+
+    @Test
+    void deadline() throws InterruptedException {
+        final CompletableExchange<String> exchange = new CompletableExchange<>();
+        final CountDownLatch aborted = new CountDownLatch(1);
+        final BasicFuture<String> future = new BasicFuture<>(new FutureCallback<String>() {
+            @Override
+            public void completed(final String result) {
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+            }
+
+            @Override
+            public void cancelled() {
+                aborted.countDown();
+            }
+        });
+        exchange.bind(future);
+        assertSame(exchange, CompletableExchange.deadline(exchange, Timeout.ofMilliseconds(50)));
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> exchange.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        // 中止底层请求发生在定时器线程上，可能略晚于get返回
+        assertTrue(aborted.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void deadlineDisabled() throws Exception {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableExchange.deadline(future, null);
+        CompletableExchange.deadline(future, Timeout.DISABLED);
+        assertThrows(TimeoutException.class, () -> future.get(100, TimeUnit.MILLISECONDS));
+        future.complete("ok");
+        assertEquals("ok", future.get());
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowControlledStreamCallbackTest {
+    private final Queue<Runnable> executor = new LinkedList<>();
+    private final List<String> events = new ArrayList<>();
+    private final List<Integer> updates = new ArrayList<>();
+    private final CapacityChannel capacityChannel = updates::add;
+
+    private void runAll() {
+        Runnable task;
+        while ((task = executor.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private AsyncResponseConsumer<Void> consumer(final StreamCallback<String> streamCallback) {
+        final FlowControlledStreamCallback<String> flowControlled = new FlowControlledStreamCallback<>(
+                streamCallback, executor::add, 100);
+        return flowControlled.wrap(new LineConsumer(flowControlled));
+    }
+
+    private FutureCallback<Void> resultCallback(final AtomicReference<Exception> refException) {
+        return new FutureCallback<Void>() {
+            @Override
+            public void completed(final Void result) {
+                events.add("completed");
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+                refException.set(ex);
+                events.add("failed");
+            }
+
+            @Override
+            public void cancelled() {
+                events.add("cancelled");
+            }
+        };
+    }
+
+    @Test
+    void releaseAfterCallback() throws Exception {
+        final AsyncResponseConsumer<Void> consumer = consumer((contentType, result) -> events.add(result));
+        consumer.consumeResponse(new BasicHttpResponse(200), null, null, resultCallback(new AtomicReference<>()));
+
+        consumer.consume(ByteBuffer.wrap("a\nb\n".getBytes(StandardCharsets.UTF_8)));
+        consumer.updateCapacity(capacityChannel);
+        assertTrue(events.isEmpty());
+        assertTrue(updates.isEmpty());
+
+        runAll();
+        assertEquals(Arrays.asList("a", "b"), events);
+        assertEquals(Arrays.asList(100), updates);
+
+        consumer.updateCapacity(capacityChannel);
+        assertEquals(Arrays.asList(100, 100), updates);
+
+        consumer.consume(ByteBuffer.wrap("c\n".getBytes(StandardCharsets.UTF_8)));
+        consumer.streamEnd(null);
+        assertEquals(Arrays.asList("a", "b"), events);
+        runAll();
+        assertEquals(Arrays.asList("a", "b", "c", "completed"), events);
+    }
+
+    @Test
+    void callbackException() throws Exception {
+        final IOException ex = new IOException("stop");
+        final AsyncResponseConsumer<Void> consumer = consumer((contentType, result) -> {
+            events.add(result);
+            throw ex;
+        });
+        final AtomicReference<Exception> refException = new AtomicReference<>();
+        consumer.consumeResponse(new BasicHttpResponse(200), null, null, resultCallback(refException));
+
+        consumer.consume(ByteBuffer.wrap("a\nb\n".getBytes(StandardCharsets.UTF_8)));
+        runAll();
+        assertEquals(Arrays.asList("a"), events);
+        assertSame(ex, assertThrows(IOException.class, () -> consumer.consume(ByteBuffer.allocate(1))));
+
+        assertSame(ex, assertThrows(IOException.class, () -> consumer.streamEnd(null)));
+
+        consumer.failed(ex);
+        runAll();
+        assertEquals(Arrays.asList("a", "failed"), events);
+        assertSame(ex, refException.get());
+    }
+
+    /**
+     * 按行分帧的简单消费者.
+     */
+    private static final class LineConsumer implements AsyncResponseConsumer<Void> {
+        private final StreamCallback<String> callback;
+        private final StringBuilder buffer = new StringBuilder();
+        private FutureCallback<Void> resultCallback;
+
+        private LineConsumer(final StreamCallback<String> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void consumeResponse(final HttpResponse response, final EntityDetails entityDetails,
+                                    final HttpContext context, final FutureCallback<Void> resultCallback) {
+            this.resultCallback = resultCallback;
+        }
+
+        @Override
+        public void informationResponse(final HttpResponse response, final HttpContext context) {
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            resultCallback.failed(cause);
+        }
+
+        @Override
+        public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+            capacityChannel.update(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void consume(final ByteBuffer src) throws IOException {
+            buffer.append(StandardCharsets.UTF_8.decode(src));
+            int index;
+            while ((index = buffer.indexOf("\n")) >= 0) {
+                callback.stream(ContentType.TEXT_PLAIN, buffer.substring(0, index));
+                buffer.delete(0, index + 1);
+            }
+        }
+
+        @Override
+        public void streamEnd(final List<? extends Header> trailers) {
+            resultCallback.completed(null);
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+    }
+}
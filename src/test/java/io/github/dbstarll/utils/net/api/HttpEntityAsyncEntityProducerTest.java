@@ -0,0 +1,161 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.FileEntity;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpEntityAsyncEntityProducerTest {
+    private static byte[] random(final int size) {
+        final byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] produce(final HttpEntityAsyncEntityProducer producer, final int capacity)
+            throws IOException {
+        final LimitedChannel channel = new LimitedChannel(capacity);
+        while (!channel.ended) {
+            producer.produce(channel);
+        }
+        producer.releaseResources();
+        return channel.out.toByteArray();
+    }
+
+    @Test
+    void byteArray() throws IOException {
+        final byte[] data = random(100000);
+        final HttpEntityAsyncEntityProducer producer = HttpEntityAsyncEntityProducer.create(
+                new ByteArrayEntity(data, 10, data.length - 20, ContentType.APPLICATION_OCTET_STREAM));
+        assertEquals(data.length - 20, producer.getContentLength());
+        assertEquals(data.length - 20, producer.available());
+        assertTrue(producer.isRepeatable());
+        final byte[] expected = new byte[data.length - 20];
+        System.arraycopy(data, 10, expected, 0, expected.length);
+        assertArrayEquals(expected, produce(producer, 1000));
+        assertArrayEquals(expected, produce(producer, 30000));
+    }
+
+    @Test
+    void string() throws IOException {
+        final HttpEntityAsyncEntityProducer producer = HttpEntityAsyncEntityProducer.create(
+                new StringEntity("好", ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8)));
+        assertEquals("text/plain; charset=UTF-8", producer.getContentType());
+        assertEquals(3, producer.getContentLength());
+        assertEquals("好", new String(produce(producer, 1), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void file(@TempDir final File dir) throws IOException {
+        final byte[] data = random(50000);
+        final File file = new File(dir, "upload.bin");
+        Files.write(file.toPath(), data);
+        final HttpEntityAsyncEntityProducer producer = HttpEntityAsyncEntityProducer.create(
+                new FileEntity(file, ContentType.APPLICATION_OCTET_STREAM));
+        assertEquals(data.length, producer.getContentLength());
+        assertFalse(producer.isChunked());
+        assertArrayEquals(data, produce(producer, 3000));
+        assertArrayEquals(data, produce(producer, 100000));
+    }
+
+    @Test
+    void chunkedStream() throws IOException {
+        final byte[] data = random(70000);
+        final HttpEntityAsyncEntityProducer producer = HttpEntityAsyncEntityProducer.create(
+                new InputStreamEntity(new ByteArrayInputStream(data), ContentType.APPLICATION_OCTET_STREAM));
+        assertEquals(-1, producer.getContentLength());
+        assertFalse(producer.isRepeatable());
+        assertArrayEquals(data, produce(producer, 5000));
+    }
+
+    @Test
+    void slowStream() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final InputStream slow = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+        };
+        final HttpEntityAsyncEntityProducer producer = HttpEntityAsyncEntityProducer.create(
+                new InputStreamEntity(slow, ContentType.APPLICATION_OCTET_STREAM));
+        final LimitedChannel channel = new LimitedChannel(100);
+        assertTrue(producer.available() > 0);
+        producer.produce(channel);
+        assertEquals(0, producer.available());
+        producer.produce(channel);
+        assertFalse(channel.ended);
+
+        release.countDown();
+        assertTrue(channel.requested.await(5, TimeUnit.SECONDS));
+        assertTrue(producer.available() > 0);
+        producer.produce(channel);
+        assertTrue(channel.ended);
+        assertEquals(0, channel.out.size());
+        producer.releaseResources();
+    }
+
+    private static final class LimitedChannel implements DataStreamChannel {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final CountDownLatch requested = new CountDownLatch(1);
+        private final int capacity;
+        private boolean ended;
+
+        private LimitedChannel(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void requestOutput() {
+            requested.countDown();
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            final int length = Math.min(capacity, src.remaining());
+            final byte[] bytes = new byte[length];
+            src.get(bytes);
+            out.write(bytes, 0, length);
+            return length;
+        }
+
+        @Override
+        public void endStream(final List<? extends Header> trailers) {
+            ended = true;
+        }
+
+        @Override
+        public void endStream() {
+            endStream(null);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.dbstarll.utils.net.api;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PooledByteBufferTest {
+    private static byte[] random(final int size) {
+        final byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static PooledByteBuffer write(final byte[] data, final int step) {
+        final PooledByteBuffer buffer = new PooledByteBuffer();
+        for (int i = 0; i < data.length; i += step) {
+            buffer.append(ByteBuffer.wrap(data, i, Math.min(step, data.length - i)));
+        }
+        assertEquals(data.length, buffer.length());
+        return buffer;
+    }
+
+    @Test
+    void toByteArray() {
+        for (int size : new int[]{0, 1, PooledByteBuffer.CHUNK_SIZE, PooledByteBuffer.CHUNK_SIZE * 3 + 7}) {
+            final byte[] data = random(size);
+            final PooledByteBuffer buffer = write(data, 1000);
+            assertArrayEquals(data, buffer.toByteArray());
+            assertEquals(0, buffer.length());
+        }
+    }
+
+    @Test
+    void toInputStream() throws IOException {
+        final byte[] data = random(PooledByteBuffer.CHUNK_SIZE * 5 + 123);
+        final PooledByteBuffer buffer = write(data, 5000);
+        try (InputStream in = buffer.toInputStream()) {
+            assertEquals(0, buffer.length());
+            assertEquals(data.length, in.available());
+            assertEquals(data[0] & 0xFF, in.read());
+            final byte[] rest = IOUtils.toByteArray(in);
+            assertEquals(data.length - 1, rest.length);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void reuseAfterRelease() {
+        final PooledByteBuffer buffer = write(random(PooledByteBuffer.CHUNK_SIZE * 2), 3000);
+        buffer.release();
+        final byte[] data = random(100);
+        assertArrayEquals(data, write(data, 7).toByteArray());
+    }
+}
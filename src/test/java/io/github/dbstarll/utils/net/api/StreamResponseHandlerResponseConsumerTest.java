@@ -0,0 +1,199 @@
+package io.github.dbstarll.utils.net.api;
+
+import io.github.dbstarll.utils.http.client.response.StringResponseHandler;
+import io.github.dbstarll.utils.net.api.index.EventStream;
+import io.github.dbstarll.utils.net.api.index.EventStreamIndexParser;
+import io.github.dbstarll.utils.net.api.index.IndexParser;
+import io.github.dbstarll.utils.net.api.index.StringIndex;
+import io.github.dbstarll.utils.net.api.index.StringIndexParser;
+import io.github.dbstarll.utils.net.api.index.StringIndexResponseHandler;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.impl.nio.DefaultHttpResponseFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class StreamResponseHandlerResponseConsumerTest {
+    private static StreamResponseHandlerResponseConsumer<String, ?> lines(final StreamCallback<String> callback) {
+        final StreamResponseHandlerResponseConsumer<String, ?> consumer = StreamResponseHandlerResponseConsumer.create(
+                new StringIndexParser(), false, StandardCharsets.UTF_8, callback);
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(200), ContentType.TEXT_PLAIN);
+        return consumer;
+    }
+
+    @Test
+    void splitAcrossChunks() throws IOException {
+        final List<String> results = new ArrayList<>();
+        final StreamResponseHandlerResponseConsumer<String, ?> consumer = lines((contentType, result) -> results.add(result));
+        consumer.data(CharBuffer.wrap("ab"), false);
+        consumer.data(CharBuffer.wrap("c\nde\n\nf"), false);
+        consumer.data(CharBuffer.wrap("g\n"), false);
+        consumer.data(CharBuffer.wrap("h"), true);
+        assertEquals(5, results.size());
+        assertEquals("[abc, de, , fg, h]", results.toString());
+    }
+
+    @Test
+    void eventStreamSplitAcrossChunks() throws IOException {
+        final List<EventStream> results = new ArrayList<>();
+        final StreamResponseHandlerResponseConsumer<EventStream, ?> consumer = StreamResponseHandlerResponseConsumer
+                .create(new EventStreamIndexParser(), false, StandardCharsets.UTF_8,
+                        (contentType, result) -> results.add(result));
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(200), ContentType.TEXT_EVENT_STREAM);
+        consumer.data(CharBuffer.wrap("data:a\n"), false);
+        consumer.data(CharBuffer.wrap("\ndata:b\n"), false);
+        consumer.data(CharBuffer.wrap("data:c"), true);
+        assertEquals(2, results.size());
+        assertEquals("a", results.get(0).getData());
+        assertEquals("b\nc", results.get(1).getData());
+    }
+
+    @Test
+    void eventStreamCrlf() throws IOException {
+        final List<EventStream> results = new ArrayList<>();
+        final StreamResponseHandlerResponseConsumer<EventStream, ?> consumer = StreamResponseHandlerResponseConsumer
+                .create(new EventStreamIndexParser(), false, StandardCharsets.UTF_8,
+                        (contentType, result) -> results.add(result));
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(200), ContentType.TEXT_EVENT_STREAM);
+        consumer.data(CharBuffer.wrap(": comment\r\ndata: a\r\n\r"), false);
+        consumer.data(CharBuffer.wrap("\ndata: b\r\rdata:c"), true);
+        assertEquals(3, results.size());
+        assertEquals("a", results.get(0).getData());
+        assertEquals("b", results.get(1).getData());
+        assertEquals("c", results.get(2).getData());
+    }
+
+    @Test
+    void compatibleResponseHandler() throws IOException {
+        final List<String> results = new ArrayList<>();
+        final StreamResponseHandlerResponseConsumer<String, ?> consumer = StreamResponseHandlerResponseConsumer.create(
+                new StringIndexResponseHandler(new StringResponseHandler(false)), StandardCharsets.UTF_8,
+                (contentType, result) -> results.add(result));
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(200), ContentType.TEXT_PLAIN);
+        consumer.data(CharBuffer.wrap("ab\nc"), false);
+        consumer.data(CharBuffer.wrap("d"), true);
+        assertEquals("[ab, cd]", results.toString());
+    }
+
+    @Test
+    void compatibleResponseHandlerWindow() throws IOException {
+        final List<String> results = new ArrayList<>();
+        final StreamResponseHandlerResponseConsumer<String, ?> consumer = StreamResponseHandlerResponseConsumer.create(
+                new StringIndexResponseHandler(new StringResponseHandler(false)), StandardCharsets.UTF_8,
+                (contentType, result) -> results.add(result));
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(200), ContentType.TEXT_PLAIN);
+        final String longLine = repeat("x", 5000);
+        consumer.data(CharBuffer.wrap("a\n" + longLine + "\nb\n" + longLine), false);
+        assertEquals(3, results.size());
+        consumer.data(CharBuffer.wrap("c"), true);
+        assertEquals(Arrays.asList("a", longLine, "b", longLine + "c"), results);
+    }
+
+    @Test
+    void rejectStatus() {
+        final StreamResponseHandlerResponseConsumer<String, ?> consumer = StreamResponseHandlerResponseConsumer.create(
+                new StringIndexParser(), false, StandardCharsets.UTF_8, (contentType, result) -> fail());
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(404, "Missing"), ContentType.TEXT_PLAIN);
+        final HttpResponseException e = assertThrowsExactly(HttpResponseException.class,
+                () -> consumer.data(CharBuffer.wrap("not found"), true));
+        assertEquals(404, e.getStatusCode());
+        assertEquals("Missing", e.getReasonPhrase());
+    }
+
+    @Test
+    void scanLinearWithChunkSize() throws IOException {
+        final String line = "0123456789abcdefghijklmnopqrstuvwxyz\n";
+        final String small = repeat(line, 1_000);
+        final String large = repeat(line, 64_000);
+        // 二次复杂度下大块的单条扫描量约为小块的64倍，线性时每个字符至多被扫描和复制各一次
+        assertTrue(scanned(small, 1_000, small.length()) <= 2L * small.length());
+        assertTrue(scanned(large, 64_000, large.length()) <= 2L * large.length());
+        assertTrue(scanned(large, 64_000, 7) <= 2L * large.length());
+    }
+
+    /**
+     * 分块送入content，返回解析过程中读取和复制的字符总数.
+     */
+    private static long scanned(final String content, final int records, final int chunkSize) throws IOException {
+        final AtomicLong scanned = new AtomicLong();
+        final StringIndexParser delegate = new StringIndexParser();
+        final IndexParser<StringIndex> parser = new IndexParser<StringIndex>() {
+            @Override
+            public StringIndex parse(final ContentType contentType, final CharSequence content, final int offset,
+                                     final boolean endOfStream) {
+                return parse(contentType, content, offset, offset, endOfStream);
+            }
+
+            @Override
+            public StringIndex parse(final ContentType contentType, final CharSequence content, final int offset,
+                                     final int scanFrom, final boolean endOfStream) {
+                return delegate.parse(contentType, new CountingCharSequence(content, scanned), offset, scanFrom,
+                        endOfStream);
+            }
+        };
+        final AtomicInteger count = new AtomicInteger();
+        final StreamResponseHandlerResponseConsumer<String, ?> consumer = StreamResponseHandlerResponseConsumer.create(
+                parser, false, StandardCharsets.UTF_8, (contentType, result) -> count.incrementAndGet());
+        consumer.start(DefaultHttpResponseFactory.INSTANCE.newHttpResponse(200), ContentType.TEXT_PLAIN);
+        for (int i = 0; i < content.length(); i += chunkSize) {
+            final int end = Math.min(i + chunkSize, content.length());
+            consumer.data(CharBuffer.wrap(content, i, end), end == content.length());
+        }
+        assertEquals(records, count.get());
+        return scanned.get();
+    }
+
+    private static final class CountingCharSequence implements CharSequence {
+        private final CharSequence content;
+        private final AtomicLong counter;
+
+        private CountingCharSequence(final CharSequence content, final AtomicLong counter) {
+            this.content = content;
+            this.counter = counter;
+        }
+
+        @Override
+        public int length() {
+            return content.length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            counter.incrementAndGet();
+            return content.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            counter.addAndGet(end - start);
+            return content.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            counter.addAndGet(content.length());
+            return content.toString();
+        }
+    }
+
+    private static String repeat(final String str, final int times) {
+        final StringBuilder builder = new StringBuilder(str.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(str);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.dbstarll.utils.net.api.balance;
+
+import io.github.dbstarll.utils.net.api.balance.LoadBalancingUriResolver.Endpoint;
+import io.github.dbstarll.utils.net.api.balance.LoadBalancingUriResolver.Strategy;
+import io.github.dbstarll.utils.net.api.limit.Permit;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadBalancingUriResolverTest {
+    private static final String A = "http://a.example.com:8080/api";
+    private static final String B = "http://b.example.com/api";
+
+    private static Permit track(final LoadBalancingUriResolver resolver, final URI uri) {
+        return resolver.track(ClassicRequestBuilder.get(uri).build());
+    }
+
+    @Test
+    void roundRobin() throws InterruptedException {
+        final LoadBalancingUriResolver resolver = new LoadBalancingUriResolver(Strategy.ROUND_ROBIN, 2,
+                TimeValue.ofMilliseconds(50), A, B);
+        final URI first = resolver.resolve("users?id=1");
+        final URI second = resolver.resolve("users?id=1");
+        assertEquals("/api/users", first.getPath());
+        assertEquals("id=1", first.getQuery());
+        assertFalse(first.getHost().equals(second.getHost()));
+
+        final List<Endpoint> endpoints = resolver.getEndpoints();
+        final URI b = URI.create("http://B.example.com/api/users");
+        track(resolver, b).failed();
+        track(resolver, b).success(0);
+        track(resolver, b).failed();
+        assertFalse(endpoints.get(1).isEjected());
+        track(resolver, b).dropped();
+        assertTrue(endpoints.get(1).isEjected());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("a.example.com", resolver.resolve("/users").getHost());
+        }
+        assertNull(track(resolver, URI.create("http://c.example.com/api/users")));
+
+        TimeUnit.MILLISECONDS.sleep(60);
+        assertFalse(endpoints.get(1).isEjected());
+        final Permit permit = track(resolver, resolver.resolve("/users"));
+        track(resolver, resolver.resolve("/users")).ignore();
+        permit.ignore();
+        assertEquals(0, endpoints.get(0).getOutstanding());
+        assertEquals(0, endpoints.get(1).getOutstanding());
+    }
+
+    @Test
+    void leastOutstanding() {
+        final LoadBalancingUriResolver resolver = new LoadBalancingUriResolver(Strategy.LEAST_OUTSTANDING, 1,
+                TimeValue.ofSeconds(10), A, B);
+        final Permit first = track(resolver, resolver.resolve("/users"));
+        for (int i = 0; i < 3; i++) {
+            final URI uri = resolver.resolve("/users");
+            assertEquals(1, resolver.getEndpoints().get("a.example.com".equals(uri.getHost()) ? 1 : 0)
+                    .getOutstanding());
+            track(resolver, uri).success(0);
+        }
+        first.success(0);
+    }
+
+    @Test
+    void powerOfTwoChoices() {
+        final LoadBalancingUriResolver resolver = new LoadBalancingUriResolver(Strategy.POWER_OF_TWO_CHOICES, 1,
+                TimeValue.ofSeconds(10), A, B);
+        track(resolver, URI.create(A)).success(TimeUnit.MILLISECONDS.toNanos(100));
+        track(resolver, URI.create(B)).success(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(10, resolver.getEndpoints().get(1).getLatency(TimeUnit.MILLISECONDS), 0.001);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("b.example.com", resolver.resolve("/users").getHost());
+        }
+    }
+
+    @Test
+    void resolveExcluding() {
+        final LoadBalancingUriResolver resolver = new LoadBalancingUriResolver(Strategy.POWER_OF_TWO_CHOICES, 1,
+                TimeValue.ofSeconds(10), A, B);
+        track(resolver, URI.create(A)).success(TimeUnit.MILLISECONDS.toNanos(100));
+        track(resolver, URI.create(B)).success(TimeUnit.MILLISECONDS.toNanos(10));
+        final URI primary = URI.create("http://b.example.com/api/users");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("a.example.com",
+                    resolver.resolveExcluding("/users", ClassicRequestBuilder.get(primary).build()).getHost());
+        }
+
+        track(resolver, URI.create(A)).failed();
+        assertTrue(resolver.getEndpoints().get(0).isEjected());
+        assertEquals("b.example.com",
+                resolver.resolveExcluding("/users", ClassicRequestBuilder.get(primary).build()).getHost());
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.dbstarll.utils.net.api.cache;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCacheTest {
+    private static CacheEntry entry(final String body, final long storedAt) {
+        return new CacheEntry(new Header[]{new BasicHeader(HttpHeaders.ETAG, "\"" + body + "\"")},
+                body.getBytes(StandardCharsets.UTF_8), storedAt, storedAt + 1000);
+    }
+
+    @Test
+    void memoryLru() {
+        final long now = System.currentTimeMillis();
+        final long size = entry("a", now).size();
+        final MemoryResponseCache cache = new MemoryResponseCache(size * 2, TimeValue.ofMinutes(1));
+        cache.put("a", entry("a", now));
+        cache.put("b", entry("b", now));
+        assertNotNull(cache.get("a"));
+        cache.put("c", entry("c", now));
+        assertEquals(2, cache.size());
+        assertEquals(size * 2, cache.bytes());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+
+        cache.put("big", entry("big body", now));
+        assertNull(cache.get("big"));
+        cache.remove("a");
+        assertEquals(1, cache.size());
+        assertEquals(size, cache.bytes());
+    }
+
+    @Test
+    void memoryTtl() {
+        final MemoryResponseCache cache = new MemoryResponseCache(1024, TimeValue.ofSeconds(10));
+        cache.put("old", entry("old", System.currentTimeMillis() - 20000));
+        assertNull(cache.get("old"));
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    void memoryResults() {
+        final long now = System.currentTimeMillis();
+        final CacheEntry a = entry("a", now);
+        final long size = a.size();
+        final MemoryResponseCache cache = new MemoryResponseCache(size * 3, TimeValue.ofMinutes(1));
+        cache.put("a", a);
+        cache.put("b", entry("b", now));
+        assertEquals(size * 2, cache.bytes());
+
+        assertTrue(a.putResult(String.class, "a"));
+        assertFalse(a.putResult(String.class, "a"));
+        cache.resized("a", a);
+        assertEquals(size * 2 + 1, cache.bytes());
+        assertTrue(a.putResult(Object.class, "a"));
+        cache.resized("a", a);
+        assertEquals(size * 2 + 2, cache.bytes());
+
+        cache.put("c", entry("c", now));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.size());
+        cache.remove("a");
+        assertEquals(size, cache.bytes());
+        cache.resized("a", a);
+        assertEquals(size, cache.bytes());
+    }
+
+    @Test
+    void revalidated() {
+        final CacheEntry entry = entry("a", 1);
+        entry.putResult(String.class, "a");
+        final CacheEntry revalidated = entry.revalidated(new Header[]{new BasicHeader("etag", "\"b\"")}, 2, 3);
+        assertEquals("\"b\"", revalidated.getFirstHeader(HttpHeaders.ETAG));
+        assertEquals(1, revalidated.getHeaders().length);
+        assertSame(entry.getBody(), revalidated.getBody());
+        assertSame(entry.getResult(String.class), revalidated.getResult(String.class));
+        assertEquals(2, revalidated.getStoredAt());
+        assertEquals(3, revalidated.getExpiresAt());
+        assertEquals(true, revalidated.isFresh(2));
+        assertEquals(false, revalidated.isFresh(3));
+    }
+
+    @Test
+    void disk(@TempDir final Path directory) throws Exception {
+        final long now = System.currentTimeMillis();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1));
+        cache.put("http://localhost/a", entry("a", now));
+        final CacheEntry read = cache.get("http://localhost/a");
+        assertArrayEquals("a".getBytes(StandardCharsets.UTF_8), read.getBody());
+        assertEquals("\"a\"", read.getFirstHeader(HttpHeaders.ETAG));
+        assertEquals(now + 1000, read.getExpiresAt());
+        assertNull(read.getResult(String.class));
+        assertNull(cache.get("http://localhost/b"));
+
+        final long bytes = cache.bytes();
+        final DiskResponseCache reopened = new DiskResponseCache(directory, bytes, TimeValue.ofMinutes(1));
+        assertEquals(bytes, reopened.bytes());
+        assertNotNull(reopened.get("http://localhost/a"));
+        reopened.put("http://localhost/b", entry("b", now));
+        assertEquals(bytes, reopened.bytes());
+        assertNotNull(reopened.get("http://localhost/b"));
+
+        reopened.remove("http://localhost/b");
+        assertEquals(0, reopened.bytes());
+    }
+
+    @Test
+    void diskLongKey(@TempDir final Path directory) throws Exception {
+        final long now = System.currentTimeMillis();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1));
+        final StringBuilder key = new StringBuilder("http://localhost/a\nauthorization: ");
+        while (key.length() < 70000) {
+            key.append("0123456789");
+        }
+        cache.put(key.toString(), entry("a", now));
+        assertNotNull(cache.get(key.toString()));
+    }
+
+    @Test
+    void diskWithoutKey(@TempDir final Path directory) throws Exception {
+        final long now = System.currentTimeMillis();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1));
+        final String key = "http://localhost/secret-path\nx-api-key: secret-token";
+        cache.put(key, entry("a", now));
+        try (Stream<Path> files = Files.list(directory)) {
+            final String content = new String(Files.readAllBytes(files.findFirst()
+                    .orElseThrow(IllegalStateException::new)), StandardCharsets.ISO_8859_1);
+            assertFalse(content.contains("secret"));
+        }
+        assertNotNull(cache.get(key));
+        assertNull(cache.get("http://localhost/secret-path"));
+    }
+
+    @Test
+    void diskCorrupted(@TempDir final Path directory) throws Exception {
+        final long now = System.currentTimeMillis();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1));
+        cache.put("http://localhost/a", entry("a", now));
+        try (Stream<Path> files = Files.list(directory)) {
+            final Path file = files.findFirst().orElseThrow(IllegalStateException::new);
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+                out.writeObject(new ArrayList<>());
+            }
+        }
+        assertNull(cache.get("http://localhost/a"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void diskConcurrentPut(@TempDir final Path directory) throws Exception {
+        final long now = System.currentTimeMillis();
+        final DiskResponseCache cache = new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(executor.submit(() -> cache.put("http://localhost/a", entry("a", now))));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1)).bytes(), cache.bytes());
+        cache.remove("http://localhost/a");
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    void tiered(@TempDir final Path directory) throws Exception {
+        final long now = System.currentTimeMillis();
+        final MemoryResponseCache memory = new MemoryResponseCache(1024, TimeValue.ofMinutes(1));
+        final DiskResponseCache disk = new DiskResponseCache(directory, 1024 * 1024, TimeValue.ofMinutes(1));
+        disk.put("a", entry("a", now));
+        final TieredResponseCache cache = new TieredResponseCache(memory, disk);
+        assertNotNull(cache.get("a"));
+        assertEquals(1, memory.size());
+        assertSame(memory.get("a"), cache.get("a"));
+
+        cache.put("b", entry("b", now));
+        assertNotNull(disk.get("b"));
+        cache.remove("b");
+        assertNull(memory.get("b"));
+        assertNull(disk.get("b"));
+    }
+}
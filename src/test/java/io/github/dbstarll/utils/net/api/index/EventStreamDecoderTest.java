@@ -0,0 +1,60 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventStreamDecoderTest {
+    private static List<EventStream> decode(final boolean eventStream, final String... chunks) {
+        final EventStreamDecoder decoder = new EventStreamDecoder(StandardCharsets.UTF_8, eventStream);
+        final List<EventStream> results = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++) {
+            decoder.append(ByteBuffer.wrap(chunks[i].getBytes(StandardCharsets.UTF_8)));
+            EventStream next;
+            while ((next = decoder.next(i == chunks.length - 1)) != null) {
+                results.add(next);
+            }
+        }
+        return results;
+    }
+
+    @Test
+    void crlfSplitAcrossChunks() {
+        final List<EventStream> results = decode(true, "data: a\r", "\ndata: b\r\n\r", "\ndata: c\r", "\r");
+        assertEquals(2, results.size());
+        assertEquals("a\nb", results.get(0).getData());
+        assertEquals("c", results.get(1).getData());
+    }
+
+    @Test
+    void multiByteSplitAcrossChunks() {
+        final byte[] bytes = "data: 中文\n\n".getBytes(StandardCharsets.UTF_8);
+        final EventStreamDecoder decoder = new EventStreamDecoder(StandardCharsets.UTF_8, true);
+        decoder.append(ByteBuffer.wrap(bytes, 0, 8));
+        assertNull(decoder.next(false));
+        decoder.append(ByteBuffer.wrap(bytes, 8, bytes.length - 8));
+        assertEquals("中文", decoder.next(false).getData());
+        assertNull(decoder.next(true));
+    }
+
+    @Test
+    void bomAndComments() {
+        final List<EventStream> results = decode(true, "﻿:hello\n", "id\nevent:\n\n: only comment\n\n");
+        assertEquals(1, results.size());
+        assertEquals("EventStream[event='', data='null', id='', retry='null']", results.get(0).toString());
+    }
+
+    @Test
+    void notEventStream() {
+        final List<EventStream> results = decode(false, "a\nb\n\n  \n\nc");
+        assertEquals(2, results.size());
+        assertEquals("a\nb", results.get(0).getData());
+        assertEquals("c", results.get(1).getData());
+    }
+}
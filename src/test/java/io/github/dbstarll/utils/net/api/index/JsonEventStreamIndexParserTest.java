@@ -0,0 +1,66 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonEventStreamIndexParserTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void eventStream() throws IOException {
+        final JsonEventStreamIndexParser<Map, MapIndex> parser = new JsonEventStreamIndexParser<>(MAPPER, Map.class,
+                MapIndex::new, "[DONE]");
+        final String content = ": ping\n\ndata: {\"v\":1}\n\nevent: meta\nid: 1\n\ndata: {\"v\":\ndata: \"中文\"}\n\n"
+                + "data: [DONE]\n\ndata: {\"v\":3}\n\n";
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        for (int step = 1; step <= bytes.length; step++) {
+            final ByteFrameDecoder<Map> decoder = parser.newDecoder(ContentType.TEXT_EVENT_STREAM);
+            final List<Object> results = new ArrayList<>();
+            for (int i = 0; i < bytes.length; i += step) {
+                decoder.append(ByteBuffer.wrap(bytes, i, Math.min(step, bytes.length - i)));
+                Map next;
+                while ((next = decoder.next(i + step >= bytes.length)) != null) {
+                    results.add(next.get("v"));
+                }
+            }
+            assertEquals(Arrays.asList(1, "中文"), results, "step: " + step);
+            assertTrue(decoder.isFinished(), "step: " + step);
+        }
+
+        final List<Object> results = new ArrayList<>();
+        int offset = 0;
+        while (offset >= 0) {
+            final MapIndex index = parser.parse(ContentType.TEXT_EVENT_STREAM, content, offset, true);
+            if (index.getData() != null) {
+                results.add(index.getData().get("v"));
+            }
+            offset = index.getIndex();
+        }
+        assertEquals(Arrays.asList(1, "中文"), results);
+
+        final ByteFrameDecoder<Map> decoder = parser.newDecoder(ContentType.TEXT_EVENT_STREAM);
+        assertFalse(decoder.isFinished());
+        decoder.append(ByteBuffer.wrap("data: {oops}\n\n".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> decoder.next(false));
+    }
+
+    private static final class MapIndex extends JsonIndex<Map> {
+        private MapIndex(final Map data, final int index) {
+            super(data, index);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.dbstarll.utils.net.api.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.dbstarll.utils.net.api.index.JsonIndexParser.Format;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonIndexParserTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static JsonIndexParser<Map, MapIndex> parser(final Format format) {
+        return new JsonIndexParser<>(MAPPER, Map.class, format, MapIndex::new);
+    }
+
+    private static List<Object> decode(final Format format, final byte[]... chunks) throws IOException {
+        final ByteFrameDecoder<Map> decoder = parser(format).newDecoder(null);
+        final List<Object> results = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++) {
+            decoder.append(ByteBuffer.wrap(chunks[i]));
+            Map next;
+            while ((next = decoder.next(i == chunks.length - 1)) != null) {
+                results.add(next.get("v"));
+            }
+        }
+        return results;
+    }
+
+    private static List<Object> parse(final Format format, final String content) {
+        final JsonIndexParser<Map, MapIndex> parser = parser(format);
+        final List<Object> results = new ArrayList<>();
+        int offset = 0;
+        while (offset >= 0) {
+            final MapIndex index = parser.parse(null, content, offset, true);
+            if (index.getData() != null) {
+                results.add(index.getData().get("v"));
+            }
+            offset = index.getIndex();
+        }
+        return results;
+    }
+
+    private static byte[][] split(final String content, final int... positions) {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        final byte[][] chunks = new byte[positions.length + 1][];
+        int start = 0;
+        for (int i = 0; i <= positions.length; i++) {
+            final int end = i < positions.length ? positions[i] : bytes.length;
+            chunks[i] = Arrays.copyOfRange(bytes, start, end);
+            start = end;
+        }
+        return chunks;
+    }
+
+    @Test
+    void lines() throws IOException {
+        final String content = "{\"v\":1}\n\n{\"v\":\"中文\"}\nnull\n{\"v\":[1,{\"a\":\"}\"}]}";
+        final List<Object> expected = Arrays.asList(1, "中文", Arrays.asList(1, Collections.singletonMap("a", "}")));
+        assertEquals(expected, parse(Format.LINES, content));
+        assertEquals(expected, decode(Format.LINES, split(content)));
+        assertEquals(expected, decode(Format.LINES, split(content, 3, 14, 15, 30)));
+        assertEquals(expected, decode(Format.LINES, split(content, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14)));
+    }
+
+    @Test
+    void linesBoundary() throws IOException {
+        assertEquals(Arrays.asList(1, 2), parse(Format.LINES, " {\"v\":1} \r\n{\"v\":2}"));
+        assertEquals(Arrays.asList(1, 2), decode(Format.LINES, split(" {\"v\":1} \r\n{\"v\":2}", 4, 10)));
+
+        final String twoPerLine = "{\"v\":1} {\"v\":2}\n";
+        assertThrows(UncheckedIOException.class, () -> parse(Format.LINES, twoPerLine));
+        assertThrows(IOException.class, () -> decode(Format.LINES, split(twoPerLine)));
+        assertThrows(IOException.class, () -> decode(Format.LINES, split(twoPerLine, 7)));
+
+        final String multiLine = "{\"v\":\n1}\n";
+        assertThrows(UncheckedIOException.class, () -> parse(Format.LINES, multiLine));
+        assertThrows(IOException.class, () -> decode(Format.LINES, split(multiLine)));
+    }
+
+    @Test
+    void array() throws IOException {
+        final String content = " [ {\"v\":1}, {\"v\":\"a,]\\\"\"} ,{\"v\":[[2]]}, null ]\n";
+        final List<Object> expected = Arrays.asList(1, "a,]\"", Arrays.asList(Arrays.asList(2)));
+        assertEquals(expected, parse(Format.ARRAY, content));
+        assertEquals(expected, decode(Format.ARRAY, split(content)));
+        assertEquals(expected, decode(Format.ARRAY, split(content, 1, 2, 5, 13, 20, 33)));
+        assertEquals(Arrays.asList(), parse(Format.ARRAY, "[]"));
+        assertEquals(Arrays.asList(), decode(Format.ARRAY, split("[ ]")));
+    }
+
+    @Test
+    void incomplete() throws IOException {
+        final JsonIndexParser<Map, MapIndex> parser = parser(Format.ARRAY);
+        assertNull(parser.parse(null, "[{\"v\":1", 0, false));
+        final MapIndex first = parser.parse(null, "[{\"v\":1},", 0, false);
+        assertEquals(1, first.getData().get("v"));
+        assertEquals(8, first.getIndex());
+        assertThrows(UncheckedIOException.class, () -> parser.parse(null, "{\"v\":1}", 0, true));
+        assertThrows(UncheckedIOException.class, () -> parser.parse(null, "[{\"v\":1}", 0, true));
+
+        assertThrows(IOException.class, () -> decode(Format.ARRAY, split("{\"v\":1}")));
+        assertThrows(IOException.class, () -> decode(Format.ARRAY, split("[{\"v\":1}")));
+        assertThrows(IOException.class, () -> decode(Format.LINES, split("{\"v\":1")));
+    }
+
+    private static final class MapIndex extends JsonIndex<Map> {
+        private MapIndex(final Map data, final int index) {
+            super(data, index);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.dbstarll.utils.net.api.limit;
+
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimiterTest {
+    @Test
+    void tokenBucket() throws InterruptedException {
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(20, 2);
+        assertEquals(0, limiter.waitNanos());
+        assertNotNull(limiter.tryAcquire());
+        assertNotNull(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+        final long waitNanos = limiter.waitNanos();
+        assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(50), Long.toString(waitNanos));
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+        assertNotNull(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+    }
+
+    @Test
+    void aimd() {
+        final AimdLimiter limiter = new AimdLimiter(2, 1, 3, TimeValue.ofSeconds(1), 0.5);
+        assertEquals(0, limiter.waitNanos());
+        final Permit first = limiter.tryAcquire();
+        final Permit second = limiter.tryAcquire();
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        second.success(TimeUnit.MILLISECONDS.toNanos(10));
+        second.success(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(1, limiter.getInFlight());
+        first.success(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(2, limiter.getLimit());
+        for (int i = 0; i < 2; i++) {
+            final Permit third = limiter.tryAcquire();
+            limiter.tryAcquire().success(TimeUnit.MILLISECONDS.toNanos(10));
+            third.success(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(3, limiter.getLimit());
+
+        limiter.tryAcquire().dropped();
+        assertEquals(1, limiter.getLimit());
+        limiter.tryAcquire().success(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, limiter.getLimit());
+        limiter.tryAcquire().ignore();
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void composite() {
+        final AimdLimiter concurrency = new AimdLimiter(2, 2, 2, TimeValue.ofSeconds(1), 0.5);
+        final TokenBucketLimiter rate = new TokenBucketLimiter(1, 1);
+        final CompositeLimiter limiter = new CompositeLimiter(concurrency, rate);
+        final Permit permit = limiter.tryAcquire();
+        assertNotNull(permit);
+        assertNull(limiter.tryAcquire());
+        assertEquals(1, concurrency.getInFlight());
+        assertTrue(limiter.waitNanos() > 0);
+        permit.success(0);
+        assertEquals(0, concurrency.getInFlight());
+    }
+
+    @Test
+    void circuitBreaker() throws InterruptedException {
+        final CircuitBreaker breaker = new CircuitBreaker(4, 0.5, TimeValue.ofMilliseconds(100), 0.75,
+                TimeValue.ofMilliseconds(50), 2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire().failed();
+        breaker.tryAcquire().success(0);
+        breaker.tryAcquire().ignore();
+        breaker.tryAcquire().success(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        final Permit stale = breaker.tryAcquire();
+        breaker.tryAcquire().dropped();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        assertTrue(breaker.waitNanos() > 0);
+        stale.success(0);
+
+        TimeUnit.MILLISECONDS.sleep(60);
+        final Permit trial1 = breaker.tryAcquire();
+        final Permit trial2 = breaker.tryAcquire();
+        assertNotNull(trial2);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        trial1.success(TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        trial2.success(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        TimeUnit.MILLISECONDS.sleep(60);
+        breaker.tryAcquire().ignore();
+        breaker.tryAcquire().success(0);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.tryAcquire().success(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (int i = 0; i < 3; i++) {
+            breaker.tryAcquire().success(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire().success(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
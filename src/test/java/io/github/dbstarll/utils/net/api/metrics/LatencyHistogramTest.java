@@ -0,0 +1,35 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void buckets() {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            final int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.upperBound(index) >= value, Long.toString(value));
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value, Long.toString(value));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentile() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5, TimeUnit.MILLISECONDS));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(100, histogram.getMax(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(50, histogram.getPercentile(0.5, TimeUnit.MILLISECONDS), 50 * 0.125);
+        assertEquals(99, histogram.getPercentile(0.99, TimeUnit.MILLISECONDS), 99 * 0.125);
+        assertEquals(100, histogram.getPercentile(1, TimeUnit.MILLISECONDS), 0.001);
+    }
+}
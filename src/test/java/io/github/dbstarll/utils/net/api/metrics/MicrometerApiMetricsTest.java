@@ -0,0 +1,55 @@
+package io.github.dbstarll.utils.net.api.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicrometerApiMetricsTest {
+    @Test
+    void exchange() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final ApiMetrics metrics = new MicrometerApiMetrics(registry);
+
+        final ExchangeMetrics exchange = metrics.start("GET /ping");
+        assertEquals(1, registry.get("api.client.in.flight").gauge().value());
+        exchange.requestBytes(10);
+        exchange.responseStarted(200);
+        exchange.responseBytes(3);
+        exchange.responseBytes(4);
+        exchange.event();
+        exchange.completed();
+        metrics.start("GET /ping").cancelled();
+        metrics.coalesced("GET /ping");
+
+        assertEquals(0, registry.get("api.client.in.flight").gauge().value());
+        assertEquals(1, registry.get("api.client.ttfb").tag("status", "200").timer().count());
+        assertEquals(1, registry.get("api.client.duration").tag("outcome", "200").timer().count());
+        assertEquals(1, registry.get("api.client.duration").tag("outcome", "CANCELLED").timer().count());
+        assertEquals(10, registry.get("api.client.bytes.out").summary().totalAmount());
+        assertEquals(7, registry.get("api.client.bytes.in").summary().totalAmount());
+        assertEquals(1, registry.get("api.client.events").tag("endpoint", "GET /ping").counter().count());
+        assertEquals(1, registry.get("api.client.coalesced").tag("endpoint", "GET /ping").counter().count());
+    }
+
+    @Test
+    void concurrentResponseBytes() throws InterruptedException {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final ExchangeMetrics exchange = new MicrometerApiMetrics(registry).start("GET /stream");
+        exchange.responseStarted(200);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    exchange.responseBytes(1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        exchange.completed();
+        assertEquals(40_000, registry.get("api.client.bytes.in").summary().totalAmount());
+    }
+}
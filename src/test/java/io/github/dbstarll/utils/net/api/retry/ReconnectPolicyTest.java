@@ -0,0 +1,53 @@
+package io.github.dbstarll.utils.net.api.retry;
+
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconnectPolicyTest {
+    @Test
+    void reconnect() {
+        final ReconnectPolicy policy = new ReconnectPolicy(5, TimeValue.ofMilliseconds(100), TimeValue.ofSeconds(1));
+        for (int i = 0; i < 100; i++) {
+            final long first = policy.delayMillis(1, -1);
+            assertTrue(first >= 100 && first <= 150, Long.toString(first));
+            final long third = policy.delayMillis(3, -1);
+            assertTrue(third >= 400 && third <= 600, Long.toString(third));
+            final long capped = policy.delayMillis(5, -1);
+            assertTrue(capped >= 1000 && capped <= 1500, Long.toString(capped));
+            final long hinted = policy.delayMillis(1, 3000);
+            assertTrue(hinted >= 3000 && hinted <= 4500, Long.toString(hinted));
+        }
+        final Set<Long> jittered = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            final long immediate = policy.delayMillis(1, 0);
+            assertTrue(immediate >= 100 && immediate <= 150, Long.toString(immediate));
+            jittered.add(immediate);
+        }
+        assertTrue(jittered.size() > 1, jittered.toString());
+        final ReconnectPolicy zero = new ReconnectPolicy(3, TimeValue.ZERO_MILLISECONDS, TimeValue.ofSeconds(1));
+        final long retried = zero.delayMillis(2, -1);
+        assertTrue(retried >= 200 && retried <= 300, Long.toString(retried));
+        assertEquals(-1, policy.delayMillis(6, -1));
+
+        assertTrue(policy.isReconnectable(new IOException("reset")));
+        assertTrue(policy.isReconnectable(new UnknownHostException()));
+        assertTrue(policy.isReconnectable(new HttpResponseException(503, "Service Unavailable")));
+        assertTrue(policy.isReconnectable(new HttpResponseException(429, "Too Many Requests")));
+        assertFalse(policy.isReconnectable(new HttpResponseException(404, "Not Found")));
+        assertFalse(policy.isReconnectable(new ClientProtocolException()));
+        assertFalse(policy.isReconnectable(new InterruptedIOException()));
+        assertFalse(policy.isReconnectable(new IllegalStateException()));
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.dbstarll.utils.net.api.retry;
+
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+    @Test
+    void retryable() {
+        final RetryPolicy policy = new RetryPolicy(3, TimeValue.ofMilliseconds(100), TimeValue.ofSeconds(1));
+        assertTrue(policy.isRetryable(ClassicRequestBuilder.get("http://localhost/").build()));
+        assertTrue(policy.isRetryable(ClassicRequestBuilder.put("http://localhost/")
+                .setEntity(new StringEntity("put")).build()));
+        assertFalse(policy.isRetryable(ClassicRequestBuilder.post("http://localhost/").build()));
+        assertFalse(policy.isRetryable(ClassicRequestBuilder.put("http://localhost/")
+                .setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[1]), ContentType.DEFAULT_BINARY))
+                .build()));
+
+        assertTrue(policy.isRetryable(503));
+        assertTrue(policy.isRetryable(429));
+        assertFalse(policy.isRetryable(500));
+        assertFalse(policy.isRetryable(404));
+
+        assertTrue(policy.isRetryable(new IOException("reset")));
+        assertTrue(policy.isRetryable(new SocketTimeoutException()));
+        assertFalse(policy.isRetryable(new InterruptedIOException()));
+        assertFalse(policy.isRetryable(new UnknownHostException()));
+        assertFalse(policy.isRetryable(new ClientProtocolException()));
+        assertFalse(policy.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    void backoff() {
+        final RetryPolicy policy = new RetryPolicy(10, TimeValue.ofMilliseconds(100), TimeValue.ofSeconds(1));
+        for (int i = 0; i < 100; i++) {
+            final long first = policy.backoffMillis(1, -1);
+            assertTrue(first >= 0 && first <= 100, Long.toString(first));
+            final long third = policy.backoffMillis(3, -1);
+            assertTrue(third >= 0 && third <= 400, Long.toString(third));
+            final long capped = policy.backoffMillis(9, -1);
+            assertTrue(capped >= 0 && capped <= 1000, Long.toString(capped));
+            assertTrue(policy.backoffMillis(1, 500) >= 500);
+        }
+        assertEquals(-1, policy.backoffMillis(10, -1));
+        assertEquals(-1, policy.backoffMillis(1, 2000));
+    }
+
+    @Test
+    void retryAfter() {
+        final BasicHttpResponse response = new BasicHttpResponse(503);
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response));
+        response.setHeader(HttpHeaders.RETRY_AFTER, "2");
+        assertEquals(2000, RetryPolicy.retryAfterMillis(response));
+        response.setHeader(HttpHeaders.RETRY_AFTER, "soon");
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response));
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                DateUtils.formatStandardDate(Instant.now().plusSeconds(30)));
+        final long millis = RetryPolicy.retryAfterMillis(response);
+        assertTrue(millis > TimeUnit.SECONDS.toMillis(28) && millis <= TimeUnit.SECONDS.toMillis(30),
+                Long.toString(millis));
+    }
+
+    @Test
+    void hedgeDelay() {
+        final HedgePolicy policy = new HedgePolicy(0.9, TimeValue.ofMilliseconds(10));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), policy.delayNanos("GET /"));
+        for (int i = 0; i < 100; i++) {
+            policy.record("GET /", TimeUnit.MILLISECONDS.toNanos(i < 95 ? 50 : 500));
+        }
+        final long delay = policy.delayNanos("GET /");
+        assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(50) && delay < TimeUnit.MILLISECONDS.toNanos(500),
+                Long.toString(delay));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), policy.delayNanos("GET /other"));
+        assertTrue(policy.isHedgeable(ClassicRequestBuilder.get("http://localhost/").build()));
+        assertFalse(policy.isHedgeable(ClassicRequestBuilder.post("http://localhost/").build()));
+    }
+}